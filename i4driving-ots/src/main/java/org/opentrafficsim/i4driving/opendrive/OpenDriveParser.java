@@ -4,16 +4,20 @@ import java.io.ByteArrayInputStream;
 import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
 import java.net.MalformedURLException;
 import java.nio.charset.Charset;
 import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.HexFormat;
 import java.util.Iterator;
 import java.util.LinkedHashMap;
 import java.util.LinkedHashSet;
 import java.util.List;
-import java.util.Locale;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.NavigableMap;
@@ -40,6 +44,7 @@ import org.djutils.draw.line.Polygon2d;
 import org.djutils.draw.line.Ray2d;
 import org.djutils.draw.point.OrientedPoint2d;
 import org.djutils.draw.point.Point2d;
+import org.djutils.exceptions.Throw;
 import org.djutils.exceptions.Try;
 import org.djutils.immutablecollections.ImmutableMap;
 import org.djutils.logger.CategoryLogger;
@@ -75,6 +80,7 @@ import org.opentrafficsim.i4driving.opendrive.generated.TRoadLanesLaneSectionLrL
 import org.opentrafficsim.i4driving.opendrive.generated.TRoadLanesLaneSectionRightLane;
 import org.opentrafficsim.i4driving.opendrive.generated.TRoadLinkPredecessorSuccessor;
 import org.opentrafficsim.i4driving.opendrive.generated.TRoadType;
+import org.opentrafficsim.i4driving.tactical.perception.mental.channel.ConflictUpstreamIndex;
 import org.opentrafficsim.road.definitions.DefaultsRoadNl;
 import org.opentrafficsim.road.network.RoadNetwork;
 import org.opentrafficsim.road.network.lane.CrossSectionElement;
@@ -128,6 +134,44 @@ public final class OpenDriveParser
     /** Shoulder lane type. */
     private static final LaneType SHOULDER = new LaneType("Shoulder");
 
+    /** Maximum number of parsed OpenDRIVE tags, and the lines flattened from them, that are kept for reuse. */
+    private static final int MAX_SHARED = 4;
+
+    /** Recently parsed OpenDRIVE tags by the SHA-256 digest of their file string, in access order. */
+    private static final Map<String, SharedParse> SHARED = new LinkedHashMap<>(16, 0.75f, true)
+    {
+        /** */
+        private static final long serialVersionUID = 20250627L;
+
+        @Override
+        protected boolean removeEldestEntry(final Map.Entry<String, SharedParse> eldest)
+        {
+            return size() > MAX_SHARED;
+        }
+    };
+
+    /** JAXB context, which is thread-safe and expensive to create. */
+    private static JAXBContext jaxbContext;
+
+    /** Public getters of lists per generated class, which assign an empty list when first called. */
+    private static final ClassValue<List<Method>> LIST_GETTERS = new ClassValue<>()
+    {
+        @Override
+        protected List<Method> computeValue(final Class<?> type)
+        {
+            List<Method> getters = new ArrayList<>();
+            for (Method method : type.getMethods())
+            {
+                if (method.getName().startsWith("get") && method.getParameterCount() == 0
+                        && !Modifier.isStatic(method.getModifiers()) && List.class.equals(method.getReturnType()))
+                {
+                    getters.add(method);
+                }
+            }
+            return getters;
+        }
+    };
+
     /** Default link types. */
     private static final Map<String, LinkType> LINK_TYPES = new LinkedHashMap<>();
 
@@ -157,6 +201,18 @@ public final class OpenDriveParser
     /** Open drive tag. */
     private final OpenDRIVE openDrive;
 
+    /** Shared parse in which flattened lines are stored for reuse, {@code null} if the parse is not shared. */
+    private final SharedParse shared;
+
+    /** Flattened lines of an earlier build that are reused, per element they belong to, {@code null} if not reused. */
+    private Map<String, PolyLine2d> reusedLines;
+
+    /** Lines flattened in the current build, per element they belong to. */
+    private final Map<String, PolyLine2d> flattenedLines = new LinkedHashMap<>();
+
+    /** Number of reused lines in the current build. */
+    private int reusedCount;
+
     /** Network. */
     private RoadNetwork net;
 
@@ -185,6 +241,17 @@ public final class OpenDriveParser
     private OpenDriveParser(final OpenDRIVE openDrive)
     {
         this.openDrive = openDrive;
+        this.shared = null;
+    }
+
+    /**
+     * Constructor for a shared parse.
+     * @param shared shared parse
+     */
+    private OpenDriveParser(final SharedParse shared)
+    {
+        this.openDrive = shared.getOpenDrive();
+        this.shared = shared;
     }
 
     /**
@@ -228,6 +295,59 @@ public final class OpenDriveParser
         return parseString(string, StandardCharsets.UTF_8);
     }
 
+    /**
+     * Parse OpenDrive XML (.xodr) string using UTF-8 character encoding, or reuse the OpenDRIVE object of an earlier parse of
+     * an equal string, possibly from another thread. This is possible as building a network only reads the OpenDRIVE object,
+     * while all state of building is in the parser, which is always new. All lists in the OpenDRIVE object are assigned when it
+     * is parsed, such that getters do not assign them while it is shared. Strings are recognized by their SHA-256 digest, such
+     * that they are not retained. Lines that are flattened when building a network from the returned parser are shared too,
+     * such that building the same network again does not need to flatten lines, which is the most expensive part of building.
+     * @param string the xml string
+     * @return parser
+     * @throws JAXBException when the parsing fails
+     * @throws ParserConfigurationException on error with parser configuration
+     * @throws SAXException on error creating SAX parser
+     */
+    public static OpenDriveParser parseFileStringShared(final String string)
+            throws JAXBException, SAXException, ParserConfigurationException
+    {
+        String digest = digest(string);
+        SharedParse shared;
+        synchronized (SHARED)
+        {
+            shared = SHARED.get(digest);
+        }
+        if (shared == null)
+        {
+            shared = new SharedParse(parseFileString(string).openDrive);
+            synchronized (SHARED)
+            {
+                SharedParse earlier = SHARED.putIfAbsent(digest, shared);
+                shared = earlier == null ? shared : earlier;
+            }
+        }
+        return new OpenDriveParser(shared);
+    }
+
+    /**
+     * Returns the SHA-256 digest of a string in UTF-8 character encoding, as hexadecimal string.
+     * @param string string
+     * @return SHA-256 digest of the string
+     */
+    public static String digest(final String string)
+    {
+        try
+        {
+            byte[] bytes = string.getBytes(StandardCharsets.UTF_8);
+            return HexFormat.of().formatHex(MessageDigest.getInstance("SHA-256").digest(bytes));
+        }
+        catch (NoSuchAlgorithmException ex)
+        {
+            // SHA-256 is required on every Java platform
+            throw new RuntimeException(ex);
+        }
+    }
+
     /**
      * Parse OpenDrive XML (.xodr) string and build OpenDRIVE object.
      * @param string the xml string
@@ -244,7 +364,8 @@ public final class OpenDriveParser
     }
 
     /**
-     * Parse OpenDrive XML (.xodr) input stream and build OpenDRIVE object.
+     * Parse OpenDrive XML (.xodr) input stream and build OpenDRIVE object. All lists in the OpenDRIVE object are assigned, such
+     * that it is only read when building a network.
      * @param xmlStream the xml stream
      * @return Open Drive tag
      * @throws JAXBException when the parsing fails
@@ -254,10 +375,18 @@ public final class OpenDriveParser
     public static OpenDriveParser parseStream(final InputStream xmlStream)
             throws JAXBException, SAXException, ParserConfigurationException
     {
-        Locale locale = Locale.getDefault();
-        Locale.setDefault(Locale.US);
-        JAXBContext jc = JAXBContext.newInstance(OpenDRIVE.class);
-        Unmarshaller unmarshaller = jc.createUnmarshaller();
+        Unmarshaller unmarshaller = getJaxbContext().createUnmarshaller();
+        unmarshaller.setListener(new Unmarshaller.Listener()
+        {
+            @Override
+            public void afterUnmarshal(final Object target, final Object parent)
+            {
+                for (Method getter : LIST_GETTERS.get(target.getClass()))
+                {
+                    Try.execute(() -> getter.invoke(target), "Unable to assign list of %s.", target.getClass().getSimpleName());
+                }
+            }
+        });
         SAXParserFactory spf = SAXParserFactory.newInstance();
         spf.setXIncludeAware(false);
         spf.setNamespaceAware(true);
@@ -267,10 +396,23 @@ public final class OpenDriveParser
         xmlReader.setContentHandler(unmarshaller.getUnmarshallerHandler());
         SAXSource saxSource = new SAXSource(xmlFilter, new InputSource(xmlStream));
         OpenDRIVE result = (OpenDRIVE) unmarshaller.unmarshal(saxSource);
-        Locale.setDefault(locale);
         return new OpenDriveParser(result);
     }
 
+    /**
+     * Returns the JAXB context, creating it when first used.
+     * @return JAXB context
+     * @throws JAXBException when the context cannot be created
+     */
+    private static synchronized JAXBContext getJaxbContext() throws JAXBException
+    {
+        if (jaxbContext == null)
+        {
+            jaxbContext = JAXBContext.newInstance(OpenDRIVE.class);
+        }
+        return jaxbContext;
+    }
+
     /**
      * This class adds name space to elements, so .xodr that do not include the name space can still be parsed.
      */
@@ -324,7 +466,69 @@ public final class OpenDriveParser
         this.openDrive.getRoad().forEach((road) -> this.roadMap.put(road.getId(), road));
         this.openDrive.getJunction().forEach((junction) -> this.junctionMap.put(junction.getId(), junction));
 
+        this.reusedLines = this.shared == null ? null : this.shared.getLines();
+        this.reusedCount = 0;
+        this.flattenedLines.clear();
         buildNetwork(linkTypeFunction);
+        if (this.reusedLines != null)
+        {
+            Throw.when(this.reusedCount != this.reusedLines.size(), IllegalStateException.class,
+                    "Network build used %d of %d flattened lines of an earlier build.", this.reusedCount,
+                    this.reusedLines.size());
+        }
+        else if (this.shared != null)
+        {
+            this.shared.setLines(Map.copyOf(this.flattenedLines));
+        }
+        this.flattenedLines.clear();
+    }
+
+    /**
+     * Returns whether the last build reused the flattened lines of an earlier build from the same OpenDRIVE string.
+     * @return whether the last build reused the flattened lines of an earlier build from the same OpenDRIVE string
+     */
+    public boolean isReusedBuild()
+    {
+        return this.reusedLines != null;
+    }
+
+    /**
+     * Returns a flattened line. When a network is built again from a shared parse, the line that was flattened for the same
+     * element in the earlier build is returned.
+     * @param key element the line belongs to, unique within a build, e.g. "road 1 at s=0.0 forward lane -1 center"
+     * @param flattener flattens the line
+     * @return flattened line
+     * @throws IllegalStateException when the earlier build flattened no line for the element, or when the element is not
+     *             unique
+     */
+    private PolyLine2d flat(final String key, final Supplier<PolyLine2d> flattener)
+    {
+        if (this.reusedLines != null)
+        {
+            PolyLine2d line = this.reusedLines.get(key);
+            Throw.when(line == null, IllegalStateException.class,
+                    "The earlier build from the same OpenDRIVE string flattened no line for %s.", key);
+            this.reusedCount++;
+            return line;
+        }
+        PolyLine2d line = flattener.get();
+        if (this.shared != null)
+        {
+            Throw.when(this.flattenedLines.put(key, line) != null, IllegalStateException.class,
+                    "Flattened line of %s is not unique.", key);
+        }
+        return line;
+    }
+
+    /**
+     * Returns the key of lines that belong to a link, i.e. the road, the start of the link on the road, and the direction.
+     * @param linkData relevant data for the link
+     * @param forward whether the link is in the forward direction
+     * @return key of lines that belong to the link
+     */
+    private static String linkKey(final LinkData linkData, final boolean forward)
+    {
+        return "road " + linkData.road.getId() + " at s=" + linkData.sFrom + (forward ? " forward" : " backward");
     }
 
     /**
@@ -404,7 +608,7 @@ public final class OpenDriveParser
 
             // design line of the entire road
             SegmentedLine roadDesignLine = new SegmentedLine(road.getPlanView().getGeometry(), road.getLength());
-            PolyLine2d roadCenterLine = roadDesignLine.flatten(FLATTENER);
+            PolyLine2d roadCenterLine = flat("road " + road.getId() + " center", () -> roadDesignLine.flatten(FLATTENER));
             FractionalLengthData roadOffset = new OffsetData(road.getLanes().getLaneOffset(), road.getLength());
             double lengthFactor = roadCenterLine.getLength() / road.getLength().si;
 
@@ -550,7 +754,9 @@ public final class OpenDriveParser
         // link
         // TODO elevation road.getElevationProfile()
         FractionalLengthData elevation = FractionalLengthData.of(0.0, 0.0);
-        PolyLine2d linkLine = forward ? linkData.linkDesignLine.flatten() : linkData.linkDesignLine.flatten().reverse();
+        String key = linkKey(linkData, forward);
+        PolyLine2d linkLine = flat(key + " design line",
+                () -> forward ? linkData.linkDesignLine.flatten() : linkData.linkDesignLine.flatten().reverse());
         // OpenDRIVE standard: if "rule" not given in <road>, then RHT is assumed
         LaneKeepingPolicy laneKeeping = linkData.road.getRule() == null ? LaneKeepingPolicy.KEEPRIGHT : linkData.road.getRule();
         CrossSectionLink link = new CrossSectionLink(this.net, linkData.id.get(), forward ? startNode : endNode,
@@ -564,8 +770,10 @@ public final class OpenDriveParser
         FractionalLengthData prevEdgeOffset =
                 getEdgeOffset(linkData.laneSection.getCenter().getLane().get(0).getBorderOrWidth(), linkData.sFrom,
                         linkData.sTo, linkData.laneSection.getS(), linkData.sEndLaneSection, roadOffset, offsetSign);
-        PolyLine2d prevEdge = forward ? linkData.linkDesignLine.flattenOffset(prevEdgeOffset, FLATTENER)
-                : linkData.linkDesignLine.flattenOffset(prevEdgeOffset, FLATTENER).reverse();
+        FractionalLengthData centerEdgeOffset = prevEdgeOffset; // effectively final
+        PolyLine2d prevEdge =
+                flat(key + " center edge", () -> forward ? linkData.linkDesignLine.flattenOffset(centerEdgeOffset, FLATTENER)
+                        : linkData.linkDesignLine.flattenOffset(centerEdgeOffset, FLATTENER).reverse());
         TRoadLanesLaneSectionLcrLaneRoadMark centerMark =
                 getLaneProperty(linkData.laneSection, linkData.laneSection.getCenter().getLane().get(0), linkData.sFrom,
                         linkData.laneSection.getCenter().getLane().get(0).getRoadMark(), (rm) -> rm.getSOffset());
@@ -582,7 +790,8 @@ public final class OpenDriveParser
             // only solid when stripe type is null, if not on a junction and the first lane has a valid lane type
             boolean solidWhenNull = !(linkData.road.getJunction() != null && !linkData.road.getJunction().isBlank()
                     && !linkData.road.getJunction().strip().equals("-1")) && !SHOULDER_TYPES.contains(lanes.get(0).getType());
-            makeStripe(linkData.linkDesignLine, link, prevEdgeOffset, prevEdge, centerMark, solidWhenNull, forward);
+            makeStripe(key + " center", linkData.linkDesignLine, link, prevEdgeOffset, prevEdge, centerMark, solidWhenNull,
+                    forward);
         }
 
         // lanes
@@ -596,7 +805,7 @@ public final class OpenDriveParser
 
             TRoadLanesLaneSectionLcrLaneRoadMark mark =
                     getLaneProperty(linkData.laneSection, lane, linkData.sFrom, lane.getRoadMark(), (rm) -> rm.getSOffset());
-            makeStripe(linkData.linkDesignLine, link, nextEdgeOffset, nextEdge, mark, false, forward);
+            makeStripe(key + " lane " + id, linkData.linkDesignLine, link, nextEdgeOffset, nextEdge, mark, false, forward);
 
             prevEdgeOffset = nextEdgeOffset;
             prevEdge = nextEdge;
@@ -636,7 +845,7 @@ public final class OpenDriveParser
      * @return next edge
      * @throws NetworkException when no cross-section slice is defined
      */
-    private static PolyLine2d makeLane(final TRoadLanesLaneSectionLrLane lane, final String id, final CrossSectionLink link,
+    private PolyLine2d makeLane(final TRoadLanesLaneSectionLrLane lane, final String id, final CrossSectionLink link,
             final LinkData linkData, final FractionalLengthData prevEdgeOffset, final PolyLine2d prevEdge,
             final FractionalLengthData nextEdgeOffset, final boolean forward) throws NetworkException
     {
@@ -654,13 +863,16 @@ public final class OpenDriveParser
                 : Map.of(DefaultsNl.ROAD_USER, new Speed(speed.getMax(), speed.getUnit()));
         Speed roadSpeed = linkData.roadSpeed;
 
-        PolyLine2d nextEdge = id.startsWith("-") ? linkData.linkDesignLine.flattenOffset(nextEdgeOffset, FLATTENER)
-                : linkData.linkDesignLine.flattenOffset(nextEdgeOffset, FLATTENER).reverse(); // negative id's are forward
+        String key = linkKey(linkData, forward) + " lane " + id;
+        PolyLine2d nextEdge = flat(key + " edge",
+                () -> id.startsWith("-") ? linkData.linkDesignLine.flattenOffset(nextEdgeOffset, FLATTENER)
+                        : linkData.linkDesignLine.flattenOffset(nextEdgeOffset, FLATTENER).reverse()); // negative id's forward
         if (LANE_TYPES.contains(lane.getType()))
         {
             FractionalLengthData center = getCenterOffSet(prevEdgeOffset, nextEdgeOffset);
-            PolyLine2d laneCenterLine = forward ? linkData.linkDesignLine.flattenOffset(center, FLATTENER)
-                    : linkData.linkDesignLine.flattenOffset(center, FLATTENER).reverse();
+            PolyLine2d laneCenterLine = flat(key + " center", () -> forward
+                    ? linkData.linkDesignLine.flattenOffset(center, FLATTENER)
+                    : linkData.linkDesignLine.flattenOffset(center, FLATTENER).reverse());
             Polygon2d contour = getContour(prevEdge, nextEdge);
             List<CrossSectionSlice> slices =
                     getSlices(prevEdgeOffset, nextEdgeOffset, Length.instantiateSI(laneCenterLine.getLength()), forward);
@@ -702,6 +914,7 @@ public final class OpenDriveParser
 
     /**
      * Creates a stripe based on a road mark.
+     * @param key key of the element the stripe belongs to, to which the edges of the stripe add to form the key of their lines
      * @param linkDesignLine design line of link
      * @param link link
      * @param centerOffsetData offset data of stripe center line
@@ -711,7 +924,7 @@ public final class OpenDriveParser
      * @param forward direction of design line
      * @throws NetworkException when no cross-section slice is defined
      */
-    private static void makeStripe(final ContinuousPolyLine linkDesignLine, final CrossSectionLink link,
+    private void makeStripe(final String key, final ContinuousPolyLine linkDesignLine, final CrossSectionLink link,
             final FractionalLengthData centerOffsetData, final PolyLine2d centerLine,
             final TRoadLanesLaneSectionLcrLaneRoadMark mark, final boolean solidWhenNull, final boolean forward)
             throws NetworkException
@@ -726,10 +939,12 @@ public final class OpenDriveParser
             }
             FractionalLengthData prevOffset = OffsetData.add(centerOffsetData, FractionalLengthData.of(0.0, -w * .5));
             FractionalLengthData nextOffset = OffsetData.add(centerOffsetData, FractionalLengthData.of(0.0, w * .5));
-            PolyLine2d prevLine = forward ? linkDesignLine.flattenOffset(prevOffset, FLATTENER)
-                    : linkDesignLine.flattenOffset(prevOffset, FLATTENER).reverse();
-            PolyLine2d nextLine = forward ? linkDesignLine.flattenOffset(nextOffset, FLATTENER)
-                    : linkDesignLine.flattenOffset(nextOffset, FLATTENER).reverse();
+            PolyLine2d prevLine = flat(key + " stripe previous edge", () -> forward
+                    ? linkDesignLine.flattenOffset(prevOffset, FLATTENER)
+                    : linkDesignLine.flattenOffset(prevOffset, FLATTENER).reverse());
+            PolyLine2d nextLine = flat(key + " stripe next edge", () -> forward
+                    ? linkDesignLine.flattenOffset(nextOffset, FLATTENER)
+                    : linkDesignLine.flattenOffset(nextOffset, FLATTENER).reverse());
             Polygon2d markContour = LaneGeometryUtil.getContour(prevLine, nextLine);
             List<CrossSectionSlice> markSlices =
                     getSlices(prevOffset, nextOffset, Length.instantiateSI(centerLine.getLength()), forward);
@@ -868,7 +1083,8 @@ public final class OpenDriveParser
     }
 
     /**
-     * Build conflicts while dealing with possible DrawRuntimeException due to duplicate points on inside curve.
+     * Build conflicts while dealing with possible DrawRuntimeException due to duplicate points on inside curve. Once built, the
+     * nodes upstream of the conflicts are indexed for conflict grouping in perception.
      * @throws OtsGeometryException
      */
     public static void buildConflicts(final RoadNetwork network) throws OtsGeometryException
@@ -913,6 +1129,7 @@ public final class OpenDriveParser
                 }
             }
         }
+        ConflictUpstreamIndex.build(network);
     }
 
     /**
@@ -1215,4 +1432,56 @@ public final class OpenDriveParser
         return new Connection(other.getElementId(), other.getContactPoint(), forwardOnOtherRoad);
     }
 
+    /**
+     * Parsed OpenDRIVE tag that is shared between parsers, and the lines that were flattened in the first build from it. Both
+     * are only read once set, and can be used from different threads.
+     */
+    private static final class SharedParse
+    {
+        /** Open drive tag. */
+        private final OpenDRIVE openDrive;
+
+        /** Flattened lines per element they belong to, {@code null} until a build from the tag is completed. */
+        private volatile Map<String, PolyLine2d> lines;
+
+        /**
+         * Constructor.
+         * @param openDrive open drive tag
+         */
+        SharedParse(final OpenDRIVE openDrive)
+        {
+            this.openDrive = openDrive;
+        }
+
+        /**
+         * Returns the open drive tag.
+         * @return open drive tag
+         */
+        OpenDRIVE getOpenDrive()
+        {
+            return this.openDrive;
+        }
+
+        /**
+         * Returns the flattened lines.
+         * @return flattened lines per element they belong to, {@code null} if no build from the tag is completed
+         */
+        Map<String, PolyLine2d> getLines()
+        {
+            return this.lines;
+        }
+
+        /**
+         * Sets the flattened lines of a completed build, unless another build completed first.
+         * @param lines flattened lines per element they belong to
+         */
+        synchronized void setLines(final Map<String, PolyLine2d> lines)
+        {
+            if (this.lines == null)
+            {
+                this.lines = lines;
+            }
+        }
+    }
+
 }
@@ -1,11 +1,16 @@
 package org.opentrafficsim.i4driving.opendrive.bindings;
 
+import java.util.Locale;
+
 import javax.xml.bind.annotation.adapters.XmlAdapter;
 
+import org.djunits.unit.LengthUnit;
 import org.djunits.value.vdouble.scalar.Length;
+import org.djutils.base.NumberParser;
+import org.djutils.exceptions.Throw;
 
 /**
- * Length adapter.
+ * Length adapter. Numbers are parsed in the US locale, as in XML, regardless of the default locale.
  * @author wjschakel
  */
 public class LengthAdapter extends XmlAdapter<String, Length>
@@ -17,7 +22,13 @@ public class LengthAdapter extends XmlAdapter<String, Length>
         String str = v.strip();
         if (Character.isAlphabetic(str.charAt(str.length() - 1)))
         {
-            return Length.valueOf(str); // m, km, ft and mile supported in same abbreviation in Length
+            // m, km, ft and mile supported in same abbreviation in Length
+            NumberParser parser = new NumberParser().locale(Locale.US).lenient().trailing();
+            double value = parser.parseDouble(str);
+            String abbreviation = str.substring(parser.getTrailingPosition()).strip();
+            LengthUnit unit = LengthUnit.BASE.getUnitByAbbreviation(abbreviation);
+            Throw.when(unit == null, IllegalArgumentException.class, "Unknown length unit %s.", abbreviation);
+            return new Length(value, unit);
         }
         return Length.instantiateSI(Double.valueOf(str));
     }
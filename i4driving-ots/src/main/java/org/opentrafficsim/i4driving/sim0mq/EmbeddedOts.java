@@ -0,0 +1,186 @@
+package org.opentrafficsim.i4driving.sim0mq;
+
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import org.opentrafficsim.i4driving.sim0mq.OtsTransceiver.Transport;
+import org.zeromq.SocketType;
+import org.zeromq.ZContext;
+import org.zeromq.ZMQ;
+
+/**
+ * OTS co-simulation session embedded in the JVM of a Java client. The client exchanges the same frames as over TCP, but
+ * through an inproc socket ({@code --transport INPROC}), or through queues without any socket ({@code --transport QUEUE},
+ * the default). Frames are still Sim0MQ messages, such that the client can be moved to another process without changes other
+ * than the transport. The JVM is not exited when the session terminates.
+ * <p>
+ * The methods of this class should be called from a single client thread.
+ * </p>
+ * @author wjschakel
+ */
+public final class EmbeddedOts implements AutoCloseable
+{
+
+    /** Time to wait for the session to terminate on close [ms]. */
+    private static final long TERMINATE_TIMEOUT = 10000L;
+
+    /** Worker thread of the session. */
+    private final Thread worker;
+
+    /** Wakes up the worker thread after a frame is added to the inbox, {@code null} for the INPROC transport. */
+    private final Runnable wakeUp;
+
+    /** Context of the inproc sockets, {@code null} for the QUEUE transport. */
+    private final ZContext context;
+
+    /** Client socket, {@code null} for the QUEUE transport. */
+    private final ZMQ.Socket socket;
+
+    /** Poller of the client socket, {@code null} for the QUEUE transport. */
+    private final ZMQ.Poller poller;
+
+    /** Frames for OTS, {@code null} for the INPROC transport. */
+    private final BlockingQueue<byte[]> inbox;
+
+    /** Frames from OTS, {@code null} for the INPROC transport. */
+    private final BlockingQueue<byte[]> outbox;
+
+    /** TERMINATE message sent on close. */
+    private final byte[] terminate;
+
+    /**
+     * Starts an embedded session.
+     * @param args command line arguments of OtsTransceiver, the transport should be INPROC or QUEUE (default)
+     * @throws Exception on any exception when parsing the arguments or starting the session
+     */
+    public EmbeddedOts(final String... args) throws Exception
+    {
+        OtsTransceiver transceiver = new OtsTransceiver(withDefaultTransport(args));
+        this.terminate = transceiver.encodeTerminate();
+        if (transceiver.getTransport() == Transport.INPROC)
+        {
+            this.context = new ZContext(1);
+            this.inbox = null;
+            this.outbox = null;
+            OtsTransceiver.Worker session = transceiver.startEmbedded(this.context, null, null);
+            this.worker = session;
+            this.wakeUp = null;
+            this.socket = this.context.createSocket(SocketType.PAIR);
+            this.socket.connect(OtsTransceiver.endpoint(Transport.INPROC, transceiver.getPort(), false));
+            this.poller = this.context.createPoller(1);
+            this.poller.register(this.socket, ZMQ.Poller.POLLIN);
+        }
+        else
+        {
+            this.context = null;
+            this.socket = null;
+            this.poller = null;
+            this.inbox = new LinkedBlockingQueue<>();
+            this.outbox = new LinkedBlockingQueue<>();
+            OtsTransceiver.Worker session = transceiver.startEmbedded(null, this.inbox, this.outbox);
+            this.worker = session;
+            this.wakeUp = session::wakeUp;
+        }
+    }
+
+    /**
+     * Returns the arguments with the QUEUE transport, if no transport is specified.
+     * @param args command line arguments
+     * @return command line arguments with a transport
+     */
+    private static String[] withDefaultTransport(final String[] args)
+    {
+        for (String arg : args)
+        {
+            if (arg.startsWith("--transport"))
+            {
+                return args;
+            }
+        }
+        String[] out = new String[args.length + 2];
+        System.arraycopy(args, 0, out, 0, args.length);
+        out[args.length] = "--transport";
+        out[args.length + 1] = "QUEUE";
+        return out;
+    }
+
+    /**
+     * Sends a frame to OTS.
+     * @param frame frame bytes, which should not be changed afterwards
+     */
+    public void send(final byte[] frame)
+    {
+        if (this.socket != null)
+        {
+            this.socket.send(frame, 0);
+        }
+        else
+        {
+            this.inbox.add(frame);
+            this.wakeUp.run();
+        }
+    }
+
+    /**
+     * Receives a frame from OTS.
+     * @param timeout time to wait for a frame [ms], 0 to not wait
+     * @return frame bytes, {@code null} if no frame was received within the timeout
+     * @throws InterruptedException when interrupted while waiting
+     */
+    public byte[] receive(final long timeout) throws InterruptedException
+    {
+        if (this.socket != null)
+        {
+            if (timeout > 0 && this.poller.poll(timeout) <= 0)
+            {
+                return null;
+            }
+            return this.socket.recv(ZMQ.DONTWAIT);
+        }
+        return this.outbox.poll(timeout, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Terminates the session and releases resources. A TERMINATE message is sent if the session is still running, and the
+     * worker thread is interrupted if it does not terminate within the timeout, or when the client thread is interrupted.
+     */
+    @Override
+    public void close()
+    {
+        if (this.worker.isAlive())
+        {
+            // a second TERMINATE message, when the client already sent one, is never read
+            send(this.terminate);
+            if (!join(TERMINATE_TIMEOUT))
+            {
+                this.worker.interrupt();
+                join(TERMINATE_TIMEOUT);
+            }
+        }
+        if (this.context != null && !this.worker.isAlive())
+        {
+            this.context.close();
+        }
+    }
+
+    /**
+     * Waits for the worker thread to end. If the client thread is interrupted, its interrupt status is restored.
+     * @param timeout time to wait [ms]
+     * @return whether the worker thread ended
+     */
+    private boolean join(final long timeout)
+    {
+        try
+        {
+            this.worker.join(timeout);
+        }
+        catch (InterruptedException ex)
+        {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+        return !this.worker.isAlive();
+    }
+
+}
@@ -5,6 +5,7 @@ import java.net.URISyntaxException;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.util.Arrays;
 import java.util.LinkedHashMap;
 import java.util.LinkedHashSet;
 import java.util.Map;
@@ -18,6 +19,8 @@ import org.djunits.value.vdouble.scalar.Duration;
 import org.djunits.value.vdouble.scalar.Frequency;
 import org.djunits.value.vdouble.scalar.Length;
 import org.djunits.value.vdouble.scalar.Speed;
+import org.djunits.value.vfloat.scalar.FloatLength;
+import org.djunits.value.vfloat.vector.FloatLengthVector;
 import org.djutils.cli.CliUtil;
 import org.djutils.logger.CategoryLogger;
 import org.djutils.serialization.SerializationException;
@@ -94,6 +97,37 @@ public final class ExternalSimEmulator
             defaultValue = "/opendrive/examples/i4Driving_scenario01_urban-straight.xodr")
     private String networkFileCla;
 
+    /** Number of vehicles of the load generator. */
+    @Option(names = "--vehicles",
+            description = "Number of externally controlled vehicles to emulate on the demo network with a load generator, "
+                    + "rather than the scripted test scenario.",
+            defaultValue = "0")
+    private int vehicles;
+
+    /** Number of pedestrians of the load generator. */
+    @Option(names = "--pedestrians", description = "Number of pedestrians to emulate with the load generator.",
+            defaultValue = "0")
+    private int pedestrians;
+
+    /** Update frequency of the load generator. */
+    @Option(names = "--frequency", description = "Update frequency [Hz] of each object of the load generator.",
+            defaultValue = "30")
+    private double frequency;
+
+    /** Batching of the load generator. */
+    @Option(names = "--batch",
+            description = "Maximum number of states per EXTERNALS message of the load generator, 1 for EXTERNAL messages.",
+            defaultValue = "1")
+    private int batch;
+
+    /** Duration of the load generator. */
+    @Option(names = "--duration", description = "Duration [s] of the load generator.", defaultValue = "60")
+    private double duration;
+
+    /** PROGRESS step of the load generator. */
+    @Option(names = "--step", description = "PROGRESS step [s] of the load generator.", defaultValue = "0.1")
+    private double progressStep;
+
     /**
      * Constructor.
      */
@@ -105,11 +139,23 @@ public final class ExternalSimEmulator
     /**
      * Main method.
      * @param args command line arguments.
+     * @throws IOException if a resource cannot be read by the load generator
+     * @throws SerializationException on message encoding exception in the load generator
+     * @throws Sim0MQException on message encoding exception in the load generator
      */
-    public static void main(final String... args)
+    public static void main(final String... args) throws IOException, Sim0MQException, SerializationException
     {
         ExternalSimEmulator sim = new ExternalSimEmulator();
         CliUtil.execute(sim, args);
+        if (sim.vehicles > 0 || sim.pedestrians > 0)
+        {
+            // a single thread owns the socket, rather than a thread per object
+            CategoryLogger.setAllLogLevel(Level.DEBUG);
+            CategoryLogger.setAllLogMessageFormat("[{date: YYYY-MM-dd HH:mm:ss.SSS}] {level}: {message}");
+            new LoadGenerator(PORT, sim.vehicles, sim.pedestrians, sim.frequency, sim.batch, sim.duration, sim.progressStep,
+                    sim.realTimeCla).run();
+            return;
+        }
         demoNetwork = sim.demoCla;
         realTime = sim.realTimeCla;
         odFile = sim.odFileCla;
@@ -263,6 +309,18 @@ public final class ExternalSimEmulator
                             String id = (String) payload[8];
                             CategoryLogger.always().debug("ExternalSim received PLAN message for GTU " + id);
                         }
+                        else if ("PLANS".equals(message.getMessageTypeId()))
+                        {
+                            logPlans(message.createObjectArray());
+                        }
+                        else if ("CPLAN".equals(message.getMessageTypeId()))
+                        {
+                            logCompactPlan(message.createObjectArray());
+                        }
+                        else if ("CPLANS".equals(message.getMessageTypeId()))
+                        {
+                            logCompactPlans(message.createObjectArray());
+                        }
                         else if ("READY".equals(message.getMessageTypeId()))
                         {
                             msgId = (int) message.createObjectArray()[8];
@@ -361,6 +419,18 @@ public final class ExternalSimEmulator
                             String id = (String) payload[8];
                             CategoryLogger.always().debug("ExternalSim received PLAN message for GTU " + id);
                         }
+                        else if ("PLANS".equals(message.getMessageTypeId()))
+                        {
+                            logPlans(message.createObjectArray());
+                        }
+                        else if ("CPLAN".equals(message.getMessageTypeId()))
+                        {
+                            logCompactPlan(message.createObjectArray());
+                        }
+                        else if ("CPLANS".equals(message.getMessageTypeId()))
+                        {
+                            logCompactPlans(message.createObjectArray());
+                        }
                         else if ("DELETE".equals(message.getMessageTypeId()))
                         {
                             // String id
@@ -530,6 +600,80 @@ public final class ExternalSimEmulator
             return terminate;
         }
 
+        /**
+         * Logs the content of a PLANS message.
+         * @param payload message payload, including the header fields
+         */
+        private void logPlans(final Object[] payload)
+        {
+            int n = (int) payload[8];
+            // the generic decoder may return an Integer[] rather than an int[]
+            Object offsets = payload[9 + n + 2];
+            int[] pathOffset = offsets instanceof int[] ints ? ints
+                    : Arrays.stream((Integer[]) offsets).mapToInt(Integer::intValue).toArray();
+            for (int i = 0; i < n; i++)
+            {
+                CategoryLogger.always().debug("ExternalSim received plan in PLANS message for GTU {} with {} points",
+                        payload[9 + i], pathOffset[i + 1] - pathOffset[i]);
+            }
+            CategoryLogger.always().debug("ExternalSim received PLANS message for {} GTUs", n);
+        }
+
+        /**
+         * Logs the content of a CPLAN message, reconstructing the path.
+         * @param payload message payload, including the header fields
+         */
+        private void logCompactPlan(final Object[] payload)
+        {
+            byte[] path = bytes(payload[13]);
+            double[][] xy = PlanPathCodec.decode(path, 0, path.length, ((FloatLength) payload[11]).si);
+            CategoryLogger.always().debug("ExternalSim received CPLAN message for GTU {} with {} points in {} bytes, "
+                    + "deviation {}m", payload[8], xy[0].length, path.length, ((FloatLength) payload[12]).si);
+        }
+
+        /**
+         * Logs the content of a CPLANS message, reconstructing the paths.
+         * @param payload message payload, including the header fields
+         */
+        private void logCompactPlans(final Object[] payload)
+        {
+            int n = (int) payload[8];
+            double quantum = ((FloatLength) payload[9 + n + 2]).si;
+            float[] deviation = ((FloatLengthVector) payload[9 + n + 4]).getValuesSI();
+            Object offsets = payload[9 + n + 5];
+            int[] byteOffset = offsets instanceof int[] ints ? ints
+                    : Arrays.stream((Integer[]) offsets).mapToInt(Integer::intValue).toArray();
+            byte[] paths = bytes(payload[9 + n + 6]);
+            for (int i = 0; i < n; i++)
+            {
+                double[][] xy = PlanPathCodec.decode(paths, byteOffset[i], byteOffset[i + 1], quantum);
+                CategoryLogger.always().debug(
+                        "ExternalSim received plan in CPLANS message for GTU {} with {} points in {} bytes, deviation {}m",
+                        payload[9 + i], xy[0].length, byteOffset[i + 1] - byteOffset[i], deviation[i]);
+            }
+            CategoryLogger.always().debug("ExternalSim received CPLANS message for {} GTUs", n);
+        }
+
+        /**
+         * Returns a byte array field, which the generic decoder may return as a {@code Byte[]}.
+         * @param field field
+         * @return byte array
+         */
+        private static byte[] bytes(final Object field)
+        {
+            if (field instanceof byte[] bytes)
+            {
+                return bytes;
+            }
+            Byte[] boxed = (Byte[]) field;
+            byte[] bytes = new byte[boxed.length];
+            for (int i = 0; i < boxed.length; i++)
+            {
+                bytes[i] = boxed[i];
+            }
+            return bytes;
+        }
+
         /**
          * Terminates all trajectories.
          */
@@ -0,0 +1,224 @@
+package org.opentrafficsim.i4driving.sim0mq;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.djutils.cli.CliUtil;
+import org.djutils.logger.CategoryLogger;
+import org.djutils.serialization.SerializationException;
+import org.opentrafficsim.i4driving.sim0mq.FrameRecorder.Frame;
+import org.pmw.tinylog.Level;
+import org.zeromq.SocketType;
+import org.zeromq.ZContext;
+import org.zeromq.ZMQ;
+
+import picocli.CommandLine.Command;
+import picocli.CommandLine.Option;
+
+/**
+ * Replays the inbound frames of a session recorded by OtsTransceiver with {@code --record}, for performance regression tests.
+ * Frames are sent either at their recorded times, or as fast as possible. In both cases, a frame is only sent once all READY
+ * messages that OTS had sent before the frame was recorded, have been received again. This keeps the replay in lock-step, as
+ * the external simulator was. Throughput, and the distribution of the latency between sending a message and receiving its
+ * READY message, are reported at the end.
+ * @author wjschakel
+ */
+@Command(description = "Replayer of recorded co-simulation sessions", name = "ExternalSimReplayer",
+        mixinStandardHelpOptions = true, showDefaultValues = true, version = "20250619")
+public final class ExternalSimReplayer
+{
+
+    /** Recording. */
+    @Option(names = "--file", description = "Recording made by OtsTransceiver with --record", required = true)
+    private Path file;
+
+    /** Port number. */
+    @Option(names = "--port", description = "Port number", defaultValue = "5556")
+    private int port;
+
+    /** Replay at recorded times. */
+    @Option(names = "--realTime", description = "Replay at the recorded times, rather than as fast as possible",
+            defaultValue = "false", negatable = true)
+    private boolean realTime;
+
+    /** Timeout for READY messages. */
+    @Option(names = "--timeout", description = "Timeout [ms] when waiting for a READY message", defaultValue = "30000")
+    private long timeout;
+
+    /** Reader of frames. */
+    private final Sim0mqReader reader = new Sim0mqReader();
+
+    /** Send time per message id of messages for which a READY message is expected [ns]. */
+    private final Map<Integer, Long> sendTimes = new HashMap<>();
+
+    /** Message ids of received READY messages. */
+    private final Set<Integer> received = new HashSet<>();
+
+    /** Latencies of READY messages. */
+    private final LatencyStatistics latencies = new LatencyStatistics();
+
+    /** Number of received frames. */
+    private long receivedFrames;
+
+    /** Number of received bytes. */
+    private long receivedBytes;
+
+    /** Socket. */
+    private ZMQ.Socket socket;
+
+    /** Poller of the socket. */
+    private ZMQ.Poller poller;
+
+    /**
+     * Constructor.
+     */
+    private ExternalSimReplayer()
+    {
+        //
+    }
+
+    /**
+     * Main method.
+     * @param args command line arguments.
+     * @throws IOException if the recording cannot be read
+     * @throws SerializationException if a frame is not a valid Sim0MQ message
+     */
+    public static void main(final String... args) throws IOException, SerializationException
+    {
+        ExternalSimReplayer replayer = new ExternalSimReplayer();
+        CliUtil.execute(replayer, args);
+        CategoryLogger.setAllLogLevel(Level.DEBUG);
+        CategoryLogger.setAllLogMessageFormat("[{date: YYYY-MM-dd HH:mm:ss.SSS}] {level}: {message}");
+        replayer.replay();
+    }
+
+    /**
+     * Replays the recording.
+     * @throws IOException if the recording cannot be read
+     * @throws SerializationException if a frame is not a valid Sim0MQ message
+     */
+    private void replay() throws IOException, SerializationException
+    {
+        // frames are read before replaying, such that reading does not affect the measurement
+        List<Frame> frames = FrameRecorder.read(this.file);
+        CategoryLogger.always().debug("ExternalSimReplayer read {} frames from {}", frames.size(), this.file);
+        try (ZContext context = new ZContext(1))
+        {
+            this.socket = context.createSocket(SocketType.PAIR);
+            this.socket.connect("tcp://localhost:" + this.port);
+            this.poller = context.createPoller(1);
+            this.poller.register(this.socket, ZMQ.Poller.POLLIN);
+
+            Set<Integer> required = new HashSet<>();
+            long sentFrames = 0;
+            long sentBytes = 0;
+            Long firstTime = null;
+            long start = System.nanoTime();
+            for (Frame frame : frames)
+            {
+                this.reader.wrap(frame.bytes());
+                if (!frame.inbound())
+                {
+                    // frames sent after this READY in the recording depend on it
+                    if ("READY".equals(this.reader.getMessageType()))
+                    {
+                        required.add(this.reader.getInt(0));
+                    }
+                    continue;
+                }
+                int messageId = this.reader.getMessageId();
+                if (!awaitReady(required))
+                {
+                    return;
+                }
+                if (this.realTime)
+                {
+                    if (firstTime == null)
+                    {
+                        firstTime = frame.time();
+                    }
+                    long due = start + frame.time() - firstTime;
+                    for (long wait = due - System.nanoTime(); wait > 0; wait = due - System.nanoTime())
+                    {
+                        receive(Math.max(1L, wait / 1_000_000L));
+                    }
+                }
+                this.sendTimes.put(messageId, System.nanoTime());
+                this.socket.send(frame.bytes(), 0);
+                sentFrames++;
+                sentBytes += frame.bytes().length;
+                // keep latencies accurate when sending flat-out
+                while (receive(0L))
+                {
+                    //
+                }
+            }
+            awaitReady(required);
+            double seconds = (System.nanoTime() - start) / 1e9;
+            CategoryLogger.always().debug(String.format("Sent %d frames (%.1f/s, %.3f MB/s), received %d frames (%.1f/s, "
+                    + "%.3f MB/s) in %.3fs", sentFrames, sentFrames / seconds, sentBytes / seconds / 1e6, this.receivedFrames,
+                    this.receivedFrames / seconds, this.receivedBytes / seconds / 1e6, seconds));
+            CategoryLogger.always().debug(this.latencies.summary("READY latency"));
+        }
+    }
+
+    /**
+     * Receives frames until READY messages for all given message ids have been received.
+     * @param required message ids for which READY messages should have been received
+     * @return whether all READY messages were received within the timeout
+     * @throws SerializationException if a frame is not a valid Sim0MQ message
+     */
+    private boolean awaitReady(final Set<Integer> required) throws SerializationException
+    {
+        required.removeAll(this.received);
+        while (!required.isEmpty())
+        {
+            if (!receive(this.timeout))
+            {
+                CategoryLogger.always().error("ExternalSimReplayer received no READY message for message(s) {}", required);
+                return false;
+            }
+            required.removeAll(this.received);
+        }
+        return true;
+    }
+
+    /**
+     * Receives a frame, and registers the latency if it is a READY message.
+     * @param wait time to wait for a frame [ms]
+     * @return whether a frame was received
+     * @throws SerializationException if a frame is not a valid Sim0MQ message
+     */
+    private boolean receive(final long wait) throws SerializationException
+    {
+        if (wait > 0 && this.poller.poll(wait) <= 0)
+        {
+            return false;
+        }
+        byte[] bytes = this.socket.recv(ZMQ.DONTWAIT);
+        if (bytes == null)
+        {
+            return false;
+        }
+        long now = System.nanoTime();
+        this.receivedFrames++;
+        this.receivedBytes += bytes.length;
+        if ("READY".equals(this.reader.wrap(bytes).getMessageType()))
+        {
+            int messageId = this.reader.getInt(0);
+            this.received.add(messageId);
+            Long sendTime = this.sendTimes.remove(messageId);
+            if (sendTime != null)
+            {
+                this.latencies.register((now - sendTime) / 1_000_000.0);
+            }
+        }
+        return true;
+    }
+
+}
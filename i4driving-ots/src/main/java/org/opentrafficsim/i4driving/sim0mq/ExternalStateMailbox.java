@@ -0,0 +1,122 @@
+package org.opentrafficsim.i4driving.sim0mq;
+
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Mailbox of states of externally controlled GTUs and active mode objects, as received in EXTERNAL(S) messages, in which the
+ * latest state per object wins. The worker thread puts states, and only needs to schedule an event to apply a state when
+ * there was no pending state for the object. The simulation thread takes the latest state when the event is executed. States
+ * that are replaced before they are applied are dropped and counted. This prevents a burst of messages, e.g. when the client
+ * sends faster than OTS progresses, from filling the event list with stale states that are all applied in turn.
+ * <p>
+ * A state is not replaced by a later state when another message for the same object, e.g. MODE, COMMAND or DELETE, is
+ * received in between. The worker thread then seals the pending state, such that the scheduled event applies it before the
+ * event of the other message, and a later state is pending anew with its own event after that of the other message. States
+ * are thus applied in the order of the messages, relative to other messages for the same object.
+ * @author wjschakel
+ */
+final class ExternalStateMailbox
+{
+
+    /** Pending state per object id. */
+    private final Map<String, State> pending = new ConcurrentHashMap<>();
+
+    /** Sealed states per object id, in the order of their scheduled events, which are taken before the pending state. */
+    private final Map<String, Queue<State>> sealed = new HashMap<>();
+
+    /** Number of states that were replaced before they were applied. */
+    private final AtomicLong dropped = new AtomicLong();
+
+    /**
+     * Puts the latest state of an object. This may be called from any thread.
+     * @param id GTU or active mode object id
+     * @param x x coordinate [m]
+     * @param y y coordinate [m]
+     * @param direction direction [rad]
+     * @param speed speed [m/s]
+     * @param acceleration acceleration [m/s^2]
+     * @return whether there was no pending state, i.e. whether an event to take the state should be scheduled
+     */
+    @SuppressWarnings("checkstyle:parameternumber")
+    boolean put(final String id, final double x, final double y, final double direction, final double speed,
+            final double acceleration)
+    {
+        if (this.pending.put(id, new State(x, y, direction, speed, acceleration)) == null)
+        {
+            return true;
+        }
+        this.dropped.incrementAndGet();
+        return false;
+    }
+
+    /**
+     * Seals the pending state of an object, if any, as another message for the object is received. The state is then no longer
+     * replaced, and a later state needs an event of its own. This should be called from the thread that puts states.
+     * @param id GTU or active mode object id
+     */
+    synchronized void seal(final String id)
+    {
+        State state = this.pending.remove(id);
+        if (state != null)
+        {
+            this.sealed.computeIfAbsent(id, (k) -> new ArrayDeque<>()).add(state);
+        }
+    }
+
+    /**
+     * Takes the state of an object for a scheduled event, i.e. the first sealed state, or otherwise the pending state. This
+     * may be called from any thread.
+     * @param id GTU or active mode object id
+     * @return sealed or pending state, {@code null} if there is none
+     */
+    synchronized State take(final String id)
+    {
+        Queue<State> states = this.sealed.get(id);
+        if (states != null)
+        {
+            State state = states.poll();
+            if (states.isEmpty())
+            {
+                this.sealed.remove(id);
+            }
+            return state;
+        }
+        return this.pending.remove(id);
+    }
+
+    /**
+     * Removes all sealed and pending states, e.g. for a new simulation. The counter is not reset.
+     */
+    synchronized void clear()
+    {
+        this.sealed.clear();
+        this.pending.clear();
+    }
+
+    /**
+     * Returns the number of states that were replaced before they were applied.
+     * @return number of dropped states
+     */
+    long getDropped()
+    {
+        return this.dropped.get();
+    }
+
+    /**
+     * State of an externally controlled GTU or active mode object.
+     * @param x x coordinate [m]
+     * @param y y coordinate [m]
+     * @param direction direction [rad]
+     * @param speed speed [m/s]
+     * @param acceleration acceleration [m/s^2]
+     */
+    record State(double x, double y, double direction, double speed, double acceleration)
+    {
+    }
+
+}
@@ -0,0 +1,228 @@
+package org.opentrafficsim.i4driving.sim0mq;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteOrder;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.djutils.exceptions.Throw;
+
+/**
+ * Recorder of all Sim0MQ frames received and sent in a session. Frames are appended to a memory-mapped file, such that
+ * recording is little more than a memory copy, and the operating system writes the file in the background. The file starts
+ * with a magic number and version, and contains a record per frame: an int length of the frame, a byte direction (1 for
+ * inbound, 2 for outbound), a long time [ns] since the recording started, and the frame bytes. All values are big-endian. The
+ * file is mapped in chunks. When the recorder is closed, an end marker (length -1) is appended and the file is truncated to
+ * the recorded size. A file that was not closed ends with zeros after the last record. As the direction is never 0, such a
+ * zero fill is distinguished from an empty frame, and only the end marker or a zero fill is read as the end of the
+ * recording.
+ * <p>
+ * A recorder is not thread-safe. It should be used by the thread that owns the socket.
+ * </p>
+ * @author wjschakel
+ */
+final class FrameRecorder implements AutoCloseable
+{
+
+    /** Magic number at the start of the file, "OTSF". */
+    private static final int MAGIC = 0x4F545346;
+
+    /** File format version. */
+    private static final int VERSION = 2;
+
+    /** Direction of received frames. */
+    private static final byte INBOUND = 1;
+
+    /** Direction of sent frames. */
+    private static final byte OUTBOUND = 2;
+
+    /** Length of the end marker, appended when the recorder is closed. */
+    private static final int END = -1;
+
+    /** Number of bytes of a record before the frame bytes. */
+    private static final int RECORD_HEADER = Integer.BYTES + Byte.BYTES + Long.BYTES;
+
+    /** Size of the chunks in which the file is mapped [bytes]. */
+    private static final int CHUNK_SIZE = 16 * 1024 * 1024;
+
+    /** File channel. */
+    private final FileChannel channel;
+
+    /** Start time of the recording [ns]. */
+    private final long startTime = System.nanoTime();
+
+    /** Currently mapped chunk. */
+    private MappedByteBuffer chunk;
+
+    /** File position of the currently mapped chunk. */
+    private long chunkPosition;
+
+    /** Number of recorded frames. */
+    private long frames;
+
+    /**
+     * Creates a new recording, replacing any existing file.
+     * @param file file
+     * @throws IOException if the file cannot be created or mapped
+     */
+    FrameRecorder(final Path file) throws IOException
+    {
+        this.channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING,
+                StandardOpenOption.READ, StandardOpenOption.WRITE);
+        map(0L, CHUNK_SIZE);
+        this.chunk.putInt(MAGIC).putInt(VERSION);
+    }
+
+    /**
+     * Records a frame.
+     * @param inbound whether the frame was received, rather than sent
+     * @param frame frame bytes
+     * @throws IOException if the file cannot be mapped
+     */
+    void record(final boolean inbound, final byte[] frame) throws IOException
+    {
+        long time = System.nanoTime() - this.startTime;
+        int size = RECORD_HEADER + frame.length;
+        ensureRemaining(size);
+        this.chunk.putInt(frame.length).put(inbound ? INBOUND : OUTBOUND).putLong(time).put(frame);
+        this.frames++;
+    }
+
+    /**
+     * Maps a new chunk of the file at the current position if the current chunk has insufficient space remaining.
+     * @param size required space [bytes]
+     * @throws IOException if the file cannot be mapped
+     */
+    private void ensureRemaining(final int size) throws IOException
+    {
+        if (this.chunk.remaining() < size)
+        {
+            map(this.chunkPosition + this.chunk.position(), Math.max(CHUNK_SIZE, size));
+        }
+    }
+
+    /**
+     * Maps a new chunk of the file.
+     * @param position file position
+     * @param size size of the chunk [bytes]
+     * @throws IOException if the file cannot be mapped
+     */
+    private void map(final long position, final int size) throws IOException
+    {
+        // the file grows as the chunk is mapped, and the previous chunk is unmapped when it is garbage collected
+        this.chunk = this.channel.map(MapMode.READ_WRITE, position, size);
+        this.chunk.order(ByteOrder.BIG_ENDIAN);
+        this.chunkPosition = position;
+    }
+
+    /**
+     * Returns the number of recorded frames.
+     * @return number of recorded frames
+     */
+    long getFrames()
+    {
+        return this.frames;
+    }
+
+    /**
+     * Returns the number of recorded bytes, including the file header, record headers and the end marker once closed.
+     * @return number of recorded bytes
+     */
+    long getSize()
+    {
+        return this.chunkPosition + this.chunk.position();
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void close() throws IOException
+    {
+        try
+        {
+            ensureRemaining(Integer.BYTES);
+            this.chunk.putInt(END);
+            long size = getSize();
+            this.chunk.force();
+            try
+            {
+                this.channel.truncate(size);
+            }
+            catch (IOException ex)
+            {
+                // some platforms do not allow truncating a mapped file, the end marker precedes the zeros at the end
+            }
+        }
+        finally
+        {
+            this.channel.close();
+        }
+    }
+
+    /**
+     * Reads all frames of a recording.
+     * @param file file
+     * @return frames in the order in which they were recorded
+     * @throws IOException if the file cannot be read or is not a recording
+     */
+    static List<Frame> read(final Path file) throws IOException
+    {
+        List<Frame> frames = new ArrayList<>();
+        try (InputStream stream = Files.newInputStream(file);
+                DataInputStream input = new DataInputStream(new BufferedInputStream(stream, 1 << 16)))
+        {
+            Throw.when(input.readInt() != MAGIC, IOException.class, "File %s is not a frame recording.", file);
+            int version = input.readInt();
+            Throw.when(version != VERSION, IOException.class, "Frame recording version %d is not supported.", version);
+            while (true)
+            {
+                int length;
+                try
+                {
+                    length = input.readInt();
+                }
+                catch (EOFException ex)
+                {
+                    break;
+                }
+                if (length == END)
+                {
+                    break;
+                }
+                byte direction = input.readByte();
+                if (length == 0 && direction == 0)
+                {
+                    // remainder of a chunk of a recording that was not closed
+                    break;
+                }
+                Throw.when(length < 0 || (direction != INBOUND && direction != OUTBOUND), IOException.class,
+                        "Frame recording %s contains an invalid record after %d frames.", file, frames.size());
+                long time = input.readLong();
+                byte[] bytes = new byte[length];
+                input.readFully(bytes);
+                frames.add(new Frame(direction == INBOUND, time, bytes));
+            }
+        }
+        return frames;
+    }
+
+    /**
+     * Recorded frame.
+     * @param inbound whether the frame was received, rather than sent
+     * @param time time since the recording started [ns]
+     * @param bytes frame bytes
+     */
+    record Frame(boolean inbound, long time, byte[] bytes)
+    {
+    }
+
+}
@@ -10,11 +10,12 @@ import org.opentrafficsim.core.gtu.GtuException;
 import org.opentrafficsim.core.gtu.GtuType;
 import org.opentrafficsim.core.network.NetworkException;
 import org.opentrafficsim.core.network.route.Route;
-import org.opentrafficsim.i4driving.tactical.NetworkUtil;
+import org.opentrafficsim.i4driving.tactical.LaneIndex;
 import org.opentrafficsim.road.gtu.generator.GtuSpawner;
 import org.opentrafficsim.road.gtu.generator.characteristics.LaneBasedGtuCharacteristics;
 import org.opentrafficsim.road.gtu.generator.characteristics.LaneBasedGtuCharacteristicsGeneratorOd;
 import org.opentrafficsim.road.network.RoadNetwork;
+import org.opentrafficsim.road.network.lane.LanePosition;
 import org.opentrafficsim.road.od.Categorization;
 import org.opentrafficsim.road.od.Category;
 
@@ -40,6 +41,9 @@ public class GtuSpawnerOd
     /** Stored categories. */
     private final MultiKeyMap<Category> categories = new MultiKeyMap<>(GtuType.class, Route.class);
 
+    /** Spatial index of lanes, created upon the first spawn. */
+    private LaneIndex laneIndex;
+
     public GtuSpawnerOd(final RoadNetwork network, final LaneBasedGtuCharacteristicsGeneratorOd characteristicsGenerator)
     {
         this.network = network;
@@ -74,7 +78,21 @@ public class GtuSpawnerOd
         LaneBasedGtuCharacteristics templateGtuType = new LaneBasedGtuCharacteristics(overwrittenBaseCharacteristics,
                 standardTemplate.getStrategicalPlannerFactory(), route, standardTemplate.getOrigin(),
                 standardTemplate.getDestination(), standardTemplate.getVehicleModel());
-        this.gtuSpawner.spawnGtu(id, templateGtuType, this.network, speed, NetworkUtil.getLanePosition(this.network, position));
+        this.gtuSpawner.spawnGtu(id, templateGtuType, this.network, speed, getLanePosition(position));
+    }
+
+    /**
+     * Returns the lane position closest to the given location, using a spatial index of the lanes in the network.
+     * @param position position
+     * @return lane position closest to the given location
+     */
+    public LanePosition getLanePosition(final Point2d position)
+    {
+        if (this.laneIndex == null)
+        {
+            this.laneIndex = new LaneIndex(this.network);
+        }
+        return this.laneIndex.getLanePosition(position);
     }
 
     /**
@@ -0,0 +1,441 @@
+package org.opentrafficsim.i4driving.sim0mq;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+import org.djutils.draw.point.Point2d;
+import org.djutils.exceptions.Throw;
+
+/**
+ * Area of interest of the external simulator, consisting of circles around fixed points or around GTUs. Tracked GTUs are
+ * either inside or outside of the area. A GTU enters when it is within the radius of any centre, and it leaves when it is
+ * beyond the radius plus a hysteresis of all centres, such that GTUs near the edge do not alternate between both states.
+ * Consumers are notified of every change. Until the first centre is set, and after the last centre is removed, the area is
+ * inactive and all tracked GTUs are inside. Positions of tracked GTUs need not be updated while the area is inactive, they are
+ * obtained from the locator when it is activated.
+ * <p>
+ * Tracked GTUs are kept in a uniform grid, which is updated incrementally as GTUs move. When a GTU moves, only that GTU is
+ * evaluated against the (few) centres. When a centre moves, only the GTUs that are currently inside, and the GTUs in grid
+ * cells within the radius of the centre, are evaluated.
+ * @author wjschakel
+ */
+final class InterestArea
+{
+
+    /** Size of grid cells [m]. */
+    private static final double CELL_SIZE = 50.0;
+
+    /** Hysteresis beyond the radius before a GTU leaves [m]. */
+    private final double hysteresis;
+
+    /** Consumer of GTU ids that enter the area. */
+    private final Consumer<String> enter;
+
+    /** Consumer of GTU ids that leave the area. */
+    private final Consumer<String> leave;
+
+    /** Locator of tracked GTUs, to obtain their positions when the area is activated. */
+    private final Function<String, ? extends Point2d> locator;
+
+    /** Centres by id. */
+    private final Map<String, Centre> centres = new LinkedHashMap<>();
+
+    /** Tracked GTUs by id. */
+    private final Map<String, Tracked> gtus = new LinkedHashMap<>();
+
+    /** Ids of tracked GTUs per grid cell. */
+    private final Map<Long, Set<String>> cells = new HashMap<>();
+
+    /** Ids of tracked GTUs that are inside the area. */
+    private final Set<String> inside = new LinkedHashSet<>();
+
+    /** Whether a centre is set. */
+    private boolean active;
+
+    /**
+     * Constructor.
+     * @param hysteresis hysteresis beyond the radius before a GTU leaves [m]
+     * @param enter consumer of GTU ids that enter the area
+     * @param leave consumer of GTU ids that leave the area
+     * @param locator locator of tracked GTUs, to obtain their positions when the area is activated
+     */
+    InterestArea(final double hysteresis, final Consumer<String> enter, final Consumer<String> leave,
+            final Function<String, ? extends Point2d> locator)
+    {
+        Throw.when(hysteresis < 0.0, IllegalArgumentException.class, "Hysteresis should not be negative.");
+        this.hysteresis = hysteresis;
+        this.enter = enter;
+        this.leave = leave;
+        this.locator = locator;
+    }
+
+    /**
+     * Adds or replaces a centre. A centre that follows a GTU should have the GTU id as id, and is moved with
+     * {@code moveCentre()}.
+     * @param id centre id
+     * @param x x coordinate [m]
+     * @param y y coordinate [m]
+     * @param radius radius [m]
+     * @param following whether the centre follows the GTU with the same id
+     */
+    void setCentre(final String id, final double x, final double y, final double radius, final boolean following)
+    {
+        Throw.when(radius <= 0.0, IllegalArgumentException.class, "Radius should be positive.");
+        Centre centre = new Centre(x, y, radius, following);
+        Centre previous = this.centres.put(id, centre);
+        boolean activated = !this.active;
+        if (activated)
+        {
+            // positions were not updated while inactive
+            this.active = true;
+            for (Map.Entry<String, Tracked> entry : this.gtus.entrySet())
+            {
+                Point2d p = this.locator.apply(entry.getKey());
+                move(entry.getKey(), entry.getValue(), p.x, p.y);
+            }
+        }
+        // when the area is activated, or a centre is replaced, GTUs that are inside may leave
+        evaluate(previous != null || activated, centre);
+    }
+
+    /**
+     * Removes a centre, if it exists. When the last centre is removed, the area becomes inactive and all tracked GTUs that
+     * were outside enter.
+     * @param id centre id
+     */
+    void removeCentre(final String id)
+    {
+        if (this.centres.remove(id) != null)
+        {
+            if (!this.centres.isEmpty())
+            {
+                evaluate(true, null);
+                return;
+            }
+            this.active = false;
+            List<String> outside = new ArrayList<>();
+            for (String gtuId : this.gtus.keySet())
+            {
+                if (!this.inside.contains(gtuId))
+                {
+                    outside.add(gtuId);
+                }
+            }
+            // consumers are notified outside of the iteration over the tracked GTUs
+            for (String gtuId : outside)
+            {
+                this.inside.add(gtuId);
+                this.enter.accept(gtuId);
+            }
+        }
+    }
+
+    /**
+     * Returns whether the area is active, i.e. whether a centre is set. Positions of tracked GTUs need not be updated while
+     * the area is inactive.
+     * @return whether the area is active
+     */
+    boolean isActive()
+    {
+        return this.active;
+    }
+
+    /**
+     * Moves a centre that follows the GTU with given id, if it exists.
+     * @param id GTU id
+     * @param x x coordinate [m]
+     * @param y y coordinate [m]
+     */
+    void moveCentre(final String id, final double x, final double y)
+    {
+        Centre centre = this.centres.get(id);
+        if (centre != null && centre.following && (centre.x != x || centre.y != y))
+        {
+            centre.x = x;
+            centre.y = y;
+            evaluate(true, centre);
+        }
+    }
+
+    /**
+     * Returns whether the GTU is tracked.
+     * @param gtuId GTU id
+     * @return whether the GTU is tracked
+     */
+    boolean isTracked(final String gtuId)
+    {
+        return this.gtus.containsKey(gtuId);
+    }
+
+    /**
+     * Returns whether the GTU is tracked and inside the area.
+     * @param gtuId GTU id
+     * @return whether the GTU is tracked and inside the area
+     */
+    boolean isInside(final String gtuId)
+    {
+        return this.inside.contains(gtuId);
+    }
+
+    /**
+     * Tracks a new GTU, or updates the position of a tracked GTU. The enter or leave consumer is notified if its state
+     * changes. A new GTU enters immediately while the area is inactive.
+     * @param gtuId GTU id
+     * @param x x coordinate [m]
+     * @param y y coordinate [m]
+     */
+    void update(final String gtuId, final double x, final double y)
+    {
+        Tracked gtu = this.gtus.get(gtuId);
+        if (gtu == null)
+        {
+            long cell = cell(x, y);
+            gtu = new Tracked(x, y, cell);
+            this.gtus.put(gtuId, gtu);
+            this.cells.computeIfAbsent(cell, (c) -> new LinkedHashSet<>()).add(gtuId);
+            if (!this.active)
+            {
+                this.inside.add(gtuId);
+                this.enter.accept(gtuId);
+                return;
+            }
+        }
+        else
+        {
+            move(gtuId, gtu, x, y);
+            if (!this.active)
+            {
+                return;
+            }
+        }
+        evaluate(gtuId, gtu);
+    }
+
+    /**
+     * Updates the position of a tracked GTU, and its grid cell.
+     * @param gtuId GTU id
+     * @param gtu tracked GTU
+     * @param x x coordinate [m]
+     * @param y y coordinate [m]
+     */
+    private void move(final String gtuId, final Tracked gtu, final double x, final double y)
+    {
+        gtu.x = x;
+        gtu.y = y;
+        long cell = cell(x, y);
+        if (gtu.cell != cell)
+        {
+            removeFromCell(gtuId, gtu.cell);
+            this.cells.computeIfAbsent(cell, (c) -> new LinkedHashSet<>()).add(gtuId);
+            gtu.cell = cell;
+        }
+    }
+
+    /**
+     * Stops tracking a GTU. No consumer is notified.
+     * @param gtuId GTU id
+     * @return whether the GTU was inside the area
+     */
+    boolean remove(final String gtuId)
+    {
+        Tracked gtu = this.gtus.remove(gtuId);
+        if (gtu == null)
+        {
+            return false;
+        }
+        removeFromCell(gtuId, gtu.cell);
+        return this.inside.remove(gtuId);
+    }
+
+    /**
+     * Evaluates GTUs after a change in centres.
+     * @param checkInside whether GTUs that are inside may have left
+     * @param centre centre around which GTUs may have entered, may be {@code null}
+     */
+    private void evaluate(final boolean checkInside, final Centre centre)
+    {
+        List<String> candidates = new ArrayList<>();
+        if (checkInside)
+        {
+            candidates.addAll(this.inside);
+        }
+        if (centre != null)
+        {
+            int minX = cellIndex(centre.x - centre.radius);
+            int maxX = cellIndex(centre.x + centre.radius);
+            int minY = cellIndex(centre.y - centre.radius);
+            int maxY = cellIndex(centre.y + centre.radius);
+            for (int i = minX; i <= maxX; i++)
+            {
+                for (int j = minY; j <= maxY; j++)
+                {
+                    Set<String> ids = this.cells.get(key(i, j));
+                    if (ids != null)
+                    {
+                        for (String id : ids)
+                        {
+                            if (!this.inside.contains(id))
+                            {
+                                candidates.add(id);
+                            }
+                        }
+                    }
+                }
+            }
+        }
+        // consumers are notified outside of the iteration over the grid and inside set
+        for (String id : candidates)
+        {
+            evaluate(id, this.gtus.get(id));
+        }
+    }
+
+    /**
+     * Evaluates whether a GTU is inside, and notifies the enter or leave consumer if this changed.
+     * @param gtuId GTU id
+     * @param gtu tracked GTU
+     */
+    private void evaluate(final String gtuId, final Tracked gtu)
+    {
+        boolean wasInside = this.inside.contains(gtuId);
+        double margin = wasInside ? this.hysteresis : 0.0;
+        boolean isInside = false;
+        for (Centre centre : this.centres.values())
+        {
+            double dx = gtu.x - centre.x;
+            double dy = gtu.y - centre.y;
+            double r = centre.radius + margin;
+            if (dx * dx + dy * dy <= r * r)
+            {
+                isInside = true;
+                break;
+            }
+        }
+        if (isInside && !wasInside)
+        {
+            this.inside.add(gtuId);
+            this.enter.accept(gtuId);
+        }
+        else if (!isInside && wasInside)
+        {
+            this.inside.remove(gtuId);
+            this.leave.accept(gtuId);
+        }
+    }
+
+    /**
+     * Removes a GTU id from a grid cell, removing the cell when it becomes empty.
+     * @param gtuId GTU id
+     * @param cell cell key
+     */
+    private void removeFromCell(final String gtuId, final long cell)
+    {
+        Set<String> ids = this.cells.get(cell);
+        ids.remove(gtuId);
+        if (ids.isEmpty())
+        {
+            this.cells.remove(cell);
+        }
+    }
+
+    /**
+     * Returns the key of the grid cell of a coordinate.
+     * @param x x coordinate [m]
+     * @param y y coordinate [m]
+     * @return key of the grid cell
+     */
+    private static long cell(final double x, final double y)
+    {
+        return key(cellIndex(x), cellIndex(y));
+    }
+
+    /**
+     * Returns the index of a grid cell along one dimension.
+     * @param value coordinate [m]
+     * @return index of the grid cell
+     */
+    private static int cellIndex(final double value)
+    {
+        return (int) Math.floor(value / CELL_SIZE);
+    }
+
+    /**
+     * Returns the key of a grid cell.
+     * @param i index along x
+     * @param j index along y
+     * @return key of the grid cell
+     */
+    private static long key(final int i, final int j)
+    {
+        return ((long) i << 32) | (j & 0xffffffffL);
+    }
+
+    /**
+     * Centre of a circular area.
+     */
+    private static final class Centre
+    {
+        /** x coordinate [m]. */
+        private double x;
+
+        /** y coordinate [m]. */
+        private double y;
+
+        /** Radius [m]. */
+        private final double radius;
+
+        /** Whether the centre follows the GTU with the same id. */
+        private final boolean following;
+
+        /**
+         * Constructor.
+         * @param x x coordinate [m]
+         * @param y y coordinate [m]
+         * @param radius radius [m]
+         * @param following whether the centre follows the GTU with the same id
+         */
+        Centre(final double x, final double y, final double radius, final boolean following)
+        {
+            this.x = x;
+            this.y = y;
+            this.radius = radius;
+            this.following = following;
+        }
+    }
+
+    /**
+     * Tracked GTU.
+     */
+    private static final class Tracked
+    {
+        /** x coordinate [m]. */
+        private double x;
+
+        /** y coordinate [m]. */
+        private double y;
+
+        /** Key of the grid cell. */
+        private long cell;
+
+        /**
+         * Constructor.
+         * @param x x coordinate [m]
+         * @param y y coordinate [m]
+         * @param cell key of the grid cell
+         */
+        Tracked(final double x, final double y, final long cell)
+        {
+            this.x = x;
+            this.y = y;
+            this.cell = cell;
+        }
+    }
+
+}
@@ -0,0 +1,149 @@
+package org.opentrafficsim.i4driving.sim0mq;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Lock-free histogram of durations, with log-linear buckets: each power of 2 ns is split in 16 buckets, such that percentiles
+ * are within about 6%. Recording is a few atomic increments, such that it can stay enabled in production runs, and values may
+ * be read from any thread while they are recorded.
+ * @author wjschakel
+ */
+final class LatencyHistogram
+{
+
+    /** Number of buckets per power of 2. */
+    private static final int SUB_BUCKETS = 16;
+
+    /** Bits of the sub-bucket index. */
+    private static final int SUB_BUCKET_BITS = 4;
+
+    /** Counts per bucket. */
+    private final AtomicLongArray buckets = new AtomicLongArray(64 * SUB_BUCKETS);
+
+    /** Number of values. */
+    private final LongAdder count = new LongAdder();
+
+    /** Sum of values [ns]. */
+    private final LongAdder sum = new LongAdder();
+
+    /** Maximum value [ns]. */
+    private final AtomicLong max = new AtomicLong();
+
+    /**
+     * Records a duration.
+     * @param nanos duration [ns], negative values are recorded as 0
+     */
+    void record(final long nanos)
+    {
+        long value = Math.max(0L, nanos);
+        this.buckets.incrementAndGet(bucket(value));
+        this.count.increment();
+        this.sum.add(value);
+        if (value > this.max.get())
+        {
+            this.max.accumulateAndGet(value, Math::max);
+        }
+    }
+
+    /**
+     * Records the duration since a start time.
+     * @param start start time from {@code System.nanoTime()} [ns]
+     */
+    void recordSince(final long start)
+    {
+        record(System.nanoTime() - start);
+    }
+
+    /**
+     * Returns the number of values.
+     * @return number of values
+     */
+    long getCount()
+    {
+        return this.count.sum();
+    }
+
+    /**
+     * Returns the mean value.
+     * @return mean value [ms], 0 if there are no values
+     */
+    double getMean()
+    {
+        long n = this.count.sum();
+        return n == 0 ? 0.0 : this.sum.sum() / 1e6 / n;
+    }
+
+    /**
+     * Returns the maximum value.
+     * @return maximum value [ms], 0 if there are no values
+     */
+    double getMax()
+    {
+        return this.max.get() / 1e6;
+    }
+
+    /**
+     * Returns a percentile, as the middle of the bucket with the nearest rank, limited to the maximum.
+     * @param p percentile as fraction
+     * @return percentile [ms], 0 if there are no values
+     */
+    double getPercentile(final double p)
+    {
+        long n = 0;
+        long[] counts = new long[this.buckets.length()];
+        for (int i = 0; i < counts.length; i++)
+        {
+            counts[i] = this.buckets.get(i);
+            n += counts[i];
+        }
+        if (n == 0)
+        {
+            return 0.0;
+        }
+        long rank = Math.max(1L, (long) Math.ceil(p * n));
+        long cumulative = 0;
+        for (int i = 0; i < counts.length; i++)
+        {
+            cumulative += counts[i];
+            if (cumulative >= rank)
+            {
+                return Math.min((lowerBound(i) + lowerBound(i + 1)) / 2.0, this.max.get()) / 1e6;
+            }
+        }
+        return getMax();
+    }
+
+    /**
+     * Returns the bucket of a value.
+     * @param value value [ns]
+     * @return bucket index
+     */
+    private static int bucket(final long value)
+    {
+        if (value < SUB_BUCKETS)
+        {
+            return (int) value;
+        }
+        int exponent = 63 - Long.numberOfLeadingZeros(value);
+        int subBucket = (int) ((value >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1));
+        return (exponent - SUB_BUCKET_BITS + 1) * SUB_BUCKETS + subBucket;
+    }
+
+    /**
+     * Returns the lowest value of a bucket.
+     * @param bucket bucket index
+     * @return lowest value of the bucket [ns]
+     */
+    private static double lowerBound(final int bucket)
+    {
+        if (bucket < SUB_BUCKETS)
+        {
+            return bucket;
+        }
+        int exponent = bucket / SUB_BUCKETS + SUB_BUCKET_BITS - 1;
+        return Math.scalb(SUB_BUCKETS + bucket % SUB_BUCKETS, exponent - SUB_BUCKET_BITS);
+    }
+
+}
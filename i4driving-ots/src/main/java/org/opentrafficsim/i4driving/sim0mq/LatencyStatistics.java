@@ -0,0 +1,74 @@
+package org.opentrafficsim.i4driving.sim0mq;
+
+import java.util.Arrays;
+
+/**
+ * Distribution of latencies, e.g. between sending a message and receiving its READY message. All values are stored, such that
+ * percentiles are exact.
+ * @author wjschakel
+ */
+final class LatencyStatistics
+{
+
+    /** Latencies [ms]. */
+    private double[] values = new double[1024];
+
+    /** Number of latencies. */
+    private int n;
+
+    /**
+     * Registers a latency.
+     * @param latency latency [ms]
+     */
+    void register(final double latency)
+    {
+        if (this.n == this.values.length)
+        {
+            this.values = Arrays.copyOf(this.values, 2 * this.n);
+        }
+        this.values[this.n++] = latency;
+    }
+
+    /**
+     * Returns the number of latencies.
+     * @return number of latencies
+     */
+    int getN()
+    {
+        return this.n;
+    }
+
+    /**
+     * Returns a summary of the distribution: the mean, the 50th, 90th and 99th percentile, and the maximum.
+     * @param label label, e.g. "READY latency"
+     * @return summary of the distribution
+     */
+    String summary(final String label)
+    {
+        if (this.n == 0)
+        {
+            return label + ": no values";
+        }
+        double[] sorted = Arrays.copyOf(this.values, this.n);
+        Arrays.sort(sorted);
+        double sum = 0.0;
+        for (double value : sorted)
+        {
+            sum += value;
+        }
+        return String.format("%s of %d messages: mean %.3fms, p50 %.3fms, p90 %.3fms, p99 %.3fms, max %.3fms", label, this.n,
+                sum / this.n, percentile(sorted, 0.5), percentile(sorted, 0.9), percentile(sorted, 0.99), sorted[this.n - 1]);
+    }
+
+    /**
+     * Returns a percentile of sorted values, using the nearest rank.
+     * @param sorted sorted values
+     * @param p percentile as fraction
+     * @return percentile
+     */
+    private static double percentile(final double[] sorted, final double p)
+    {
+        return sorted[Math.max(0, (int) Math.ceil(p * sorted.length) - 1)];
+    }
+
+}
@@ -0,0 +1,599 @@
+package org.opentrafficsim.i4driving.sim0mq;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.djunits.value.vdouble.scalar.Direction;
+import org.djunits.value.vdouble.scalar.Length;
+import org.djunits.value.vdouble.scalar.Speed;
+import org.djutils.exceptions.Throw;
+import org.djutils.logger.CategoryLogger;
+import org.djutils.serialization.SerializationException;
+import org.sim0mq.Sim0MQException;
+import org.sim0mq.message.Sim0MQMessage;
+import org.zeromq.SocketType;
+import org.zeromq.ZContext;
+import org.zeromq.ZMQ;
+
+/**
+ * Load generator that emulates many externally controlled vehicles and pedestrians on the demo network, to size co-simulation
+ * hardware. All objects are updated from a single thread that owns the socket, using a timer wheel with slots of 1ms. Objects
+ * are spread over the slots of one update interval, such that updates are spread evenly in time. The updates of a slot are
+ * sent as EXTERNAL messages, or batched in EXTERNALS messages. When batched, objects are also spawned with a single VEHICLES
+ * message. OTS is progressed in lock-step with PROGRESS messages, either at wall-clock pace, or as fast as possible.
+ * <p>
+ * Vehicles and pedestrians are placed with a minimum spacing along the demo network. Objects that do not fit are not spawned
+ * in OTS, but their updates are still sent, such that they load the transport, decoding and scheduling of updates in OTS.
+ * </p>
+ * <p>
+ * At the end, the achieved message rate, the number of frames that were dropped as the send queue was full, the number of
+ * PROGRESS steps that were skipped as OTS did not keep up at wall-clock pace, and the distribution of the latency of READY
+ * messages of PROGRESS messages are reported.
+ * </p>
+ * @author wjschakel
+ */
+final class LoadGenerator
+{
+
+    /** Federation id to receive/sent messages. */
+    private static final String FEDERATION = "Ots_ExternalSim";
+
+    /** OTS id to receive/sent messages. */
+    private static final String OTS = "Ots";
+
+    /** External simulator id to receive/sent messages. */
+    private static final String EXTERNAL_SIM = "ExternalSim";
+
+    /** Lateral positions of the lanes of the demo network [m]. */
+    private static final double[] LANE_Y = {1.75, 5.25};
+
+    /** Lateral position of pedestrians, next to the demo network [m]. */
+    private static final double PEDESTRIAN_Y = -1.0;
+
+    /** First longitudinal position of objects [m]. */
+    private static final double FIRST_X = 20.0;
+
+    /** Last longitudinal position of objects that are spawned, before the sinks of the demo network [m]. */
+    private static final double LAST_X = 420.0;
+
+    /** Spacing between spawned objects [m]. */
+    private static final double SPACING = 8.0;
+
+    /** Timeout when waiting for READY messages [ms]. */
+    private static final long TIMEOUT = 30000;
+
+    /** Port number. */
+    private final int port;
+
+    /** Number of vehicles. */
+    private final int vehicles;
+
+    /** Number of pedestrians. */
+    private final int pedestrians;
+
+    /** Update interval of each object [ms], which is the number of slots of the timer wheel. */
+    private final int interval;
+
+    /** Maximum number of states per message, 1 for EXTERNAL messages. */
+    private final int batch;
+
+    /** Duration [ms]. */
+    private final long duration;
+
+    /** PROGRESS step [ms]. */
+    private final long step;
+
+    /** Whether to run at wall-clock pace. */
+    private final boolean realTime;
+
+    /** Encoder. */
+    private final Sim0mqEncoder encoder = new Sim0mqEncoder(false, FEDERATION, EXTERNAL_SIM, OTS);
+
+    /** Reader. */
+    private final Sim0mqReader reader = new Sim0mqReader();
+
+    /** Socket. */
+    private ZMQ.Socket socket;
+
+    /** Poller of the socket. */
+    private ZMQ.Poller poller;
+
+    /** Message id. */
+    private int messageId = 0;
+
+    /** Ids of messages for which READY messages are awaited. */
+    private final Set<Integer> awaiting = new LinkedHashSet<>();
+
+    /** Message id of the PROGRESS message for which the READY message is awaited, -1 if none. */
+    private int progressId = -1;
+
+    /** Send time of the PROGRESS message for which the READY message is awaited [ns]. */
+    private long progressTime;
+
+    /** Latencies of READY messages of PROGRESS messages. */
+    private final LatencyStatistics latencies = new LatencyStatistics();
+
+    /** Batch of ids. */
+    private final String[] ids;
+
+    /** Batch of x coordinates [m]. */
+    private final double[] x;
+
+    /** Batch of y coordinates [m]. */
+    private final double[] y;
+
+    /** Batch of directions [rad]. */
+    private final double[] direction;
+
+    /** Batch of speeds [m/s]. */
+    private final double[] speed;
+
+    /** Batch of accelerations [m/s^2]. */
+    private final double[] acceleration;
+
+    /** Number of states in the batch. */
+    private int n;
+
+    /** Number of sent messages with states. */
+    private long sentMessages;
+
+    /** Number of sent states. */
+    private long sentStates;
+
+    /** Number of sent bytes. */
+    private long sentBytes;
+
+    /** Number of frames that could not be sent. */
+    private long dropped;
+
+    /** Number of received frames. */
+    private long receivedFrames;
+
+    /** Number of PROGRESS steps skipped as the READY message of the previous step was not yet received. */
+    private long skippedSteps;
+
+    /**
+     * Constructor.
+     * @param port port number
+     * @param vehicles number of vehicles
+     * @param pedestrians number of pedestrians
+     * @param frequency update frequency of each object [Hz]
+     * @param batch maximum number of states per message, 1 for EXTERNAL messages
+     * @param duration duration [s]
+     * @param step PROGRESS step [s]
+     * @param realTime whether to run at wall-clock pace
+     */
+    @SuppressWarnings("checkstyle:parameternumber")
+    LoadGenerator(final int port, final int vehicles, final int pedestrians, final double frequency, final int batch,
+            final double duration, final double step, final boolean realTime)
+    {
+        Throw.when(vehicles < 0 || pedestrians < 0, IllegalArgumentException.class,
+                "Number of objects should not be negative.");
+        Throw.when(frequency <= 0.0 || frequency > 1000.0, IllegalArgumentException.class,
+                "Frequency should be in the range (0, 1000] Hz.");
+        Throw.when(batch < 1, IllegalArgumentException.class, "Batch should be at least 1.");
+        Throw.when(step < 0.001, IllegalArgumentException.class, "Step should be at least 1ms.");
+        this.port = port;
+        this.vehicles = vehicles;
+        this.pedestrians = pedestrians;
+        this.interval = (int) Math.max(1L, Math.round(1000.0 / frequency));
+        this.batch = batch;
+        this.duration = Math.round(duration * 1000.0);
+        this.step = Math.round(step * 1000.0);
+        this.realTime = realTime;
+        this.ids = new String[batch];
+        this.x = new double[batch];
+        this.y = new double[batch];
+        this.direction = new double[batch];
+        this.speed = new double[batch];
+        this.acceleration = new double[batch];
+    }
+
+    /**
+     * Sets up the demo network and objects, runs the load, and reports statistics.
+     * @throws IOException if a resource cannot be read
+     * @throws Sim0MQException on message encoding exception
+     * @throws SerializationException on message encoding exception
+     */
+    void run() throws IOException, Sim0MQException, SerializationException
+    {
+        try (ZContext context = new ZContext(1))
+        {
+            this.socket = context.createSocket(SocketType.PAIR);
+            this.socket.connect("tcp://localhost:" + this.port);
+            this.poller = context.createPoller(1);
+            this.poller.register(this.socket, ZMQ.Poller.POLLIN);
+
+            send("ODMATRIX", resource("/od/OdMatrix.json"));
+            send("ROUTES", resource("/route/Routes.json"));
+            send("NETWORK");
+            if (!awaitReady())
+            {
+                return;
+            }
+            List<Emulated> objects = createObjects();
+            if (!awaitReady())
+            {
+                return;
+            }
+
+            // timer wheel, objects are spread over the slots of one update interval
+            List<List<Emulated>> wheel = new ArrayList<>(this.interval);
+            for (int i = 0; i < this.interval; i++)
+            {
+                wheel.add(new ArrayList<>());
+            }
+            for (int i = 0; i < objects.size(); i++)
+            {
+                wheel.get(i % this.interval).add(objects.get(i));
+            }
+
+            CategoryLogger.always().debug("ExternalSim load generator started");
+            long start = System.nanoTime();
+            for (long tick = 0; tick < this.duration; tick++)
+            {
+                if (this.realTime)
+                {
+                    long due = start + tick * 1_000_000L;
+                    for (long wait = due - System.nanoTime(); wait > 0; wait = due - System.nanoTime())
+                    {
+                        receive(Math.max(1L, wait / 1_000_000L));
+                    }
+                }
+                while (receive(0L))
+                {
+                    // handle received frames between ticks
+                }
+                double t = tick / 1000.0;
+                for (Emulated object : wheel.get((int) (tick % this.interval)))
+                {
+                    add(object, t);
+                }
+                flush();
+                if ((tick + 1) % this.step == 0)
+                {
+                    if (this.progressId >= 0)
+                    {
+                        if (this.realTime)
+                        {
+                            // OTS does not keep up, the next PROGRESS message makes up for the skipped step
+                            this.skippedSteps++;
+                            continue;
+                        }
+                        if (!awaitReady())
+                        {
+                            return;
+                        }
+                    }
+                    progress((tick + 1) / 1000.0);
+                }
+            }
+            if (!awaitReady())
+            {
+                return;
+            }
+            double seconds = (System.nanoTime() - start) / 1e9;
+            sendTerminate();
+            CategoryLogger.always().debug(String.format("Sent %d messages with %d states (%.1f messages/s, %.1f states/s, "
+                    + "%.3f MB/s) in %.3fs, %d frames dropped", this.sentMessages, this.sentStates,
+                    this.sentMessages / seconds, this.sentStates / seconds, this.sentBytes / seconds / 1e6, seconds,
+                    this.dropped));
+            CategoryLogger.always().debug(String.format("Received %d frames, %d PROGRESS steps skipped", this.receivedFrames,
+                    this.skippedSteps));
+            CategoryLogger.always().debug(this.latencies.summary("READY latency"));
+        }
+    }
+
+    /**
+     * Creates the emulated objects, and spawns those that fit on the demo network in OTS.
+     * @return emulated objects
+     * @throws Sim0MQException on message encoding exception
+     * @throws SerializationException on message encoding exception
+     */
+    private List<Emulated> createObjects() throws Sim0MQException, SerializationException
+    {
+        List<Emulated> objects = new ArrayList<>(this.vehicles + this.pedestrians);
+        int positions = (int) ((LAST_X - FIRST_X) / SPACING) + 1;
+        // all vehicles drive at the same speed, such that the first vehicle reaches the last position at the end
+        int rows = Math.min(positions, (this.vehicles + LANE_Y.length - 1) / LANE_Y.length);
+        double vehicleSpeed = Math.max(1.0, Math.min(14.0, (positions - rows) * SPACING / (this.duration / 1000.0)));
+        Length length = Length.instantiateSI(4.0);
+        Length width = Length.instantiateSI(1.9);
+        Length refToNose = Length.instantiateSI(3.0);
+        List<Emulated> spawnedVehicles = new ArrayList<>();
+        for (int i = 0; i < this.vehicles; i++)
+        {
+            int row = i / LANE_Y.length;
+            Emulated vehicle = new Emulated("Vehicle " + i, FIRST_X + (row % positions) * SPACING,
+                    LANE_Y[i % LANE_Y.length], 0.0, vehicleSpeed);
+            objects.add(vehicle);
+            if (row < positions)
+            {
+                spawnedVehicles.add(vehicle);
+            }
+        }
+        List<Emulated> spawnedPedestrians = new ArrayList<>();
+        for (int i = 0; i < this.pedestrians; i++)
+        {
+            Emulated pedestrian =
+                    new Emulated("Pedestrian " + i, FIRST_X + (i % positions) * SPACING, PEDESTRIAN_Y, Math.PI / 2.0, 1.0);
+            objects.add(pedestrian);
+            if (i < positions)
+            {
+                spawnedPedestrians.add(pedestrian);
+            }
+        }
+        if (this.batch > 1)
+        {
+            sendVehicles(spawnedVehicles, spawnedPedestrians);
+        }
+        else
+        {
+            for (Emulated vehicle : spawnedVehicles)
+            {
+                send("VEHICLE", vehicle.id, "Hybrid", Length.instantiateSI(vehicle.x0), Length.instantiateSI(vehicle.y0),
+                        Direction.ZERO, Speed.instantiateSI(vehicle.speed), "CAR", length, width, refToNose, 0, "A-B");
+            }
+            for (Emulated pedestrian : spawnedPedestrians)
+            {
+                // OTS sends no READY message for active mode objects
+                this.socket.send(Sim0MQMessage.encodeUTF8(false, FEDERATION, EXTERNAL_SIM, OTS, "VEHICLE",
+                        this.messageId++, new Object[] {pedestrian.id, "Active", Length.instantiateSI(pedestrian.x0),
+                                Length.instantiateSI(pedestrian.y0), Direction.instantiateSI(pedestrian.direction),
+                                Speed.instantiateSI(pedestrian.speed), "", Length.ZERO, Length.ZERO, Length.ZERO, 0, ""}),
+                        0);
+            }
+        }
+        CategoryLogger.always().debug("ExternalSim load generator emulates {} objects, of which {} are spawned in OTS",
+                objects.size(), spawnedVehicles.size() + spawnedPedestrians.size());
+        return objects;
+    }
+
+    /**
+     * Spawns vehicles and pedestrians in OTS with a single VEHICLES message.
+     * @param spawnedVehicles vehicles to spawn
+     * @param spawnedPedestrians pedestrians to spawn
+     * @throws Sim0MQException on message encoding exception
+     * @throws SerializationException on message encoding exception
+     */
+    private void sendVehicles(final List<Emulated> spawnedVehicles, final List<Emulated> spawnedPedestrians)
+            throws Sim0MQException, SerializationException
+    {
+        List<Emulated> spawned = new ArrayList<>(spawnedVehicles);
+        spawned.addAll(spawnedPedestrians);
+        int n = spawned.size();
+        double[] x = new double[n];
+        double[] y = new double[n];
+        double[] direction = new double[n];
+        double[] speed = new double[n];
+        double[] length = new double[n];
+        double[] width = new double[n];
+        double[] refToNose = new double[n];
+        List<Object> payload = new ArrayList<>(4 * n + 9);
+        payload.add(n);
+        for (int i = 0; i < n; i++)
+        {
+            Emulated object = spawned.get(i);
+            payload.add(object.id);
+            x[i] = object.x0;
+            y[i] = object.y0;
+            direction[i] = object.direction;
+            speed[i] = object.speed;
+            if (i < spawnedVehicles.size())
+            {
+                length[i] = 4.0;
+                width[i] = 1.9;
+                refToNose[i] = 3.0;
+            }
+        }
+        for (int i = 0; i < n; i++)
+        {
+            payload.add(i < spawnedVehicles.size() ? "Hybrid" : "Active");
+        }
+        payload.addAll(List.of(x, y, direction, speed));
+        for (int i = 0; i < n; i++)
+        {
+            payload.add(i < spawnedVehicles.size() ? "CAR" : "");
+        }
+        payload.addAll(List.of(length, width, refToNose));
+        for (int i = 0; i < n; i++)
+        {
+            payload.add(i < spawnedVehicles.size() ? "A-B" : "");
+        }
+        payload.add(0);
+        send("VEHICLES", payload.toArray());
+    }
+
+    /**
+     * Adds the state of an object to the batch, and sends the batch if it is full.
+     * @param object emulated object
+     * @param t time [s]
+     */
+    private void add(final Emulated object, final double t)
+    {
+        this.ids[this.n] = object.id;
+        double distance = object.speed * t;
+        this.x[this.n] = object.x0 + distance * Math.cos(object.direction);
+        this.y[this.n] = object.y0 + distance * Math.sin(object.direction);
+        this.direction[this.n] = object.direction;
+        this.speed[this.n] = object.speed;
+        this.acceleration[this.n] = 0.0;
+        this.n++;
+        if (this.n == this.batch)
+        {
+            flush();
+        }
+    }
+
+    /**
+     * Sends the states in the batch, as an EXTERNAL message if the batch size is 1, or as an EXTERNALS message otherwise.
+     */
+    private void flush()
+    {
+        if (this.n == 0)
+        {
+            return;
+        }
+        byte[] bytes = this.batch == 1
+                ? this.encoder.encodeExternal(this.messageId++, this.ids[0], this.x[0], this.y[0], this.direction[0],
+                        this.speed[0], this.acceleration[0])
+                : this.encoder.encodeExternals(this.messageId++, this.ids, this.x, this.y, this.direction, this.speed,
+                        this.acceleration, this.n);
+        if (this.socket.send(bytes, ZMQ.DONTWAIT))
+        {
+            this.sentMessages++;
+            this.sentStates += this.n;
+            this.sentBytes += bytes.length;
+        }
+        else
+        {
+            this.dropped++;
+        }
+        this.n = 0;
+    }
+
+    /**
+     * Sends a PROGRESS message.
+     * @param until time until which to progress [s]
+     */
+    private void progress(final double until)
+    {
+        this.progressId = this.messageId++;
+        this.awaiting.add(this.progressId);
+        this.progressTime = System.nanoTime();
+        this.socket.send(this.encoder.encodeProgress(this.progressId, until), 0);
+    }
+
+    /**
+     * Sends a message for which a READY message is awaited.
+     * @param type message type
+     * @param payload payload
+     * @throws Sim0MQException on message encoding exception
+     * @throws SerializationException on message encoding exception
+     */
+    private void send(final String type, final Object... payload) throws Sim0MQException, SerializationException
+    {
+        this.awaiting.add(this.messageId);
+        this.socket.send(Sim0MQMessage.encodeUTF8(false, FEDERATION, EXTERNAL_SIM, OTS, type, this.messageId++, payload), 0);
+    }
+
+    /**
+     * Sends a TERMINATE message.
+     * @throws Sim0MQException on message encoding exception
+     * @throws SerializationException on message encoding exception
+     */
+    private void sendTerminate() throws Sim0MQException, SerializationException
+    {
+        this.socket.send(
+                Sim0MQMessage.encodeUTF8(false, FEDERATION, EXTERNAL_SIM, OTS, "TERMINATE", this.messageId++, new Object[] {}),
+                0);
+    }
+
+    /**
+     * Receives frames until all awaited READY messages are received.
+     * @return whether all READY messages were received within the timeout
+     * @throws SerializationException if a frame is not a valid Sim0MQ message
+     */
+    private boolean awaitReady() throws SerializationException
+    {
+        while (!this.awaiting.isEmpty())
+        {
+            if (!receive(TIMEOUT))
+            {
+                CategoryLogger.always().error("ExternalSim load generator received no READY message for message(s) {}",
+                        this.awaiting);
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Receives a frame, and handles it if it is a READY message.
+     * @param wait time to wait for a frame [ms]
+     * @return whether a frame was received
+     * @throws SerializationException if a frame is not a valid Sim0MQ message
+     */
+    private boolean receive(final long wait) throws SerializationException
+    {
+        if (wait > 0 && this.poller.poll(wait) <= 0)
+        {
+            return false;
+        }
+        byte[] bytes = this.socket.recv(ZMQ.DONTWAIT);
+        if (bytes == null)
+        {
+            return false;
+        }
+        this.receivedFrames++;
+        if ("READY".equals(this.reader.wrap(bytes).getMessageType()))
+        {
+            int id = this.reader.getInt(0);
+            this.awaiting.remove(id);
+            if (id == this.progressId)
+            {
+                this.latencies.register((System.nanoTime() - this.progressTime) / 1_000_000.0);
+                this.progressId = -1;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Reads a resource as string.
+     * @param name resource name
+     * @return resource contents
+     * @throws IOException if the resource cannot be read
+     */
+    private static String resource(final String name) throws IOException
+    {
+        try (InputStream stream = LoadGenerator.class.getResourceAsStream(name))
+        {
+            return new String(stream.readAllBytes(), StandardCharsets.UTF_8);
+        }
+    }
+
+    /**
+     * Emulated vehicle or pedestrian, moving at constant speed in a straight line.
+     */
+    private static final class Emulated
+    {
+        /** Id. */
+        private final String id;
+
+        /** Initial x coordinate [m]. */
+        private final double x0;
+
+        /** Initial y coordinate [m]. */
+        private final double y0;
+
+        /** Direction [rad]. */
+        private final double direction;
+
+        /** Speed [m/s]. */
+        private final double speed;
+
+        /**
+         * Constructor.
+         * @param id id
+         * @param x0 initial x coordinate [m]
+         * @param y0 initial y coordinate [m]
+         * @param direction direction [rad]
+         * @param speed speed [m/s]
+         */
+        Emulated(final String id, final double x0, final double y0, final double direction, final double speed)
+        {
+            this.id = id;
+            this.x0 = x0;
+            this.y0 = y0;
+            this.direction = direction;
+            this.speed = speed;
+        }
+    }
+
+}
@@ -0,0 +1,91 @@
+package org.opentrafficsim.i4driving.sim0mq;
+
+import java.io.Serializable;
+
+import org.djunits.value.vdouble.scalar.Duration;
+import org.djutils.exceptions.Throw;
+import org.opentrafficsim.core.dsol.OtsSimulator;
+
+import nl.tudelft.simulation.dsol.SimRuntimeException;
+import nl.tudelft.simulation.dsol.experiment.Replication;
+import nl.tudelft.simulation.dsol.formalisms.eventscheduling.SimEventInterface;
+import nl.tudelft.simulation.dsol.simulators.ReplicationState;
+import nl.tudelft.simulation.dsol.simulators.RunState;
+import nl.tudelft.simulation.dsol.simulators.SimulatorInterface;
+
+/**
+ * Simulator that is advanced synchronously on the calling thread, for lock-step co-simulation. Unlike {@code start()} or
+ * {@code runUpToAndIncluding()}, {@code advanceTo()} does not hand over to the simulator worker thread, and does not fire
+ * START and STOP events. When it returns, all events up to and including the requested time have been executed.
+ * @author wjschakel
+ */
+public class LockStepSimulator extends OtsSimulator
+{
+
+    /** */
+    private static final long serialVersionUID = 20250620L;
+
+    /**
+     * Constructor.
+     * @param id simulator id
+     */
+    public LockStepSimulator(final Serializable id)
+    {
+        super(id);
+    }
+
+    /**
+     * Executes all events up to and including the given time on the calling thread. Afterwards the simulator time is equal to
+     * the given time, unless the error strategy stopped the simulator upon an exception in an event.
+     * @param time time to advance to
+     * @throws SimRuntimeException when the simulator is running, not initialized, or the time is in the past
+     */
+    public void advanceTo(final Duration time) throws SimRuntimeException
+    {
+        Throw.when(isStartingOrRunning(), SimRuntimeException.class, "Cannot advance a running simulator.");
+        Throw.when(!isInitialized(), SimRuntimeException.class, "Cannot advance a simulator that is not initialized.");
+        Throw.when(time.lt(getSimulatorTime()), SimRuntimeException.class, "Cannot advance to %s, which is before %s.", time,
+                getSimulatorTime());
+        synchronized (this.semaphore)
+        {
+            if (this.replicationState == ReplicationState.INITIALIZED)
+            {
+                fireTimedEvent(Replication.START_REPLICATION_EVENT, null, getSimulatorTime());
+                this.replicationState = ReplicationState.STARTED;
+            }
+            this.runState = RunState.STARTED;
+            try
+            {
+                while (this.runState == RunState.STARTED && !this.eventList.isEmpty()
+                        && this.eventList.first().getAbsoluteExecutionTime().le(time))
+                {
+                    SimEventInterface<Duration> event = this.eventList.removeFirst();
+                    if (event.getAbsoluteExecutionTime().ne(this.simulatorTime))
+                    {
+                        fireUnverifiedTimedEvent(SimulatorInterface.TIME_CHANGED_EVENT, null,
+                                event.getAbsoluteExecutionTime());
+                    }
+                    this.simulatorTime = event.getAbsoluteExecutionTime();
+                    try
+                    {
+                        event.execute();
+                    }
+                    catch (Exception exception)
+                    {
+                        // may set the run state to STOPPING, depending on the error strategy
+                        handleSimulationException(exception);
+                    }
+                }
+                if (this.runState == RunState.STARTED)
+                {
+                    this.simulatorTime = time;
+                }
+            }
+            finally
+            {
+                this.runState = RunState.STOPPED;
+            }
+        }
+    }
+
+}
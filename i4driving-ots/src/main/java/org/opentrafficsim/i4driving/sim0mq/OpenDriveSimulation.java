@@ -56,6 +56,7 @@ public class OpenDriveSimulation implements Sim0mqSimulation
      * @param tacticalFactory tactical planner factory
      * @param networkString OpenDRIVE string
      * @param useRoadName whether to use the road name to identify origins and destinations
+     * @param cached whether to reuse the parse and flattened lines of an earlier simulation with an equal OpenDRIVE string
      * @throws JAXBException
      * @throws SAXException
      * @throws ParserConfigurationException
@@ -64,10 +65,11 @@ public class OpenDriveSimulation implements Sim0mqSimulation
      * @throws GtuException
      */
     public OpenDriveSimulation(final OtsSimulatorInterface simulator, final ScenarioTacticalPlannerFactory tacticalFactory,
-            final String networkString, final boolean useRoadName) throws JAXBException, SAXException,
+            final String networkString, final boolean useRoadName, final boolean cached) throws JAXBException, SAXException,
             ParserConfigurationException, NetworkException, OtsGeometryException, GtuException
     {
-        this.parser = OpenDriveParser.parseFileString(networkString).setUseRoadName(useRoadName);
+        this.parser = (cached ? OpenDriveParser.parseFileStringShared(networkString)
+                : OpenDriveParser.parseFileString(networkString)).setUseRoadName(useRoadName);
         this.network = new RoadNetwork("OtsOpenDriveNetwork", simulator);
         this.parser.build(this.network);
         OpenDriveParser.buildConflicts(this.network);
@@ -108,6 +110,15 @@ public class OpenDriveSimulation implements Sim0mqSimulation
         };
     }
 
+    /**
+     * Returns whether the network reused the flattened lines of an earlier simulation with an equal OpenDRIVE string.
+     * @return whether the network reused the flattened lines of an earlier simulation with an equal OpenDRIVE string
+     */
+    public boolean isCached()
+    {
+        return this.parser.isReusedBuild();
+    }
+
     @Override
     public RoadNetwork getNetwork()
     {
@@ -1,9 +1,12 @@
 package org.opentrafficsim.i4driving.sim0mq;
 
 import java.awt.Dimension;
+import java.io.IOException;
+import java.io.UncheckedIOException;
 import java.lang.reflect.Field;
 import java.lang.reflect.InvocationTargetException;
 import java.lang.reflect.Method;
+import java.nio.file.Path;
 import java.rmi.RemoteException;
 import java.util.ArrayList;
 import java.util.Collection;
@@ -14,7 +17,12 @@ import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
+import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.function.Function;
 
 import javax.naming.NamingException;
@@ -28,14 +36,14 @@ import org.djunits.value.vdouble.scalar.Duration;
 import org.djunits.value.vdouble.scalar.Length;
 import org.djunits.value.vdouble.scalar.Speed;
 import org.djunits.value.vdouble.scalar.Time;
-import org.djunits.value.vfloat.vector.FloatAccelerationVector;
-import org.djunits.value.vfloat.vector.FloatDurationVector;
-import org.djunits.value.vfloat.vector.FloatLengthVector;
+import org.djunits.value.vdouble.vector.base.DoubleVector;
+import org.djunits.value.vfloat.vector.base.FloatVector;
 import org.djutils.cli.CliUtil;
 import org.djutils.draw.point.OrientedPoint2d;
 import org.djutils.event.Event;
 import org.djutils.event.EventListener;
 import org.djutils.event.EventType;
+import org.djutils.exceptions.Throw;
 import org.djutils.immutablecollections.ImmutableList;
 import org.djutils.logger.CategoryLogger;
 import org.djutils.metadata.MetaData;
@@ -73,7 +81,6 @@ import org.opentrafficsim.i4driving.messages.Commands;
 import org.opentrafficsim.i4driving.messages.DefaultGson;
 import org.opentrafficsim.i4driving.object.ActiveModeCrossing;
 import org.opentrafficsim.i4driving.tactical.CommandsHandler;
-import org.opentrafficsim.i4driving.tactical.NetworkUtil;
 import org.opentrafficsim.i4driving.tactical.ScenarioTacticalPlanner;
 import org.opentrafficsim.i4driving.tactical.ScenarioTacticalPlannerFactory;
 import org.opentrafficsim.road.definitions.DefaultsRoadNl;
@@ -87,6 +94,8 @@ import org.opentrafficsim.road.od.OdOptions;
 import org.opentrafficsim.swing.gui.OtsAnimationPanel;
 import org.opentrafficsim.swing.gui.OtsSimulationApplication;
 import org.pmw.tinylog.Level;
+import org.pmw.tinylog.writers.ConsoleWriter;
+import org.pmw.tinylog.writers.Writer;
 import org.sim0mq.Sim0MQException;
 import org.sim0mq.message.Sim0MQMessage;
 import org.xml.sax.SAXException;
@@ -97,6 +106,7 @@ import org.zeromq.ZMQ;
 import com.google.gson.Gson;
 
 import nl.tudelft.simulation.dsol.SimRuntimeException;
+import nl.tudelft.simulation.dsol.formalisms.eventscheduling.SimEventInterface;
 import nl.tudelft.simulation.dsol.simulators.SimulatorInterface;
 import nl.tudelft.simulation.language.DsolException;
 import picocli.CommandLine.Command;
@@ -145,6 +155,129 @@ public class OtsTransceiver
             defaultValue = "false")
     private boolean useRoadName;
 
+    /** Batching of operational plans in PLANS messages. */
+    @Option(names = "--planBatching",
+            description = "Batching of plans in PLANS messages: NONE (PLAN per GTU), INSTANT (per time step) or PROGRESS "
+                    + "(per PROGRESS message, otherwise per time step).",
+            defaultValue = "NONE")
+    private PlanBatching planBatching;
+
+    /** Maximum deviation of compact paths of operational plans. */
+    @Option(names = "--planDeviation",
+            description = "Maximum deviation [m] of decimated and quantized paths in compact CPLAN and CPLANS messages, "
+                    + "rather than full paths in PLAN and PLANS messages. 0 (default) for full paths.",
+            defaultValue = "0.0")
+    private double planDeviation;
+
+    /** Simulator type. */
+    @Option(names = "--simulator",
+            description = "Simulator: AUTO (ANIMATOR with GUI, HEADLESS otherwise), ANIMATOR (DSOL real-time animator) or "
+                    + "HEADLESS (advanced on the worker thread, lock-step on PROGRESS, no GUI).",
+            defaultValue = "AUTO")
+    private SimulatorType simulatorType;
+
+    /** Do not reuse the lines of an OpenDRIVE network that was built before. */
+    @Option(names = "--noNetworkCache",
+            description = "Flatten all lines of an OpenDRIVE network on each NETWORK and RESET. By default the parsed network "
+                    + "and its flattened lines are cached by a digest of the network string, such that building the same "
+                    + "network again is faster.",
+            defaultValue = "false")
+    private boolean noNetworkCache;
+
+    /** Number of sessions. */
+    @Option(names = "--sessions",
+            description = "Number of independent sessions, each with its own simulation and thread. Session i listens on the "
+                    + "port number plus i.",
+            defaultValue = "1")
+    private int sessions;
+
+    /** Radius of the area of interest around externally controlled GTUs. */
+    @Option(names = "--interestRadius",
+            description = "Radius [m] of the area of interest around each externally controlled GTU. VEHICLE and PLAN messages "
+                    + "are only sent for GTUs inside the area, and a DELETE message is sent when a GTU leaves. Areas can also "
+                    + "be set with INTEREST messages. By default (0) no areas are set, and all GTUs are sent.",
+            defaultValue = "0.0")
+    private double interestRadius;
+
+    /** Hysteresis of the area of interest. */
+    @Option(names = "--interestHysteresis",
+            description = "Distance [m] beyond the radius of the area of interest before a GTU leaves the area.",
+            defaultValue = "20.0")
+    private double interestHysteresis;
+
+    /** Tolerance on positions to suppress plans that are reproduced by the previous plan. */
+    @Option(names = "--planTolerance",
+            description = "Tolerance [m] on positions to suppress a plan when the previous plan of the GTU describes the "
+                    + "same motion, also when extrapolated beyond the previous plan with its last acceleration. By default (0) "
+                    + "only the latest plan per GTU per time instant is sent, without deduplication.",
+            defaultValue = "0.0")
+    private double planTolerance;
+
+    /** Tolerance on accelerations to suppress plans that are reproduced by the previous plan. */
+    @Option(names = "--planAccelerationTolerance",
+            description = "Tolerance [m/s^2] on accelerations to suppress a plan when the previous plan of the GTU describes "
+                    + "the same motion, if --planTolerance is specified.",
+            defaultValue = "0.05")
+    private double planAccelerationTolerance;
+
+    /** Log level. */
+    @Option(names = "--logLevel",
+            description = "Log level: TRACE, DEBUG (all messages), INFO, WARNING, ERROR or OFF. Entries are written "
+                    + "asynchronously.",
+            defaultValue = "DEBUG")
+    private Level logLevel;
+
+    /** Sampling of log entries of sent and received messages per message type. */
+    @Option(names = "--logSample", split = ",",
+            description = "Log 1 in N messages of a type, e.g. PLAN=100,EXTERNAL=10. Other message types are all logged.")
+    private Map<String, Integer> logSample = new LinkedHashMap<>();
+
+    /** File to record all received and sent frames in. */
+    @Option(names = "--record",
+            description = "Record all received and sent frames in a memory-mapped file, e.g. for ExternalSimReplayer. With "
+                    + "multiple sessions, the session index is appended to the file name.")
+    private Path record;
+
+    /** Transport. */
+    @Option(names = "--transport",
+            description = "Transport: TCP (tcp://*:port), IPC (ipc://ots-port, for JeroMQ clients only, as JeroMQ emulates it "
+                    + "over loopback TCP which libzmq clients cannot connect to), or when embedded with EmbeddedOts, INPROC "
+                    + "(inproc://ots-port) or QUEUE (frames in queues, no socket).",
+            defaultValue = "TCP")
+    private Transport transport;
+
+    /** File to periodically append metrics to. */
+    @Option(names = "--metrics",
+            description = "Append metrics periodically to a file, as JSON lines if the file name ends with .json and as CSV "
+                    + "otherwise. With multiple sessions, the session index is appended to the file name.")
+    private Path metricsFile;
+
+    /** Interval of appending metrics. */
+    @Option(names = "--metricsInterval", description = "Interval of appending metrics [s].", defaultValue = "10.0")
+    private double metricsInterval;
+
+    /** Port of HTTP server serving metrics. */
+    @Option(names = "--metricsPort",
+            description = "Serve metrics as JSON at http://localhost:port/metrics, with the session index added to the port. "
+                    + "0 (default) for no HTTP server.",
+            defaultValue = "0")
+    private int metricsPort;
+
+    /** Index of the session of this instance. */
+    private int session = 0;
+
+    /** Context shared with an embedding client for the INPROC transport, {@code null} if not embedded. */
+    private ZContext sharedContext;
+
+    /** Queue of received frames for the QUEUE transport. */
+    private BlockingQueue<byte[]> inbox;
+
+    /** Queue of sent frames for the QUEUE transport. */
+    private BlockingQueue<byte[]> outbox;
+
+    /** Whether this session is embedded in the JVM of a client. */
+    private boolean embedded;
+
     /** Mixed in model arguments. */
     @Mixin
     private ScenarioTacticalPlannerFactory tacticalFactory = new ScenarioTacticalPlannerFactory();
@@ -166,15 +299,113 @@ public class OtsTransceiver
      */
     public static void main(final String[] args) throws Exception
     {
-        new OtsTransceiver(args).start();
+        OtsTransceiver transceiver = new OtsTransceiver(args);
+        int sessions = transceiver.sessions;
+        Throw.when(sessions < 1, IllegalArgumentException.class, "Number of sessions should be at least 1.");
+        Throw.when(!transceiver.transport.isExternal(), IllegalArgumentException.class,
+                "Transport %s is only available when embedded with EmbeddedOts.", transceiver.transport);
+        Throw.when(transceiver.logSample.values().stream().anyMatch((n) -> n < 1), IllegalArgumentException.class,
+                "Log sampling should be at least 1.");
+        // hot paths should not wait for console output
+        for (Writer writer : CategoryLogger.getWriters().toCollection())
+        {
+            CategoryLogger.removeWriter(writer);
+        }
+        CategoryLogger.addWriter(LOG_WRITER);
+        ACTIVE_SESSIONS.set(sessions);
+        for (int i = 0; i < sessions; i++)
+        {
+            // each session parses the arguments, such that it has its own mixed in tactical planner factory
+            OtsTransceiver sessionTransceiver = i == 0 ? transceiver : new OtsTransceiver(args);
+            sessionTransceiver.session = i;
+            sessionTransceiver.port += i;
+            sessionTransceiver.start();
+        }
     }
 
     /**
      * Starts worker thread.
+     * @return worker thread
+     */
+    private Worker start()
+    {
+        Worker worker = new Worker();
+        if (this.sessions > 1)
+        {
+            worker.setName("Session " + this.session);
+        }
+        worker.start();
+        return worker;
+    }
+
+    /**
+     * Starts a session in the JVM of a client, which exchanges frames through an inproc socket in a shared context, or
+     * through queues. The JVM is not exited when the session terminates.
+     * @param context context in which the INPROC transport binds, may be {@code null} for the QUEUE transport
+     * @param inboundQueue queue of frames for OTS for the QUEUE transport, may be {@code null} for the INPROC transport
+     * @param outboundQueue queue of frames from OTS for the QUEUE transport, may be {@code null} for the INPROC transport
+     * @return worker thread, with its sockets set up
+     * @throws InterruptedException when interrupted while waiting for the worker to set up its sockets
+     */
+    Worker startEmbedded(final ZContext context, final BlockingQueue<byte[]> inboundQueue,
+            final BlockingQueue<byte[]> outboundQueue) throws InterruptedException
+    {
+        Throw.when(this.transport.isExternal(), IllegalArgumentException.class,
+                "Transport %s is not available when embedded, use INPROC or QUEUE.", this.transport);
+        this.embedded = true;
+        this.sharedContext = context;
+        this.inbox = inboundQueue;
+        this.outbox = outboundQueue;
+        Worker worker = start();
+        worker.started.await();
+        return worker;
+    }
+
+    /**
+     * Returns the transport.
+     * @return transport
      */
-    private void start()
+    Transport getTransport()
     {
-        new Worker().start();
+        return this.transport;
+    }
+
+    /**
+     * Returns a TERMINATE message from the client, with which an embedding client can end the session.
+     * @return bytes of a TERMINATE message
+     * @throws Sim0MQException on message encoding exception
+     * @throws SerializationException on message encoding exception
+     */
+    byte[] encodeTerminate() throws Sim0MQException, SerializationException
+    {
+        return Sim0MQMessage.encodeUTF8(this.bigEndian, this.federation, this.client, this.ots, "TERMINATE", 0, new Object[0]);
+    }
+
+    /**
+     * Returns the port number, which also identifies the endpoint of the IPC and INPROC transports.
+     * @return port number
+     */
+    int getPort()
+    {
+        return this.port;
+    }
+
+    /**
+     * Returns the endpoint of a session.
+     * @param transport transport
+     * @param port port number of the session
+     * @param bind whether the endpoint is to bind, rather than to connect
+     * @return endpoint, {@code null} for the QUEUE transport
+     */
+    static String endpoint(final Transport transport, final int port, final boolean bind)
+    {
+        return switch (transport)
+        {
+            case TCP -> bind ? "tcp://*:" + port : "tcp://localhost:" + port;
+            case IPC -> "ipc://ots-" + port;
+            case INPROC -> "inproc://ots-" + port;
+            case QUEUE -> null;
+        };
     }
 
     /**
@@ -198,11 +429,38 @@ public class OtsTransceiver
         /** the socket. */
         private ZMQ.Socket responder;
 
+        /** Socket on which the worker receives wake-up signals when messages are queued. */
+        private ZMQ.Socket wakeUpReceiver;
+
+        /** Socket on which threads that queue messages signal the worker. */
+        private ZMQ.Socket wakeUpSender;
+
+        /** Whether a wake-up signal was sent that the worker did not yet process. */
+        private final AtomicBoolean wakeUpPending = new AtomicBoolean(false);
+
+        /** Recorder of received and sent frames, {@code null} if not recording. */
+        private FrameRecorder recorder;
+
+        /** Metrics of the session, which are also exposed through JMX. */
+        private final TransceiverMetrics metrics = new TransceiverMetrics(OtsTransceiver.this.session);
+
+        /** Time to decode the message that is being handled [ns]. */
+        private long decodeTime;
+
+        /** Time to simulate for the message that is being handled [ns]. */
+        private long simulateTime;
+
         /** Messages to be sent. */
         private ConcurrentLinkedQueue<QueuedMessage> queue = new ConcurrentLinkedQueue<>();
 
-        /** Next message id. */
-        private int messageId = 0;
+        /** Next message id, assigned on the worker thread and on the simulation thread. */
+        private final AtomicInteger messageId = new AtomicInteger();
+
+        /** Whether messages are logged, i.e. whether the log level is DEBUG or TRACE. */
+        private boolean logDebug;
+
+        /** Number of messages per sampled message type. */
+        private final Map<String, AtomicLong> logCounters = new LinkedHashMap<>();
 
         /** Last OD matrix sent. */
         private OdMatrixJson lastOdJson;
@@ -225,12 +483,24 @@ public class OtsTransceiver
         /** GTU spawner. */
         private GtuSpawnerOd gtuSpawner;
 
-        /** Simulator. */
-        private OtsAnimator simulator;
+        /** Simulator, an {@code OtsAnimator} or, when headless, a {@code LockStepSimulator}. */
+        private OtsSimulatorInterface simulator;
+
+        /** Whether the headless simulator is running real-time after a START message. */
+        private boolean realTime;
+
+        /** System time in ns at which the simulation time would have been zero when running real-time. */
+        private long realTimeOrigin;
 
         /** Network. */
         private RoadNetwork network;
 
+        /** Time it took to set up the last simulation [ms]. */
+        private double setupTime;
+
+        /** Whether the network of the last simulation reused the flattened lines of an earlier build. */
+        private boolean setupCached;
+
         /** Application. */
         private OtsSimulationApplication<AbstractOtsModel> app;
 
@@ -252,6 +522,9 @@ public class OtsTransceiver
         /** Ids of GTUs that are externally deleted, i.e. do not sent back a delete message. */
         private Set<String> deleteGtuIds = new LinkedHashSet<>();
 
+        /** Area of interest, which tracks GTUs generated by OTS. */
+        private InterestArea interestArea;
+
         /** GSON builder to parser JSON strings. */
         private Gson gson = DefaultGson.GSON;
 
@@ -261,198 +534,635 @@ public class OtsTransceiver
         /** Message id of the last progress message. */
         private int progressMessageId;
 
+        /** Plans to be sent in a PLANS message. */
+        private final PlanBatch planBatch = new PlanBatch();
+
+        /** Plans staged in the current time instant, before they are sent or batched. */
+        private PlanCoalescer planCoalescer;
+
+        /** Latest received states of externally controlled GTUs and active mode objects, before they are applied. */
+        private final ExternalStateMailbox externalStates = new ExternalStateMailbox();
+
+        /** Encoder for messages from the simulation, used on the simulation thread. */
+        private Sim0mqEncoder simulationEncoder;
+
+        /** Codec of compact paths of plans, used on the simulation thread, {@code null} for full paths. */
+        private PlanPathCodec planPathCodec;
+
+        /** Encoder for messages sent directly from the worker thread. */
+        private Sim0mqEncoder workerEncoder;
+
+        /** Reader of received messages. */
+        private final Sim0mqReader reader = new Sim0mqReader();
+
+        /** Reader of the message type of sent messages for metrics, used on the worker thread. */
+        private final Sim0mqReader sentReader = new Sim0mqReader();
+
+        /** Released when the sockets are set up. */
+        private final CountDownLatch started = new CountDownLatch(1);
+
         /** {@inheritDoc} */
         @Override
         public void run()
         {
-            this.context = new ZContext(1);
-            this.responder = this.context.createSocket(SocketType.PAIR);
-            this.responder.bind("tcp://*:" + port);
-            CategoryLogger.setAllLogLevel(Level.DEBUG);
-            CategoryLogger.setAllLogMessageFormat("[{date: YYYY-MM-dd HH:mm:ss.SSS}] {level}: {message}");
+            this.context = OtsTransceiver.this.sharedContext != null ? OtsTransceiver.this.sharedContext : new ZContext(1);
+            if (OtsTransceiver.this.transport != Transport.QUEUE)
+            {
+                this.responder = this.context.createSocket(SocketType.PAIR);
+                this.responder.bind(endpoint(OtsTransceiver.this.transport, port, true));
+            }
+            String wakeUpEndpoint = "inproc://wakeup-" + System.identityHashCode(this);
+            this.wakeUpReceiver = this.context.createSocket(SocketType.PAIR);
+            this.wakeUpReceiver.bind(wakeUpEndpoint);
+            this.wakeUpSender = this.context.createSocket(SocketType.PAIR);
+            this.wakeUpSender.connect(wakeUpEndpoint);
+            this.started.countDown();
+            this.simulationEncoder = new Sim0mqEncoder(OtsTransceiver.this.bigEndian, OtsTransceiver.this.federation,
+                    OtsTransceiver.this.ots, OtsTransceiver.this.client);
+            this.workerEncoder = new Sim0mqEncoder(OtsTransceiver.this.bigEndian, OtsTransceiver.this.federation,
+                    OtsTransceiver.this.ots, OtsTransceiver.this.client);
+            this.planPathCodec =
+                    OtsTransceiver.this.planDeviation > 0.0 ? new PlanPathCodec(OtsTransceiver.this.planDeviation) : null;
+            this.planCoalescer =
+                    new PlanCoalescer(OtsTransceiver.this.planTolerance, OtsTransceiver.this.planAccelerationTolerance);
+            this.logDebug = OtsTransceiver.this.logLevel.ordinal() <= Level.DEBUG.ordinal();
+            OtsTransceiver.this.logSample.forEach((type, n) -> this.logCounters.put(type, new AtomicLong()));
+            CategoryLogger.setAllLogLevel(OtsTransceiver.this.logLevel);
+            CategoryLogger.setAllLogMessageFormat(OtsTransceiver.this.sessions > 1
+                    ? "[{date: YYYY-MM-dd HH:mm:ss.SSS}] {level}: {thread}: {message}"
+                    : "[{date: YYYY-MM-dd HH:mm:ss.SSS}] {level}: {message}");
             CategoryLogger.always().debug("Ots is running");
+            if (OtsTransceiver.this.record != null)
+            {
+                Path file = OtsTransceiver.this.sessions > 1 ? OtsTransceiver.this.record
+                        .resolveSibling(OtsTransceiver.this.record.getFileName() + "." + OtsTransceiver.this.session)
+                        : OtsTransceiver.this.record;
+                try
+                {
+                    this.recorder = new FrameRecorder(file);
+                    CategoryLogger.always().info("Ots is recording frames in {}", file);
+                }
+                catch (IOException ex)
+                {
+                    CategoryLogger.always().error(ex, "Ots cannot record frames in {}", file);
+                }
+            }
+            Path metricsFile = OtsTransceiver.this.metricsFile == null || OtsTransceiver.this.sessions <= 1
+                    ? OtsTransceiver.this.metricsFile : OtsTransceiver.this.metricsFile
+                            .resolveSibling(OtsTransceiver.this.metricsFile.getFileName() + "." + OtsTransceiver.this.session);
+            this.metrics.start(metricsFile, OtsTransceiver.this.metricsInterval,
+                    OtsTransceiver.this.metricsPort > 0 ? OtsTransceiver.this.metricsPort + OtsTransceiver.this.session : 0);
 
             try
             {
                 // Note on synchronicity and possible dead-locks:
                 // OTS is single-threaded. All changes during the simulation should be scheduled in the simulator. All messages
-                // sent back from a notification from simulation, should be queued for the Worker thread in the queue.
-                while (!Thread.currentThread().isInterrupted())
+                // sent back from a notification from simulation, should be queued for the Worker thread in the queue, which
+                // wakes up the Worker thread through the wake-up socket.
+                ZMQ.Poller poller = this.context.createPoller(2);
+                // with the QUEUE transport, received frames are signaled through the wake-up socket
+                int responderIndex = this.responder == null ? -1 : poller.register(this.responder, ZMQ.Poller.POLLIN);
+                int wakeUpIndex = poller.register(this.wakeUpReceiver, ZMQ.Poller.POLLIN);
+                boolean terminate = false;
+                while (!terminate && !Thread.currentThread().isInterrupted())
                 {
-                    // Wait for next request from the client
-                    byte[] request = null;
-                    request = this.responder.recv(ZMQ.DONTWAIT);
-                    while (request == null)
+                    // Wait, without using resources, for a request from the client, for queued messages, or for the next event
+                    // when running the headless simulator real-time
+                    poller.poll(realTimeTimeout());
+                    if (poller.pollin(wakeUpIndex))
                     {
-                        QueuedMessage send = this.queue.poll();
-                        while (send != null)
-                        {
-                            this.responder.send(send.message(), ZMQ.DONTWAIT);
-                            if (send.log() != null)
-                            {
-                                CategoryLogger.always().debug("[q] " + send.log());
-                            }
-                            send = this.queue.poll();
-                        }
-
-                        try
-                        {
-                            // In order to allow resources to go to other processes, we sleep before checking again
-                            Thread.sleep(3);
-                        }
-                        catch (InterruptedException e)
+                        while (this.wakeUpReceiver.recv(ZMQ.DONTWAIT) != null)
                         {
+                            // signals carry no content
                         }
-                        request = this.responder.recv(ZMQ.DONTWAIT);
+                        // reset before sending, so messages queued while sending result in a new signal
+                        this.wakeUpPending.set(false);
                     }
-                    // Sim0MQMessage message = Sim0MQMessage.decode(request);
-                    Object[] array = TypedMessage.decode(request, OBJECT_DECODERS,
-                            request[11] == 1 ? EndianUtil.BIG_ENDIAN : EndianUtil.LITTLE_ENDIAN);
-                    Sim0MQMessage message = new Sim0MQMessage(array, array.length - 8, array[5]);
-                    if ("EXTERNAL".equals(message.getMessageTypeId()))
+                    sendQueuedMessages();
+                    if (this.responder == null || poller.pollin(responderIndex))
                     {
-                        Object[] payload = message.createObjectArray();
-                        int index = 8;
-                        String id = (String) payload[index++];
-                        Length x = (Length) payload[index++];
-                        Length y = (Length) payload[index++];
-                        Direction direction = (Direction) payload[index++];
-                        Speed speed = (Speed) payload[index++];
-                        Acceleration acceleration = (Acceleration) payload[index++];
-                        OrientedPoint2d loc = new OrientedPoint2d(x.si, y.si, direction.si);
-                        if (this.activeIds.containsKey(id))
+                        byte[] request = receive();
+                        while (request != null && !terminate)
                         {
-                            this.simulator.scheduleEventNow(this, "updateActiveModeObject", new Object[] {id, loc, speed});
+                            record(true, request);
+                            long start = System.nanoTime();
+                            this.simulateTime = 0L;
+                            terminate = !handleMessage(request);
+                            this.metrics.getSchedule()
+                                    .record(System.nanoTime() - start - this.decodeTime - this.simulateTime);
+                            request = terminate ? null : receive();
                         }
-                        else
-                        {
-                            this.simulator.scheduleEventNow(this, "scheduledDeadReckoning",
-                                    new Object[] {id, loc, speed, acceleration});
-                        }
-                        CategoryLogger.always().debug("Ots received EXTERNAL message for GTU " + id);
-                    }
-                    else if ("VEHICLE".equals(message.getMessageTypeId()))
-                    {
-                        Object[] payload = message.createObjectArray();
-                        int index = 8;
-                        String id = (String) payload[index++];
-                        CategoryLogger.always().debug("Ots received VEHICLE message for GTU " + id);
-                        generateVehicle(payload, true);
-                    }
-                    else if ("MODE".equals(message.getMessageTypeId()))
-                    {
-                        Object[] payload = message.createObjectArray();
-                        String id = (String) payload[8];
-                        CategoryLogger.always().debug("Ots received MODE message for GTU " + id);
-                        String mode = (String) payload[9];
-                        this.simulator.scheduleEventNow(this, "scheduledChangeControlMode", new Object[] {id, mode});
-                    }
-                    else if ("COMMAND".equals(message.getMessageTypeId()))
-                    {
-                        Object[] payload = message.createObjectArray();
-                        String id = (String) payload[8];
-                        CategoryLogger.always().debug("Ots received COMMAND message for GTU " + id);
-                        String json = (String) payload[9];
-                        this.simulator.scheduleEventNow(this, "scheduledPerformCommand", new Object[] {id, json});
-                    }
-                    else if ("DELETE".equals(message.getMessageTypeId()))
-                    {
-                        Object[] payload = message.createObjectArray();
-                        String id = (String) payload[8];
-                        CategoryLogger.always().debug("Ots received DELETE message for GTU " + id);
-                        this.deleteGtuIds.add(id);
-                        this.simulator.scheduleEventNow(this, "scheduledDelete", new Object[] {id});
-                    }
-                    else if ("ROUTES".equals(message.getMessageTypeId()))
-                    {
-                        CategoryLogger.always().debug("Ots received ROUTES message");
-                        Object[] payload = message.createObjectArray();
-                        this.lastRoutesJson = DefaultGson.GSON.fromJson((String) payload[8], RoutesJson.class);
-                        sentReadyMessage((int) message.createObjectArray()[6], false);
                     }
-                    else if ("ODMATRIX".equals(message.getMessageTypeId()))
+                    if (this.realTime && !terminate)
                     {
-                        CategoryLogger.always().debug("Ots received ODMATRIX message");
-                        Object[] payload = message.createObjectArray();
-                        this.lastOdJson = DefaultGson.GSON.fromJson((String) payload[8], OdMatrixJson.class);
-                        sentReadyMessage((int) message.createObjectArray()[6], false);
+                        advanceRealTime();
                     }
-                    else if ("NETWORK".equals(message.getMessageTypeId()))
-                    {
-                        CategoryLogger.always().debug("Ots received NETWORK message");
-                        this.lastNetworkMessage = message;
-                        setupSimulation();
-                        sentReadyMessage((int) message.createObjectArray()[6], false);
-                    }
-                    else if ("START".equals(message.getMessageTypeId()))
+                }
+            }
+            catch (Sim0MQException | SerializationException | NumberFormatException | GtuException | OtsGeometryException
+                    | NetworkException | RemoteException | DsolException | OtsDrawingException | SimRuntimeException
+                    | NamingException | ParameterException | JAXBException | SAXException | ParserConfigurationException
+                    | IllegalAccessException | InvocationTargetException e)
+            {
+                e.printStackTrace();
+            }
+            LatencyHistogram queueLatency = this.metrics.getQueueing();
+            if (queueLatency.getCount() > 0)
+            {
+                CategoryLogger.always().debug(String.format("Queueing latency of %d messages: mean %.3fms, max %.3fms",
+                        queueLatency.getCount(), queueLatency.getMean(), queueLatency.getMax()));
+            }
+            LatencyHistogram stepLatency = this.metrics.getStep();
+            if (stepLatency.getCount() > 0)
+            {
+                CategoryLogger.always().debug(String.format("Step latency of %d steps: mean %.3fms, max %.3fms",
+                        stepLatency.getCount(), stepLatency.getMean(), stepLatency.getMax()));
+            }
+            this.metrics.stop();
+            if (this.planCoalescer.getCoalesced() > 0 || this.planCoalescer.getSuppressed() > 0)
+            {
+                CategoryLogger.always().debug(String.format("Plans not sent: %d coalesced, %d suppressed",
+                        this.planCoalescer.getCoalesced(), this.planCoalescer.getSuppressed()));
+            }
+            if (OtsTransceiver.this.tacticalFactory.getDemandMemoization().getSteps() > 0)
+            {
+                CategoryLogger.always().debug(OtsTransceiver.this.tacticalFactory.getDemandMemoization().getSummary());
+            }
+            if (this.planPathCodec != null && this.planPathCodec.getPaths() > 0)
+            {
+                CategoryLogger.always().debug(this.planPathCodec.getSummary());
+            }
+            if (this.externalStates.getDropped() > 0)
+            {
+                CategoryLogger.always().debug(String.format("External states not applied: %d superseded",
+                        this.externalStates.getDropped()));
+            }
+            if (this.recorder != null)
+            {
+                try
+                {
+                    this.recorder.close();
+                    CategoryLogger.always().debug(String.format("Recorded %d frames, %d bytes", this.recorder.getFrames(),
+                            this.recorder.getSize()));
+                }
+                catch (IOException ex)
+                {
+                    CategoryLogger.always().error(ex, "Ots cannot close recording");
+                }
+            }
+            this.wakeUpSender.close();
+            this.wakeUpReceiver.close();
+            if (this.responder != null)
+            {
+                this.responder.close();
+            }
+            if (OtsTransceiver.this.sharedContext == null)
+            {
+                this.context.destroy();
+                this.context.close();
+            }
+            CategoryLogger.always().debug("Ots terminated");
+            if (OtsTransceiver.this.embedded)
+            {
+                // the client owns the JVM
+                return;
+            }
+            if (ACTIVE_SESSIONS.decrementAndGet() == 0)
+            {
+                try
+                {
+                    LOG_WRITER.close();
+                }
+                catch (Exception ex)
+                {
+                    ex.printStackTrace();
+                }
+                System.exit(0);
+            }
+        }
+
+        /**
+         * Returns the poll timeout until the next event when running the headless simulator real-time.
+         * @return poll timeout until the next event [ms], -1 (indefinitely) if not running real-time
+         */
+        private long realTimeTimeout()
+        {
+            if (!this.realTime)
+            {
+                return -1;
+            }
+            // limited, such that the simulation time never lags far behind when new events are scheduled from messages
+            if (this.simulator.getEventList().isEmpty())
+            {
+                return MAX_REAL_TIME_TIMEOUT;
+            }
+            double next = this.simulator.getEventList().first().getAbsoluteExecutionTime().si;
+            long wait = (this.realTimeOrigin + (long) (next * 1e9) - System.nanoTime()) / 1_000_000L;
+            return Math.max(0L, Math.min(wait, MAX_REAL_TIME_TIMEOUT));
+        }
+
+        /**
+         * Advances the headless simulator up to the current wall-clock time, when running real-time. Messages from events are
+         * sent immediately.
+         */
+        private void advanceRealTime()
+        {
+            double now = (System.nanoTime() - this.realTimeOrigin) / 1e9;
+            double end = this.simulator.getReplication().getEndTime().si;
+            if (now >= end)
+            {
+                now = end;
+                this.realTime = false;
+                CategoryLogger.always().debug("Ots reached the end of the simulation");
+            }
+            if (now > this.simulator.getSimulatorTime().si)
+            {
+                long start = System.nanoTime();
+                ((LockStepSimulator) this.simulator).advanceTo(Duration.instantiateSI(now));
+                this.metrics.getSimulate().recordSince(start);
+                this.metrics.simulationTime(now);
+                sendQueuedMessages();
+            }
+        }
+
+        /**
+         * Sends all queued messages, and logs their queueing latency.
+         */
+        private void sendQueuedMessages()
+        {
+            QueuedMessage send = this.queue.poll();
+            while (send != null)
+            {
+                send(send.message());
+                this.metrics.dequeued(send.queueTime());
+                if (send.log() != null)
+                {
+                    double latency = (System.nanoTime() - send.queueTime()) / 1_000_000.0;
+                    CategoryLogger.always().debug("[q] {} (queued {}ms)", send.log(), String.format("%.3f", latency));
+                }
+                send = this.queue.poll();
+            }
+        }
+
+        /**
+         * Sends a frame to the client, and records it if recording. This should only be called by the worker thread.
+         * @param frame frame bytes
+         */
+        private void send(final byte[] frame)
+        {
+            if (this.responder != null)
+            {
+                this.responder.send(frame, ZMQ.DONTWAIT);
+            }
+            else
+            {
+                OtsTransceiver.this.outbox.add(frame);
+            }
+            record(false, frame);
+            try
+            {
+                this.metrics.sent(this.sentReader.wrap(frame).getMessageType(), frame.length);
+            }
+            catch (SerializationException ex)
+            {
+                // frames are encoded by OTS, this should not happen
+                this.metrics.sent("UNKNOWN", frame.length);
+            }
+        }
+
+        /**
+         * Receives a frame from the client, without waiting. This should only be called by the worker thread.
+         * @return frame bytes, {@code null} if no frame was received
+         */
+        private byte[] receive()
+        {
+            return this.responder != null ? this.responder.recv(ZMQ.DONTWAIT) : OtsTransceiver.this.inbox.poll();
+        }
+
+        /**
+         * Records a received or sent frame, if recording. Recording stops if the file cannot be written.
+         * @param inbound whether the frame was received, rather than sent
+         * @param frame frame bytes
+         */
+        private void record(final boolean inbound, final byte[] frame)
+        {
+            if (this.recorder != null)
+            {
+                try
+                {
+                    this.recorder.record(inbound, frame);
+                }
+                catch (IOException ex)
+                {
+                    try
                     {
-                        CategoryLogger.always().debug("Ots received START message");
-                        this.simulator.setSpeedFactor(1.0);
-                        if (this.simulator != null && !this.simulator.isStartingOrRunning())
-                        {
-                            this.simulator.start();
-                        }
+                        this.recorder.close();
                     }
-                    else if ("STOP".equals(message.getMessageTypeId()))
+                    catch (IOException | UncheckedIOException closeException)
                     {
-                        CategoryLogger.always().debug("Ots received STOP message");
-                        stopSimulation();
-                        clearSimulationSetupData();
+                        ex.addSuppressed(closeException);
                     }
-                    else if ("RESET".equals(message.getMessageTypeId()))
+                    CategoryLogger.always().error(ex, "Ots stops recording frames");
+                    this.recorder = null;
+                }
+            }
+        }
+
+        /**
+         * Queues a message to be sent by the worker thread, and wakes up the worker thread if required. This method may be
+         * called from any thread.
+         * @param message bytes of the message
+         * @param log log entry to print when the message is sent, may be {@code null}
+         * @param encodeStart value of {@code System.nanoTime()} before the message was encoded
+         */
+        private void queueMessage(final byte[] message, final String log, final long encodeStart)
+        {
+            this.metrics.getEncode().recordSince(encodeStart);
+            this.queue.add(new QueuedMessage(message, log, System.nanoTime()));
+            this.metrics.queued();
+            wakeUp();
+        }
+
+        /**
+         * Wakes up the worker thread, if no wake-up signal is pending. This may be called from any thread, e.g. by an
+         * embedding client after it added a frame to the inbound queue.
+         */
+        void wakeUp()
+        {
+            if (this.wakeUpPending.compareAndSet(false, true))
+            {
+                // the socket is not thread-safe, synchronization provides the required memory barrier between threads
+                synchronized (this.wakeUpSender)
+                {
+                    this.wakeUpSender.send(WAKE_UP, ZMQ.DONTWAIT);
+                }
+            }
+        }
+
+        /**
+         * Handles a message received from the client.
+         * @param request bytes of the message
+         * @return whether the worker should continue, i.e. {@code false} after a TERMINATE message
+         * @throws Sim0MQException exception
+         * @throws SerializationException exception
+         * @throws GtuException exception
+         * @throws OtsGeometryException exception
+         * @throws NetworkException exception
+         * @throws RemoteException exception
+         * @throws DsolException exception
+         * @throws OtsDrawingException exception
+         * @throws SimRuntimeException exception
+         * @throws NamingException exception
+         * @throws ParameterException exception
+         * @throws JAXBException exception
+         * @throws SAXException exception
+         * @throws ParserConfigurationException exception
+         * @throws IllegalAccessException if a parameter cannot be set
+         * @throws InvocationTargetException if a parameter cannot be set
+         */
+        private boolean handleMessage(final byte[] request) throws Sim0MQException, SerializationException, GtuException,
+                OtsGeometryException, NetworkException, RemoteException, DsolException, OtsDrawingException,
+                SimRuntimeException, NamingException, ParameterException, JAXBException, SAXException,
+                ParserConfigurationException, IllegalAccessException, InvocationTargetException
+        {
+            // Message types with a fixed schema are read lazily, others are decoded in full
+            long start = System.nanoTime();
+            String messageType = this.reader.wrap(request).getMessageType();
+            this.metrics.received(messageType, request.length);
+            this.decodeTime = System.nanoTime() - start;
+            if ("EXTERNAL".equals(messageType))
+            {
+                this.metrics.getDecode().record(this.decodeTime);
+                String id = this.reader.getString(0);
+                // active mode objects have no acceleration field
+                double acceleration = this.activeIds.containsKey(id) ? 0.0 : this.reader.getDouble(5);
+                if (this.externalStates.put(id, this.reader.getDouble(1), this.reader.getDouble(2), this.reader.getDouble(3),
+                        this.reader.getDouble(4), acceleration))
+                {
+                    this.simulator.scheduleEventNow(this, "scheduledExternalStates", new Object[] {new String[] {id}});
+                }
+                if (isLogged("EXTERNAL"))
+                {
+                    CategoryLogger.always().debug("Ots received EXTERNAL message for GTU {}", id);
+                }
+                return true;
+            }
+            if ("PROGRESS".equals(messageType))
+            {
+                this.metrics.getDecode().record(this.decodeTime);
+                Duration until = Duration.instantiateSI(this.reader.getDouble(0));
+                if (isLogged("PROGRESS"))
+                {
+                    CategoryLogger.always().debug("Ots received PROGRESS message until {}", until);
+                }
+                if (this.simulator instanceof LockStepSimulator lockStepSimulator)
+                {
+                    this.realTime = false;
+                    this.progressMessageId = this.reader.getMessageId();
+                    this.runUntil = until;
+                    long simulateStart = System.nanoTime();
+                    lockStepSimulator.advanceTo(until);
+                    this.simulateTime = System.nanoTime() - simulateStart;
+                    this.metrics.getSimulate().record(this.simulateTime);
+                    this.metrics.simulationTime(until.si);
+                    this.runUntil = null;
+                    flushPlans();
+                    // READY is encoded after all messages of the step, and the step ends when all of them are sent
+                    sentReadyMessage(this.progressMessageId, true);
+                    sendQueuedMessages();
+                    this.metrics.getStep().recordSince(start);
+                    return true;
+                }
+                OtsAnimator animator = (OtsAnimator) this.simulator;
+                animator.setSpeedFactor(1000.0);
+                while (animator.isStartingOrRunning())
+                {
+                    try
                     {
-                        CategoryLogger.always().debug("Ots received RESET message");
-                        setupSimulation();
-                        sentReadyMessage((int) message.createObjectArray()[6], false);
+                        // Simulator is still stopping from previous step
+                        System.out.println("Waiting for next PROGRESS");
+                        Thread.sleep(3);
                     }
-                    else if ("TERMINATE".equals(message.getMessageTypeId()))
+                    catch (InterruptedException e)
                     {
-                        CategoryLogger.always().debug("Ots received TERMINATE message");
-                        stopSimulation();
-                        clearSimulationSetupData();
-                        break;
                     }
-                    else if ("PROGRESS".equals(message.getMessageTypeId()))
+                }
+                this.progressMessageId = this.reader.getMessageId();
+                this.runUntil = until;
+                // minimum priority so all other events at the PROGRESS time are included
+                this.simulator.scheduleEventAbs(until, SimEventInterface.MIN_PRIORITY, () -> fireProgressedEvent());
+                this.simulator.runUpToAndIncluding(until);
+                return true;
+            }
+            Object[] array = TypedMessage.decode(request, OBJECT_DECODERS,
+                    this.reader.isBigEndian() ? EndianUtil.BIG_ENDIAN : EndianUtil.LITTLE_ENDIAN);
+            Sim0MQMessage message = new Sim0MQMessage(array, array.length - 8, array[5]);
+            this.decodeTime = System.nanoTime() - start;
+            this.metrics.getDecode().record(this.decodeTime);
+            if ("EXTERNALS".equals(message.getMessageTypeId()))
+            {
+                ExternalStates states;
+                try
+                {
+                    states = decodeExternals(message.createObjectArray());
+                }
+                catch (IllegalArgumentException ex)
+                {
+                    rejectMessage("EXTERNALS", ex.getMessage());
+                    return true;
+                }
+                int n = states.ids().length;
+                String[] ids = states.ids();
+                double[] x = states.x();
+                double[] y = states.y();
+                double[] direction = states.direction();
+                double[] speed = states.speed();
+                double[] acceleration = states.acceleration();
+                // only GTUs without a pending state need to be scheduled, others are updated in the mailbox
+                List<String> scheduled = new ArrayList<>(n);
+                for (int i = 0; i < n; i++)
+                {
+                    if (this.externalStates.put(ids[i], x[i], y[i], direction[i], speed[i], acceleration[i]))
                     {
-                        Object[] payload = message.createObjectArray();
-                        Duration until = (Duration) payload[8];
-                        CategoryLogger.always().debug("Ots received PROGRESS message until {}", until);
-                        this.simulator.setSpeedFactor(1000.0);
-                        while (this.simulator.isStartingOrRunning())
-                        {
-                            try
-                            {
-                                // Simulator is still stopping from previous step
-                                System.out.println("Waiting for next PROGRESS");
-                                Thread.sleep(3);
-                            }
-                            catch (InterruptedException e)
-                            {
-                            }
-                        }
-                        this.simulator.scheduleEventAbs(until, () -> fireProgressedEvent());
-                        this.simulator.runUpToAndIncluding(until);
-                        this.progressMessageId = (int) payload[6];
-                        this.runUntil = until;
+                        scheduled.add(ids[i]);
                     }
-                    else
+                }
+                if (!scheduled.isEmpty())
+                {
+                    this.simulator.scheduleEventNow(this, "scheduledExternalStates",
+                            new Object[] {scheduled.toArray(new String[scheduled.size()])});
+                }
+                if (isLogged("EXTERNALS"))
+                {
+                    CategoryLogger.always().debug("Ots received EXTERNALS message for {} GTUs", n);
+                }
+            }
+            else if ("VEHICLE".equals(message.getMessageTypeId()))
+            {
+                Object[] payload = message.createObjectArray();
+                int index = 8;
+                String id = (String) payload[index++];
+                CategoryLogger.always().debug("Ots received VEHICLE message for GTU {}", id);
+                generateVehicle(payload, true);
+            }
+            else if ("VEHICLES".equals(message.getMessageTypeId()))
+            {
+                Object[] payload = message.createObjectArray();
+                CategoryLogger.always().debug("Ots received VEHICLES message for {} vehicles", payload[8]);
+                generateVehicles(payload, true);
+            }
+            else if ("MODE".equals(message.getMessageTypeId()))
+            {
+                Object[] payload = message.createObjectArray();
+                String id = (String) payload[8];
+                CategoryLogger.always().debug("Ots received MODE message for GTU {}", id);
+                String mode = (String) payload[9];
+                this.externalStates.seal(id); // a pending state is applied before, and a later state after, the mode change
+                this.simulator.scheduleEventNow(this, "scheduledChangeControlMode", new Object[] {id, mode});
+            }
+            else if ("COMMAND".equals(message.getMessageTypeId()))
+            {
+                Object[] payload = message.createObjectArray();
+                String id = (String) payload[8];
+                if (isLogged("COMMAND"))
+                {
+                    CategoryLogger.always().debug("Ots received COMMAND message for GTU {}", id);
+                }
+                String json = (String) payload[9];
+                this.externalStates.seal(id);
+                this.simulator.scheduleEventNow(this, "scheduledPerformCommand", new Object[] {id, json});
+            }
+            else if ("INTEREST".equals(message.getMessageTypeId()))
+            {
+                // String id, Length radius (centre follows GTU with id), or String id, Length x, Length y, Length radius
+                Object[] payload = message.createObjectArray();
+                boolean following = payload.length < 12;
+                if (!(payload.length == 10 || payload.length == 12) || !(payload[8] instanceof String id)
+                        || !isLengths(payload, 9, payload.length))
+                {
+                    rejectMessage("INTEREST", "expected String id and Length radius, or String id and Length x, y and radius");
+                    return true;
+                }
+                Length x = following ? null : (Length) payload[9];
+                Length y = following ? null : (Length) payload[10];
+                Length radius = (Length) payload[following ? 9 : 11];
+                CategoryLogger.always().debug("Ots received INTEREST message for {} {}", following ? "GTU" : "centre", id);
+                this.simulator.scheduleEventNow(this, "scheduledInterest", new Object[] {id, x, y, radius});
+            }
+            else if ("DELETE".equals(message.getMessageTypeId()))
+            {
+                Object[] payload = message.createObjectArray();
+                String id = (String) payload[8];
+                CategoryLogger.always().debug("Ots received DELETE message for GTU {}", id);
+                this.deleteGtuIds.add(id);
+                this.externalStates.seal(id);
+                this.simulator.scheduleEventNow(this, "scheduledDelete", new Object[] {id});
+            }
+            else if ("ROUTES".equals(message.getMessageTypeId()))
+            {
+                CategoryLogger.always().debug("Ots received ROUTES message");
+                Object[] payload = message.createObjectArray();
+                this.lastRoutesJson = DefaultGson.GSON.fromJson((String) payload[8], RoutesJson.class);
+                sentReadyMessage((int) message.createObjectArray()[6], false);
+            }
+            else if ("ODMATRIX".equals(message.getMessageTypeId()))
+            {
+                CategoryLogger.always().debug("Ots received ODMATRIX message");
+                Object[] payload = message.createObjectArray();
+                this.lastOdJson = DefaultGson.GSON.fromJson((String) payload[8], OdMatrixJson.class);
+                sentReadyMessage((int) message.createObjectArray()[6], false);
+            }
+            else if ("NETWORK".equals(message.getMessageTypeId()))
+            {
+                CategoryLogger.always().debug("Ots received NETWORK message");
+                this.lastNetworkMessage = message;
+                setupSimulation();
+                sentReadyMessage((int) message.createObjectArray()[6], false);
+                logSetup("NETWORK");
+            }
+            else if ("START".equals(message.getMessageTypeId()))
+            {
+                CategoryLogger.always().debug("Ots received START message");
+                if (this.simulator instanceof OtsAnimator animator)
+                {
+                    animator.setSpeedFactor(1.0);
+                    if (!animator.isStartingOrRunning())
                     {
-                        System.err.println("Cannot process a " + message.getMessageTypeId() + " message.");
+                        animator.start();
                     }
                 }
+                else if (this.simulator != null && !this.realTime)
+                {
+                    // the headless simulator is advanced real-time in the worker loop
+                    this.realTimeOrigin = System.nanoTime() - (long) (this.simulator.getSimulatorTime().si * 1e9);
+                    this.realTime = true;
+                }
             }
-            catch (Sim0MQException | SerializationException | NumberFormatException | GtuException | OtsGeometryException
-                    | NetworkException | RemoteException | DsolException | OtsDrawingException | SimRuntimeException
-                    | NamingException | ParameterException | JAXBException | SAXException | ParserConfigurationException
-                    | IllegalAccessException | InvocationTargetException e)
+            else if ("STOP".equals(message.getMessageTypeId()))
             {
-                e.printStackTrace();
+                CategoryLogger.always().debug("Ots received STOP message");
+                stopSimulation();
+                clearSimulationSetupData();
             }
-            this.responder.close();
-            this.context.destroy();
-            this.context.close();
-            CategoryLogger.always().debug("Ots terminated");
-            System.exit(0);
+            else if ("RESET".equals(message.getMessageTypeId()))
+            {
+                CategoryLogger.always().debug("Ots received RESET message");
+                setupSimulation();
+                sentReadyMessage((int) message.createObjectArray()[6], false);
+                logSetup("RESET");
+            }
+            else if ("TERMINATE".equals(message.getMessageTypeId()))
+            {
+                CategoryLogger.always().debug("Ots received TERMINATE message");
+                stopSimulation();
+                clearSimulationSetupData();
+                return false;
+            }
+            else
+            {
+                System.err.println("Cannot process a " + message.getMessageTypeId() + " message.");
+            }
+            return true;
         }
 
         /**
@@ -533,7 +1243,6 @@ public class OtsTransceiver
          * @param position position
          * @param mode mode
          * @param parameterMap map of parameters
-         * @param <T> helper casting type
          * @throws GtuException when initial GTU values are not correct
          * @throws OtsGeometryException when the initial path is wrong
          * @throws NetworkException when the GTU cannot be placed on the given position
@@ -541,85 +1250,214 @@ public class OtsTransceiver
          * @throws IllegalAccessException if a parameter cannot be set
          */
         @SuppressWarnings("checkstyle:parameternumber")
-        private <T extends Enum<T>> void spawnGtu(final String id, final GtuType gtuType, final Length vehicleLength,
+        private void spawnGtu(final String id, final GtuType gtuType, final Length vehicleLength,
                 final Length vehicleWidth, final Length refToNose, final Route route, final Speed initSpeed,
                 final OrientedPoint2d position, final String mode, final Map<String, Object> parameterMap)
                 throws GtuException, OtsGeometryException, NetworkException, IllegalAccessException, InvocationTargetException
         {
             Set<ParameterType<?>> setParameters = new LinkedHashSet<>();
-            for (Entry<String, Object> parameterEntry : parameterMap.entrySet())
+            List<Setting> settings = new ArrayList<>();
+            try
             {
-                String parameter = parameterEntry.getKey();
-                Object value = parameterEntry.getValue();
-                boolean singleShot = false;
-                if (parameter.startsWith("--"))
+                for (Entry<String, Object> parameterEntry : parameterMap.entrySet())
                 {
-                    if (!singleShot)
+                    if (parameterEntry.getKey().startsWith("--"))
                     {
-                        OtsTransceiver.this.tacticalFactory.setSingleShotMode();
-                        singleShot = true;
+                        resolveSetting(parameterEntry.getKey(), parameterEntry.getValue(), "vehicle " + id, settings);
                     }
-                    String methodName = "set" + parameter.substring(2).toLowerCase();
-                    for (Method method : ScenarioTacticalPlannerFactory.class.getMethods())
+                    else
                     {
-                        if (method.getName().toLowerCase().equals(methodName) && method.getParameterTypes().length == 1)
-                        {
-                            if (method.getParameterTypes()[0].equals(boolean.class))
-                            {
-                                method.invoke(OtsTransceiver.this.tacticalFactory, (boolean) value);
-                                CategoryLogger.always()
-                                        .debug("Setting " + parameter + " set as " + value + " for vehicle " + id + ".");
-                            }
-                            else if (method.getParameterTypes()[0].equals(int.class))
-                            {
-                                method.invoke(OtsTransceiver.this.tacticalFactory, (int) value);
-                                CategoryLogger.always()
-                                        .debug("Setting " + parameter + " set as " + value + " for vehicle " + id + ".");
-                            }
-                            else if (method.getParameterTypes()[0].equals(double.class))
-                            {
-                                method.invoke(OtsTransceiver.this.tacticalFactory, (double) value);
-                                CategoryLogger.always()
-                                        .debug("Setting " + parameter + " set as " + value + " for vehicle " + id + ".");
-                            }
-                            else if (method.getParameterTypes()[0].isEnum())
-                            {
-                                @SuppressWarnings("unchecked")
-                                Class<T> clazz = (Class<T>) method.getParameterTypes()[0];
-                                method.invoke(OtsTransceiver.this.tacticalFactory, Enum.valueOf(clazz, (String) value));
-                                CategoryLogger.always()
-                                        .debug("Setting " + parameter + " set as " + value + " for vehicle " + id + ".");
-                            }
-                            else
-                            {
-                                CategoryLogger.always().warn("Unable to set setting " + parameter + " for vehicle " + id + ".");
-                                break;
-                            }
-                        }
+                        setParameterValue(parameterEntry.getKey(), parameterEntry.getValue(), setParameters, "vehicle " + id);
                     }
                 }
-                else
+                applySettings(settings);
+                /*-
+                 * Method notify() needs a GTU inside planGtuIds to send an OperationPlan to ExternalSim. For different modes:
+                 *  Ots: register here, spawn (plan is sent), schedule control mode change (without effect)
+                 *  Hybrid: spawn, schedule control mode change (starts dead reckoning, plan is sent)
+                 *  External: spawn, schedule control mode change (starts dead reckoning, never sent plan)
+                 * Note that dead reckoning can only be started after a spawn.
+                 */
+                if (mode.toLowerCase().equals("ots"))
                 {
-                    setParameterValue(parameter, value, setParameters, id);
+                    this.planGtuIds.add(id);
                 }
+                this.gtuSpawner.spawnGtu(id, gtuType, vehicleLength, vehicleWidth, refToNose, route, initSpeed, position);
             }
-            /*-
-             * Method notify() needs a GTU inside planGtuIds to send an OperationPlan to ExternalSim. For different modes:
-             *  Ots: register here, spawn (plan is sent), schedule control mode change (without effect)
-             *  Hybrid: spawn, schedule control mode change (starts dead reckoning, plan is sent)
-             *  External: spawn, schedule control mode change (starts dead reckoning, never sent plan)
-             * Note that dead reckoning can only be started after a spawn.
-             */
-            if (mode.toLowerCase().equals("ots"))
+            finally
             {
-                this.planGtuIds.add(id);
+                // settings and parameters should not apply to later vehicles, also when spawning fails
+                OtsTransceiver.this.tacticalFactory.resetMode();
+                setParameters.forEach((p) -> this.parameterFactory.clearParameterValue(p));
             }
-            this.gtuSpawner.spawnGtu(id, gtuType, vehicleLength, vehicleWidth, refToNose, route, initSpeed, position);
-            OtsTransceiver.this.tacticalFactory.resetMode();
-            setParameters.forEach((p) -> this.parameterFactory.clearParameterValue(p));
             scheduledChangeControlMode(id, mode);
         }
 
+        /**
+         * Generates vehicles of a VEHICLES message. This is a columnar version of VEHICLE messages, with fields: int n, n
+         * String ids, n String modes, arrays of x, y, direction and speed, n String vehicle types, arrays of length, width
+         * and distance from reference point to front (djunits vector or numeric array), n String route ids, and int numParams
+         * followed by numParams name and value pairs as in a VEHICLE message. The parameters and settings apply to all
+         * vehicles. Vehicle type, dimensions and route are ignored for active mode objects. Unlike VEHICLE messages, all
+         * vehicles are spawned in a single event, and settings are resolved only once.
+         * @param payload message payload
+         * @param addToPreStartList whether to add the message to the list of pre-start vehicle messages if not started yet
+         * @throws GtuException exception
+         * @throws OtsGeometryException exception
+         * @throws NetworkException exception
+         * @throws InvocationTargetException if a parameter cannot be set
+         * @throws IllegalAccessException if a parameter cannot be set
+         */
+        private void generateVehicles(final Object[] payload, final boolean addToPreStartList) throws GtuException,
+                OtsGeometryException, NetworkException, IllegalAccessException, InvocationTargetException
+        {
+            if (this.simulator != null && this.simulator.getSimulatorTime().gt0())
+            {
+                this.simulator.scheduleEventNow(this, "spawnVehicles", new Object[] {payload});
+            }
+            else
+            {
+                long start = System.nanoTime();
+                spawnVehicles(payload);
+                CategoryLogger.always().debug(String.format("Ots spawned %d vehicles in %.3fms", (int) payload[8],
+                        (System.nanoTime() - start) / 1_000_000.0));
+                sentReadyMessage((int) payload[6], false);
+                if (addToPreStartList)
+                {
+                    this.preStartVehiclePayloads.add(payload);
+                }
+            }
+        }
+
+        /**
+         * Spawns the vehicles of a VEHICLES message.
+         * @param payload message payload
+         * @throws GtuException when initial GTU values are not correct
+         * @throws OtsGeometryException when the initial path is wrong
+         * @throws NetworkException when a GTU cannot be placed on the given position
+         * @throws InvocationTargetException if a parameter cannot be set
+         * @throws IllegalAccessException if a parameter cannot be set
+         */
+        private void spawnVehicles(final Object[] payload)
+                throws GtuException, OtsGeometryException, NetworkException, IllegalAccessException, InvocationTargetException
+        {
+            int n = (int) payload[8];
+            int index = 9;
+            String[] ids = strings(payload, index, n);
+            index += n;
+            String[] modes = strings(payload, index, n);
+            index += n;
+            double[] x = siValues(payload[index++]);
+            double[] y = siValues(payload[index++]);
+            double[] direction = siValues(payload[index++]);
+            double[] speed = siValues(payload[index++]);
+            String[] vehicleTypes = strings(payload, index, n);
+            index += n;
+            double[] length = siValues(payload[index++]);
+            double[] width = siValues(payload[index++]);
+            double[] refToNose = siValues(payload[index++]);
+            String[] routes = strings(payload, index, n);
+            index += n;
+            int numParams = (int) payload[index++];
+            Set<ParameterType<?>> setParameters = new LinkedHashSet<>();
+            List<Setting> settings = new ArrayList<>();
+            try
+            {
+                for (int i = 0; i < numParams; i++)
+                {
+                    String parameter = (String) payload[index++];
+                    Object value = payload[index++];
+                    if (parameter.startsWith("--"))
+                    {
+                        resolveSetting(parameter, value, n + " vehicles", settings);
+                    }
+                    else
+                    {
+                        setParameterValue(parameter, value, setParameters, n + " vehicles");
+                    }
+                }
+                // settings are applied in single-shot mode, which holds until the mode is reset after all vehicles are spawned
+                applySettings(settings);
+                Map<String, GtuType> gtuTypes = new HashMap<>();
+                for (int i = 0; i < n; i++)
+                {
+                    OrientedPoint2d position = new OrientedPoint2d(x[i], y[i], direction[i]);
+                    Speed initSpeed = Speed.instantiateSI(speed[i]);
+                    if (modes[i].toLowerCase().equals("active"))
+                    {
+                        addActiveModeObject(ids[i], position, initSpeed);
+                        continue;
+                    }
+                    GtuType gtuType = gtuTypes.computeIfAbsent(vehicleTypes[i].toUpperCase(),
+                            (type) -> Defaults.getByName(GtuType.class, type.startsWith("NL.") ? type : "NL." + type));
+                    // see spawnGtu() for the order of registration, spawning and changing the control mode
+                    if (modes[i].toLowerCase().equals("ots"))
+                    {
+                        this.planGtuIds.add(ids[i]);
+                    }
+                    this.externallyGeneratedGtuId = ids[i];
+                    this.gtuSpawner.spawnGtu(ids[i], gtuType, Length.instantiateSI(length[i]),
+                            Length.instantiateSI(width[i]), Length.instantiateSI(refToNose[i]),
+                            this.network.getRoute(routes[i]), initSpeed, position);
+                    scheduledChangeControlMode(ids[i], modes[i]);
+                }
+            }
+            finally
+            {
+                // settings and parameters should not apply to later vehicles, also when spawning fails
+                OtsTransceiver.this.tacticalFactory.resetMode();
+                setParameters.forEach((p) -> this.parameterFactory.clearParameterValue(p));
+            }
+        }
+
+        /**
+         * Resolves the method and argument of a setting of the tactical planner factory.
+         * @param setting setting name, starting with "--"
+         * @param value setting value
+         * @param target description of the vehicle(s) for log messages
+         * @param settings list to which the resolved setting is added
+         */
+        private void resolveSetting(final String setting, final Object value, final String target, final List<Setting> settings)
+        {
+            for (Method method : SETTING_METHODS.getOrDefault("set" + setting.substring(2).toLowerCase(), List.of()))
+            {
+                Class<?> type = method.getParameterTypes()[0];
+                if (type.equals(boolean.class) || type.equals(int.class) || type.equals(double.class))
+                {
+                    settings.add(new Setting(method, value));
+                }
+                else if (type.isEnum())
+                {
+                    settings.add(new Setting(method, enumValue(type, (String) value)));
+                }
+                else
+                {
+                    CategoryLogger.always().warn("Unable to set setting " + setting + " for " + target + ".");
+                    break;
+                }
+                CategoryLogger.always().debug("Setting " + setting + " set as " + value + " for " + target + ".");
+            }
+        }
+
+        /**
+         * Applies settings to the tactical planner factory in single-shot mode, if there are any settings.
+         * @param settings resolved settings
+         * @throws InvocationTargetException if a setting cannot be set
+         * @throws IllegalAccessException if a setting cannot be set
+         */
+        private void applySettings(final List<Setting> settings) throws IllegalAccessException, InvocationTargetException
+        {
+            if (settings.isEmpty())
+            {
+                return;
+            }
+            OtsTransceiver.this.tacticalFactory.setSingleShotMode();
+            for (Setting setting : settings)
+            {
+                setting.method().invoke(OtsTransceiver.this.tacticalFactory, setting.argument());
+            }
+        }
+
         /**
          * Add active mode object.
          * @param id id
@@ -630,7 +1468,7 @@ public class OtsTransceiver
         private void addActiveModeObject(final String id, final OrientedPoint2d location, final Speed speed)
                 throws NetworkException
         {
-            LanePosition position = NetworkUtil.getLanePosition(this.network, location);
+            LanePosition position = this.gtuSpawner.getLanePosition(location);
             ActiveModeCrossing crossing = new ActiveModeCrossing(position, false);
             this.activeIds.put(id, crossing);
             updateActiveModeObject(id, location, speed);
@@ -656,16 +1494,16 @@ public class OtsTransceiver
          * @param parameter parameter type id
          * @param value value
          * @param setParameters set of parameters that are set, to which the parameter should be added
-         * @param vehicle id
+         * @param target description of the vehicle(s) for log messages
          */
         @SuppressWarnings("unchecked")
         private <T> void setParameterValue(final String parameter, final Object value,
-                final Set<ParameterType<?>> setParameters, final String id)
+                final Set<ParameterType<?>> setParameters, final String target)
         {
             ParameterType<T> param = (ParameterType<T>) Parameters.get(parameter);
             this.parameterFactory.setParameterValue(param, (T) value);
             CategoryLogger.always().info("Parameter " + param.getId() + " set in the parameter factory to value " + value
-                    + " for vehicle " + id + ".");
+                    + " for " + target + ".");
             setParameters.add(param);
         }
 
@@ -680,20 +1518,37 @@ public class OtsTransceiver
         }
 
         /**
-         * Method that runs scheduled in the simulator to apply dead reckoning.
-         * @param id GTU id
-         * @param loc location
-         * @param speed speed
-         * @param acceleration acceleration
+         * Method that runs scheduled in the simulator to apply the latest received states of externally controlled GTUs and
+         * active mode objects. States received after the event was scheduled, but before it runs, replace earlier states in the
+         * mailbox, such that only the latest state is applied, unless a MODE, COMMAND or DELETE message for the object was
+         * received in between. Then the later state is applied by a later event, after that of the other message.
+         * @param ids GTU or active mode object ids
          */
         @SuppressWarnings("unused") // scheduled
-        private void scheduledDeadReckoning(final String id, final OrientedPoint2d loc, final Speed speed,
-                final Acceleration acceleration)
+        private void scheduledExternalStates(final String[] ids)
         {
-            ScenarioTacticalPlanner planner = getTacticalPlanner(id);
-            if (planner != null)
+            for (String id : ids)
             {
-                planner.deadReckoning(loc, speed, acceleration);
+                ExternalStateMailbox.State state = this.externalStates.take(id);
+                if (state == null)
+                {
+                    // the mailbox was cleared for a new simulation
+                    continue;
+                }
+                OrientedPoint2d loc = new OrientedPoint2d(state.x(), state.y(), state.direction());
+                if (this.activeIds.containsKey(id))
+                {
+                    updateActiveModeObject(id, loc, Speed.instantiateSI(state.speed()));
+                }
+                else
+                {
+                    ScenarioTacticalPlanner planner = getTacticalPlanner(id);
+                    if (planner != null)
+                    {
+                        planner.deadReckoning(loc, Speed.instantiateSI(state.speed()),
+                                Acceleration.instantiateSI(state.acceleration()));
+                    }
+                }
             }
         }
 
@@ -726,6 +1581,10 @@ public class OtsTransceiver
                     if (this.externalGtuIds.remove(id))
                     {
                         getTacticalPlanner(id).stopDeadReckoning();
+                        if (OtsTransceiver.this.interestRadius > 0.0)
+                        {
+                            this.interestArea.removeCentre(id);
+                        }
                     }
                     break;
                 }
@@ -735,6 +1594,7 @@ public class OtsTransceiver
                     if (this.externalGtuIds.add(id))
                     {
                         getTacticalPlanner(id).startDeadReckoning(true);
+                        followInterest(id);
                     }
                     break;
                 }
@@ -744,6 +1604,7 @@ public class OtsTransceiver
                     if (this.externalGtuIds.add(id))
                     {
                         getTacticalPlanner(id).startDeadReckoning(false);
+                        followInterest(id);
                     }
                     break;
                 }
@@ -753,31 +1614,97 @@ public class OtsTransceiver
             }
         }
 
+        /**
+         * Lets an area of interest follow an externally controlled GTU, if an interest radius is specified.
+         * @param id GTU id
+         */
+        private void followInterest(final String id)
+        {
+            if (OtsTransceiver.this.interestRadius > 0.0)
+            {
+                OrientedPoint2d p = this.network.getGTU(id).getLocation();
+                this.interestArea.setCentre(id, p.x, p.y, OtsTransceiver.this.interestRadius, true);
+            }
+        }
+
+        /**
+         * Sets, replaces or removes a centre of the area of interest.
+         * @param id centre id, or GTU id if the centre follows a GTU
+         * @param x x coordinate, {@code null} if the centre follows a GTU
+         * @param y y coordinate, {@code null} if the centre follows a GTU
+         * @param radius radius, zero to remove the centre
+         */
+        @SuppressWarnings("unused") // scheduled
+        private void scheduledInterest(final String id, final Length x, final Length y, final Length radius)
+        {
+            if (radius.si <= 0.0)
+            {
+                this.interestArea.removeCentre(id);
+            }
+            else if (x == null)
+            {
+                Gtu gtu = this.network.getGTU(id);
+                if (gtu == null)
+                {
+                    CategoryLogger.always().warn("Unable to follow GTU {} with area of interest, it does not exist.", id);
+                    return;
+                }
+                OrientedPoint2d p = gtu.getLocation();
+                this.interestArea.setCentre(id, p.x, p.y, radius.si, true);
+            }
+            else
+            {
+                this.interestArea.setCentre(id, x.si, y.si, radius.si, false);
+            }
+        }
+
         /**
          * Notifies the external simulator that OTS is ready to start a simulation.
          * @param msgId message id of message that was processed
          * @param queued whether the message should be queued
-         * @throws RemoteException
          */
-        private void sentReadyMessage(final int msgId, final boolean queued) throws RemoteException
+        private void sentReadyMessage(final int msgId, final boolean queued)
         {
-            try
+            if (queued)
             {
-                byte[] bytes = Sim0MQMessage.encodeUTF8(OtsTransceiver.this.bigEndian, OtsTransceiver.this.federation,
-                        OtsTransceiver.this.ots, OtsTransceiver.this.client, "READY", this.messageId++, new Object[] {msgId});
-                if (queued)
-                {
-                    this.queue.add(new QueuedMessage(bytes, String.format("[%.3fs] Ots sent READY message for PROGRESS (%d)",
-                            this.simulator.getSimulatorTime().si, msgId)));
-                }
-                else
-                {
-                    this.responder.send(bytes, ZMQ.DONTWAIT);
-                }
+                long start = System.nanoTime();
+                byte[] bytes = this.simulationEncoder.encodeReady(this.messageId.getAndIncrement(), msgId);
+                queueMessage(bytes, isLogged("READY") ? String.format("[%.3fs] Ots sent READY message for PROGRESS (%d)",
+                        this.simulator.getSimulatorTime().si, msgId) : null, start);
             }
-            catch (Sim0MQException | SerializationException ex)
+            else
+            {
+                send(this.workerEncoder.encodeReady(this.messageId.getAndIncrement(), msgId));
+            }
+        }
+
+        /**
+         * Returns whether a message should be logged. This is the case if messages are logged, and if the message type is
+         * sampled, for 1 in N messages of the type. Log entries should only be built if this returns {@code true}. This may be
+         * called from any thread.
+         * @param messageType message type
+         * @return whether the message should be logged
+         */
+        private boolean isLogged(final String messageType)
+        {
+            if (!this.logDebug)
+            {
+                return false;
+            }
+            AtomicLong counter = this.logCounters.get(messageType);
+            return counter == null || counter.getAndIncrement() % OtsTransceiver.this.logSample.get(messageType) == 0;
+        }
+
+        /**
+         * Logs the time it took to set up the simulation, after the READY message was sent.
+         * @param messageType NETWORK or RESET
+         */
+        private void logSetup(final String messageType)
+        {
+            if (this.simulator != null)
             {
-                throw new RemoteException("Exception while sending operational plan.", ex);
+                CategoryLogger.always().debug(String.format("Ots sent READY message for %s, set up in %.1fms (%s network)",
+                        messageType, this.setupTime, this.setupCached ? "cached" : "new"));
             }
         }
 
@@ -801,9 +1728,15 @@ public class OtsTransceiver
          */
         private void stopSimulation()
         {
-            if (this.simulator != null && !this.simulator.isStoppingOrStopped())
+            this.realTime = false;
+            OtsSimulatorInterface stopped = this.simulator;
+            if (this.simulator != null)
             {
-                this.simulator.stop();
+                // a headless simulator is only running while advanced, and its state is dropped regardless
+                if (!this.simulator.isStoppingOrStopped())
+                {
+                    this.simulator.stop();
+                }
                 this.simulator = null;
                 this.network = null;
             }
@@ -815,6 +1748,11 @@ public class OtsTransceiver
                 this.app.dispose();
                 this.app = null;
             }
+            if (stopped != null)
+            {
+                // ends the simulator thread, which would otherwise remain in the JVM of a client embedding OTS
+                stopped.cleanUp();
+            }
         }
 
         /**
@@ -855,11 +1793,7 @@ public class OtsTransceiver
             {
                 return;
             }
-
-            // An animator supports real-time running. No GUI will be shown if no animation panel is created.
-            this.simulator = new OtsAnimator("Test animator");
-            // this.simulator.addListener(this, SimulatorInterface.STOP_EVENT);
-            this.simulator.addListener(this, PROGRESSED_EVENT);
+            long start = System.nanoTime();
 
             String simulationString;
             SimulationType simulationType;
@@ -878,26 +1812,33 @@ public class OtsTransceiver
                 simulationType =
                         (short) payload[7] > 1 ? SimulationType.valueOf((String) payload[9]) : SimulationType.OPEN_DRIVE;
             }
-            CoSimModel model = new CoSimModel(this.simulator, simulationString, simulationType);
-            Duration runtime = simulationType == null ? Duration.instantiateSI(60.0) : Duration.instantiateSI(36000.0);
-            this.simulator.initialize(Time.ZERO, Duration.ZERO, runtime, model);
+            CoSimModel model = buildModel(new NetworkKey(simulationString, simulationType));
+            this.setupCached = model.getSim0mqSimulation() instanceof OpenDriveSimulation openDrive && openDrive.isCached();
+            this.simulator = model.getSimulator();
+            // this.simulator.addListener(this, SimulatorInterface.STOP_EVENT);
+            this.simulator.addListener(this, PROGRESSED_EVENT);
             this.simulator.getReplication().setHistoryManager(
                     new HistoryManagerDevs(this.simulator, Duration.instantiateSI(5.0), Duration.instantiateSI(10.0)));
             this.network = (RoadNetwork) model.getNetwork();
             this.characteristicsGeneratorOd = model.getSim0mqSimulation().getGtuCharacteristicsGeneratorOd();
             this.parameterFactory = model.getSim0mqSimulation().getParameterFactory();
             this.gtuSpawner = new GtuSpawnerOd(this.network, this.characteristicsGeneratorOd);
+            this.planCoalescer.clear();
+            this.externalStates.clear();
+            this.interestArea = new InterestArea(OtsTransceiver.this.interestHysteresis,
+                    (gtuId) -> sendVehicleMessage(this.network.getGTU(gtuId)), (gtuId) -> sendDeleteMessage(gtuId),
+                    (gtuId) -> this.network.getGTU(gtuId).getLocation());
 
             listenToEvents();
 
-            if (OtsTransceiver.this.showGui)
+            if (OtsTransceiver.this.showGui && this.simulator instanceof OtsAnimator animator)
             {
                 GtuColorer colorer = new SwitchableGtuColorer(0, new IdGtuColorer(),
                         new SpeedGtuColorer(new Speed(150, SpeedUnit.KM_PER_HOUR)),
                         new AccelerationGtuColorer(Acceleration.instantiateSI(-6.0), Acceleration.instantiateSI(2)),
                         new SynchronizationColorer());
                 OtsAnimationPanel animationPanel = new OtsAnimationPanel(this.network.getExtent(), new Dimension(100, 100),
-                        this.simulator, model, colorer, this.network);
+                        animator, model, colorer, this.network);
                 animationPanel.enableSimulationControlButtons();
                 this.app = new OtsSimulationApplication<AbstractOtsModel>(model, animationPanel);
             }
@@ -921,9 +1862,48 @@ public class OtsTransceiver
             // Reset pre-start vehicles
             for (Object[] vehiclesPayload : this.preStartVehiclePayloads)
             {
-                generateVehicle(vehiclesPayload, false); // do not add these messages to the list
+                // do not add these messages to the list
+                if ("VEHICLES".equals(vehiclesPayload[5]))
+                {
+                    generateVehicles(vehiclesPayload, false);
+                }
+                else
+                {
+                    generateVehicle(vehiclesPayload, false);
+                }
             }
 
+            this.setupTime = (System.nanoTime() - start) / 1_000_000.0;
+            this.metrics.simulationStarted();
+        }
+
+        /**
+         * Creates a simulator, and initializes it with a model that builds the network.
+         * @param key network to build
+         * @return model, with initialized simulator
+         * @throws SimRuntimeException when the model cannot be constructed
+         * @throws NamingException when the replication cannot be created
+         */
+        private CoSimModel buildModel(final NetworkKey key) throws SimRuntimeException, NamingException
+        {
+            OtsSimulatorInterface sim;
+            if (OtsTransceiver.this.simulatorType == SimulatorType.HEADLESS
+                    || (OtsTransceiver.this.simulatorType == SimulatorType.AUTO && !OtsTransceiver.this.showGui))
+            {
+                // Events are executed on this thread, upon PROGRESS messages or real-time after a START message
+                sim = new LockStepSimulator("Headless simulator");
+            }
+            else
+            {
+                // An animator supports real-time running. No GUI will be shown if no animation panel is created.
+                sim = new OtsAnimator("Test animator");
+            }
+            CoSimModel model = new CoSimModel(sim, key.simulationString(), key.simulationType());
+            Duration runtime =
+                    key.simulationType() == null ? Duration.instantiateSI(60.0) : Duration.instantiateSI(36000.0);
+            // the replication number of the session gives it its own replication context
+            sim.initialize(Time.ZERO, Duration.ZERO, runtime, model, OtsTransceiver.this.session);
+            return model;
         }
 
         @Override
@@ -933,7 +1913,18 @@ public class OtsTransceiver
             if (eventType.equals(LaneBasedGtu.LANEBASED_MOVE_EVENT))
             {
                 String gtuId = (String) ((Object[]) event.getContent())[0];
-                if (!this.planGtuIds.contains(gtuId))
+                // without centres all GTUs are inside, and no centre can move
+                if (this.interestArea.isActive())
+                {
+                    OrientedPoint2d p = this.network.getGTU(gtuId).getLocation();
+                    if (this.interestArea.isTracked(gtuId))
+                    {
+                        this.interestArea.update(gtuId, p.x, p.y);
+                    }
+                    this.interestArea.moveCentre(gtuId, p.x, p.y);
+                }
+                if (!this.planGtuIds.contains(gtuId)
+                        || (this.interestArea.isTracked(gtuId) && !this.interestArea.isInside(gtuId)))
                 {
                     return;
                 }
@@ -950,7 +1941,8 @@ public class OtsTransceiver
                 Gtu gtu = this.network.getGTU(gtuId);
                 if (!gtuId.equals(this.externallyGeneratedGtuId))
                 {
-                    this.simulator.scheduleEventNow(this, "sendVehicleMessage", new Object[] {gtu});
+                    // the VEHICLE message is sent when the GTU enters the area of interest
+                    this.simulator.scheduleEventNow(this, "trackInterest", new Object[] {gtu});
                     this.planGtuIds.add(gtuId);
                     this.externallyGeneratedGtuId = null;
                 }
@@ -969,7 +1961,13 @@ public class OtsTransceiver
                     crossing.removeArrival(gtuId);
                 }
                 this.commandHandlers.remove(gtuId);
-                if (!this.deleteGtuIds.remove(gtuId))
+                // no plan should be sent after the GTU is deleted, nor should its last plan be kept
+                this.planCoalescer.forget(gtuId);
+                this.planBatch.remove(gtuId);
+                // GTUs generated by OTS are only deleted in the external simulator if they are inside the area of interest
+                boolean known = !this.interestArea.isTracked(gtuId) || this.interestArea.remove(gtuId);
+                this.interestArea.removeCentre(gtuId);
+                if (!this.deleteGtuIds.remove(gtuId) && known)
                 {
                     sendDeleteMessage(gtuId);
                 }
@@ -994,27 +1992,32 @@ public class OtsTransceiver
             }
         }
 
+        /**
+         * Starts tracking a GTU generated by OTS in the area of interest, which sends the VEHICLE message if it is inside.
+         * @param gtu GTU
+         */
+        @SuppressWarnings("unused") // scheduled
+        private void trackInterest(final Gtu gtu)
+        {
+            OrientedPoint2d p = gtu.getLocation();
+            this.interestArea.update(gtu.getId(), p.x, p.y);
+        }
+
         /**
          * Sent VEHICLE message.
          * @param gtu
-         * @throws Sim0MQException
-         * @throws SerializationException
          */
-        @SuppressWarnings("unused") // scheduled
-        private void sendVehicleMessage(final Gtu gtu) throws Sim0MQException, SerializationException
+        private void sendVehicleMessage(final Gtu gtu)
         {
+            long start = System.nanoTime();
             String gtuId = gtu.getId();
             OrientedPoint2d p = gtu.getLocation();
             String routeId = gtu.getStrategicalPlanner().getRoute().getId();
-            Object[] payload = new Object[] {gtuId, "Ots", Length.instantiateSI(p.x), Length.instantiateSI(p.y),
-                    Direction.instantiateSI(p.dirZ), gtu.getSpeed(), gtu.getType().getId(), gtu.getLength(), gtu.getWidth(),
-                    gtu.getFront().dx(), 0, routeId};
-
-            byte[] bytes = Sim0MQMessage.encodeUTF8(OtsTransceiver.this.bigEndian, OtsTransceiver.this.federation,
-                    OtsTransceiver.this.ots, OtsTransceiver.this.client, "VEHICLE", this.messageId++, payload);
-            String log = String.format("[%.3fs] Ots sent VEHICLE message for GTU %s on route %s",
-                    this.simulator.getSimulatorTime().si, gtuId, routeId);
-            this.queue.add(new QueuedMessage(bytes, log));
+            byte[] bytes = this.simulationEncoder.encodeVehicle(this.messageId.getAndIncrement(), gtuId, p.x, p.y, p.dirZ,
+                    gtu.getSpeed().si, gtu.getType().getId(), gtu.getLength().si, gtu.getWidth().si, gtu.getFront().dx().si,
+                    routeId);
+            queueMessage(bytes, isLogged("VEHICLE") ? String.format("[%.3fs] Ots sent VEHICLE message for GTU %s on route %s",
+                    this.simulator.getSimulatorTime().si, gtuId, routeId) : null, start);
         }
 
         /**
@@ -1055,69 +2058,123 @@ public class OtsTransceiver
                 t[i] = (float) segments.get(i).duration().si;
                 a[i] = (float) segments.get(i).acceleration().si;
             }
-
-            Object[] payload = new Object[7];
-            payload[0] = gtuId;
-            payload[1] = speed;
-            payload[2] = new FloatLengthVector(x);
-            payload[3] = new FloatLengthVector(y);
-            payload[4] = new FloatDurationVector(t);
-            payload[5] = new FloatAccelerationVector(a);
-            switch (((LaneBasedGtu) gtu).getTurnIndicatorStatus())
+            byte indicator = switch (((LaneBasedGtu) gtu).getTurnIndicatorStatus())
             {
-                case LEFT:
-                    payload[6] = "Left";
-                    break;
-                case RIGHT:
-                    payload[6] = "Right";
-                    break;
-                case NONE:
-                    payload[6] = "None";
-                    break;
-                case HAZARD:
-                    payload[6] = "Both";
-                    break;
-                default:
-                    payload[6] = "None";
+                case LEFT -> PlanBatch.INDICATOR_LEFT;
+                case RIGHT -> PlanBatch.INDICATOR_RIGHT;
+                case HAZARD -> PlanBatch.INDICATOR_BOTH;
+                default -> PlanBatch.INDICATOR_NONE;
+            };
+
+            // only the latest plan per GTU at this time is sent, e.g. when a move is interrupted by a command
+            if (this.planCoalescer.stage(gtuId,
+                    new PlanCoalescer.Plan((float) plan.getStartTime().si, speed.si, x, y, t, a, indicator)))
+            {
+                // send after all other events at this time
+                this.simulator.scheduleEventNow(SimEventInterface.MIN_PRIORITY, this, "sendStagedPlans", null);
             }
+        }
 
-            try
+        /**
+         * Sends plans staged in the current time instant, or adds them to the batch. INSTANT batches are sent immediately.
+         * PROGRESS batches are sent in fireProgressedEvent(), or immediately when not progressing.
+         * @throws RemoteException exception
+         */
+        @SuppressWarnings("unused") // scheduled
+        private void sendStagedPlans()
+        {
+            drainStagedPlans();
+            if (OtsTransceiver.this.planBatching == PlanBatching.INSTANT || this.runUntil == null)
             {
-                byte[] bytes = Sim0MQMessage.encodeUTF8(OtsTransceiver.this.bigEndian, OtsTransceiver.this.federation,
-                        OtsTransceiver.this.ots, OtsTransceiver.this.client, "PLAN", this.messageId++, payload);
-                String log = String.format("[%.3fs] Ots sent PLAN message for GTU %s (a=%.3fm/s^2)",
-                        this.simulator.getSimulatorTime().si, gtuId, a[0]);
-                this.queue.add(new QueuedMessage(bytes, log));
+                flushPlans();
             }
-            catch (Sim0MQException | SerializationException ex)
+        }
+
+        /**
+         * Sends plans staged in the current time instant, or adds them to the batch.
+         */
+        private void drainStagedPlans()
+        {
+            double time = this.simulator.getSimulatorTime().si;
+            this.planCoalescer.drain((gtuId, plan) ->
             {
-                throw new RemoteException("Exception while sending operational plan.", ex);
-            }
+                if (OtsTransceiver.this.planBatching != PlanBatching.NONE)
+                {
+                    this.planBatch.add(gtuId, plan.time(), (float) plan.speed(), plan.x(), plan.y(), plan.t(), plan.a(),
+                            plan.indicator());
+                    return;
+                }
+                String indicator = switch (plan.indicator())
+                {
+                    case PlanBatch.INDICATOR_LEFT -> "Left";
+                    case PlanBatch.INDICATOR_RIGHT -> "Right";
+                    case PlanBatch.INDICATOR_BOTH -> "Both";
+                    default -> "None";
+                };
+                long start = System.nanoTime();
+                if (this.planPathCodec != null)
+                {
+                    int pathBytes = this.planPathCodec.encode(plan.x(), plan.y(), 0, plan.x().length);
+                    byte[] bytes = this.simulationEncoder.encodeCompactPlan(this.messageId.getAndIncrement(), gtuId,
+                            plan.speed(), this.planPathCodec.getLength(), this.planPathCodec.getQuantum(),
+                            this.planPathCodec.getDeviation(), this.planPathCodec.getBytes(), pathBytes, plan.t(), plan.a(),
+                            plan.t().length, indicator);
+                    queueMessage(bytes, isLogged("CPLAN") ? String.format(
+                            "[%.3fs] Ots sent CPLAN message for GTU %s (a=%.3fm/s^2, deviation %.3fm)", time, gtuId,
+                            plan.a()[0], this.planPathCodec.getDeviation()) : null, start);
+                    return;
+                }
+                byte[] bytes = this.simulationEncoder.encodePlan(this.messageId.getAndIncrement(), gtuId, plan.speed(),
+                        plan.x(), plan.y(), plan.x().length, plan.t(), plan.a(), plan.t().length, indicator);
+                queueMessage(bytes, isLogged("PLAN")
+                        ? String.format("[%.3fs] Ots sent PLAN message for GTU %s (a=%.3fm/s^2)", time, gtuId, plan.a()[0])
+                        : null, start);
+            });
         }
 
         /**
-         * Send delete message to external sim.
-         * @param gtuId GTU id
-         * @throws RemoteException exception
+         * Sends all staged and batched plans in a single PLANS message, if there are any. A new batch is started.
          */
-        private void sendDeleteMessage(final String gtuId) throws RemoteException
+        private void flushPlans()
         {
-            Object[] payload = new Object[1];
-            payload[0] = gtuId;
+            drainStagedPlans();
+            if (this.planBatch.isEmpty())
+            {
+                return;
+            }
+            long start = System.nanoTime();
+            int n = this.planBatch.size();
+            String type = this.planPathCodec == null ? "PLANS" : "CPLANS";
             try
             {
                 byte[] bytes = Sim0MQMessage.encodeUTF8(OtsTransceiver.this.bigEndian, OtsTransceiver.this.federation,
-                        OtsTransceiver.this.ots, OtsTransceiver.this.client, "DELETE", this.messageId++, payload);
-                String log = String.format("[%.3fs] Ots sent DELETE message for GTU %s", this.simulator.getSimulatorTime().si,
-                        gtuId);
-                this.queue.add(new QueuedMessage(bytes, log));
+                        OtsTransceiver.this.ots, OtsTransceiver.this.client, type, this.messageId.getAndIncrement(),
+                        this.planPathCodec == null ? this.planBatch.toPayloadAndClear()
+                                : this.planBatch.toCompactPayloadAndClear(this.planPathCodec));
+                queueMessage(bytes, isLogged(type) ? String.format("[%.3fs] Ots sent %s message for %d GTUs",
+                        this.simulator.getSimulatorTime().si, type, n) : null, start);
             }
             catch (Sim0MQException | SerializationException ex)
             {
-                throw new RemoteException("Exception while sending operational plan.", ex);
+                throw new RuntimeException("Exception while sending operational plans.", ex);
             }
         }
 
+        /**
+         * Send delete message to external sim.
+         * @param gtuId GTU id
+         */
+        private void sendDeleteMessage(final String gtuId)
+        {
+            // staged and batched plans may include the GTU, and should arrive before the DELETE message
+            flushPlans();
+            this.planCoalescer.forget(gtuId);
+            long start = System.nanoTime();
+            byte[] bytes = this.simulationEncoder.encodeDelete(this.messageId.getAndIncrement(), gtuId);
+            queueMessage(bytes, isLogged("DELETE") ? String.format("[%.3fs] Ots sent DELETE message for GTU %s",
+                    this.simulator.getSimulatorTime().si, gtuId) : null, start);
+        }
+
         /**
          * Listen to relevant events.
          * @throws RemoteException exception
@@ -1129,11 +2186,20 @@ public class OtsTransceiver
         }
 
         /**
-         * Fire PROGRESSED_EVENT.
+         * Fire PROGRESSED_EVENT. Batched plans are sent first.
          */
         private void fireProgressedEvent()
         {
-            this.simulator.fireEvent(PROGRESSED_EVENT);
+            try
+            {
+                flushPlans();
+                this.metrics.simulationTime(this.simulator.getSimulatorTime().si);
+                this.simulator.fireEvent(PROGRESSED_EVENT);
+            }
+            catch (RemoteException ex)
+            {
+                throw new SimRuntimeException(ex);
+            }
         }
     }
 
@@ -1198,7 +2264,8 @@ public class OtsTransceiver
                     {
                         case OPEN_DRIVE:
                             this.simulation = new OpenDriveSimulation(this.simulator, OtsTransceiver.this.tacticalFactory,
-                                    this.simulationString, OtsTransceiver.this.useRoadName);
+                                    this.simulationString, OtsTransceiver.this.useRoadName,
+                                    !OtsTransceiver.this.noNetworkCache);
                             break;
                         case FOSIM:
                             // TODO parse Fosim string
@@ -1220,6 +2287,144 @@ public class OtsTransceiver
 
     }
 
+    /**
+     * Returns consecutive string fields of a message.
+     * @param payload message payload
+     * @param from index of the first field
+     * @param n number of fields
+     * @return string fields
+     */
+    private static String[] strings(final Object[] payload, final int from, final int n)
+    {
+        String[] strings = new String[n];
+        for (int i = 0; i < n; i++)
+        {
+            strings[i] = (String) payload[from + i];
+        }
+        return strings;
+    }
+
+    /**
+     * Returns the constant of an enum type by name.
+     * @param type enum type
+     * @param name name of the constant
+     * @param <T> enum type
+     * @return constant of the enum type
+     */
+    @SuppressWarnings("unchecked")
+    private static <T extends Enum<T>> T enumValue(final Class<?> type, final String name)
+    {
+        return Enum.valueOf((Class<T>) type, name);
+    }
+
+    /**
+     * Logs that a message is rejected, as its payload is not valid.
+     * @param type message type
+     * @param reason reason why the payload is not valid
+     */
+    private static void rejectMessage(final String type, final String reason)
+    {
+        CategoryLogger.always().error("Ots rejected {} message: {}.", type, reason);
+    }
+
+    /**
+     * Returns whether fields in a message are all lengths.
+     * @param payload message payload
+     * @param from index of the first field
+     * @param to index after the last field
+     * @return whether the fields are all lengths
+     */
+    private static boolean isLengths(final Object[] payload, final int from, final int to)
+    {
+        for (int i = from; i < to; i++)
+        {
+            if (!(payload[i] instanceof Length))
+            {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Decodes the payload of an EXTERNALS message: int n, n String ids, and arrays of x, y, direction, speed and acceleration
+     * (djunits vector or numeric array), each of length n.
+     * @param payload decoded message, including the 8 header fields
+     * @return states in the message
+     * @throws IllegalArgumentException if the number or type of fields, or the length of an array, does not match n
+     */
+    static ExternalStates decodeExternals(final Object[] payload)
+    {
+        Throw.when(payload.length < 9 || !(payload[8] instanceof Integer), IllegalArgumentException.class,
+                "first field should be the int number of states");
+        int n = (int) payload[8];
+        Throw.when(n < 0 || payload.length != 14 + n, IllegalArgumentException.class,
+                "expected %d fields for %d states, got %d", 6 + n, n, payload.length - 8);
+        String[] ids = new String[n];
+        for (int i = 0; i < n; i++)
+        {
+            Throw.when(!(payload[9 + i] instanceof String), IllegalArgumentException.class, "field %d should be a String id",
+                    1 + i);
+            ids[i] = (String) payload[9 + i];
+        }
+        String[] names = {"x", "y", "direction", "speed", "acceleration"};
+        double[][] values = new double[names.length][];
+        for (int j = 0; j < names.length; j++)
+        {
+            values[j] = siValues(payload[9 + n + j]);
+            Throw.when(values[j].length != n, IllegalArgumentException.class, "array %s has length %d, expected %d", names[j],
+                    values[j].length, n);
+        }
+        return new ExternalStates(ids, values[0], values[1], values[2], values[3], values[4]);
+    }
+
+    /**
+     * Returns the SI values of an array field in a message, which may be a djunits vector, or an array of floats or doubles.
+     * @param field decoded field
+     * @return SI values of the array field
+     * @throws IllegalArgumentException if the field is not a supported array type
+     */
+    private static double[] siValues(final Object field)
+    {
+        if (field instanceof DoubleVector<?, ?, ?> vector)
+        {
+            return vector.getValuesSI();
+        }
+        if (field instanceof FloatVector<?, ?, ?> vector)
+        {
+            float[] values = vector.getValuesSI();
+            double[] out = new double[values.length];
+            for (int i = 0; i < values.length; i++)
+            {
+                out[i] = values[i];
+            }
+            return out;
+        }
+        if (field instanceof double[] values)
+        {
+            return values;
+        }
+        if (field instanceof float[] values)
+        {
+            double[] out = new double[values.length];
+            for (int i = 0; i < values.length; i++)
+            {
+                out[i] = values[i];
+            }
+            return out;
+        }
+        if (field instanceof Number[] values)
+        {
+            double[] out = new double[values.length];
+            for (int i = 0; i < values.length; i++)
+            {
+                out[i] = values[i].doubleValue();
+            }
+            return out;
+        }
+        throw new IllegalArgumentException("Field of type " + field.getClass().getSimpleName() + " is not a numeric array.");
+    }
+
     /** All the converters that decode into arrays and matrices of Objects, keyed by prefix. */
     private static final Map<Byte, Serializer<?>> OBJECT_DECODERS = new HashMap<>();
 
@@ -1243,13 +2448,128 @@ public class OtsTransceiver
         }
     }
 
+    /**
+     * States in an EXTERNALS message.
+     * @param ids ids of the externally controlled GTUs or active mode objects
+     * @param x x coordinates [m]
+     * @param y y coordinates [m]
+     * @param direction directions [rad]
+     * @param speed speeds [m/s]
+     * @param acceleration accelerations [m/s^2]
+     */
+    record ExternalStates(String[] ids, double[] x, double[] y, double[] direction, double[] speed, double[] acceleration)
+    {
+    }
+
     /**
      * Queued messages.
      * @param message bytes of the message
      * @param log log entry to print when the message is sent
+     * @param queueTime system time in ns when the message was queued
+     */
+    private record QueuedMessage(byte[] message, String log, long queueTime)
+    {
+    }
+
+    /**
+     * Setting of the tactical planner factory with resolved method and argument.
+     * @param method setter method
+     * @param argument argument of the setter method
+     */
+    private record Setting(Method method, Object argument)
+    {
+    }
+
+    /** Setter methods of the tactical planner factory with a single argument, per lower case method name. */
+    private static final Map<String, List<Method>> SETTING_METHODS = new HashMap<>();
+
+    static
+    {
+        for (Method method : ScenarioTacticalPlannerFactory.class.getMethods())
+        {
+            if (method.getParameterTypes().length == 1)
+            {
+                SETTING_METHODS.computeIfAbsent(method.getName().toLowerCase(), (name) -> new ArrayList<>()).add(method);
+            }
+        }
+    }
+
+    /** Number of sessions that did not terminate yet. */
+    private static final AtomicInteger ACTIVE_SESSIONS = new AtomicInteger();
+
+    /** Writer of log entries of all sessions. */
+    private static final RingBufferWriter LOG_WRITER = new RingBufferWriter(new ConsoleWriter(), 8192);
+
+    /** Maximum poll timeout when running the headless simulator real-time [ms]. */
+    private static final long MAX_REAL_TIME_TIMEOUT = 100L;
+
+    /** Content of a wake-up signal. */
+    private static final byte[] WAKE_UP = new byte[0];
+
+    /**
+     * Transport between OTS and the client.
+     */
+    enum Transport
+    {
+        /** TCP socket. */
+        TCP,
+
+        /** IPC socket, for JeroMQ clients only, as JeroMQ emulates it over loopback TCP which libzmq clients cannot use. */
+        IPC,
+
+        /** Inproc socket, for a client in the same JVM. */
+        INPROC,
+
+        /** Queues of frames without socket, for a client in the same JVM. */
+        QUEUE;
+
+        /**
+         * Returns whether the transport is available for clients in another process.
+         * @return whether the transport is available for clients in another process
+         */
+        boolean isExternal()
+        {
+            return this == TCP || this == IPC;
+        }
+    }
+
+    /**
+     * Batching of operational plans in PLANS messages.
+     */
+    private enum PlanBatching
+    {
+        /** A PLAN message is sent for each plan. */
+        NONE,
+
+        /** All plans at the same simulation time are sent in one PLANS message. */
+        INSTANT,
+
+        /** All plans during a PROGRESS message are sent in one PLANS message, otherwise as with INSTANT. */
+        PROGRESS;
+    }
+
+    /**
+     * Network of a simulation, as defined by a NETWORK message.
+     * @param simulationString network string, {@code null} for the demo network
+     * @param simulationType network type, {@code null} for the demo network
+     */
+    private record NetworkKey(String simulationString, SimulationType simulationType)
+    {
+    }
+
+    /**
+     * Simulator type.
      */
-    private record QueuedMessage(byte[] message, String log)
+    private enum SimulatorType
     {
+        /** ANIMATOR when the GUI is shown, HEADLESS otherwise. */
+        AUTO,
+
+        /** DSOL real-time animator, running on its own thread. */
+        ANIMATOR,
+
+        /** Simulator that is advanced on the worker thread, without GUI. */
+        HEADLESS;
     }
 
     /**
@@ -19,6 +19,7 @@ import org.opentrafficsim.i4driving.tactical.perception.mental.channel.ChannelTa
 import org.opentrafficsim.i4driving.tactical.perception.mental.channel.ChannelTaskLaneChange;
 import org.opentrafficsim.i4driving.tactical.perception.mental.channel.ChannelTaskScan;
 import org.opentrafficsim.i4driving.tactical.perception.mental.channel.ChannelTaskSignal;
+import org.opentrafficsim.i4driving.tactical.perception.mental.channel.DemandMemoization;
 import org.opentrafficsim.road.gtu.lane.perception.mental.AdaptationHeadway;
 import org.opentrafficsim.road.gtu.lane.perception.mental.AdaptationSituationalAwareness;
 import org.opentrafficsim.road.gtu.lane.perception.mental.AdaptationSpeed;
@@ -98,6 +99,7 @@ public final class Parameters
         add(ChannelTaskSignal.class);
         add(ChannelTaskConflict.class);
         add(ChannelTaskLaneChange.class);
+        add(DemandMemoization.class);
         add(IdmModified.class);
         add(CarFollowingNgoduy.class);
         // remove status variables and old parameters
@@ -0,0 +1,281 @@
+package org.opentrafficsim.i4driving.sim0mq;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.djunits.value.vfloat.scalar.FloatLength;
+import org.djunits.value.vfloat.vector.FloatAccelerationVector;
+import org.djunits.value.vfloat.vector.FloatDurationVector;
+import org.djunits.value.vfloat.vector.FloatLengthVector;
+import org.djunits.value.vfloat.vector.FloatSpeedVector;
+
+/**
+ * Collects operational plans of multiple GTUs in a columnar form, such that they can be sent in a single PLANS message. The
+ * payload of a PLANS message is:
+ * <ol>
+ * <li>{@code int} number of plans <i>n</i></li>
+ * <li><i>n</i> {@code String} fields with the GTU ids</li>
+ * <li>{@code FloatDurationVector} start time of each plan (<i>n</i>)</li>
+ * <li>{@code FloatSpeedVector} start speed of each plan (<i>n</i>)</li>
+ * <li>{@code int[]} offsets of each plan in the path coordinates, with a final value equal to the number of coordinates
+ * (<i>n</i> + 1)</li>
+ * <li>{@code FloatLengthVector} x coordinates of all paths concatenated</li>
+ * <li>{@code FloatLengthVector} y coordinates of all paths concatenated</li>
+ * <li>{@code int[]} offsets of each plan in the segment data, with a final value equal to the number of segments (<i>n</i> +
+ * 1)</li>
+ * <li>{@code FloatDurationVector} duration of all segments concatenated</li>
+ * <li>{@code FloatAccelerationVector} acceleration of all segments concatenated</li>
+ * <li>{@code byte[]} indicator code of each plan, 0=None, 1=Left, 2=Right, 3=Both (<i>n</i>)</li>
+ * </ol>
+ * @author wjschakel
+ */
+final class PlanBatch
+{
+
+    /** Indicator code for no indicator. */
+    static final byte INDICATOR_NONE = 0;
+
+    /** Indicator code for left indicator. */
+    static final byte INDICATOR_LEFT = 1;
+
+    /** Indicator code for right indicator. */
+    static final byte INDICATOR_RIGHT = 2;
+
+    /** Indicator code for both indicators (hazard). */
+    static final byte INDICATOR_BOTH = 3;
+
+    /** GTU ids. */
+    private final List<String> ids = new ArrayList<>();
+
+    /** Start time per plan. */
+    private float[] startTime = new float[16];
+
+    /** Start speed per plan. */
+    private float[] startSpeed = new float[16];
+
+    /** Indicator code per plan. */
+    private byte[] indicator = new byte[16];
+
+    /** Path offset per plan. */
+    private int[] pathOffset = new int[17];
+
+    /** Segment offset per plan. */
+    private int[] segmentOffset = new int[17];
+
+    /** Concatenated x coordinates. */
+    private float[] x = new float[256];
+
+    /** Concatenated y coordinates. */
+    private float[] y = new float[256];
+
+    /** Concatenated segment durations. */
+    private float[] t = new float[64];
+
+    /** Concatenated segment accelerations. */
+    private float[] a = new float[64];
+
+    /** Number of coordinates. */
+    private int numPoints;
+
+    /** Number of segments. */
+    private int numSegments;
+
+    /**
+     * Adds a plan to the batch.
+     * @param id GTU id
+     * @param time start time of the plan [s]
+     * @param speed start speed of the plan [m/s]
+     * @param pathX x coordinates of the path [m]
+     * @param pathY y coordinates of the path [m]
+     * @param duration duration of each segment [s]
+     * @param acceleration acceleration of each segment [m/s^2]
+     * @param indicatorCode indicator code
+     */
+    @SuppressWarnings("checkstyle:parameternumber")
+    public void add(final String id, final float time, final float speed, final float[] pathX, final float[] pathY,
+            final float[] duration, final float[] acceleration, final byte indicatorCode)
+    {
+        int n = this.ids.size();
+        if (n == this.startTime.length)
+        {
+            this.startTime = Arrays.copyOf(this.startTime, 2 * n);
+            this.startSpeed = Arrays.copyOf(this.startSpeed, 2 * n);
+            this.indicator = Arrays.copyOf(this.indicator, 2 * n);
+            this.pathOffset = Arrays.copyOf(this.pathOffset, 2 * n + 1);
+            this.segmentOffset = Arrays.copyOf(this.segmentOffset, 2 * n + 1);
+        }
+        this.ids.add(id);
+        this.startTime[n] = time;
+        this.startSpeed[n] = speed;
+        this.indicator[n] = indicatorCode;
+
+        this.pathOffset[n] = this.numPoints;
+        if (this.numPoints + pathX.length > this.x.length)
+        {
+            int size = Math.max(2 * this.x.length, this.numPoints + pathX.length);
+            this.x = Arrays.copyOf(this.x, size);
+            this.y = Arrays.copyOf(this.y, size);
+        }
+        System.arraycopy(pathX, 0, this.x, this.numPoints, pathX.length);
+        System.arraycopy(pathY, 0, this.y, this.numPoints, pathY.length);
+        this.numPoints += pathX.length;
+        this.pathOffset[n + 1] = this.numPoints;
+
+        this.segmentOffset[n] = this.numSegments;
+        if (this.numSegments + duration.length > this.t.length)
+        {
+            int size = Math.max(2 * this.t.length, this.numSegments + duration.length);
+            this.t = Arrays.copyOf(this.t, size);
+            this.a = Arrays.copyOf(this.a, size);
+        }
+        System.arraycopy(duration, 0, this.t, this.numSegments, duration.length);
+        System.arraycopy(acceleration, 0, this.a, this.numSegments, acceleration.length);
+        this.numSegments += duration.length;
+        this.segmentOffset[n + 1] = this.numSegments;
+    }
+
+    /**
+     * Removes all plans of a GTU from the batch, e.g. when it is removed before the batch is sent.
+     * @param id GTU id
+     */
+    public void remove(final String id)
+    {
+        int n = 0;
+        int points = 0;
+        int segments = 0;
+        for (int i = 0; i < this.ids.size(); i++)
+        {
+            if (this.ids.get(i).equals(id))
+            {
+                continue;
+            }
+            // plans only move towards the front, so offsets of later plans are not yet overwritten
+            int pathFrom = this.pathOffset[i];
+            int pathLength = this.pathOffset[i + 1] - pathFrom;
+            int segmentFrom = this.segmentOffset[i];
+            int segmentLength = this.segmentOffset[i + 1] - segmentFrom;
+            this.ids.set(n, this.ids.get(i));
+            this.startTime[n] = this.startTime[i];
+            this.startSpeed[n] = this.startSpeed[i];
+            this.indicator[n] = this.indicator[i];
+            System.arraycopy(this.x, pathFrom, this.x, points, pathLength);
+            System.arraycopy(this.y, pathFrom, this.y, points, pathLength);
+            System.arraycopy(this.t, segmentFrom, this.t, segments, segmentLength);
+            System.arraycopy(this.a, segmentFrom, this.a, segments, segmentLength);
+            this.pathOffset[n] = points;
+            this.segmentOffset[n] = segments;
+            points += pathLength;
+            segments += segmentLength;
+            n++;
+        }
+        this.ids.subList(n, this.ids.size()).clear();
+        this.pathOffset[n] = points;
+        this.segmentOffset[n] = segments;
+        this.numPoints = points;
+        this.numSegments = segments;
+    }
+
+    /**
+     * Returns whether the batch contains no plans.
+     * @return whether the batch contains no plans
+     */
+    public boolean isEmpty()
+    {
+        return this.ids.isEmpty();
+    }
+
+    /**
+     * Returns the number of plans in the batch.
+     * @return number of plans in the batch
+     */
+    public int size()
+    {
+        return this.ids.size();
+    }
+
+    /**
+     * Creates the payload of a PLANS message from the plans in the batch. The batch is cleared afterwards.
+     * @return payload of a PLANS message
+     */
+    public Object[] toPayloadAndClear()
+    {
+        int n = this.ids.size();
+        Object[] payload = new Object[n + 10];
+        int index = 0;
+        payload[index++] = n;
+        for (String id : this.ids)
+        {
+            payload[index++] = id;
+        }
+        payload[index++] = new FloatDurationVector(Arrays.copyOf(this.startTime, n));
+        payload[index++] = new FloatSpeedVector(Arrays.copyOf(this.startSpeed, n));
+        payload[index++] = Arrays.copyOf(this.pathOffset, n + 1);
+        payload[index++] = new FloatLengthVector(Arrays.copyOf(this.x, this.numPoints));
+        payload[index++] = new FloatLengthVector(Arrays.copyOf(this.y, this.numPoints));
+        payload[index++] = Arrays.copyOf(this.segmentOffset, n + 1);
+        payload[index++] = new FloatDurationVector(Arrays.copyOf(this.t, this.numSegments));
+        payload[index++] = new FloatAccelerationVector(Arrays.copyOf(this.a, this.numSegments));
+        payload[index++] = Arrays.copyOf(this.indicator, n);
+        clear();
+        return payload;
+    }
+
+    /**
+     * Creates the payload of a CPLANS message from the plans in the batch, with compact paths. The batch is cleared
+     * afterwards.
+     * @param codec codec of paths
+     * @return payload of a CPLANS message
+     */
+    public Object[] toCompactPayloadAndClear(final PlanPathCodec codec)
+    {
+        int n = this.ids.size();
+        float[] length = new float[n];
+        float[] deviation = new float[n];
+        int[] byteOffset = new int[n + 1];
+        byte[] paths = new byte[64];
+        for (int i = 0; i < n; i++)
+        {
+            int numBytes = codec.encode(this.x, this.y, this.pathOffset[i], this.pathOffset[i + 1] - this.pathOffset[i]);
+            length[i] = (float) codec.getLength();
+            deviation[i] = (float) codec.getDeviation();
+            if (byteOffset[i] + numBytes > paths.length)
+            {
+                paths = Arrays.copyOf(paths, Math.max(2 * paths.length, byteOffset[i] + numBytes));
+            }
+            System.arraycopy(codec.getBytes(), 0, paths, byteOffset[i], numBytes);
+            byteOffset[i + 1] = byteOffset[i] + numBytes;
+        }
+        Object[] payload = new Object[n + 12];
+        int index = 0;
+        payload[index++] = n;
+        for (String id : this.ids)
+        {
+            payload[index++] = id;
+        }
+        payload[index++] = new FloatDurationVector(Arrays.copyOf(this.startTime, n));
+        payload[index++] = new FloatSpeedVector(Arrays.copyOf(this.startSpeed, n));
+        payload[index++] = FloatLength.instantiateSI((float) codec.getQuantum());
+        payload[index++] = new FloatLengthVector(length);
+        payload[index++] = new FloatLengthVector(deviation);
+        payload[index++] = byteOffset;
+        payload[index++] = Arrays.copyOf(paths, byteOffset[n]);
+        payload[index++] = Arrays.copyOf(this.segmentOffset, n + 1);
+        payload[index++] = new FloatDurationVector(Arrays.copyOf(this.t, this.numSegments));
+        payload[index++] = new FloatAccelerationVector(Arrays.copyOf(this.a, this.numSegments));
+        payload[index++] = Arrays.copyOf(this.indicator, n);
+        clear();
+        return payload;
+    }
+
+    /**
+     * Clears the batch.
+     */
+    private void clear()
+    {
+        this.ids.clear();
+        this.numPoints = 0;
+        this.numSegments = 0;
+    }
+
+}
@@ -0,0 +1,475 @@
+package org.opentrafficsim.i4driving.sim0mq;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeSet;
+import java.util.function.BiConsumer;
+
+import org.djutils.exceptions.Throw;
+
+/**
+ * Stages operational plans before they are sent, such that only the latest plan per GTU per simulation instant is sent. When
+ * the staged plans are drained, a plan is also suppressed when the previously sent plan of the GTU already describes the same
+ * motion within tolerances. This is the case when the new plan has the same indicator, and when at all segment boundaries of
+ * both plans, and at all times at which either plan passes a vertex of its path, the positions differ no more than the path
+ * tolerance, while the accelerations in between differ no more than the acceleration tolerance. Beyond its horizon, the
+ * previous plan is extrapolated with its last acceleration along its last path segment, as a client that dead-reckons would
+ * do. Plans are always compared to the last plan that was sent, such that deviations do not accumulate.
+ * @author wjschakel
+ */
+final class PlanCoalescer
+{
+
+    /** Tolerance on positions [m], deduplication is disabled if not positive. */
+    private final double pathTolerance;
+
+    /** Tolerance on accelerations [m/s^2]. */
+    private final double accelerationTolerance;
+
+    /** Plans staged in the current instant. */
+    private final Map<String, Plan> staged = new LinkedHashMap<>();
+
+    /** Last sent plan per GTU. */
+    private final Map<String, Plan> sent = new LinkedHashMap<>();
+
+    /** Number of plans replaced by a later plan of the same GTU in the same instant. */
+    private long coalesced;
+
+    /** Number of plans not sent as the previous plan describes the same motion. */
+    private long suppressed;
+
+    /**
+     * Constructor.
+     * @param pathTolerance tolerance on positions [m], deduplication is disabled if not positive
+     * @param accelerationTolerance tolerance on accelerations [m/s^2]
+     */
+    PlanCoalescer(final double pathTolerance, final double accelerationTolerance)
+    {
+        Throw.when(accelerationTolerance < 0.0, IllegalArgumentException.class,
+                "Acceleration tolerance should not be negative.");
+        this.pathTolerance = pathTolerance;
+        this.accelerationTolerance = accelerationTolerance;
+    }
+
+    /**
+     * Stages a plan, replacing any plan of the same GTU that was staged in the current instant.
+     * @param id GTU id
+     * @param plan plan
+     * @return whether no plans were staged before, i.e. whether a drain should be scheduled
+     */
+    boolean stage(final String id, final Plan plan)
+    {
+        boolean first = this.staged.isEmpty();
+        if (this.staged.put(id, plan) != null)
+        {
+            this.coalesced++;
+        }
+        return first;
+    }
+
+    /**
+     * Passes all staged plans that should be sent to the consumer, in the order in which GTUs were first staged, and clears
+     * the staged plans.
+     * @param consumer consumer of GTU id and plan
+     */
+    void drain(final BiConsumer<String, Plan> consumer)
+    {
+        if (this.staged.isEmpty())
+        {
+            return;
+        }
+        for (Map.Entry<String, Plan> entry : this.staged.entrySet())
+        {
+            Plan plan = entry.getValue();
+            if (this.pathTolerance > 0.0)
+            {
+                Plan previous = this.sent.put(entry.getKey(), plan);
+                if (previous != null && isReproducedBy(plan, previous))
+                {
+                    // keep the previous plan as reference, as the client continues to use it
+                    this.sent.put(entry.getKey(), previous);
+                    this.suppressed++;
+                    continue;
+                }
+            }
+            consumer.accept(entry.getKey(), plan);
+        }
+        this.staged.clear();
+    }
+
+    /**
+     * Forgets the staged and last sent plan of a GTU, e.g. when it is removed, or deleted in the external simulator. A staged
+     * plan of the GTU is thus not sent.
+     * @param id GTU id
+     */
+    void forget(final String id)
+    {
+        this.staged.remove(id);
+        this.sent.remove(id);
+    }
+
+    /**
+     * Clears all staged and sent plans, e.g. for a new simulation. Counters are not reset.
+     */
+    void clear()
+    {
+        this.staged.clear();
+        this.sent.clear();
+    }
+
+    /**
+     * Returns the number of plans replaced by a later plan of the same GTU in the same instant.
+     * @return number of coalesced plans
+     */
+    long getCoalesced()
+    {
+        return this.coalesced;
+    }
+
+    /**
+     * Returns the number of plans not sent as the previous plan describes the same motion.
+     * @return number of suppressed plans
+     */
+    long getSuppressed()
+    {
+        return this.suppressed;
+    }
+
+    /**
+     * Returns whether the motion of a plan is reproduced by a previous plan within tolerances.
+     * @param plan plan
+     * @param previous previous plan
+     * @return whether the motion of the plan is reproduced by the previous plan
+     */
+    private boolean isReproducedBy(final Plan plan, final Plan previous)
+    {
+        double end = plan.time + plan.getDuration();
+        if (plan.indicator != previous.indicator || plan.time < previous.time)
+        {
+            return false;
+        }
+        TreeSet<Double> times = new TreeSet<>();
+        times.add((double) plan.time);
+        times.add(end);
+        plan.addBoundaries(times, plan.time, end);
+        previous.addBoundaries(times, plan.time, end);
+        // between these times neither plan changes acceleration nor direction
+        plan.addVertexTimes(times, plan.time, end);
+        previous.addVertexTimes(times, plan.time, end);
+        double tolerance2 = this.pathTolerance * this.pathTolerance;
+        double[] p = new double[2];
+        double[] q = new double[2];
+        Double before = null;
+        for (double time : times)
+        {
+            plan.position(time, p);
+            previous.position(time, q);
+            double dx = p[0] - q[0];
+            double dy = p[1] - q[1];
+            if (dx * dx + dy * dy > tolerance2)
+            {
+                return false;
+            }
+            if (before != null)
+            {
+                double mid = 0.5 * (before + time);
+                if (Math.abs(plan.acceleration(mid) - previous.acceleration(mid)) > this.accelerationTolerance)
+                {
+                    return false;
+                }
+            }
+            before = time;
+        }
+        return true;
+    }
+
+    /**
+     * Operational plan as sent in a PLAN message or in a PLANS message, with derived data to evaluate its motion.
+     */
+    static final class Plan
+    {
+        /** Start time [s]. */
+        private final float time;
+
+        /** Start speed [m/s]. */
+        private final double speed;
+
+        /** x coordinates of path [m]. */
+        private final float[] x;
+
+        /** y coordinates of path [m]. */
+        private final float[] y;
+
+        /** Segment durations [s]. */
+        private final float[] t;
+
+        /** Segment accelerations [m/s^2]. */
+        private final float[] a;
+
+        /** Indicator code. */
+        private final byte indicator;
+
+        /** Cumulative path length at each coordinate, derived when first required. */
+        private double[] pathLength;
+
+        /**
+         * Constructor.
+         * @param time start time [s]
+         * @param speed start speed [m/s]
+         * @param x x coordinates of path [m]
+         * @param y y coordinates of path [m]
+         * @param t segment durations [s]
+         * @param a segment accelerations [m/s^2]
+         * @param indicator indicator code, as in {@code PlanBatch}
+         */
+        @SuppressWarnings("checkstyle:parameternumber")
+        Plan(final float time, final double speed, final float[] x, final float[] y, final float[] t, final float[] a,
+                final byte indicator)
+        {
+            this.time = time;
+            this.speed = speed;
+            this.x = x;
+            this.y = y;
+            this.t = t;
+            this.a = a;
+            this.indicator = indicator;
+        }
+
+        /**
+         * Returns the start time.
+         * @return start time [s]
+         */
+        float time()
+        {
+            return this.time;
+        }
+
+        /**
+         * Returns the start speed.
+         * @return start speed [m/s]
+         */
+        double speed()
+        {
+            return this.speed;
+        }
+
+        /**
+         * Returns the x coordinates of the path.
+         * @return x coordinates of the path [m]
+         */
+        float[] x()
+        {
+            return this.x;
+        }
+
+        /**
+         * Returns the y coordinates of the path.
+         * @return y coordinates of the path [m]
+         */
+        float[] y()
+        {
+            return this.y;
+        }
+
+        /**
+         * Returns the segment durations.
+         * @return segment durations [s]
+         */
+        float[] t()
+        {
+            return this.t;
+        }
+
+        /**
+         * Returns the segment accelerations.
+         * @return segment accelerations [m/s^2]
+         */
+        float[] a()
+        {
+            return this.a;
+        }
+
+        /**
+         * Returns the indicator code.
+         * @return indicator code
+         */
+        byte indicator()
+        {
+            return this.indicator;
+        }
+
+        /**
+         * Returns the total duration.
+         * @return total duration [s]
+         */
+        private double getDuration()
+        {
+            double duration = 0.0;
+            for (float segment : this.t)
+            {
+                duration += segment;
+            }
+            return duration;
+        }
+
+        /**
+         * Adds the absolute times of segment boundaries within a time range.
+         * @param times set of times to add to
+         * @param from start of range [s]
+         * @param to end of range [s]
+         */
+        private void addBoundaries(final TreeSet<Double> times, final double from, final double to)
+        {
+            double boundary = this.time;
+            for (float segment : this.t)
+            {
+                boundary += segment;
+                if (boundary > from && boundary < to)
+                {
+                    times.add(boundary);
+                }
+            }
+        }
+
+        /**
+         * Adds the absolute times at which the path vertices are passed within a time range. Beyond the plan the last
+         * acceleration is extrapolated, as in {@code position()}.
+         * @param times set of times to add to
+         * @param from start of range [s]
+         * @param to end of range [s]
+         */
+        private void addVertexTimes(final TreeSet<Double> times, final double from, final double to)
+        {
+            double[] lengths = getPathLength();
+            int vertex = 1;
+            double boundary = this.time;
+            double v = this.speed;
+            double s = 0.0;
+            for (int i = 0; i <= this.t.length && boundary < to && vertex < lengths.length; i++)
+            {
+                double dt = i < this.t.length ? this.t[i] : to - boundary;
+                double acc = this.a.length == 0 ? 0.0 : this.a[Math.min(i, this.a.length - 1)];
+                double duration = acc < 0.0 ? Math.min(dt, -v / acc) : dt; // until the end of the segment, or a stop
+                double distance = s + v * duration + 0.5 * acc * duration * duration;
+                while (vertex < lengths.length && lengths[vertex] <= distance)
+                {
+                    // solve v * tau + 0.5 * acc * tau^2 = ds for the first positive tau
+                    double ds = lengths[vertex] - s;
+                    double tau = ds <= 0.0 ? 0.0
+                            : (acc == 0.0 ? ds / v : (Math.sqrt(Math.max(0.0, v * v + 2.0 * acc * ds)) - v) / acc);
+                    double vertexTime = boundary + Math.min(tau, duration);
+                    if (vertexTime > from && vertexTime < to)
+                    {
+                        times.add(vertexTime);
+                    }
+                    vertex++;
+                }
+                s = distance;
+                v = Math.max(0.0, v + acc * duration);
+                boundary += dt;
+            }
+        }
+
+        /**
+         * Returns the acceleration at an absolute time, which is the acceleration of the last segment beyond the plan.
+         * @param absoluteTime absolute time [s]
+         * @return acceleration [m/s^2]
+         */
+        private double acceleration(final double absoluteTime)
+        {
+            double boundary = this.time;
+            for (int i = 0; i < this.t.length; i++)
+            {
+                boundary += this.t[i];
+                if (absoluteTime < boundary)
+                {
+                    return this.a[i];
+                }
+            }
+            return this.a.length == 0 ? 0.0 : this.a[this.a.length - 1];
+        }
+
+        /**
+         * Determines the position at an absolute time, which is extrapolated beyond the plan. The speed does not become
+         * negative.
+         * @param absoluteTime absolute time [s]
+         * @param position array to store the x and y coordinate in
+         */
+        private void position(final double absoluteTime, final double[] position)
+        {
+            double remaining = absoluteTime - this.time;
+            double v = this.speed;
+            double s = 0.0;
+            for (int i = 0; i <= this.t.length && remaining > 0.0; i++)
+            {
+                // beyond the plan the last acceleration is extrapolated
+                double dt = i < this.t.length ? Math.min(remaining, this.t[i]) : remaining;
+                double acc = this.a.length == 0 ? 0.0 : this.a[Math.min(i, this.a.length - 1)];
+                if (acc < 0.0 && v + acc * dt < 0.0)
+                {
+                    // stops within the segment
+                    s += v * v / (-2.0 * acc);
+                    v = 0.0;
+                }
+                else
+                {
+                    s += v * dt + 0.5 * acc * dt * dt;
+                    v += acc * dt;
+                }
+                remaining -= dt;
+            }
+            positionAt(s, position);
+        }
+
+        /**
+         * Determines the position at a distance along the path, which is extrapolated along the last path segment.
+         * @param distance distance along the path [m]
+         * @param position array to store the x and y coordinate in
+         */
+        private void positionAt(final double distance, final double[] position)
+        {
+            getPathLength();
+            int n = this.x.length;
+            if (n == 1 || distance <= 0.0)
+            {
+                position[0] = this.x[0];
+                position[1] = this.y[0];
+                return;
+            }
+            if (distance >= this.pathLength[n - 1])
+            {
+                double length = this.pathLength[n - 1] - this.pathLength[n - 2];
+                double f = length > 0.0 ? (distance - this.pathLength[n - 1]) / length : 0.0;
+                position[0] = this.x[n - 1] + f * (this.x[n - 1] - this.x[n - 2]);
+                position[1] = this.y[n - 1] + f * (this.y[n - 1] - this.y[n - 2]);
+                return;
+            }
+            int index = Arrays.binarySearch(this.pathLength, distance);
+            int i = index >= 0 ? index : -index - 2;
+            double length = this.pathLength[i + 1] - this.pathLength[i];
+            double f = length > 0.0 ? (distance - this.pathLength[i]) / length : 0.0;
+            position[0] = this.x[i] + f * (this.x[i + 1] - this.x[i]);
+            position[1] = this.y[i] + f * (this.y[i + 1] - this.y[i]);
+        }
+
+        /**
+         * Returns the cumulative path length at each coordinate, which is derived when first required.
+         * @return cumulative path length at each coordinate [m]
+         */
+        private double[] getPathLength()
+        {
+            if (this.pathLength == null)
+            {
+                this.pathLength = new double[this.x.length];
+                for (int i = 1; i < this.x.length; i++)
+                {
+                    this.pathLength[i] =
+                            this.pathLength[i - 1] + Math.hypot(this.x[i] - this.x[i - 1], this.y[i] - this.y[i - 1]);
+                }
+            }
+            return this.pathLength;
+        }
+    }
+
+}
@@ -0,0 +1,393 @@
+package org.opentrafficsim.i4driving.sim0mq;
+
+import java.util.Arrays;
+
+import org.djutils.exceptions.Throw;
+
+/**
+ * Compact encoding of the path of an operational plan, as used in CPLAN and CPLANS messages. The path is decimated with the
+ * Douglas-Peucker algorithm, and the remaining points are quantized and delta-encoded. Paths on curved roads often have
+ * hundreds of points, most of which are reproduced by interpolation between a few remaining points.
+ * <p>
+ * The encoded path is a {@code byte[]} with the quantized coordinates of the first point, followed by the differences in
+ * quantized coordinates of each next point, as x/y pairs. Each value is a number of quanta, written as a zigzag variable length
+ * integer (7 bits per byte, least significant group first, the highest bit set on all but the last byte of a value, and with
+ * zigzag encoding {@code (v << 1) ^ (v >> 63)} such that small negative values are also short). The coordinates of a point are
+ * the running sum of values multiplied by the quantum.
+ * </p>
+ * <p>
+ * The decimation tolerance is half the maximum deviation, and the quantum is the maximum deviation divided by &radic;2, such
+ * that the decimation error and the rounding error together never exceed the maximum deviation. The actual deviation of each
+ * path is measured, as the largest distance of an original point to the reconstructed path, and sent along. As decimation
+ * shortens curves slightly, the length of the original path is also sent. A client should scale distances along the path by
+ * the ratio of the reconstructed length and the original length, such that the plan ends at the end of the reconstructed
+ * path.
+ * </p>
+ * <p>
+ * The payload of a CPLAN message is:
+ * </p>
+ * <ol>
+ * <li>{@code String} GTU id</li>
+ * <li>{@code Speed} start speed</li>
+ * <li>{@code FloatLength} length of the original path</li>
+ * <li>{@code FloatLength} quantum</li>
+ * <li>{@code FloatLength} deviation of the reconstructed path from the original path</li>
+ * <li>{@code byte[]} encoded path</li>
+ * <li>{@code FloatDurationVector} duration of each segment</li>
+ * <li>{@code FloatAccelerationVector} acceleration of each segment</li>
+ * <li>{@code String} indicator, "None", "Left", "Right" or "Both"</li>
+ * </ol>
+ * <p>
+ * The payload of a CPLANS message is as that of a PLANS message (see {@code PlanBatch}), with the path offsets and the x and y
+ * coordinates replaced by:
+ * </p>
+ * <ol>
+ * <li>{@code FloatLength} quantum</li>
+ * <li>{@code FloatLengthVector} length of each original path (<i>n</i>)</li>
+ * <li>{@code FloatLengthVector} deviation of each reconstructed path (<i>n</i>)</li>
+ * <li>{@code int[]} offsets of each plan in the encoded paths, with a final value equal to the number of bytes (<i>n</i> +
+ * 1)</li>
+ * <li>{@code byte[]} encoded paths concatenated</li>
+ * </ol>
+ * <p>
+ * A codec reuses internal buffers and is not thread-safe.
+ * </p>
+ * @author wjschakel
+ */
+public final class PlanPathCodec
+{
+
+    /** Maximum deviation of a reconstructed path [m]. */
+    private final double maxDeviation;
+
+    /** Decimation tolerance [m]. */
+    private final double tolerance;
+
+    /** Quantum of coordinates [m]. */
+    private final double quantum;
+
+    /** Whether each point is kept by decimation. */
+    private boolean[] keep = new boolean[256];
+
+    /** Stack of index ranges during decimation. */
+    private int[] stack = new int[64];
+
+    /** Encoded bytes. */
+    private byte[] bytes = new byte[256];
+
+    /** Number of encoded bytes. */
+    private int numBytes;
+
+    /** Length of the last encoded path [m]. */
+    private double length;
+
+    /** Deviation of the last reconstructed path [m]. */
+    private double deviation;
+
+    /** Number of encoded paths. */
+    private long paths;
+
+    /** Number of points in encoded paths. */
+    private long pointsIn;
+
+    /** Number of points in encoded paths after decimation. */
+    private long pointsOut;
+
+    /** Largest deviation of any reconstructed path [m]. */
+    private double largestDeviation;
+
+    /**
+     * Constructor.
+     * @param maxDeviation maximum deviation of a reconstructed path [m]
+     */
+    public PlanPathCodec(final double maxDeviation)
+    {
+        Throw.when(!(maxDeviation > 0.0), IllegalArgumentException.class, "Maximum deviation should be positive.");
+        this.maxDeviation = maxDeviation;
+        this.tolerance = 0.5 * maxDeviation;
+        this.quantum = maxDeviation / Math.sqrt(2.0);
+    }
+
+    /**
+     * Encodes a path. The result is available from {@code getBytes()}, {@code getLength()} and {@code getDeviation()} until
+     * the next path is encoded.
+     * @param x x coordinates [m]
+     * @param y y coordinates [m]
+     * @param from index of the first point
+     * @param n number of points
+     * @return number of encoded bytes
+     */
+    public int encode(final float[] x, final float[] y, final int from, final int n)
+    {
+        this.numBytes = 0;
+        this.length = 0.0;
+        this.deviation = 0.0;
+        if (n == 0)
+        {
+            return 0;
+        }
+        decimate(x, y, from, n);
+
+        long qx = 0;
+        long qy = 0;
+        int last = -1;
+        double lastX = 0.0;
+        double lastY = 0.0;
+        int kept = 0;
+        for (int i = 0; i < n; i++)
+        {
+            if (i > 0)
+            {
+                this.length += Math.hypot(x[from + i] - x[from + i - 1], y[from + i] - y[from + i - 1]);
+            }
+            if (!this.keep[i])
+            {
+                continue;
+            }
+            long nextX = Math.round(x[from + i] / this.quantum);
+            long nextY = Math.round(y[from + i] / this.quantum);
+            writeVarLong(nextX - qx);
+            writeVarLong(nextY - qy);
+            qx = nextX;
+            qy = nextY;
+            kept++;
+            // measure deviation of the original points against the reconstructed segment
+            double px = qx * this.quantum;
+            double py = qy * this.quantum;
+            if (last < 0)
+            {
+                this.deviation = Math.hypot(x[from] - px, y[from] - py);
+            }
+            else
+            {
+                for (int j = last + 1; j <= i; j++)
+                {
+                    this.deviation = Math.max(this.deviation,
+                            distanceToSegment(x[from + j], y[from + j], lastX, lastY, px, py));
+                }
+            }
+            last = i;
+            lastX = px;
+            lastY = py;
+        }
+        this.paths++;
+        this.pointsIn += n;
+        this.pointsOut += kept;
+        this.largestDeviation = Math.max(this.largestDeviation, this.deviation);
+        return this.numBytes;
+    }
+
+    /**
+     * Marks the points to keep with the Douglas-Peucker algorithm, using a stack rather than recursion.
+     * @param x x coordinates [m]
+     * @param y y coordinates [m]
+     * @param from index of the first point
+     * @param n number of points
+     */
+    private void decimate(final float[] x, final float[] y, final int from, final int n)
+    {
+        if (this.keep.length < n)
+        {
+            this.keep = new boolean[Math.max(n, 2 * this.keep.length)];
+        }
+        Arrays.fill(this.keep, 0, n, false);
+        this.keep[0] = true;
+        this.keep[n - 1] = true;
+        int top = 0;
+        this.stack[top++] = 0;
+        this.stack[top++] = n - 1;
+        while (top > 0)
+        {
+            int end = this.stack[--top];
+            int start = this.stack[--top];
+            double farthest = this.tolerance;
+            int index = -1;
+            for (int i = start + 1; i < end; i++)
+            {
+                double distance = distanceToSegment(x[from + i], y[from + i], x[from + start], y[from + start], x[from + end],
+                        y[from + end]);
+                if (distance > farthest)
+                {
+                    farthest = distance;
+                    index = i;
+                }
+            }
+            if (index >= 0)
+            {
+                this.keep[index] = true;
+                if (top + 4 > this.stack.length)
+                {
+                    this.stack = Arrays.copyOf(this.stack, 2 * this.stack.length);
+                }
+                this.stack[top++] = start;
+                this.stack[top++] = index;
+                this.stack[top++] = index;
+                this.stack[top++] = end;
+            }
+        }
+    }
+
+    /**
+     * Returns the distance of a point to a line segment.
+     * @param px x coordinate of the point
+     * @param py y coordinate of the point
+     * @param x1 x coordinate of the start of the segment
+     * @param y1 y coordinate of the start of the segment
+     * @param x2 x coordinate of the end of the segment
+     * @param y2 y coordinate of the end of the segment
+     * @return distance of the point to the line segment
+     */
+    private static double distanceToSegment(final double px, final double py, final double x1, final double y1,
+            final double x2, final double y2)
+    {
+        double dx = x2 - x1;
+        double dy = y2 - y1;
+        double lengthSquared = dx * dx + dy * dy;
+        double f = lengthSquared == 0.0 ? 0.0 : ((px - x1) * dx + (py - y1) * dy) / lengthSquared;
+        f = f < 0.0 ? 0.0 : (f > 1.0 ? 1.0 : f);
+        return Math.hypot(px - x1 - f * dx, py - y1 - f * dy);
+    }
+
+    /**
+     * Writes a zigzag variable length integer.
+     * @param value value
+     */
+    private void writeVarLong(final long value)
+    {
+        if (this.numBytes + 10 > this.bytes.length)
+        {
+            this.bytes = Arrays.copyOf(this.bytes, 2 * this.bytes.length);
+        }
+        long zigzag = (value << 1) ^ (value >> 63);
+        while ((zigzag & ~0x7FL) != 0)
+        {
+            this.bytes[this.numBytes++] = (byte) ((zigzag & 0x7F) | 0x80);
+            zigzag >>>= 7;
+        }
+        this.bytes[this.numBytes++] = (byte) zigzag;
+    }
+
+    /**
+     * Returns the buffer with the bytes of the last encoded path, of which the first {@code encode()} returned are valid.
+     * @return buffer with the bytes of the last encoded path
+     */
+    public byte[] getBytes()
+    {
+        return this.bytes;
+    }
+
+    /**
+     * Returns the length of the last encoded path.
+     * @return length of the last encoded path [m]
+     */
+    public double getLength()
+    {
+        return this.length;
+    }
+
+    /**
+     * Returns the deviation of the last reconstructed path from the original path.
+     * @return deviation of the last reconstructed path [m]
+     */
+    public double getDeviation()
+    {
+        return this.deviation;
+    }
+
+    /**
+     * Returns the quantum of coordinates.
+     * @return quantum of coordinates [m]
+     */
+    public double getQuantum()
+    {
+        return this.quantum;
+    }
+
+    /**
+     * Returns the maximum deviation of a reconstructed path.
+     * @return maximum deviation of a reconstructed path [m]
+     */
+    public double getMaxDeviation()
+    {
+        return this.maxDeviation;
+    }
+
+    /**
+     * Returns a summary of all encoded paths.
+     * @return summary of all encoded paths
+     */
+    String getSummary()
+    {
+        return String.format("Compact plans: %d paths, %d of %d points kept, max deviation %.3fm (bound %.3fm)", this.paths,
+                this.pointsOut, this.pointsIn, this.largestDeviation, this.maxDeviation);
+    }
+
+    /**
+     * Returns the number of encoded paths.
+     * @return number of encoded paths
+     */
+    long getPaths()
+    {
+        return this.paths;
+    }
+
+    /**
+     * Decodes a path.
+     * @param data encoded paths
+     * @param from index of the first byte of the path
+     * @param to index after the last byte of the path
+     * @param quantum quantum of coordinates [m]
+     * @return x and y coordinates of the reconstructed path [m]
+     */
+    public static double[][] decode(final byte[] data, final int from, final int to, final double quantum)
+    {
+        double[] x = new double[8];
+        double[] y = new double[8];
+        int n = 0;
+        long qx = 0;
+        long qy = 0;
+        int index = from;
+        long[] value = new long[1];
+        while (index < to)
+        {
+            index = readVarLong(data, index, value);
+            qx += value[0];
+            index = readVarLong(data, index, value);
+            qy += value[0];
+            if (n == x.length)
+            {
+                x = Arrays.copyOf(x, 2 * n);
+                y = Arrays.copyOf(y, 2 * n);
+            }
+            x[n] = qx * quantum;
+            y[n] = qy * quantum;
+            n++;
+        }
+        return new double[][] {Arrays.copyOf(x, n), Arrays.copyOf(y, n)};
+    }
+
+    /**
+     * Reads a zigzag variable length integer.
+     * @param data data
+     * @param from index of the first byte
+     * @param value array in which the value is stored
+     * @return index after the last byte
+     */
+    private static int readVarLong(final byte[] data, final int from, final long[] value)
+    {
+        long zigzag = 0;
+        int shift = 0;
+        int index = from;
+        byte b;
+        do
+        {
+            b = data[index++];
+            zigzag |= (long) (b & 0x7F) << shift;
+            shift += 7;
+        }
+        while (b < 0);
+        value[0] = (zigzag >>> 1) ^ -(zigzag & 1);
+        return index;
+    }
+
+}
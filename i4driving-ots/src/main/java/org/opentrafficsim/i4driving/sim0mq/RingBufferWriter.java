@@ -0,0 +1,140 @@
+package org.opentrafficsim.i4driving.sim0mq;
+
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.pmw.tinylog.Configuration;
+import org.pmw.tinylog.LogEntry;
+import org.pmw.tinylog.writers.LogEntryValue;
+import org.pmw.tinylog.writers.Writer;
+
+/**
+ * Writer that hands log entries to a bounded ring buffer, from which a daemon thread writes them to a delegate writer. Logging
+ * threads, such as the simulation thread, therefore never wait for console or file output. When the buffer is full, entries
+ * are dropped rather than blocking the logging thread, and the number of dropped entries is reported when the writer is
+ * closed.
+ * @author wjschakel
+ */
+final class RingBufferWriter implements Writer
+{
+
+    /** Delegate writer. */
+    private final Writer delegate;
+
+    /** Buffer of log entries. */
+    private final BlockingQueue<LogEntry> buffer;
+
+    /** Number of dropped entries. */
+    private final AtomicLong dropped = new AtomicLong();
+
+    /** Thread that writes entries to the delegate, {@code null} if not initialized or closed. */
+    private Thread thread;
+
+    /**
+     * Constructor.
+     * @param delegate delegate writer
+     * @param capacity number of entries in the buffer
+     */
+    RingBufferWriter(final Writer delegate, final int capacity)
+    {
+        this.delegate = delegate;
+        this.buffer = new ArrayBlockingQueue<>(capacity);
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public Set<LogEntryValue> getRequiredLogEntryValues()
+    {
+        return this.delegate.getRequiredLogEntryValues();
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public synchronized void init(final Configuration configuration) throws Exception
+    {
+        // tinylog may initialize a writer again when the configuration changes
+        this.delegate.init(configuration);
+        if (this.thread == null)
+        {
+            this.thread = new Thread(this::run, "Ots log writer");
+            this.thread.setDaemon(true);
+            this.thread.start();
+        }
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void write(final LogEntry logEntry)
+    {
+        if (!this.buffer.offer(logEntry))
+        {
+            this.dropped.incrementAndGet();
+        }
+    }
+
+    /**
+     * Writes entries from the buffer to the delegate until interrupted.
+     */
+    private void run()
+    {
+        try
+        {
+            while (!Thread.currentThread().isInterrupted())
+            {
+                LogEntry logEntry = this.buffer.take();
+                do
+                {
+                    this.delegate.write(logEntry);
+                    logEntry = this.buffer.poll();
+                }
+                while (logEntry != null);
+                this.delegate.flush();
+            }
+        }
+        catch (InterruptedException ex)
+        {
+            // closed
+        }
+        catch (Exception ex)
+        {
+            ex.printStackTrace();
+        }
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void flush() throws Exception
+    {
+        // the writing thread flushes the delegate whenever the buffer is empty
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public synchronized void close() throws Exception
+    {
+        if (this.thread == null)
+        {
+            return;
+        }
+        this.thread.interrupt();
+        this.thread.join(TimeUnit.SECONDS.toMillis(1));
+        this.thread = null;
+        LogEntry logEntry = this.buffer.poll();
+        while (logEntry != null)
+        {
+            this.delegate.write(logEntry);
+            logEntry = this.buffer.poll();
+        }
+        long n = this.dropped.getAndSet(0);
+        if (n > 0)
+        {
+            System.err.println(String.format("%d log entries dropped, the log buffer was full", n));
+        }
+        this.delegate.flush();
+        this.delegate.close();
+    }
+
+}
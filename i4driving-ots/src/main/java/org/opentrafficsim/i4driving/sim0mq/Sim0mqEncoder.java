@@ -0,0 +1,437 @@
+package org.opentrafficsim.i4driving.sim0mq;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+
+import org.djunits.unit.AccelerationUnit;
+import org.djunits.unit.DirectionUnit;
+import org.djunits.unit.DurationUnit;
+import org.djunits.unit.LengthUnit;
+import org.djunits.unit.SpeedUnit;
+import org.djunits.unit.Unit;
+import org.djutils.exceptions.Throw;
+import org.djutils.serialization.DisplayType;
+import org.djutils.serialization.FieldTypes;
+import org.djutils.serialization.SerializationUnits;
+
+/**
+ * Encoder for the fixed message schemas exchanged with the external simulator. Fields are written as primitives directly in a
+ * reusable direct {@code ByteBuffer}, without boxing a payload in an {@code Object[]} of djunits scalars. The output is
+ * byte-for-byte equal to {@code Sim0MQMessage.encodeUTF8()} with SI values, for either endianness. Strings are written as
+ * UTF-8.
+ * <p>
+ * An encoder is not thread-safe. Each thread that encodes messages should use its own instance.
+ * </p>
+ * @author wjschakel
+ */
+public final class Sim0mqEncoder
+{
+
+    /** Sim0MQ version magic. */
+    private static final byte[] MAGIC = "SIM02".getBytes(StandardCharsets.UTF_8);
+
+    /** Unit and display codes of lengths. */
+    static final byte[] LENGTH = unitCodes(LengthUnit.SI);
+
+    /** Unit and display codes of directions. */
+    static final byte[] DIRECTION = unitCodes(DirectionUnit.DEFAULT);
+
+    /** Unit and display codes of speeds. */
+    static final byte[] SPEED = unitCodes(SpeedUnit.SI);
+
+    /** Unit and display codes of accelerations. */
+    static final byte[] ACCELERATION = unitCodes(AccelerationUnit.SI);
+
+    /** Unit and display codes of durations. */
+    static final byte[] DURATION = unitCodes(DurationUnit.SI);
+
+    /** Whether to encode big-endian. */
+    private final boolean bigEndian;
+
+    /** Federation id, sender id and receiver id, encoded in UTF-8. */
+    private final byte[][] ids;
+
+    /** Buffer, reused for all messages. */
+    private ByteBuffer buffer;
+
+    /**
+     * Constructor.
+     * @param bigEndian whether to encode big-endian
+     * @param federation federation id
+     * @param sender sender id
+     * @param receiver receiver id
+     */
+    public Sim0mqEncoder(final boolean bigEndian, final String federation, final String sender, final String receiver)
+    {
+        Throw.whenNull(federation, "federation");
+        Throw.whenNull(sender, "sender");
+        Throw.whenNull(receiver, "receiver");
+        this.bigEndian = bigEndian;
+        this.ids = new byte[][] {federation.getBytes(StandardCharsets.UTF_8), sender.getBytes(StandardCharsets.UTF_8),
+                receiver.getBytes(StandardCharsets.UTF_8)};
+        this.buffer = ByteBuffer.allocateDirect(4096).order(bigEndian ? ByteOrder.BIG_ENDIAN : ByteOrder.LITTLE_ENDIAN);
+    }
+
+    /**
+     * Returns the unit code and display code of a unit.
+     * @param unit unit
+     * @param <U> unit type
+     * @return unit code and display code of the unit
+     */
+    private static <U extends Unit<U>> byte[] unitCodes(final U unit)
+    {
+        return new byte[] {SerializationUnits.getUnitCode(unit), DisplayType.getByteCode(unit)};
+    }
+
+    /**
+     * Encodes a READY message.
+     * @param messageId message id
+     * @param processedMessageId id of the message that was processed
+     * @return bytes of the message
+     */
+    public byte[] encodeReady(final int messageId, final int processedMessageId)
+    {
+        start("READY", messageId, 1);
+        writeInt(processedMessageId);
+        return toByteArray();
+    }
+
+    /**
+     * Encodes a PROGRESS message.
+     * @param messageId message id
+     * @param until time until which to progress [s]
+     * @return bytes of the message
+     */
+    public byte[] encodeProgress(final int messageId, final double until)
+    {
+        start("PROGRESS", messageId, 1);
+        writeDouble(DURATION, until);
+        return toByteArray();
+    }
+
+    /**
+     * Encodes a DELETE message.
+     * @param messageId message id
+     * @param id GTU id
+     * @return bytes of the message
+     */
+    public byte[] encodeDelete(final int messageId, final String id)
+    {
+        start("DELETE", messageId, 1);
+        writeString(id);
+        return toByteArray();
+    }
+
+    /**
+     * Encodes an EXTERNAL message.
+     * @param messageId message id
+     * @param id GTU or active mode object id
+     * @param x x coordinate [m]
+     * @param y y coordinate [m]
+     * @param direction direction [rad]
+     * @param speed speed [m/s]
+     * @param acceleration acceleration [m/s^2]
+     * @return bytes of the message
+     */
+    @SuppressWarnings("checkstyle:parameternumber")
+    public byte[] encodeExternal(final int messageId, final String id, final double x, final double y,
+            final double direction, final double speed, final double acceleration)
+    {
+        start("EXTERNAL", messageId, 6);
+        writeString(id);
+        writeDouble(LENGTH, x);
+        writeDouble(LENGTH, y);
+        writeDouble(DIRECTION, direction);
+        writeDouble(SPEED, speed);
+        writeDouble(ACCELERATION, acceleration);
+        return toByteArray();
+    }
+
+    /**
+     * Encodes an EXTERNALS message, with the states of multiple GTUs or active mode objects.
+     * @param messageId message id
+     * @param ids GTU or active mode object ids
+     * @param x x coordinates [m]
+     * @param y y coordinates [m]
+     * @param direction directions [rad]
+     * @param speed speeds [m/s]
+     * @param acceleration accelerations [m/s^2]
+     * @param n number of states to encode from the arrays
+     * @return bytes of the message
+     */
+    @SuppressWarnings("checkstyle:parameternumber")
+    public byte[] encodeExternals(final int messageId, final String[] ids, final double[] x, final double[] y,
+            final double[] direction, final double[] speed, final double[] acceleration, final int n)
+    {
+        start("EXTERNALS", messageId, 6 + n);
+        writeInt(n);
+        for (int i = 0; i < n; i++)
+        {
+            writeString(ids[i]);
+        }
+        writeDoubleArray(LENGTH, x, n);
+        writeDoubleArray(LENGTH, y, n);
+        writeDoubleArray(DIRECTION, direction, n);
+        writeDoubleArray(SPEED, speed, n);
+        writeDoubleArray(ACCELERATION, acceleration, n);
+        return toByteArray();
+    }
+
+    /**
+     * Encodes a VEHICLE message of a GTU generated in OTS, i.e. without parameters.
+     * @param messageId message id
+     * @param id GTU id
+     * @param x x coordinate [m]
+     * @param y y coordinate [m]
+     * @param direction direction [rad]
+     * @param speed speed [m/s]
+     * @param gtuType GTU type id
+     * @param length vehicle length [m]
+     * @param width vehicle width [m]
+     * @param front distance from reference point to front [m]
+     * @param route route id
+     * @return bytes of the message
+     */
+    @SuppressWarnings("checkstyle:parameternumber")
+    public byte[] encodeVehicle(final int messageId, final String id, final double x, final double y,
+            final double direction, final double speed, final String gtuType, final double length, final double width,
+            final double front, final String route)
+    {
+        start("VEHICLE", messageId, 12);
+        writeString(id);
+        writeString("Ots");
+        writeDouble(LENGTH, x);
+        writeDouble(LENGTH, y);
+        writeDouble(DIRECTION, direction);
+        writeDouble(SPEED, speed);
+        writeString(gtuType);
+        writeDouble(LENGTH, length);
+        writeDouble(LENGTH, width);
+        writeDouble(LENGTH, front);
+        writeInt(0);
+        writeString(route);
+        return toByteArray();
+    }
+
+    /**
+     * Encodes a PLAN message.
+     * @param messageId message id
+     * @param id GTU id
+     * @param speed start speed [m/s]
+     * @param x x coordinates of the path [m]
+     * @param y y coordinates of the path [m]
+     * @param numPoints number of coordinates to encode from the arrays
+     * @param t duration of each segment [s]
+     * @param a acceleration of each segment [m/s^2]
+     * @param numSegments number of segments to encode from the arrays
+     * @param indicator indicator, "None", "Left", "Right" or "Both"
+     * @return bytes of the message
+     */
+    @SuppressWarnings("checkstyle:parameternumber")
+    public byte[] encodePlan(final int messageId, final String id, final double speed, final float[] x, final float[] y,
+            final int numPoints, final float[] t, final float[] a, final int numSegments, final String indicator)
+    {
+        start("PLAN", messageId, 7);
+        writeString(id);
+        writeDouble(SPEED, speed);
+        writeFloatArray(LENGTH, x, numPoints);
+        writeFloatArray(LENGTH, y, numPoints);
+        writeFloatArray(DURATION, t, numSegments);
+        writeFloatArray(ACCELERATION, a, numSegments);
+        writeString(indicator);
+        return toByteArray();
+    }
+
+    /**
+     * Encodes a CPLAN message, with a compact path.
+     * @param messageId message id
+     * @param id GTU id
+     * @param speed start speed [m/s]
+     * @param length length of the original path [m]
+     * @param quantum quantum of coordinates [m]
+     * @param deviation deviation of the reconstructed path [m]
+     * @param path encoded path, see {@code PlanPathCodec}
+     * @param pathBytes number of bytes to encode from the path
+     * @param t duration of each segment [s]
+     * @param a acceleration of each segment [m/s^2]
+     * @param numSegments number of segments to encode from the arrays
+     * @param indicator indicator, "None", "Left", "Right" or "Both"
+     * @return bytes of the message
+     */
+    @SuppressWarnings("checkstyle:parameternumber")
+    public byte[] encodeCompactPlan(final int messageId, final String id, final double speed, final double length,
+            final double quantum, final double deviation, final byte[] path, final int pathBytes, final float[] t,
+            final float[] a, final int numSegments, final String indicator)
+    {
+        start("CPLAN", messageId, 9);
+        writeString(id);
+        writeDouble(SPEED, speed);
+        writeFloat(LENGTH, (float) length);
+        writeFloat(LENGTH, (float) quantum);
+        writeFloat(LENGTH, (float) deviation);
+        writeByteArray(path, pathBytes);
+        writeFloatArray(DURATION, t, numSegments);
+        writeFloatArray(ACCELERATION, a, numSegments);
+        writeString(indicator);
+        return toByteArray();
+    }
+
+    /**
+     * Clears the buffer and writes the message header.
+     * @param messageType message type id
+     * @param messageId message id
+     * @param numberOfFields number of payload fields
+     */
+    private void start(final String messageType, final int messageId, final int numberOfFields)
+    {
+        this.buffer.clear();
+        writeUtf8(MAGIC);
+        this.buffer.put(FieldTypes.BOOLEAN_8).put((byte) (this.bigEndian ? 1 : 0));
+        for (byte[] id : this.ids)
+        {
+            writeUtf8(id);
+        }
+        writeString(messageType);
+        writeInt(messageId);
+        ensureCapacity(3);
+        this.buffer.put(FieldTypes.SHORT_16).putShort((short) numberOfFields);
+    }
+
+    /**
+     * Writes an int field.
+     * @param value value
+     */
+    private void writeInt(final int value)
+    {
+        ensureCapacity(5);
+        this.buffer.put(FieldTypes.INT_32).putInt(value);
+    }
+
+    /**
+     * Writes a double scalar field with unit.
+     * @param unit unit and display code
+     * @param si SI value
+     */
+    private void writeDouble(final byte[] unit, final double si)
+    {
+        ensureCapacity(11);
+        this.buffer.put(FieldTypes.DOUBLE_64_UNIT).put(unit).putDouble(si);
+    }
+
+    /**
+     * Writes a float scalar field with unit.
+     * @param unit unit and display code
+     * @param si SI value
+     */
+    private void writeFloat(final byte[] unit, final float si)
+    {
+        ensureCapacity(7);
+        this.buffer.put(FieldTypes.FLOAT_32_UNIT).put(unit).putFloat(si);
+    }
+
+    /**
+     * Writes a float vector field with unit.
+     * @param unit unit and display code
+     * @param si SI values
+     * @param n number of values to write
+     */
+    private void writeFloatArray(final byte[] unit, final float[] si, final int n)
+    {
+        ensureCapacity(7 + 4 * n);
+        this.buffer.put(FieldTypes.FLOAT_32_UNIT_ARRAY).putInt(n).put(unit);
+        for (int i = 0; i < n; i++)
+        {
+            this.buffer.putFloat(si[i]);
+        }
+    }
+
+    /**
+     * Writes a byte array field.
+     * @param values values
+     * @param n number of values to write
+     */
+    private void writeByteArray(final byte[] values, final int n)
+    {
+        ensureCapacity(5 + n);
+        this.buffer.put(FieldTypes.BYTE_8_ARRAY).putInt(n).put(values, 0, n);
+    }
+
+    /**
+     * Writes a double vector field with unit.
+     * @param unit unit and display code
+     * @param si SI values
+     * @param n number of values to write
+     */
+    private void writeDoubleArray(final byte[] unit, final double[] si, final int n)
+    {
+        ensureCapacity(7 + 8 * n);
+        this.buffer.put(FieldTypes.DOUBLE_64_UNIT_ARRAY).putInt(n).put(unit);
+        for (int i = 0; i < n; i++)
+        {
+            this.buffer.putDouble(si[i]);
+        }
+    }
+
+    /**
+     * Writes a string field in UTF-8. ASCII strings are written without intermediate byte array.
+     * @param value string
+     */
+    private void writeString(final String value)
+    {
+        int n = value.length();
+        for (int i = 0; i < n; i++)
+        {
+            if (value.charAt(i) >= 0x80)
+            {
+                writeUtf8(value.getBytes(StandardCharsets.UTF_8));
+                return;
+            }
+        }
+        ensureCapacity(5 + n);
+        this.buffer.put(FieldTypes.STRING_8).putInt(n);
+        for (int i = 0; i < n; i++)
+        {
+            this.buffer.put((byte) value.charAt(i));
+        }
+    }
+
+    /**
+     * Writes a string field of which the UTF-8 bytes are given.
+     * @param utf8 UTF-8 bytes
+     */
+    private void writeUtf8(final byte[] utf8)
+    {
+        ensureCapacity(5 + utf8.length);
+        this.buffer.put(FieldTypes.STRING_8).putInt(utf8.length).put(utf8);
+    }
+
+    /**
+     * Grows the buffer if fewer than the given number of bytes remain.
+     * @param bytes number of bytes that will be written
+     */
+    private void ensureCapacity(final int bytes)
+    {
+        if (this.buffer.remaining() < bytes)
+        {
+            ByteBuffer larger = ByteBuffer.allocateDirect(Math.max(2 * this.buffer.capacity(), this.buffer.position() + bytes))
+                    .order(this.buffer.order());
+            this.buffer.flip();
+            larger.put(this.buffer);
+            this.buffer = larger;
+        }
+    }
+
+    /**
+     * Returns the bytes of the last encoded message. This is the only allocation of an encoding.
+     * @return bytes of the last encoded message
+     */
+    private byte[] toByteArray()
+    {
+        byte[] bytes = new byte[this.buffer.position()];
+        this.buffer.flip();
+        this.buffer.get(bytes);
+        return bytes;
+    }
+
+}
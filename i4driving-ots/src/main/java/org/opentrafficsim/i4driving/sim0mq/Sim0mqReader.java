@@ -0,0 +1,444 @@
+package org.opentrafficsim.i4driving.sim0mq;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+import org.djutils.serialization.FieldTypes;
+import org.djutils.serialization.SerializationException;
+
+/**
+ * Reader of Sim0MQ messages that reads fields lazily from the received frame, without decoding the whole message in an
+ * {@code Object[]}. Fields are located on first access, and numeric values are read as primitives in SI units. Field index 0
+ * is the first field of the payload, i.e. after the header fields. Both endiannesses, and UTF-8 and UTF-16 strings, are
+ * supported.
+ * <p>
+ * A reader is not thread-safe, and is reused for subsequent messages by calling {@code wrap()}.
+ * </p>
+ * @author wjschakel
+ */
+public final class Sim0mqReader
+{
+
+    /** Number of header fields before the number of payload fields. */
+    private static final int HEADER_FIELDS = 7;
+
+    /** Message types that are returned without creating a new string. */
+    private static final String[] KNOWN_TYPES = {"EXTERNAL", "EXTERNALS", "VEHICLE", "VEHICLES", "MODE", "COMMAND", "DELETE",
+            "ROUTES", "ODMATRIX", "NETWORK", "START", "STOP", "RESET", "TERMINATE", "PROGRESS", "READY", "PLAN", "PLANS",
+            "CPLAN", "CPLANS"};
+
+    /** UTF-8 bytes of known message types. */
+    private static final byte[][] KNOWN_TYPE_BYTES;
+
+    static
+    {
+        KNOWN_TYPE_BYTES = new byte[KNOWN_TYPES.length][];
+        for (int i = 0; i < KNOWN_TYPES.length; i++)
+        {
+            KNOWN_TYPE_BYTES[i] = KNOWN_TYPES[i].getBytes(StandardCharsets.UTF_8);
+        }
+    }
+
+    /** Buffer wrapping the message. */
+    private ByteBuffer buffer;
+
+    /** Message bytes. */
+    private byte[] message;
+
+    /** Offset of the type byte of each header and payload field located so far. */
+    private int[] offsets = new int[32];
+
+    /** Number of fields located so far, including header fields. */
+    private int located;
+
+    /** Number of payload fields. */
+    private int numberOfFields;
+
+    /**
+     * Wraps a message so its fields can be read. Only the header is read.
+     * @param bytes message bytes
+     * @return this reader for method chaining
+     * @throws SerializationException if the message is not a valid Sim0MQ message
+     */
+    public Sim0mqReader wrap(final byte[] bytes) throws SerializationException
+    {
+        // the endianness flag follows the 5-character magic string, which is encoded in UTF-8 or UTF-16
+        int flag = bytes.length > 0 && bytes[0] == FieldTypes.STRING_16 ? 16 : 11;
+        if (bytes.length <= flag || (bytes[0] != FieldTypes.STRING_8 && bytes[0] != FieldTypes.STRING_16)
+                || bytes[flag - 1] != FieldTypes.BOOLEAN_8)
+        {
+            throw new SerializationException("Message is not a Sim0MQ message.");
+        }
+        this.message = bytes;
+        this.buffer = ByteBuffer.wrap(bytes).order(bytes[flag] == 1 ? ByteOrder.BIG_ENDIAN : ByteOrder.LITTLE_ENDIAN);
+        this.offsets[0] = 0;
+        this.located = 1;
+        this.numberOfFields = readShortValue(offset(HEADER_FIELDS));
+        return this;
+    }
+
+    /**
+     * Returns whether the message is big-endian.
+     * @return whether the message is big-endian
+     */
+    public boolean isBigEndian()
+    {
+        return this.buffer.order() == ByteOrder.BIG_ENDIAN;
+    }
+
+    /**
+     * Returns the message type id. Known message types are returned as constant strings.
+     * @return message type id
+     * @throws SerializationException if the field is not a string
+     */
+    public String getMessageType() throws SerializationException
+    {
+        int offset = offset(5);
+        if (type(offset) == FieldTypes.STRING_8)
+        {
+            int length = this.buffer.getInt(offset + 1);
+            for (int i = 0; i < KNOWN_TYPE_BYTES.length; i++)
+            {
+                if (KNOWN_TYPE_BYTES[i].length == length && Arrays.equals(KNOWN_TYPE_BYTES[i], 0, length, this.message,
+                        offset + 5, offset + 5 + length))
+                {
+                    return KNOWN_TYPES[i];
+                }
+            }
+        }
+        return readString(offset);
+    }
+
+    /**
+     * Returns the message id.
+     * @return message id
+     * @throws SerializationException if the message id is not numeric
+     */
+    public int getMessageId() throws SerializationException
+    {
+        return (int) readNumber(offset(6));
+    }
+
+    /**
+     * Returns the number of payload fields.
+     * @return number of payload fields
+     */
+    public int getNumberOfFields()
+    {
+        return this.numberOfFields;
+    }
+
+    /**
+     * Returns a string field.
+     * @param field payload field index
+     * @return string value
+     * @throws SerializationException if the field does not exist or is not a string
+     */
+    public String getString(final int field) throws SerializationException
+    {
+        return readString(payloadOffset(field));
+    }
+
+    /**
+     * Returns an integer field.
+     * @param field payload field index
+     * @return integer value
+     * @throws SerializationException if the field does not exist or is not numeric
+     */
+    public int getInt(final int field) throws SerializationException
+    {
+        return (int) readNumber(payloadOffset(field));
+    }
+
+    /**
+     * Returns a numeric scalar field in SI units. This may be any primitive number field, or a scalar with unit.
+     * @param field payload field index
+     * @return SI value
+     * @throws SerializationException if the field does not exist or is not numeric
+     */
+    public double getDouble(final int field) throws SerializationException
+    {
+        return readNumber(payloadOffset(field));
+    }
+
+    /**
+     * Returns the length of a numeric array field.
+     * @param field payload field index
+     * @return length of the array
+     * @throws SerializationException if the field does not exist or is not a numeric array
+     */
+    public int getArrayLength(final int field) throws SerializationException
+    {
+        int offset = payloadOffset(field);
+        checkArray(type(offset));
+        return this.buffer.getInt(offset + 1);
+    }
+
+    /**
+     * Reads a numeric array field in SI units. This may be any primitive number array, or a vector with unit.
+     * @param field payload field index
+     * @param values array to store the values in, which is returned if it is large enough
+     * @return array with the SI values, which is a new array only if {@code values} is {@code null} or too small
+     * @throws SerializationException if the field does not exist or is not a numeric array
+     */
+    public double[] getDoubleArray(final int field, final double[] values) throws SerializationException
+    {
+        int offset = payloadOffset(field);
+        byte type = type(offset);
+        checkArray(type);
+        int n = this.buffer.getInt(offset + 1);
+        double[] out = values == null || values.length < n ? new double[n] : values;
+        int pos = offset + 5;
+        switch (type)
+        {
+            case FieldTypes.BYTE_8_ARRAY:
+                for (int i = 0; i < n; i++)
+                {
+                    out[i] = this.buffer.get(pos + i);
+                }
+                break;
+            case FieldTypes.SHORT_16_ARRAY:
+                for (int i = 0; i < n; i++)
+                {
+                    out[i] = this.buffer.getShort(pos + 2 * i);
+                }
+                break;
+            case FieldTypes.INT_32_ARRAY:
+                for (int i = 0; i < n; i++)
+                {
+                    out[i] = this.buffer.getInt(pos + 4 * i);
+                }
+                break;
+            case FieldTypes.LONG_64_ARRAY:
+                for (int i = 0; i < n; i++)
+                {
+                    out[i] = this.buffer.getLong(pos + 8 * i);
+                }
+                break;
+            case FieldTypes.FLOAT_32_ARRAY:
+                for (int i = 0; i < n; i++)
+                {
+                    out[i] = this.buffer.getFloat(pos + 4 * i);
+                }
+                break;
+            case FieldTypes.DOUBLE_64_ARRAY:
+                for (int i = 0; i < n; i++)
+                {
+                    out[i] = this.buffer.getDouble(pos + 8 * i);
+                }
+                break;
+            case FieldTypes.FLOAT_32_UNIT_ARRAY:
+                for (int i = 0; i < n; i++)
+                {
+                    out[i] = this.buffer.getFloat(pos + 2 + 4 * i);
+                }
+                break;
+            default: // DOUBLE_64_UNIT_ARRAY
+                for (int i = 0; i < n; i++)
+                {
+                    out[i] = this.buffer.getDouble(pos + 2 + 8 * i);
+                }
+                break;
+        }
+        return out;
+    }
+
+    /**
+     * Checks that a type is a numeric array.
+     * @param type field type
+     * @throws SerializationException if the type is not a numeric array
+     */
+    private static void checkArray(final byte type) throws SerializationException
+    {
+        if ((type < FieldTypes.BYTE_8_ARRAY || type > FieldTypes.DOUBLE_64_ARRAY) && type != FieldTypes.FLOAT_32_UNIT_ARRAY
+                && type != FieldTypes.DOUBLE_64_UNIT_ARRAY)
+        {
+            throw new SerializationException("Field of type " + type + " is not a numeric array.");
+        }
+    }
+
+    /**
+     * Returns the offset of a payload field.
+     * @param field payload field index
+     * @return offset of the payload field
+     * @throws SerializationException if the field does not exist
+     */
+    private int payloadOffset(final int field) throws SerializationException
+    {
+        if (field < 0 || field >= this.numberOfFields)
+        {
+            throw new SerializationException("Field " + field + " does not exist in message with " + this.numberOfFields
+                    + " payload fields.");
+        }
+        return offset(HEADER_FIELDS + 1 + field);
+    }
+
+    /**
+     * Returns the offset of a field, including header fields, locating all fields up to the field if required.
+     * @param index field index, including header fields
+     * @return offset of the field
+     * @throws SerializationException if the message is too short or contains an unsupported field type
+     */
+    private int offset(final int index) throws SerializationException
+    {
+        if (index >= this.offsets.length)
+        {
+            this.offsets = Arrays.copyOf(this.offsets, Math.max(2 * this.offsets.length, index + 1));
+        }
+        while (this.located <= index)
+        {
+            int previous = this.offsets[this.located - 1];
+            int next = previous + 1 + dataSize(previous);
+            if (next >= this.message.length)
+            {
+                throw new SerializationException("Message has fewer fields than field " + index + ".");
+            }
+            this.offsets[this.located++] = next;
+        }
+        return this.offsets[index];
+    }
+
+    /**
+     * Returns the plain type code of the field at the offset, i.e. without little-endian marker.
+     * @param offset field offset
+     * @return plain type code
+     */
+    private byte type(final int offset)
+    {
+        return (byte) (this.message[offset] & 0x7F);
+    }
+
+    /**
+     * Returns the size of the data of a field, excluding the type byte.
+     * @param offset field offset
+     * @return size of the data of the field
+     * @throws SerializationException if the field type is not supported
+     */
+    private int dataSize(final int offset) throws SerializationException
+    {
+        byte type = type(offset);
+        int pos = offset + 1;
+        switch (type)
+        {
+            case FieldTypes.BYTE_8:
+            case FieldTypes.BOOLEAN_8:
+            case FieldTypes.CHAR_8:
+                return 1;
+            case FieldTypes.SHORT_16:
+            case FieldTypes.CHAR_16:
+                return 2;
+            case FieldTypes.INT_32:
+            case FieldTypes.FLOAT_32:
+                return 4;
+            case FieldTypes.LONG_64:
+            case FieldTypes.DOUBLE_64:
+                return 8;
+            case FieldTypes.STRING_8:
+            case FieldTypes.BYTE_8_ARRAY:
+            case FieldTypes.BOOLEAN_8_ARRAY:
+                return 4 + this.buffer.getInt(pos);
+            case FieldTypes.STRING_16:
+            case FieldTypes.SHORT_16_ARRAY:
+                return 4 + 2 * this.buffer.getInt(pos);
+            case FieldTypes.INT_32_ARRAY:
+            case FieldTypes.FLOAT_32_ARRAY:
+                return 4 + 4 * this.buffer.getInt(pos);
+            case FieldTypes.LONG_64_ARRAY:
+            case FieldTypes.DOUBLE_64_ARRAY:
+                return 4 + 8 * this.buffer.getInt(pos);
+            case FieldTypes.BYTE_8_MATRIX:
+            case FieldTypes.BOOLEAN_8_MATRIX:
+                return 8 + this.buffer.getInt(pos) * this.buffer.getInt(pos + 4);
+            case FieldTypes.SHORT_16_MATRIX:
+                return 8 + 2 * this.buffer.getInt(pos) * this.buffer.getInt(pos + 4);
+            case FieldTypes.INT_32_MATRIX:
+            case FieldTypes.FLOAT_32_MATRIX:
+                return 8 + 4 * this.buffer.getInt(pos) * this.buffer.getInt(pos + 4);
+            case FieldTypes.LONG_64_MATRIX:
+            case FieldTypes.DOUBLE_64_MATRIX:
+                return 8 + 8 * this.buffer.getInt(pos) * this.buffer.getInt(pos + 4);
+            case FieldTypes.FLOAT_32_UNIT:
+                return 6;
+            case FieldTypes.DOUBLE_64_UNIT:
+                return 10;
+            case FieldTypes.FLOAT_32_UNIT_ARRAY:
+                return 6 + 4 * this.buffer.getInt(pos);
+            case FieldTypes.DOUBLE_64_UNIT_ARRAY:
+                return 6 + 8 * this.buffer.getInt(pos);
+            case FieldTypes.FLOAT_32_UNIT_MATRIX:
+                return 10 + 4 * this.buffer.getInt(pos) * this.buffer.getInt(pos + 4);
+            case FieldTypes.DOUBLE_64_UNIT_MATRIX:
+                return 10 + 8 * this.buffer.getInt(pos) * this.buffer.getInt(pos + 4);
+            default:
+                throw new SerializationException("Field type " + type + " is not supported by Sim0mqReader.");
+        }
+    }
+
+    /**
+     * Reads a string at the offset.
+     * @param offset field offset
+     * @return string
+     * @throws SerializationException if the field is not a string
+     */
+    private String readString(final int offset) throws SerializationException
+    {
+        byte type = type(offset);
+        int length = this.buffer.getInt(offset + 1);
+        if (type == FieldTypes.STRING_8)
+        {
+            return new String(this.message, offset + 5, length, StandardCharsets.UTF_8);
+        }
+        if (type == FieldTypes.STRING_16)
+        {
+            char[] chars = new char[length];
+            for (int i = 0; i < length; i++)
+            {
+                chars[i] = this.buffer.getChar(offset + 5 + 2 * i);
+            }
+            return new String(chars);
+        }
+        throw new SerializationException("Field of type " + type + " is not a string.");
+    }
+
+    /**
+     * Reads the value of a short field at the offset.
+     * @param offset field offset
+     * @return short value
+     * @throws SerializationException if the field is not a short
+     */
+    private short readShortValue(final int offset) throws SerializationException
+    {
+        if (type(offset) != FieldTypes.SHORT_16)
+        {
+            throw new SerializationException("Number of fields is not a short.");
+        }
+        return this.buffer.getShort(offset + 1);
+    }
+
+    /**
+     * Reads a numeric scalar at the offset, in SI units.
+     * @param offset field offset
+     * @return SI value
+     * @throws SerializationException if the field is not numeric
+     */
+    private double readNumber(final int offset) throws SerializationException
+    {
+        byte type = type(offset);
+        int pos = offset + 1;
+        return switch (type)
+        {
+            case FieldTypes.BYTE_8 -> this.buffer.get(pos);
+            case FieldTypes.SHORT_16 -> this.buffer.getShort(pos);
+            case FieldTypes.INT_32 -> this.buffer.getInt(pos);
+            case FieldTypes.LONG_64 -> this.buffer.getLong(pos);
+            case FieldTypes.FLOAT_32 -> this.buffer.getFloat(pos);
+            case FieldTypes.DOUBLE_64 -> this.buffer.getDouble(pos);
+            case FieldTypes.FLOAT_32_UNIT -> this.buffer.getFloat(pos + 2);
+            case FieldTypes.DOUBLE_64_UNIT -> this.buffer.getDouble(pos + 2);
+            default -> throw new SerializationException("Field of type " + type + " is not numeric.");
+        };
+    }
+
+}
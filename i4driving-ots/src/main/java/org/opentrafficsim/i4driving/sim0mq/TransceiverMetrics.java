@@ -0,0 +1,510 @@
+package org.opentrafficsim.i4driving.sim0mq;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Instant;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.management.Attribute;
+import javax.management.AttributeList;
+import javax.management.AttributeNotFoundException;
+import javax.management.DynamicMBean;
+import javax.management.JMException;
+import javax.management.MBeanAttributeInfo;
+import javax.management.MBeanInfo;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import javax.management.ReflectionException;
+
+import org.djutils.logger.CategoryLogger;
+import org.opentrafficsim.i4driving.messages.DefaultGson;
+
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * Metrics of a co-simulation session: message counts and bytes per message type and direction, histograms of the decode,
+ * schedule, simulate and encode latency, of the queueing latency and of the wall time of PROGRESS steps, the depth of the
+ * outbound queue, and the ratio of simulation time to wall-clock time. Metrics are collected with lock-free counters, and can
+ * be read from any thread.
+ * <p>
+ * Metrics are exposed as attributes of a JMX MBean {@code org.opentrafficsim.i4driving:type=OtsTransceiver,session=i}.
+ * Optionally, they are appended periodically to a file, as JSON lines if the file name ends with {@code .json} and as CSV
+ * otherwise, and served as JSON by an HTTP server on the loopback address at {@code /metrics}.
+ * </p>
+ * @author wjschakel
+ */
+final class TransceiverMetrics implements DynamicMBean
+{
+
+    /** Session index. */
+    private final int session;
+
+    /** Counters of received messages per message type. */
+    private final Map<String, TypeCounter> received = new ConcurrentHashMap<>();
+
+    /** Counters of sent messages per message type. */
+    private final Map<String, TypeCounter> sent = new ConcurrentHashMap<>();
+
+    /** Time to read the type of a received message and to decode its payload, if it is not read lazily. */
+    private final LatencyHistogram decode = new LatencyHistogram();
+
+    /** Time to handle a received message other than decoding and simulating, mostly scheduling events. */
+    private final LatencyHistogram schedule = new LatencyHistogram();
+
+    /** Time to execute simulation events, per PROGRESS step or real-time advance. */
+    private final LatencyHistogram simulate = new LatencyHistogram();
+
+    /** Time to encode a message on the simulation thread. */
+    private final LatencyHistogram encode = new LatencyHistogram();
+
+    /** Time messages spend in the outbound queue. */
+    private final LatencyHistogram queueing = new LatencyHistogram();
+
+    /** Wall time of PROGRESS steps in lock-step mode, from receiving PROGRESS until READY is sent. */
+    private final LatencyHistogram step = new LatencyHistogram();
+
+    /** Number of messages in the outbound queue. */
+    private final LongAdder queueDepth = new LongAdder();
+
+    /** Maximum number of messages in the outbound queue. */
+    private final AtomicLong maxQueueDepth = new AtomicLong();
+
+    /** System time at which the current simulation was set up [ns]. */
+    private volatile long simulationStart = System.nanoTime();
+
+    /** Simulation time of the current simulation [s]. */
+    private volatile double simulationTime;
+
+    /** Name under which the MBean is registered, {@code null} if not registered. */
+    private ObjectName objectName;
+
+    /** Executor that appends metrics to a file, {@code null} if none. */
+    private ScheduledExecutorService dumper;
+
+    /** HTTP server, {@code null} if none. */
+    private HttpServer server;
+
+    /**
+     * Constructor.
+     * @param session session index
+     */
+    TransceiverMetrics(final int session)
+    {
+        this.session = session;
+    }
+
+    /**
+     * Registers a received message.
+     * @param type message type
+     * @param bytes number of bytes
+     */
+    void received(final String type, final int bytes)
+    {
+        this.received.computeIfAbsent(type, (t) -> new TypeCounter()).add(bytes);
+    }
+
+    /**
+     * Registers a sent message.
+     * @param type message type
+     * @param bytes number of bytes
+     */
+    void sent(final String type, final int bytes)
+    {
+        this.sent.computeIfAbsent(type, (t) -> new TypeCounter()).add(bytes);
+    }
+
+    /**
+     * Registers that a message was added to the outbound queue.
+     */
+    void queued()
+    {
+        this.queueDepth.increment();
+        long depth = this.queueDepth.sum();
+        if (depth > this.maxQueueDepth.get())
+        {
+            this.maxQueueDepth.accumulateAndGet(depth, Math::max);
+        }
+    }
+
+    /**
+     * Registers that a message was taken from the outbound queue.
+     * @param queueTime system time at which the message was queued [ns]
+     */
+    void dequeued(final long queueTime)
+    {
+        this.queueDepth.decrement();
+        this.queueing.recordSince(queueTime);
+    }
+
+    /**
+     * Registers that a new simulation was set up, which restarts the ratio of simulation time to wall-clock time.
+     */
+    void simulationStarted()
+    {
+        this.simulationTime = 0.0;
+        this.simulationStart = System.nanoTime();
+    }
+
+    /**
+     * Registers the simulation time after simulation events were executed.
+     * @param time simulation time [s]
+     */
+    void simulationTime(final double time)
+    {
+        this.simulationTime = time;
+    }
+
+    /**
+     * Returns the decode latency histogram.
+     * @return decode latency histogram
+     */
+    LatencyHistogram getDecode()
+    {
+        return this.decode;
+    }
+
+    /**
+     * Returns the schedule latency histogram.
+     * @return schedule latency histogram
+     */
+    LatencyHistogram getSchedule()
+    {
+        return this.schedule;
+    }
+
+    /**
+     * Returns the simulate latency histogram.
+     * @return simulate latency histogram
+     */
+    LatencyHistogram getSimulate()
+    {
+        return this.simulate;
+    }
+
+    /**
+     * Returns the encode latency histogram.
+     * @return encode latency histogram
+     */
+    LatencyHistogram getEncode()
+    {
+        return this.encode;
+    }
+
+    /**
+     * Returns the queueing latency histogram.
+     * @return queueing latency histogram
+     */
+    LatencyHistogram getQueueing()
+    {
+        return this.queueing;
+    }
+
+    /**
+     * Returns the step wall time histogram.
+     * @return step wall time histogram
+     */
+    LatencyHistogram getStep()
+    {
+        return this.step;
+    }
+
+    /**
+     * Returns all metrics by name, e.g. {@code received.EXTERNAL.count}, {@code simulate.p99} [ms] or {@code queue.depth}.
+     * @return all metrics by name
+     */
+    Map<String, Number> snapshot()
+    {
+        Map<String, Number> metrics = new LinkedHashMap<>();
+        putCounters(metrics, "received", this.received);
+        putCounters(metrics, "sent", this.sent);
+        putHistogram(metrics, "decode", this.decode);
+        putHistogram(metrics, "schedule", this.schedule);
+        putHistogram(metrics, "simulate", this.simulate);
+        putHistogram(metrics, "encode", this.encode);
+        putHistogram(metrics, "queueing", this.queueing);
+        putHistogram(metrics, "step", this.step);
+        metrics.put("queue.depth", this.queueDepth.sum());
+        metrics.put("queue.maxDepth", this.maxQueueDepth.get());
+        double simTime = this.simulationTime;
+        double wallTime = (System.nanoTime() - this.simulationStart) / 1e9;
+        metrics.put("simulation.time", simTime);
+        metrics.put("simulation.wallTime", wallTime);
+        metrics.put("simulation.realTimeRatio", wallTime > 0.0 ? simTime / wallTime : 0.0);
+        return metrics;
+    }
+
+    /**
+     * Adds counters per message type.
+     * @param metrics metrics
+     * @param direction "received" or "sent"
+     * @param counters counters per message type
+     */
+    private static void putCounters(final Map<String, Number> metrics, final String direction,
+            final Map<String, TypeCounter> counters)
+    {
+        for (Entry<String, TypeCounter> entry : counters.entrySet())
+        {
+            metrics.put(direction + "." + entry.getKey() + ".count", entry.getValue().count.sum());
+            metrics.put(direction + "." + entry.getKey() + ".bytes", entry.getValue().bytes.sum());
+        }
+    }
+
+    /**
+     * Adds the statistics of a histogram.
+     * @param metrics metrics
+     * @param name histogram name
+     * @param histogram histogram
+     */
+    private static void putHistogram(final Map<String, Number> metrics, final String name, final LatencyHistogram histogram)
+    {
+        metrics.put(name + ".count", histogram.getCount());
+        metrics.put(name + ".mean", histogram.getMean());
+        metrics.put(name + ".p50", histogram.getPercentile(0.5));
+        metrics.put(name + ".p90", histogram.getPercentile(0.9));
+        metrics.put(name + ".p99", histogram.getPercentile(0.99));
+        metrics.put(name + ".max", histogram.getMax());
+    }
+
+    /**
+     * Returns all metrics as a JSON object, with the time and session index.
+     * @return all metrics as a JSON object
+     */
+    String toJson()
+    {
+        Map<String, Object> json = new LinkedHashMap<>();
+        json.put("time", Instant.now().toString());
+        json.put("session", this.session);
+        json.put("metrics", snapshot());
+        return DefaultGson.GSON.toJson(json);
+    }
+
+    /**
+     * Registers the MBean, and starts appending metrics to a file and the HTTP server, if specified. Failures are logged, as
+     * metrics should not prevent a co-simulation.
+     * @param file file to append metrics to, {@code null} for none
+     * @param interval interval between appending metrics [s]
+     * @param httpPort port of the HTTP server, 0 for none
+     */
+    void start(final Path file, final double interval, final int httpPort)
+    {
+        try
+        {
+            MBeanServer mBeanServer = ManagementFactory.getPlatformMBeanServer();
+            ObjectName name = new ObjectName("org.opentrafficsim.i4driving:type=OtsTransceiver,session=" + this.session);
+            if (mBeanServer.isRegistered(name))
+            {
+                // a previous embedded session with the same index
+                mBeanServer.unregisterMBean(name);
+            }
+            mBeanServer.registerMBean(this, name);
+            this.objectName = name;
+        }
+        catch (JMException ex)
+        {
+            CategoryLogger.always().warn(ex, "Ots cannot register metrics MBean");
+        }
+        if (file != null)
+        {
+            boolean json = file.getFileName().toString().endsWith(".json");
+            this.dumper = Executors.newSingleThreadScheduledExecutor((runnable) ->
+            {
+                Thread thread = new Thread(runnable, "Ots metrics " + this.session);
+                thread.setDaemon(true);
+                return thread;
+            });
+            long period = Math.max(1L, (long) (interval * 1000.0));
+            this.dumper.scheduleAtFixedRate(() -> append(file, json), period, period, TimeUnit.MILLISECONDS);
+            CategoryLogger.always().info("Ots appends metrics to {} every {}s", file, interval);
+        }
+        if (httpPort > 0)
+        {
+            try
+            {
+                this.server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), httpPort), 0);
+                this.server.createContext("/metrics", (exchange) ->
+                {
+                    byte[] body = toJson().getBytes(StandardCharsets.UTF_8);
+                    exchange.getResponseHeaders().set("Content-Type", "application/json");
+                    exchange.sendResponseHeaders(200, body.length);
+                    try (OutputStream out = exchange.getResponseBody())
+                    {
+                        out.write(body);
+                    }
+                });
+                // the default executor handles requests on the server thread, metrics are cheap to read
+                this.server.start();
+                CategoryLogger.always().info("Ots serves metrics at http://localhost:{}/metrics", httpPort);
+            }
+            catch (IOException ex)
+            {
+                CategoryLogger.always().warn(ex, "Ots cannot serve metrics on port {}", httpPort);
+            }
+        }
+    }
+
+    /**
+     * Appends metrics to a file, as a JSON line, or as CSV lines with time, session, metric and value.
+     * @param file file
+     * @param json whether to append JSON, rather than CSV
+     */
+    private void append(final Path file, final boolean json)
+    {
+        StringBuilder text = new StringBuilder();
+        if (json)
+        {
+            text.append(toJson()).append(System.lineSeparator());
+        }
+        else
+        {
+            if (!Files.exists(file))
+            {
+                text.append("time,session,metric,value").append(System.lineSeparator());
+            }
+            String time = Instant.now().toString();
+            for (Entry<String, Number> entry : snapshot().entrySet())
+            {
+                text.append(time).append(',').append(this.session).append(',').append(entry.getKey()).append(',')
+                        .append(entry.getValue()).append(System.lineSeparator());
+            }
+        }
+        try
+        {
+            Files.writeString(file, text, StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+        }
+        catch (IOException ex)
+        {
+            CategoryLogger.always().error(ex, "Ots stops appending metrics to {}", file);
+            this.dumper.shutdown();
+        }
+    }
+
+    /**
+     * Unregisters the MBean, and stops appending metrics and the HTTP server.
+     */
+    void stop()
+    {
+        if (this.dumper != null)
+        {
+            this.dumper.shutdown();
+        }
+        if (this.server != null)
+        {
+            this.server.stop(0);
+        }
+        if (this.objectName != null)
+        {
+            try
+            {
+                ManagementFactory.getPlatformMBeanServer().unregisterMBean(this.objectName);
+            }
+            catch (JMException ex)
+            {
+                // already unregistered
+            }
+        }
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public Object getAttribute(final String attribute) throws AttributeNotFoundException
+    {
+        Number value = snapshot().get(attribute);
+        if (value == null)
+        {
+            throw new AttributeNotFoundException(attribute);
+        }
+        return value;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public void setAttribute(final Attribute attribute) throws AttributeNotFoundException
+    {
+        throw new AttributeNotFoundException("Metrics are read-only.");
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public AttributeList getAttributes(final String[] attributes)
+    {
+        Map<String, Number> metrics = snapshot();
+        AttributeList list = new AttributeList();
+        for (String attribute : attributes)
+        {
+            if (metrics.containsKey(attribute))
+            {
+                list.add(new Attribute(attribute, metrics.get(attribute)));
+            }
+        }
+        return list;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public AttributeList setAttributes(final AttributeList attributes)
+    {
+        return new AttributeList();
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public Object invoke(final String actionName, final Object[] params, final String[] signature) throws ReflectionException
+    {
+        throw new ReflectionException(new NoSuchMethodException(actionName));
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public MBeanInfo getMBeanInfo()
+    {
+        // message types are added as they are first received or sent
+        Map<String, Number> metrics = snapshot();
+        MBeanAttributeInfo[] attributes = new MBeanAttributeInfo[metrics.size()];
+        int i = 0;
+        for (Entry<String, Number> entry : metrics.entrySet())
+        {
+            attributes[i++] = new MBeanAttributeInfo(entry.getKey(), entry.getValue().getClass().getName(), entry.getKey(),
+                    true, false, false);
+        }
+        return new MBeanInfo(getClass().getName(), "Metrics of OtsTransceiver session " + this.session, attributes, null,
+                null, null);
+    }
+
+    /**
+     * Number of messages and bytes of a message type.
+     */
+    private static final class TypeCounter
+    {
+        /** Number of messages. */
+        private final LongAdder count = new LongAdder();
+
+        /** Number of bytes. */
+        private final LongAdder bytes = new LongAdder();
+
+        /**
+         * Adds a message.
+         * @param messageBytes number of bytes of the message
+         */
+        void add(final int messageBytes)
+        {
+            this.count.increment();
+            this.bytes.add(messageBytes);
+        }
+    }
+
+}
@@ -0,0 +1,208 @@
+package org.opentrafficsim.i4driving.tactical;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.djutils.draw.point.Point2d;
+import org.opentrafficsim.core.network.Link;
+import org.opentrafficsim.road.network.RoadNetwork;
+import org.opentrafficsim.road.network.lane.CrossSectionLink;
+import org.opentrafficsim.road.network.lane.Lane;
+import org.opentrafficsim.road.network.lane.LanePosition;
+
+/**
+ * Spatial index of the lanes (and shoulders) in a network, to find the closest lane position of many locations, e.g. when
+ * spawning many GTUs. Lanes are registered in the cells of a grid that their bounding box overlaps. A look-up searches rings of
+ * cells around the location, until no lane in further cells can be closer. The result is equal to
+ * {@code NetworkUtil.getLanePosition()}, also in case of equal distances. The index does not follow changes in the network.
+ * This class is not thread-safe.
+ * @author wjschakel
+ */
+public final class LaneIndex
+{
+
+    /** Size of grid cells [m]. */
+    private static final double CELL_SIZE = 50.0;
+
+    /** Lanes, in the order of {@code NetworkUtil.getLanePosition()}. */
+    private final Lane[] lanes;
+
+    /** Bounding boxes of lane center lines, as minimum x, minimum y, maximum x and maximum y per lane. */
+    private final double[] boxes;
+
+    /** Indices of lanes per cell. */
+    private final Map<Long, int[]> cells = new HashMap<>();
+
+    /** Minimum cell x index. */
+    private int minX = Integer.MAX_VALUE;
+
+    /** Minimum cell y index. */
+    private int minY = Integer.MAX_VALUE;
+
+    /** Maximum cell x index. */
+    private int maxX = Integer.MIN_VALUE;
+
+    /** Maximum cell y index. */
+    private int maxY = Integer.MIN_VALUE;
+
+    /** Look-up in which each lane was last evaluated, such that lanes in multiple cells are evaluated once per look-up. */
+    private final int[] evaluated;
+
+    /** Look-up counter. */
+    private int lookUp;
+
+    /**
+     * Constructor.
+     * @param network network
+     */
+    public LaneIndex(final RoadNetwork network)
+    {
+        List<Lane> laneList = new ArrayList<>();
+        for (Link link : network.getLinkMap().values())
+        {
+            if (link instanceof CrossSectionLink roadLink)
+            {
+                laneList.addAll(roadLink.getLanesAndShoulders());
+            }
+        }
+        this.lanes = laneList.toArray(new Lane[laneList.size()]);
+        this.boxes = new double[4 * this.lanes.length];
+        this.evaluated = new int[this.lanes.length];
+        Map<Long, List<Integer>> cellLists = new HashMap<>();
+        for (int i = 0; i < this.lanes.length; i++)
+        {
+            double x0 = Double.POSITIVE_INFINITY;
+            double y0 = Double.POSITIVE_INFINITY;
+            double x1 = Double.NEGATIVE_INFINITY;
+            double y1 = Double.NEGATIVE_INFINITY;
+            for (Point2d point : this.lanes[i].getCenterLine().getPoints())
+            {
+                x0 = Math.min(x0, point.x);
+                y0 = Math.min(y0, point.y);
+                x1 = Math.max(x1, point.x);
+                y1 = Math.max(y1, point.y);
+            }
+            this.boxes[4 * i] = x0;
+            this.boxes[4 * i + 1] = y0;
+            this.boxes[4 * i + 2] = x1;
+            this.boxes[4 * i + 3] = y1;
+            for (int cx = cell(x0); cx <= cell(x1); cx++)
+            {
+                for (int cy = cell(y0); cy <= cell(y1); cy++)
+                {
+                    cellLists.computeIfAbsent(key(cx, cy), (k) -> new ArrayList<>()).add(i);
+                }
+            }
+            this.minX = Math.min(this.minX, cell(x0));
+            this.minY = Math.min(this.minY, cell(y0));
+            this.maxX = Math.max(this.maxX, cell(x1));
+            this.maxY = Math.max(this.maxY, cell(y1));
+        }
+        cellLists.forEach((key, list) -> this.cells.put(key, list.stream().mapToInt(Integer::intValue).toArray()));
+    }
+
+    /**
+     * Returns the lane position closest to the given location.
+     * @param position position
+     * @return lane position closest to the given location, {@code null} if the network has no lanes
+     */
+    public LanePosition getLanePosition(final Point2d position)
+    {
+        if (this.lanes.length == 0)
+        {
+            return null;
+        }
+        this.lookUp++;
+        int cx = cell(position.x);
+        int cy = cell(position.y);
+        int best = -1;
+        double bestDistance = Double.POSITIVE_INFINITY;
+        double bestFraction = 0.0;
+        // rings before the first ring that overlaps the grid are empty
+        int firstRing =
+                Math.max(0, Math.max(Math.max(this.minX - cx, cx - this.maxX), Math.max(this.minY - cy, cy - this.maxY)));
+        int lastRing = Math.max(Math.max(cx - this.minX, this.maxX - cx), Math.max(cy - this.minY, this.maxY - cy));
+        for (int ring = firstRing; ring <= lastRing; ring++)
+        {
+            for (int x = Math.max(cx - ring, this.minX); x <= Math.min(cx + ring, this.maxX); x++)
+            {
+                for (int y = Math.max(cy - ring, this.minY); y <= Math.min(cy + ring, this.maxY); y++)
+                {
+                    // only the cells on the ring, the inner cells were searched in previous rings
+                    if (Math.abs(x - cx) != ring && Math.abs(y - cy) != ring)
+                    {
+                        y = cy + ring - 1;
+                        continue;
+                    }
+                    int[] cellLanes = this.cells.get(key(x, y));
+                    if (cellLanes == null)
+                    {
+                        continue;
+                    }
+                    for (int i : cellLanes)
+                    {
+                        if (this.evaluated[i] == this.lookUp || boxDistance(i, position) > bestDistance)
+                        {
+                            continue;
+                        }
+                        this.evaluated[i] = this.lookUp;
+                        double fraction = NetworkUtil.getFraction(this.lanes[i], position);
+                        double distance =
+                                this.lanes[i].getCenterLine().getLocationFractionExtended(fraction).distance(position);
+                        // on equal distance, the first lane in network order is used, as in NetworkUtil.getLanePosition()
+                        if (distance < bestDistance || (distance == bestDistance && i < best))
+                        {
+                            best = i;
+                            bestDistance = distance;
+                            bestFraction = fraction;
+                        }
+                    }
+                }
+            }
+            // lanes only in further rings are at least this far away
+            if (bestDistance < ring * CELL_SIZE)
+            {
+                break;
+            }
+        }
+        Lane lane = this.lanes[best];
+        return new LanePosition(lane, lane.getCenterLine().getLength().times(bestFraction));
+    }
+
+    /**
+     * Returns the distance between a location and the bounding box of a lane, which is 0 inside the box.
+     * @param i lane index
+     * @param position position
+     * @return distance between a location and the bounding box of a lane
+     */
+    private double boxDistance(final int i, final Point2d position)
+    {
+        double dx = Math.max(0.0, Math.max(this.boxes[4 * i] - position.x, position.x - this.boxes[4 * i + 2]));
+        double dy = Math.max(0.0, Math.max(this.boxes[4 * i + 1] - position.y, position.y - this.boxes[4 * i + 3]));
+        return Math.hypot(dx, dy);
+    }
+
+    /**
+     * Returns the cell index of a coordinate.
+     * @param coordinate x or y coordinate [m]
+     * @return cell index
+     */
+    private static int cell(final double coordinate)
+    {
+        return (int) Math.floor(coordinate / CELL_SIZE);
+    }
+
+    /**
+     * Returns the key of a cell.
+     * @param x cell x index
+     * @param y cell y index
+     * @return key of the cell
+     */
+    private static long key(final int x, final int y)
+    {
+        return ((long) x << 32) | (y & 0xFFFFFFFFL);
+    }
+
+}
@@ -24,7 +24,8 @@ public final class NetworkUtil
     }
 
     /**
-     * Returns the lane position closest to the given location.
+     * Returns the lane position closest to the given location. For many look-ups in the same network, {@code LaneIndex} is
+     * faster.
      * @param network network
      * @param position position
      * @return lane position closest to the given location
@@ -39,11 +40,8 @@ public final class NetworkUtil
             {
                 for (Lane lane : roadLink.getLanesAndShoulders())
                 {
-                    double fraction = lane.getCenterLine().projectFractional(link.getStartNode().getHeading(),
-                            link.getEndNode().getHeading(), position.x, position.y, FractionalFallback.ENDPOINT);
-                    fraction = fraction < 0.0 ? 0.0 : (fraction > 1.0 ? 1.0 : fraction);
-                    Point2d pointOnLane = lane.getCenterLine().getLocationFractionExtended(fraction);
-                    double distance = pointOnLane.distance(position);
+                    double fraction = getFraction(lane, position);
+                    double distance = lane.getCenterLine().getLocationFractionExtended(fraction).distance(position);
                     if (distance < minDistance)
                     {
                         minDistance = distance;
@@ -55,4 +53,18 @@ public final class NetworkUtil
         return lanePosition;
     }
 
+    /**
+     * Returns the fraction along the center line of the lane, of the projection of the given location, limited to [0...1].
+     * @param lane lane
+     * @param position position
+     * @return fraction along the center line of the lane
+     */
+    static double getFraction(final Lane lane, final Point2d position)
+    {
+        Link link = lane.getLink();
+        double fraction = lane.getCenterLine().projectFractional(link.getStartNode().getHeading(),
+                link.getEndNode().getHeading(), position.x, position.y, FractionalFallback.ENDPOINT);
+        return fraction < 0.0 ? 0.0 : (fraction > 1.0 ? 1.0 : fraction);
+    }
+
 }
@@ -52,6 +52,7 @@ import org.opentrafficsim.i4driving.tactical.perception.mental.channel.ChannelTa
 import org.opentrafficsim.i4driving.tactical.perception.mental.channel.ChannelTaskSignal;
 import org.opentrafficsim.i4driving.tactical.perception.mental.channel.ChannelTaskTrafficLight;
 import org.opentrafficsim.i4driving.tactical.perception.mental.channel.ConflictUtilTmp;
+import org.opentrafficsim.i4driving.tactical.perception.mental.channel.DemandMemoization;
 import org.opentrafficsim.road.gtu.lane.CollisionException;
 import org.opentrafficsim.road.gtu.lane.LaneBasedGtu;
 import org.opentrafficsim.road.gtu.lane.perception.LanePerception;
@@ -156,6 +157,15 @@ public class ScenarioTacticalPlannerFactory implements LaneBasedTacticalPlannerF
             negatable = true)
     private boolean temporalAnticipation = true;
 
+    /** Memoization of task demand under FullerImplementation.ATTENTION_MATRIX. */
+    @Option(names = {"--demandMemoization"},
+            description = "Reuses task demand while its headways are within resolution fp_dt (ATTENTION_MATRIX only).",
+            defaultValue = "false", negatable = true)
+    private boolean demandMemoization = false;
+
+    /** Hit rate of memoization of task demand. */
+    private final DemandMemoization memoization = new DemandMemoization();
+
     // Tasks
 
     /** Car-following task. */
@@ -554,7 +564,12 @@ public class ScenarioTacticalPlannerFactory implements LaneBasedTacticalPlannerF
                 behavioralAdapatations.add(new AdaptationUpdateTime());
             }
 
-            mental = new ChannelFuller(taskSuppliers, behavioralAdapatations);
+            ChannelFuller channelFuller = new ChannelFuller(taskSuppliers, behavioralAdapatations);
+            if (this.demandMemoization)
+            {
+                channelFuller.setDemandMemoization(this.memoization);
+            }
+            mental = channelFuller;
 
             estimationNeighbors = new SaturationEstimation(true);
             estimationConflicts = new SaturationEstimation(false);
@@ -689,6 +704,25 @@ public class ScenarioTacticalPlannerFactory implements LaneBasedTacticalPlannerF
         this.primaryTask = primaryTask;
     }
 
+    /**
+     * Enables/disables memoization of task demand ({@code FullerImplementation.ATTENTION_MATRIX} only).
+     * @param demandMemoization memoization of task demand
+     */
+    public void setDemandMemoization(final boolean demandMemoization)
+    {
+        saveState("demandMemoization");
+        this.demandMemoization = demandMemoization;
+    }
+
+    /**
+     * Returns the hit rate of memoization of task demand of all GTUs generated with memoization.
+     * @return hit rate of memoization of task demand
+     */
+    public DemandMemoization getDemandMemoization()
+    {
+        return this.memoization;
+    }
+
     /**
      * Sets the temporal anticipation, which follows a constant-speed heuristic.
      * @param temporalAnticipation anticipation
@@ -1,6 +1,7 @@
 package org.opentrafficsim.i4driving.tactical;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.LinkedHashMap;
 import java.util.LinkedHashSet;
 import java.util.List;
@@ -20,6 +21,8 @@ import org.opentrafficsim.core.network.Network;
 import org.opentrafficsim.road.gtu.lane.LaneBasedGtu;
 import org.opentrafficsim.road.gtu.lane.perception.CategoricalLanePerception;
 import org.opentrafficsim.road.gtu.lane.perception.mental.Mental;
+import org.opentrafficsim.road.network.lane.Lane;
+import org.opentrafficsim.road.network.lane.LanePosition;
 import org.opentrafficsim.road.network.lane.object.LaneBasedObject;
 
 /**
@@ -60,14 +63,35 @@ public class VisibilityLanePerception extends CategoricalLanePerception
     }
 
     /**
-     * This class stores visibility anchor points.
+     * This class stores visibility anchor points. Visibility is sampled once per combination of a lane of the from-link and a
+     * to-link, along the lane, and interpolated at the position of the perceiving GTU.
      */
     public static class Visibility
     {
 
+        /** Default distance between samples of visibility along lanes. */
+        private static final Length DEFAULT_RESOLUTION = Length.instantiateSI(1.0);
+
         /** Anchors. */
         private final Map<Link, Map<Link, Set<Point2d>>> anchors = new LinkedHashMap<>();
 
+        /** Visibility fields per lane of a from-link and to-link, created when first requested. */
+        private final Map<Lane, Map<Link, VisibilityField>> fields = new LinkedHashMap<>();
+
+        /** Distance between samples of visibility along lanes. */
+        private Length resolution = DEFAULT_RESOLUTION;
+
+        /**
+         * Sets the distance between samples of visibility along lanes. Visibility fields that were already sampled are
+         * discarded.
+         * @param resolution distance between samples
+         */
+        public void setResolution(final Length resolution)
+        {
+            this.resolution = resolution;
+            this.fields.clear();
+        }
+
         /**
          * Add anchor. Visibility from the from-link to the to-link is along a ray from any GTU on the from-link over the anchor
          * and projected to the to-link. Visibility is downstream from this point to a relevant object, either on this link or
@@ -80,6 +104,7 @@ public class VisibilityLanePerception extends CategoricalLanePerception
         {
             this.anchors.computeIfAbsent(from, (l) -> new LinkedHashMap<>()).computeIfAbsent(to, (l) -> new LinkedHashSet<>())
                     .add(anchor);
+            this.fields.clear();
         }
 
         /**
@@ -92,12 +117,14 @@ public class VisibilityLanePerception extends CategoricalLanePerception
         public Length getVisibility(final LaneBasedGtu perceivingGtu, final LaneBasedObject object) throws ParameterException
         {
             Length x0 = perceivingGtu.getParameters().getParameter(LOOKAHEAD);
-            Link from = Try.assign(() -> perceivingGtu.getReferencePosition().lane().getLink(),
+            LanePosition position = Try.assign(() -> perceivingGtu.getReferencePosition(),
                     "GTU does not have a valid reference position.");
+            Link from = position.lane().getLink();
             if (!this.anchors.containsKey(from))
             {
                 return x0;
             }
+            double fraction = position.position().si / position.lane().getLength().si;
             Map<Link, Set<Point2d>> toMap = this.anchors.get(from);
             Link to = object.getLane().getLink();
 
@@ -108,19 +135,10 @@ public class VisibilityLanePerception extends CategoricalLanePerception
             {
                 if (toMap.containsKey(to))
                 {
-                    Length minimumVisibility = null;
-                    for (Point2d anchor : toMap.get(to))
-                    {
-                        Optional<Length> linkVisibility = computeVisibility(perceivingGtu, to, anchor, cumul);
-                        if (linkVisibility.isPresent() && linkVisibility.get().ge0())
-                        {
-                            minimumVisibility = minimumVisibility == null ? linkVisibility.get()
-                                    : Length.min(minimumVisibility, linkVisibility.get());
-                        }
-                    }
-                    if (minimumVisibility != null)
+                    double minimumVisibility = getField(position.lane(), to).getVisibility(fraction, cumul.si);
+                    if (!Double.isNaN(minimumVisibility))
                     {
-                        return Length.min(x0, minimumVisibility);
+                        return Length.min(x0, Length.instantiateSI(minimumVisibility));
                     }
                 }
 
@@ -154,9 +172,22 @@ public class VisibilityLanePerception extends CategoricalLanePerception
          */
         public Optional<Length> computeVisibility(final LaneBasedGtu perceivingGtu, final Link to, final Point2d anchor,
                 final Length cumul)
+        {
+            double distance = computeDistance(perceivingGtu.getLocation(), to, anchor);
+            return Double.isNaN(distance) ? Optional.empty() : Optional.of(cumul.plus(Length.instantiateSI(distance)));
+        }
+
+        /**
+         * Returns the distance between the end of the to-link and where the ray from a point along the anchor intersects its
+         * design line.
+         * @param pos point of view
+         * @param to to-link
+         * @param anchor anchor point for visibility
+         * @return distance between the end of the to-link and the intersection [m], {@code NaN} if there is no intersection
+         */
+        static double computeDistance(final Point2d pos, final Link to, final Point2d anchor)
         {
             PolyLine2d line = to.getDesignLine().getLine2d();
-            Point2d pos = perceivingGtu.getLocation();
             for (int i = line.size() - 1; i > 0; i--)
             {
                 Point2d intersect = Point2d.intersectionOfLines(pos.x, pos.y, anchor.x, anchor.y, true, false, line.getX(i - 1),
@@ -164,10 +195,28 @@ public class VisibilityLanePerception extends CategoricalLanePerception
                 if (intersect != null)
                 {
                     double fraction = line.projectOrthogonalFractionalExtended(intersect);
-                    return Optional.of(cumul.plus(to.getDesignLine().getLength().times(1.0 - fraction)));
+                    return to.getDesignLine().getLength().times(1.0 - fraction).si;
                 }
             }
-            return Optional.empty();
+            return Double.NaN;
+        }
+
+        /**
+         * Returns the visibility field from a lane to a to-link, which is sampled when first requested. The field can be used
+         * for visual inspection of the visibility that GTUs on the lane have.
+         * @param from lane of the from-link
+         * @param to to-link
+         * @return visibility field, {@code null} if there are no anchors between the links
+         */
+        public VisibilityField getField(final Lane from, final Link to)
+        {
+            Map<Link, Set<Point2d>> toMap = this.anchors.get(from.getLink());
+            if (toMap == null || !toMap.containsKey(to))
+            {
+                return null;
+            }
+            return this.fields.computeIfAbsent(from, (l) -> new LinkedHashMap<>()).computeIfAbsent(to,
+                    (l) -> new VisibilityField(from, to, toMap.get(to), this.resolution));
         }
 
         /**
@@ -250,4 +299,151 @@ public class VisibilityLanePerception extends CategoricalLanePerception
         }
     }
 
+    /**
+     * Visibility from a lane to a link, sampled at regular distance along the lane. Per anchor and sample the distance between
+     * the end of the to-link and where the ray from the lane center over the anchor intersects the to-link is stored.
+     * Visibility at any position on the lane is linearly interpolated between the two nearest samples, or taken from the
+     * nearest sample if the ray does not intersect the to-link at either sample.
+     */
+    public static final class VisibilityField
+    {
+
+        /** Lane of the from-link. */
+        private final Lane from;
+
+        /** To-link. */
+        private final Link to;
+
+        /** Anchors. */
+        private final List<Point2d> anchors;
+
+        /** Points of view along the center line of the lane. */
+        private final List<Point2d> points = new ArrayList<>();
+
+        /** Distance between the end of the to-link and the intersection [m], per anchor and sample, {@code NaN} if none. */
+        private final double[][] distances;
+
+        /**
+         * Constructor.
+         * @param from lane of the from-link
+         * @param to to-link
+         * @param anchors anchors
+         * @param resolution distance between samples
+         */
+        VisibilityField(final Lane from, final Link to, final Set<Point2d> anchors, final Length resolution)
+        {
+            this.from = from;
+            this.to = to;
+            this.anchors = List.copyOf(anchors);
+            int n = Math.max(2, (int) Math.ceil(from.getLength().si / resolution.si) + 1);
+            this.distances = new double[this.anchors.size()][n];
+            for (int i = 0; i < n; i++)
+            {
+                Point2d point = from.getCenterLine().getLocationFractionExtended((double) i / (n - 1));
+                this.points.add(point);
+                for (int j = 0; j < this.anchors.size(); j++)
+                {
+                    this.distances[j][i] = Visibility.computeDistance(point, to, this.anchors.get(j));
+                }
+            }
+        }
+
+        /**
+         * Returns the visibility upstream of an object at a fractional position on the lane. This is the smallest distance
+         * over all anchors, where the intersection is not downstream of the object.
+         * @param fraction fractional position on the lane
+         * @param cumul cumulative upstream distance of intermediate links between the object and the end of the to-link [m]
+         * @return visibility upstream of the object [m], {@code NaN} if no ray intersects the to-link upstream of the object
+         */
+        double getVisibility(final double fraction, final double cumul)
+        {
+            double minimumVisibility = Double.NaN;
+            for (int j = 0; j < this.anchors.size(); j++)
+            {
+                double visibility = cumul + getDistance(j, fraction);
+                if (visibility >= 0.0 && (Double.isNaN(minimumVisibility) || visibility < minimumVisibility))
+                {
+                    minimumVisibility = visibility;
+                }
+            }
+            return minimumVisibility;
+        }
+
+        /**
+         * Returns the distance between the end of the to-link and where the ray over an anchor intersects the to-link,
+         * interpolated at a fractional position on the lane.
+         * @param anchor index of the anchor
+         * @param fraction fractional position on the lane
+         * @return distance between the end of the to-link and the intersection [m], {@code NaN} if there is no intersection
+         */
+        public double getDistance(final int anchor, final double fraction)
+        {
+            double[] samples = this.distances[anchor];
+            double s = Math.max(0.0, Math.min(1.0, fraction)) * (samples.length - 1);
+            int i = Math.min((int) s, samples.length - 2);
+            double w = s - i;
+            if (Double.isNaN(samples[i]) || Double.isNaN(samples[i + 1]))
+            {
+                return w < 0.5 ? samples[i] : samples[i + 1];
+            }
+            return samples[i] + w * (samples[i + 1] - samples[i]);
+        }
+
+        /**
+         * Returns the sampled distance between the end of the to-link and where the ray over an anchor intersects the to-link.
+         * @param anchor index of the anchor
+         * @param sample index of the sample
+         * @return distance between the end of the to-link and the intersection [m], {@code NaN} if there is no intersection
+         */
+        public double getSampledDistance(final int anchor, final int sample)
+        {
+            return this.distances[anchor][sample];
+        }
+
+        /**
+         * Returns the lane of the from-link.
+         * @return lane of the from-link
+         */
+        public Lane getFrom()
+        {
+            return this.from;
+        }
+
+        /**
+         * Returns the to-link.
+         * @return to-link
+         */
+        public Link getTo()
+        {
+            return this.to;
+        }
+
+        /**
+         * Returns the anchors, in the order of their index.
+         * @return anchors
+         */
+        public List<Point2d> getAnchors()
+        {
+            return this.anchors;
+        }
+
+        /**
+         * Returns the points of view at which visibility is sampled, in the order of their index.
+         * @return points of view
+         */
+        public List<Point2d> getPoints()
+        {
+            return Collections.unmodifiableList(this.points);
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        public String toString()
+        {
+            return "VisibilityField [from=" + this.from.getFullId() + ", to=" + this.to.getId() + ", anchors="
+                    + this.anchors.size() + ", samples=" + this.points.size() + "]";
+        }
+
+    }
+
 }
@@ -63,14 +63,19 @@ public class NeighborsPerceptionChannel extends AbstractPerceptionCategory<LaneB
         Throw.when(!(getPerception().getMental() instanceof ChannelMental), IllegalArgumentException.class,
                 "Mental module is not channel based.");
         ChannelMental mental = (ChannelMental) getPerception().getMental();
+        // slots of these channels never change
+        int left = mental.getSlot(ChannelTask.LEFT);
+        int right = mental.getSlot(ChannelTask.RIGHT);
+        int front = mental.getSlot(ChannelTask.FRONT);
+        int rear = mental.getSlot(ChannelTask.REAR);
         this.headwayGtuTypeLeft =
-                new HeadwayGtuTypeChannel(estimation, anticipation, () -> mental.getPerceptionDelay(ChannelTask.LEFT));
+                new HeadwayGtuTypeChannel(estimation, anticipation, () -> mental.getSlotPerceptionDelay(left));
         this.headwayGtuTypeRight =
-                new HeadwayGtuTypeChannel(estimation, anticipation, () -> mental.getPerceptionDelay(ChannelTask.RIGHT));
+                new HeadwayGtuTypeChannel(estimation, anticipation, () -> mental.getSlotPerceptionDelay(right));
         this.headwayGtuTypeFront =
-                new HeadwayGtuTypeChannel(estimation, anticipation, () -> mental.getPerceptionDelay(ChannelTask.FRONT));
+                new HeadwayGtuTypeChannel(estimation, anticipation, () -> mental.getSlotPerceptionDelay(front));
         this.headwayGtuTypeRear =
-                new HeadwayGtuTypeChannel(estimation, anticipation, () -> mental.getPerceptionDelay(ChannelTask.REAR));
+                new HeadwayGtuTypeChannel(estimation, anticipation, () -> mental.getSlotPerceptionDelay(rear));
     }
 
     /** {@inheritDoc} */
@@ -2,8 +2,6 @@ package org.opentrafficsim.i4driving.tactical.perception.mental.channel;
 
 import org.djutils.exceptions.Throw;
 
-import Jama.Matrix;
-
 /**
  * This class describes attention over channels, based on task demand per channel. Transition probabilities are based on demand
  * per channel, where drivers are assumed to keep perceiving the same channel by the demand of that channel alone. When total
@@ -38,7 +36,30 @@ public class AttentionMatrix
         System.arraycopy(demand, 0, this.demand, 0, n);
         this.attention = new double[n];
         this.anticipationReliance = new double[n];
+        if (steadyState(demand, n, this.attention) > 1.0)
+        {
+            /*
+             * Anticipation reliance per channel is the difference between the steady state (actual proportion of time we
+             * perceive a channel) and the desired proportion of time to perceive a channel.
+             */
+            for (int i = 0; i < n; i++)
+            {
+                this.anticipationReliance[i] = this.demand[i] - this.attention[i];
+            }
+        }
+    }
 
+    /**
+     * Calculates the attention per channel into an array, without allocation. When the sum of demand is above 1, this is the
+     * steady state of the Markov chain, and otherwise it is equal to the demand.
+     * @param demand level of mental task demand per channel, of which the first <i>n</i> values are used.
+     * @param n number of channels.
+     * @param attention array in which the attention per channel is stored.
+     * @return sum of demand.
+     * @throws IllegalArgumentException when a demand value is below 0 or larger than 1
+     */
+    public static double steadyState(final double[] demand, final int n, final double[] attention)
+    {
         double demandSum = 0.0;
         for (int i = 0; i < n; i++)
         {
@@ -46,94 +67,38 @@ public class AttentionMatrix
             Throw.when(demand[i] >= 1.0, IllegalArgumentException.class, "Demand must be < 1");
             demandSum += demand[i];
         }
-        if (demandSum == 0.0)
-        {
-            return;
-        }
         if (demandSum <= 1.0)
         {
-            this.attention = this.demand;
-            return;
+            System.arraycopy(demand, 0, attention, 0, n);
+            return demandSum;
         }
 
         /*
-         * matrix is the transition matrix in a Markov chain describing the probability of the next perception glance to be
-         * towards channel j, given previous channel i.
+         * The transition matrix P of a Markov chain describes the probability of the next perception glance to be towards
+         * channel j, given previous channel i. The probability to keep perceiving the same channel is the demand of the
+         * channel, P(i,i) = TD(i). The probability of a switch to another channel is 1 - TD(i), and the relative probabilities
+         * of the other channels to be switched to are proportional to their demand, normalized by the sum of demand of the
+         * other channels, P(i,j) = (1 - TD(i)) * TD(j) / (S - TD(i)), with S the sum of demand. As S > 1 and each TD(i) < 1, at
+         * least two channels have demand and S - TD(i) > 0.
+         *
+         * The steady state v (v*P = v) is the distribution of attention (in time) over the channels. With w(i) = v(i) * (1 -
+         * TD(i)) / (S - TD(i)) and W the sum of w, the steady state for channel j requires v(j) * (1 - TD(j)) = TD(j) * (W -
+         * w(j)), and by definition v(j) * (1 - TD(j)) = w(j) * (S - TD(j)). Hence w(j) = TD(j) * W / S, and the steady state
+         * is proportional to TD(j) * (S - TD(j)) / (1 - TD(j)). This equals the eigenvector of P' pertaining to eigenvalue 1,
+         * without having to find it numerically.
          */
-        Matrix matrix = new Matrix(n, n);
+        double sum = 0.0;
         for (int i = 0; i < n; i++)
         {
-            for (int j = 0; j < n; j++)
-            {
-                /*
-                 * As we need a left-eigenvector (v*P = 1*v, v=eigenvector, P=matrix), we pre-transpose the data setting at (j,
-                 * i). Note that left-eigenvectors are the transposed right-eigenvectors of matrix'. We do not care for how it
-                 * is transposed.
-                 */
-                if (i == j)
-                {
-                    // probability to keep perceiving the same channel is the demand of the channel
-                    matrix.set(j, i, demand[i]);
-                }
-                else if (demandSum > demand[i])
-                {
-                    /*
-                     * The probability of a switch to another channel is 1 - TD(i). The relative probabilities of the other
-                     * channels to be switched to, is proportional to the demand in these channels TD(j). These are normalized
-                     * by the total sum of demand minus the demand of the channel we switch from (i.e. the sum of demand of the
-                     * other channels), and scaled by the probability to switch 1 - TD(i).
-                     */
-                    matrix.set(j, i, (1 - demand[i]) * demand[j] / (demandSum - demand[i]));
-                }
-                else
-                {
-                    // there is only one channel with task demand, do not switch
-                    matrix.set(j, i, 0.0);
-                }
-            }
-        }
-
-        /*
-         * We use Jama to find the eigenvector of the transition matrix pertaining to the eigenvalue 1. Each Markov transition
-         * matrix has an eigenvalue 1, and the pertaining eigenvector is the steady-state. This steady state is the distribution
-         * of attention (in time) over the channels.
-         */
-        var ed = matrix.eig();
-        double[] eigenValues = ed.getRealEigenvalues();
-        // find the eigenvalue closest to 1 (these values are not highly exact)
-        int eigenIndex = 0;
-        double dMin = 1.0;
-        for (int i = 0; i < n; i++)
-        {
-            double di = Math.abs(eigenValues[i] - 1.0);
-            if (di < dMin)
-            {
-                dMin = di;
-                eigenIndex = i;
-            }
-        }
-        // obtain the eigenvector pertaining to the eigenvalue of 1
-        double[][] v = ed.getV().getArray();
-        double sumEigenVector = 0.0;
-        for (int i = 0; i < n; i++)
-        {
-            this.attention[i] = v[i][eigenIndex];
-            sumEigenVector += this.attention[i];
+            attention[i] = demand[i] * (demandSum - demand[i]) / (1.0 - demand[i]);
+            sum += attention[i];
         }
         // normalize so it sums to 1
         for (int i = 0; i < n; i++)
         {
-            this.attention[i] = this.attention[i] / sumEigenVector;
-        }
-
-        /*
-         * Anticipation reliance per channel is the difference between the steady state (actual proportion of time we perceive a
-         * channel) and the desired proportion of time to perceive a channel.
-         */
-        for (int i = 0; i < n; i++)
-        {
-            this.anticipationReliance[i] = this.demand[i] - this.attention[i];
+            attention[i] = attention[i] / sum;
         }
+        return demandSum;
     }
 
     /**
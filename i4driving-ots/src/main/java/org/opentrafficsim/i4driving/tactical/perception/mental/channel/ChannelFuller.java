@@ -1,10 +1,11 @@
 package org.opentrafficsim.i4driving.tactical.perception.mental.channel;
 
+import java.util.Arrays;
 import java.util.Collection;
+import java.util.HashMap;
 import java.util.LinkedHashMap;
 import java.util.LinkedHashSet;
 import java.util.Map;
-import java.util.Map.Entry;
 import java.util.Set;
 import java.util.function.Function;
 
@@ -89,14 +90,83 @@ public class ChannelFuller implements ChannelMental
     /** Behavioral adaptations. */
     private Set<BehavioralAdaptation> behavioralAdapatations = new LinkedHashSet<>();
 
+    /** Number of slots of the channels FRONT, LEFT, RIGHT and REAR, which are registered permanently. */
+    private static final int PERMANENT_SLOTS = 4;
+
     /** Mappings from object to channel. */
     private Map<Object, Object> channelMapping = new LinkedHashMap<>();
 
-    /** Stored perception delay per channel. */
-    private Map<Object, Duration> perceptionDelay = new LinkedHashMap<>();
+    /** Slot per registered channel key. */
+    private Map<Object, Integer> slots = new LinkedHashMap<>();
+
+    /** Channel key per slot, {@code null} for a free slot. */
+    private Object[] channels = new Object[16];
+
+    /** Number of slots in use, including free slots below the highest slot in use. */
+    private int numSlots;
+
+    /** Whether the channel in each slot is present in the current step. */
+    private boolean[] present = new boolean[16];
+
+    /** Task demand per slot, 0 for free slots and channels that are not present. */
+    private double[] demand = new double[16];
+
+    /** Level of attention per slot. */
+    private double[] attention = new double[16];
+
+    /** Perception delay per slot [s]. */
+    private double[] perceptionDelay = new double[16];
+
+    /** Perception delay per slot, created on the first request in a step. */
+    private Duration[] perceptionDelayValue = new Duration[16];
+
+    /** Slots of the present channels in the order in which they were first gathered in the current step. */
+    private int[] order = new int[16];
+
+    /** Number of present channels. */
+    private int numPresent;
+
+    /** Task demand of the present channels in the order in which they were gathered. */
+    private double[] orderedDemand = new double[16];
+
+    /** Level of attention of the present channels in the order in which they were gathered. */
+    private double[] orderedAttention = new double[16];
+
+    /** Slots of the present channels in the order in which they were gathered in the previous step. */
+    private int[] previousOrder = new int[16];
+
+    /** Number of present channels in the previous step. */
+    private int previousNumPresent;
+
+    /** Minimum perception delay in the previous step [s]. */
+    private double previousTauMin = Double.NaN;
+
+    /** Maximum perception delay in the previous step [s]. */
+    private double previousTauMax = Double.NaN;
+
+    /** Task capability in the previous step. */
+    private double previousTc = Double.NaN;
+
+    /** Sum of task demand. */
+    private double sumTaskDemand;
+
+    /** Maximum level of attention of all channels. */
+    private double maxAttention;
+
+    /** Memoization of task demand, {@code null} if not applied. */
+    private DemandMemoization memoization;
+
+    /** Memoized task demand per task, which tasks that are supplied anew in each step share if they are equal. */
+    private Map<ChannelTask, MemoizedDemand> memoizedDemand = new HashMap<>();
+
+    /** Memo that is given to a task without memoized task demand, and that is only stored if the task uses it. */
+    private MemoizedDemand spareMemo;
+
+    /** Memoized data of task suppliers. */
+    private Map<Object, Object> supplierMemos = new HashMap<>();
 
-    /** Stored level of attention per channel. */
-    private Map<Object, Double> attention = new LinkedHashMap<>();
+    /** Number of steps, to remove memoized task demand of tasks that are no longer supplied. */
+    private long step;
 
     /**
      * Constructor.
@@ -108,86 +178,229 @@ public class ChannelFuller implements ChannelMental
     {
         this.taskSuppliers.addAll(taskSuppliers);
         this.behavioralAdapatations.addAll(behavioralAdapatations);
+        register(ChannelTask.FRONT);
+        register(ChannelTask.LEFT);
+        register(ChannelTask.RIGHT);
+        register(ChannelTask.REAR);
     }
 
     /** {@inheritDoc} */
     @Override
     public void apply(final LanePerception perception) throws ParameterException, GtuException
     {
-        // Clear mappings
+        // Clear mappings and the demand of the previous step
         this.channelMapping.clear();
+        for (int slot = 0; slot < this.numSlots; slot++)
+        {
+            this.present[slot] = false;
+            this.demand[slot] = 0.0;
+        }
+        int[] previous = this.previousOrder;
+        this.previousOrder = this.order;
+        this.order = previous;
+        this.previousNumPresent = this.numPresent;
+        this.numPresent = 0;
+        this.step++;
+        int memoized = 0;
 
         // Gather all channels and their maximum task demand
-        Map<Object, Double> channelTaskDemand = new LinkedHashMap<>();
         for (Function<LanePerception, Set<ChannelTask>> taskFunction : this.taskSuppliers)
         {
             for (ChannelTask task : taskFunction.apply(perception)) // if applicable will (re)map objects to channel keys
             {
-                double td = task.getDemand(perception);
+                double td;
+                if (this.memoization == null)
+                {
+                    td = task.getDemand(perception);
+                }
+                else
+                {
+                    // the spare memo is only stored if the task supports memoization
+                    MemoizedDemand memo = this.memoizedDemand.get(task);
+                    td = task.getDemand(perception, memo == null ? this.spareMemo : memo);
+                    if (memo == null && this.spareMemo.isUsed())
+                    {
+                        memo = this.spareMemo;
+                        this.memoizedDemand.put(task, memo);
+                        this.spareMemo = new MemoizedDemand(this.memoization);
+                    }
+                    if (memo != null)
+                    {
+                        memo.setStep(this.step);
+                        memoized++;
+                    }
+                }
                 Throw.when(td >= 1.0, GtuException.class,
                         "Task %s produced task demand that is greater than, or equal to, 1.0.", task.getId());
-                channelTaskDemand.merge(task.getChannel(), td, Math::max); // map to max value
+                Integer slot = this.slots.get(task.getChannel());
+                int index = slot == null ? register(task.getChannel()) : slot;
+                if (!this.present[index])
+                {
+                    this.present[index] = true;
+                    this.order[this.numPresent++] = index;
+                }
+                this.demand[index] = Math.max(this.demand[index], td); // max value
             }
         }
 
-        // Apply attention matrix and couple channel to indices
-        double[] tdArray = new double[channelTaskDemand.size()];
-        int index = 0;
-        double sumTaskDemand = 0.0;
-        Map<Object, Integer> channelIndex = new LinkedHashMap<>();
-        for (Entry<Object, Double> entry : channelTaskDemand.entrySet())
+        // Free the slots of channels that are no longer present, other than the permanent channels
+        for (int slot = PERMANENT_SLOTS; slot < this.numSlots; slot++)
+        {
+            if (!this.present[slot] && this.channels[slot] != null)
+            {
+                this.slots.remove(this.channels[slot]);
+                this.channels[slot] = null;
+            }
+        }
+        while (this.numSlots > PERMANENT_SLOTS && this.channels[this.numSlots - 1] == null)
         {
-            channelIndex.put(entry.getKey(), index);
-            double td = entry.getValue();
-            tdArray[index] = td;
-            sumTaskDemand += td;
-            index++;
+            this.numSlots--;
         }
-        AttentionMatrix matrix = new AttentionMatrix(tdArray);
 
-        // Determine attention and perception delay per channel
-        double maxAttention = 0.0;
-        this.perceptionDelay.clear();
-        this.attention.clear();
+        if (this.memoizedDemand.size() > memoized)
+        {
+            this.memoizedDemand.values().removeIf((memo) -> memo.getStep() != this.step);
+        }
+
+        // Attention and perception delay are equal to the previous step if demand and parameters are equal
         Parameters parameters = perception.getGtu().getParameters();
-        Duration tauMin = parameters.getParameter(TAU_MIN);
-        Duration tauMax = parameters.getParameter(TAU_MAX);
+        double tauMin = parameters.getParameter(TAU_MIN).si;
+        double tauMax = parameters.getParameter(TAU_MAX).si;
         double tc = parameters.getParameter(TC);
-        for (Entry<Object, Integer> entry : channelIndex.entrySet())
+        boolean reuse = this.numPresent == this.previousNumPresent && tauMin == this.previousTauMin
+                && tauMax == this.previousTauMax && tc == this.previousTc;
+        for (int i = 0; i < this.numPresent && reuse; i++)
+        {
+            reuse = this.order[i] == this.previousOrder[i] && this.demand[this.order[i]] == this.orderedDemand[i];
+        }
+        if (this.memoization != null)
         {
-            index = entry.getValue();
-            this.perceptionDelay.put(entry.getKey(),
-                    Duration.interpolate(tauMin, tauMax, matrix.getDeterioration(index)).divide(tc));
-            double att = matrix.getAttention(index);
-            maxAttention = Double.max(maxAttention, att);
-            this.attention.put(entry.getKey(), att);
+            this.memoization.step(reuse);
+        }
+        if (!reuse)
+        {
+            // Apply attention matrix in order of gathering, as the order of summation affects rounding
+            for (int i = 0; i < this.numPresent; i++)
+            {
+                this.orderedDemand[i] = this.demand[this.order[i]];
+            }
+            this.sumTaskDemand = AttentionMatrix.steadyState(this.orderedDemand, this.numPresent, this.orderedAttention);
+            Arrays.fill(this.attention, 0, this.numSlots, 0.0);
+            for (int i = 0; i < this.numPresent; i++)
+            {
+                this.attention[this.order[i]] = this.orderedAttention[i];
+            }
+
+            // Determine perception delay per channel, where deterioration is 1 without demand, and 0 when not saturated
+            this.maxAttention = 0.0;
+            for (int slot = 0; slot < this.numSlots; slot++)
+            {
+                double td = this.demand[slot];
+                double deterioration =
+                        td == 0.0 ? 1.0 : (this.sumTaskDemand > 1.0 ? (td - this.attention[slot]) / td : 0.0);
+                this.perceptionDelay[slot] = (tauMin * (1.0 - deterioration) + tauMax * deterioration) / tc;
+                this.perceptionDelayValue[slot] = null;
+                this.maxAttention = Double.max(this.maxAttention, this.attention[slot]);
+            }
+            this.previousTauMin = tauMin;
+            this.previousTauMax = tauMax;
+            this.previousTc = tc;
         }
 
         // Calculate task saturation, perception errors, and apply behavioral adaptations
-        double ts = sumTaskDemand / tc;
+        double ts = this.sumTaskDemand / tc;
         double deltaCrit = parameters.contains(TS_CRIT) ? 1.0 - parameters.getParameter(TS_CRIT) : 0.0;
         parameters.setParameter(TS, ts);
         parameters.setParameter(EST_FACTOR,
                 Math.pow(Math.max(ts + deltaCrit, 1.0), parameters.getParameter(Estimation.OVER_EST)));
-        parameters.setParameter(ATT, maxAttention);
+        parameters.setParameter(ATT, this.maxAttention);
         for (BehavioralAdaptation behavioralAdapatation : this.behavioralAdapatations)
         {
             behavioralAdapatation.adapt(parameters, ts);
         }
     }
 
+    /**
+     * Sets memoization of task demand. Tasks that support it then only determine their demand when the fingerprint of their
+     * inputs changes. Task instances that suppliers create anew in each step share memoized demand when they are equal.
+     * @param memoization memoization, which collects the hit rate, {@code null} to not apply memoization
+     */
+    public void setDemandMemoization(final DemandMemoization memoization)
+    {
+        this.memoization = memoization;
+        this.memoizedDemand.clear();
+        this.spareMemo = memoization == null ? null : new MemoizedDemand(memoization);
+        this.supplierMemos.clear();
+    }
+
+    /**
+     * Returns memoized data of a task supplier, which is created on the first request. Suppliers are shared between GTUs, and
+     * can store data here that they reuse between steps of this GTU.
+     * @param key key of the memoized data, e.g. the class of the data
+     * @param factory creates the memoized data with the memoization that collects the hit rate
+     * @param <T> type of the memoized data
+     * @return memoized data, {@code null} if memoization is not applied
+     */
+    @SuppressWarnings("unchecked")
+    <T> T getSupplierMemo(final Object key, final Function<DemandMemoization, T> factory)
+    {
+        if (this.memoization == null)
+        {
+            return null;
+        }
+        Object memo = this.supplierMemos.get(key);
+        if (memo == null)
+        {
+            memo = factory.apply(this.memoization);
+            this.supplierMemos.put(key, memo);
+        }
+        return (T) memo;
+    }
+
+    /**
+     * Registers a channel key in the first free slot.
+     * @param channel channel key
+     * @return slot of the channel
+     */
+    private int register(final Object channel)
+    {
+        int slot = 0;
+        while (slot < this.numSlots && this.channels[slot] != null)
+        {
+            slot++;
+        }
+        if (slot == this.channels.length)
+        {
+            int length = 2 * slot;
+            this.channels = Arrays.copyOf(this.channels, length);
+            this.present = Arrays.copyOf(this.present, length);
+            this.demand = Arrays.copyOf(this.demand, length);
+            this.attention = Arrays.copyOf(this.attention, length);
+            this.perceptionDelay = Arrays.copyOf(this.perceptionDelay, length);
+            this.perceptionDelayValue = Arrays.copyOf(this.perceptionDelayValue, length);
+            this.order = Arrays.copyOf(this.order, length);
+            this.orderedDemand = Arrays.copyOf(this.orderedDemand, length);
+            this.orderedAttention = Arrays.copyOf(this.orderedAttention, length);
+            this.previousOrder = Arrays.copyOf(this.previousOrder, length);
+        }
+        this.channels[slot] = channel;
+        this.slots.put(channel, slot);
+        this.numSlots = Math.max(this.numSlots, slot + 1);
+        return slot;
+    }
+
     /** {@inheritDoc} */
     @Override
     public Duration getPerceptionDelay(final Object obj)
     {
-        return this.perceptionDelay.get(getChannel(obj));
+        return getSlotPerceptionDelay(getSlot(obj));
     }
 
     /** {@inheritDoc} */
     @Override
     public double getAttention(final Object obj)
     {
-        return this.attention.get(getChannel(obj));
+        return getSlotAttention(getSlot(obj));
     }
 
     /** {@inheritDoc} */
@@ -197,20 +410,52 @@ public class ChannelFuller implements ChannelMental
         this.channelMapping.put(obj, channel);
     }
 
+    /** {@inheritDoc} */
+    @Override
+    public int getSlot(final Object obj)
+    {
+        Object channel = this.channelMapping.get(obj);
+        Integer slot = this.slots.get(channel == null ? obj : channel);
+        if (slot == null)
+        {
+            throw new IllegalArgumentException("Channel " + obj + " is not present.");
+        }
+        return slot;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public Duration getSlotPerceptionDelay(final int slot)
+    {
+        checkPresent(slot);
+        Duration delay = this.perceptionDelayValue[slot];
+        if (delay == null)
+        {
+            delay = Duration.instantiateSI(this.perceptionDelay[slot]);
+            this.perceptionDelayValue[slot] = delay;
+        }
+        return delay;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public double getSlotAttention(final int slot)
+    {
+        checkPresent(slot);
+        return this.attention[slot];
+    }
+
     /**
-     * Returns the relevant channel key for the object. This is a channel key mapped to the object, or the object itself if
-     * there is no such mapping (in which case the object should itself directly be a channel key).
-     * @param obj object.
-     * @return relevant channel key for the object.
+     * Checks that the channel in a slot is present in the current step.
+     * @param slot slot
+     * @throws IllegalArgumentException when the channel in the slot is not present
      */
-    private Object getChannel(final Object obj)
+    private void checkPresent(final int slot)
     {
-        if (this.channelMapping.containsKey(obj))
+        if (slot >= this.numSlots || !this.present[slot])
         {
-            return this.channelMapping.get(obj);
+            throw new IllegalArgumentException("Channel in slot " + slot + " is not present.");
         }
-        Throw.when(!this.perceptionDelay.containsKey(obj), IllegalArgumentException.class, "Channel %s is not present.", obj);
-        return obj;
     }
 
     /**
@@ -219,7 +464,15 @@ public class ChannelFuller implements ChannelMental
      */
     public Set<Object> getChannels()
     {
-        return new LinkedHashSet<>(this.attention.keySet());
+        Set<Object> set = new LinkedHashSet<>();
+        for (int slot = 0; slot < this.numSlots; slot++)
+        {
+            if (this.present[slot])
+            {
+                set.add(this.channels[slot]);
+            }
+        }
+        return set;
     }
 
 }
@@ -38,4 +38,30 @@ public interface ChannelMental extends Mental
      */
     void mapToChannel(Object obj, Object channel);
 
+    /**
+     * Returns the slot of the channel of an object, for fast access with {@code getSlotPerceptionDelay()} and
+     * {@code getSlotAttention()}. The slot of a channel does not change while the channel is present in consecutive steps.
+     * The channels FRONT, LEFT, RIGHT and REAR always have the same slot, which may be cached.
+     * @param obj object that is a channel key, or that is mapped to a channel key.
+     * @return slot of the channel.
+     * @throws IllegalArgumentException when the channel is not present
+     */
+    int getSlot(Object obj);
+
+    /**
+     * Returns the perception delay belonging to the perception channel in a slot.
+     * @param slot slot of the channel.
+     * @return perception delay belonging to the perception channel in the slot.
+     * @throws IllegalArgumentException when the channel in the slot is not present
+     */
+    Duration getSlotPerceptionDelay(int slot);
+
+    /**
+     * Returns the level of attention of the perception channel in a slot.
+     * @param slot slot of the channel.
+     * @return level of attention of the perception channel in the slot.
+     * @throws IllegalArgumentException when the channel in the slot is not present
+     */
+    double getSlotAttention(int slot);
+
 }
@@ -34,4 +34,18 @@ public interface ChannelTask extends Identifiable
      */
     double getDemand(LanePerception perception);
 
+    /**
+     * Returns the level of task demand, which may be memoized. This is called instead of {@code getDemand(perception)} when the
+     * mental module applies memoization. Tasks that support it gather their inputs once, and reuse the memoized level of task
+     * demand while the fingerprint of these inputs does not change. The memo belongs to this task, or to an equal task in a
+     * previous step. Tasks that do not support memoization return {@code getDemand(perception)}, which is the default.
+     * @param perception perception.
+     * @param memo memoized level of task demand.
+     * @return level of task demand.
+     */
+    default double getDemand(final LanePerception perception, final MemoizedDemand memo)
+    {
+        return getDemand(perception);
+    }
+
 }
@@ -8,6 +8,7 @@ import org.djunits.value.vdouble.scalar.Duration;
 import org.opentrafficsim.base.OtsRuntimeException;
 import org.opentrafficsim.base.parameters.ParameterException;
 import org.opentrafficsim.base.parameters.ParameterTypeDuration;
+import org.opentrafficsim.base.parameters.Parameters;
 import org.opentrafficsim.core.gtu.plan.operational.OperationalPlanException;
 import org.opentrafficsim.i4driving.Stateless;
 import org.opentrafficsim.i4driving.object.ActiveModeCrossing;
@@ -48,6 +49,16 @@ public class ChannelTaskActiveModeCrossing implements ChannelTask
 
     @Override
     public double getDemand(final LanePerception perception)
+    {
+        return getDemand(perception, null);
+    }
+
+    /**
+     * {@inheritDoc} The demand is memoized by the crossing, the maximum time headway of ego and the first arrival in buckets of
+     * parameter fp_dt, and parameter h_exp.
+     */
+    @Override
+    public double getDemand(final LanePerception perception, final MemoizedDemand memo)
     {
         // TODO this now follows the same logic as conflicts based on maximum time of ego and conflicting
         try
@@ -60,8 +71,16 @@ public class ChannelTaskActiveModeCrossing implements ChannelTask
                 ActiveModeArrival arrival = crossing.getObject().getArrivals().first();
                 Duration hActive = arrival.distance().divide(arrival.speed());
                 Duration hSelf = crossing.getDistance().divide(perception.getGtu().getSpeed());
-                Duration hExp = perception.getGtu().getParameters().getParameter(HEXP);
-                return Math.exp(-Duration.max(hActive, hSelf).si / hExp.si);
+                Duration headway = Duration.max(hActive, hSelf);
+                Parameters parameters = perception.getGtu().getParameters();
+                Duration hExp = parameters.getParameter(HEXP);
+                String id = crossing.getObject().getFullId();
+                if (memo != null && memo.reuse(DemandMemoization.fingerprint(id, headway.si, hExp.si, parameters)))
+                {
+                    return memo.getDemand();
+                }
+                double demand = Math.exp(-headway.si / hExp.si);
+                return memo == null ? demand : memo.memoize(demand);
             }
         }
         catch (OperationalPlanException | ParameterException ex)
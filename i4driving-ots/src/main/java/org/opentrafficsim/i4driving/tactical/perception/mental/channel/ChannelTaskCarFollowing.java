@@ -7,6 +7,7 @@ import java.util.function.Function;
 import org.djunits.value.vdouble.scalar.Duration;
 import org.djutils.exceptions.Try;
 import org.opentrafficsim.base.parameters.ParameterTypeDuration;
+import org.opentrafficsim.base.parameters.Parameters;
 import org.opentrafficsim.core.gtu.perception.EgoPerception;
 import org.opentrafficsim.i4driving.Stateless;
 import org.opentrafficsim.i4driving.tactical.perception.mental.CarFollowingTask;
@@ -82,6 +83,15 @@ public class ChannelTaskCarFollowing implements ChannelTask
     /** {@inheritDoc} */
     @Override
     public double getDemand(final LanePerception perception)
+    {
+        return getDemand(perception, null);
+    }
+
+    /**
+     * {@inheritDoc} The demand is memoized by the leader, the time headway in buckets of parameter fp_dt, and parameter h_exp.
+     */
+    @Override
+    public double getDemand(final LanePerception perception, final MemoizedDemand memo)
     {
         UnderlyingDistance<LaneBasedGtu> leader = this.leaderSupplier.apply(perception);
         if (leader == null)
@@ -91,8 +101,15 @@ public class ChannelTaskCarFollowing implements ChannelTask
         EgoPerception<?, ?> ego =
                 Try.assign(() -> perception.getPerceptionCategory(EgoPerception.class), "EgoPerception not present.");
         Duration headway = leader.getDistance().divide(ego.getSpeed());
-        Duration h = Try.assign(() -> perception.getGtu().getParameters().getParameter(HEXP), "Parameter h_exp not present.");
-        return headway.si <= 0.0 ? 0.999 : Math.exp(-headway.si / h.si);
+        Parameters parameters = Try.assign(() -> perception.getGtu().getParameters(), "Gtu not initialized.");
+        Duration h = Try.assign(() -> parameters.getParameter(HEXP), "Parameter h_exp not present.");
+        if (memo != null
+                && memo.reuse(DemandMemoization.fingerprint(leader.getObject().getId(), headway.si, h.si, parameters)))
+        {
+            return memo.getDemand();
+        }
+        double demand = headway.si <= 0.0 ? 0.999 : Math.exp(-headway.si / h.si);
+        return memo == null ? demand : memo.memoize(demand);
     }
 
 }
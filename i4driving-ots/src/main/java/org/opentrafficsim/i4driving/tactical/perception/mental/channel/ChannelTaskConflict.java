@@ -1,7 +1,12 @@
 package org.opentrafficsim.i4driving.tactical.perception.mental.channel;
 
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.Collection;
 import java.util.Comparator;
+import java.util.IdentityHashMap;
 import java.util.Iterator;
+import java.util.List;
 import java.util.LinkedHashMap;
 import java.util.LinkedHashSet;
 import java.util.Map;
@@ -14,14 +19,12 @@ import java.util.function.Function;
 import org.djunits.value.vdouble.scalar.Duration;
 import org.djunits.value.vdouble.scalar.Length;
 import org.djutils.exceptions.Try;
-import org.djutils.immutablecollections.ImmutableSet;
 import org.opentrafficsim.base.parameters.ParameterTypeDuration;
 import org.opentrafficsim.base.parameters.ParameterTypeLength;
 import org.opentrafficsim.base.parameters.ParameterTypes;
+import org.opentrafficsim.base.parameters.Parameters;
 import org.opentrafficsim.base.parameters.constraint.NumericConstraint;
 import org.opentrafficsim.core.gtu.perception.EgoPerception;
-import org.opentrafficsim.core.network.Link;
-import org.opentrafficsim.core.network.Node;
 import org.opentrafficsim.i4driving.Stateless;
 import org.opentrafficsim.road.gtu.lane.LaneBasedGtu;
 import org.opentrafficsim.road.gtu.lane.perception.LanePerception;
@@ -126,6 +129,16 @@ public final class ChannelTaskConflict implements ChannelTask
     /** {@inheritDoc} */
     @Override
     public double getDemand(final LanePerception perception)
+    {
+        return getDemand(perception, null);
+    }
+
+    /**
+     * {@inheritDoc} The demand is memoized by the ego headway and the conflicting headway in buckets of parameter fp_dt, and
+     * parameters h_ego and h_conf. Tasks of the same group of conflicts in consecutive steps share the memo.
+     */
+    @Override
+    public double getDemand(final LanePerception perception, final MemoizedDemand memo)
     {
         // In the following, 'headway' means time until static conflict is reached, i.e. approaching time.
 
@@ -151,45 +164,101 @@ public final class ChannelTaskConflict implements ChannelTask
         Duration egoHeadway = this.conflicts.first().getDistance().divide(ego.getSpeed());
 
         // Find least critical
-        Duration hEgo =
-                Try.assign(() -> perception.getGtu().getParameters().getParameter(HEGO), "Parameter h_ego not present.");
-        Duration hConf =
-                Try.assign(() -> perception.getGtu().getParameters().getParameter(HCONF), "Parameter h_conf not present.");
-        return Math.min(0.999, Math.exp(-Math.min(egoHeadway.si / hEgo.si, conflictHeadway.si / hConf.si)));
+        Parameters parameters = gtu.getParameters();
+        Duration hEgo = Try.assign(() -> parameters.getParameter(HEGO), "Parameter h_ego not present.");
+        Duration hConf = Try.assign(() -> parameters.getParameter(HCONF), "Parameter h_conf not present.");
+        if (memo != null)
+        {
+            double dt = DemandMemoization.getHeadwayResolution(parameters);
+            long fingerprint = DemandMemoization.mix(DemandMemoization.start(), egoHeadway.si, dt);
+            fingerprint = DemandMemoization.mix(fingerprint, conflictHeadway.si, dt);
+            fingerprint = DemandMemoization.mix(fingerprint, Double.doubleToLongBits(hEgo.si));
+            if (memo.reuse(DemandMemoization.mix(fingerprint, Double.doubleToLongBits(hConf.si))))
+            {
+                return memo.getDemand();
+            }
+        }
+        double demand = Math.min(0.999, Math.exp(-Math.min(egoHeadway.si / hEgo.si, conflictHeadway.si / hConf.si)));
+        return memo == null ? demand : memo.memoize(demand);
     }
 
     /**
-     * Returns conflict groups, which are grouped based on overlap in the upstream nodes of the conflicting lanes.
+     * Returns whether the task pertains to the same group of conflicts.
+     */
+    @Override
+    public boolean equals(final Object obj)
+    {
+        if (this == obj)
+        {
+            return true;
+        }
+        if (!(obj instanceof ChannelTaskConflict other) || this.conflicts.size() != other.conflicts.size())
+        {
+            return false;
+        }
+        for (UnderlyingDistance<Conflict> conflict : this.conflicts)
+        {
+            if (other.conflicts.stream().noneMatch((c) -> c.getObject().equals(conflict.getObject())))
+            {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /** {@inheritDoc} */
+    @Override
+    public int hashCode()
+    {
+        int hash = 0;
+        for (UnderlyingDistance<Conflict> conflict : this.conflicts)
+        {
+            hash += conflict.getObject().hashCode();
+        }
+        return hash;
+    }
+
+    /**
+     * Returns conflict groups, which are grouped based on overlap in the upstream nodes of the conflicting lanes. When the
+     * mental module applies memoization, and the conflicts and look-ahead distance are equal to the previous step, the previous
+     * grouping is reused.
      * @param perception perception
      * @return conflict groups
      */
-    private static Set<SortedSet<UnderlyingDistance<Conflict>>> findConflictGroups(final LanePerception perception)
+    private static Collection<SortedSet<UnderlyingDistance<Conflict>>> findConflictGroups(final LanePerception perception)
     {
         IntersectionPerception intersection =
                 Try.assign(() -> perception.getPerceptionCategory(IntersectionPerception.class), "No intersection perception.");
-        Iterator<UnderlyingDistance<Conflict>> conflicts =
-                intersection.getConflicts(RelativeLane.CURRENT).underlyingWithDistance();
+        List<UnderlyingDistance<Conflict>> conflicts = new ArrayList<>();
+        intersection.getConflicts(RelativeLane.CURRENT).underlyingWithDistance().forEachRemaining(conflicts::add);
+        Length x0 = Try.assign(() -> perception.getGtu().getParameters().getParameter(LOOKAHEAD), "No x0 parameter.");
+        ConflictGrouping grouping = perception.getMental() instanceof ChannelFuller fuller
+                ? fuller.getSupplierMemo(ConflictGrouping.class, ConflictGrouping::new) : null;
+        if (grouping != null && grouping.reuse(conflicts, x0))
+        {
+            return grouping.getGroups(conflicts);
+        }
 
         // Find groups of conflicts when their upstream nodes are intersecting sets
-        Map<SortedSet<UnderlyingDistance<Conflict>>, Set<Node>> groups = new LinkedHashMap<>();
-        Length x0 = Try.assign(() -> perception.getGtu().getParameters().getParameter(LOOKAHEAD), "No x0 parameter.");
-        while (conflicts.hasNext())
+        Map<SortedSet<UnderlyingDistance<Conflict>>, BitSet> groups = new LinkedHashMap<>();
+        ConflictUpstreamIndex index =
+                ConflictUpstreamIndex.get(Try.assign(() -> perception.getGtu(), "Gtu not initialized.").getNetwork());
+        for (UnderlyingDistance<Conflict> conflict : conflicts)
         {
-            UnderlyingDistance<Conflict> conflict = conflicts.next();
-            Set<Node> nodes = getUpstreamNodes(conflict.getObject().getOtherConflict(), x0);
+            BitSet nodes = index.getUpstreamNodes(conflict.getObject().getOtherConflict(), x0);
             // find overlap
-            Entry<SortedSet<UnderlyingDistance<Conflict>>, Set<Node>> group = null;
-            Iterator<Entry<SortedSet<UnderlyingDistance<Conflict>>, Set<Node>>> groupIterator = groups.entrySet().iterator();
+            Entry<SortedSet<UnderlyingDistance<Conflict>>, BitSet> group = null;
+            Iterator<Entry<SortedSet<UnderlyingDistance<Conflict>>, BitSet>> groupIterator = groups.entrySet().iterator();
             while (groupIterator.hasNext())
             {
-                Entry<SortedSet<UnderlyingDistance<Conflict>>, Set<Node>> entry = groupIterator.next();
-                if (entry.getValue().stream().anyMatch(nodes::contains))
+                Entry<SortedSet<UnderlyingDistance<Conflict>>, BitSet> entry = groupIterator.next();
+                if (entry.getValue().intersects(nodes))
                 {
                     // overlap with this entry
                     if (group == null)
                     {
                         entry.getKey().add(conflict);
-                        entry.getValue().addAll(nodes);
+                        entry.getValue().or(nodes);
                         group = entry;
                         // keep looping to also merge other groups if they overlap with the upstream nodes of this conflict
                     }
@@ -197,7 +266,7 @@ public final class ChannelTaskConflict implements ChannelTask
                     {
                         // the nodes overlap with multiple groups that did so far not yet overlap, merge the other group too
                         group.getKey().addAll(entry.getKey());
-                        group.getValue().addAll(entry.getValue());
+                        group.getValue().or(entry.getValue());
                         groupIterator.remove();
                     }
                 }
@@ -208,61 +277,14 @@ public final class ChannelTaskConflict implements ChannelTask
                 // TODO: remove COMPARATOR argument once UnderlyingDistance implements Comparable
                 SortedSet<UnderlyingDistance<Conflict>> key = new TreeSet<>(COMPARATOR);
                 key.add(conflict);
-                groups.put(key, nodes);
+                groups.put(key, (BitSet) nodes.clone()); // the index shares its sets
             }
         }
-        return groups.keySet();
-    }
-
-    /**
-     * Finds all nodes within a given distance upstream of a conflict, stopping at any diverge, branging at merges.
-     * @param conflict conflict.
-     * @param x0 distance to loop upstream.
-     * @return set of all upstream nodes within distance.
-     */
-    private static Set<Node> getUpstreamNodes(final Conflict conflict, final Length x0)
-    {
-        Set<Node> nodes = new LinkedHashSet<>();
-        Link link = conflict.getLane().getLink();
-        Length distance = link.getLength().times(conflict.getLane().fraction(conflict.getLongitudinalPosition()) - 1.0);
-        appendUpstreamNodes(link, distance, x0, nodes);
-        return nodes;
-    }
-
-    /**
-     * Append upstream nodes, branging upstream at merges, stopping at any diverge.
-     * @param link next link to move along.
-     * @param distance distance between end of link and conflict, upstream of conflict.
-     * @param x0 search distance.
-     * @param nodes collected nodes.
-     */
-    private static void appendUpstreamNodes(final Link link, final Length distance, final Length x0, final Set<Node> nodes)
-    {
-        Length nextDistance = distance.plus(link.getLength());
-        if (nextDistance.le(x0))
+        if (grouping != null)
         {
-            Node start = link.getStartNode();
-            ImmutableSet<Link> links = start.getLinks();
-            Set<Link> upstreamLinks = new LinkedHashSet<>();
-            for (Link next : links)
-            {
-                if (!next.equals(link))
-                {
-                    if (next.getStartNode().equals(start))
-                    {
-                        // diverge
-                        nodes.add(start);
-                        return;
-                    }
-                    upstreamLinks.add(next);
-                }
-            }
-            nodes.add(start);
-            for (Link upstreamLink : upstreamLinks)
-            {
-                appendUpstreamNodes(upstreamLink, nextDistance, x0, nodes);
-            }
+            grouping.memoize(conflicts, x0, groups.keySet());
         }
+        return groups.keySet();
     }
 
     /**
@@ -281,20 +303,7 @@ public final class ChannelTaskConflict implements ChannelTask
             if (conflict.getObject().getConflictType().isSplit())
             {
                 iterator.remove();
-                tasks.add(new ChannelTaskCarFollowing((p) ->
-                {
-                    // this provides the first leader on the other split conflict with distance towards perceiving GTU
-                    Conflict otherconflict = conflict.getObject().getOtherConflict();
-                    PerceptionCollectable<HeadwayGtu, LaneBasedGtu> conflictingGtus =
-                            otherconflict.getDownstreamGtus(p.getGtu(), HeadwayGtuType.WRAP, otherconflict.getLength());
-                    if (conflictingGtus.isEmpty())
-                    {
-                        return null;
-                    }
-                    UnderlyingDistance<LaneBasedGtu> leader = conflictingGtus.underlyingWithDistance().next();
-                    return new UnderlyingDistance<LaneBasedGtu>(leader.getObject(),
-                            conflict.getDistance().plus(leader.getDistance()));
-                }));
+                tasks.add(new SplitCarFollowing(conflict));
                 // make sure the channel (key is front) can be found for the split conflict
                 if (channelMental != null)
                 {
@@ -304,4 +313,154 @@ public final class ChannelTaskConflict implements ChannelTask
         }
     }
 
+    /**
+     * Car-following task on a split conflict. Tasks of the same split conflict in consecutive steps are equal, such that they
+     * share memoized demand.
+     */
+    @Stateless
+    private static final class SplitCarFollowing extends ChannelTaskCarFollowing
+    {
+        /** Split conflict. */
+        private final UnderlyingDistance<Conflict> conflict;
+
+        /**
+         * Constructor.
+         * @param conflict split conflict
+         */
+        SplitCarFollowing(final UnderlyingDistance<Conflict> conflict)
+        {
+            super((p) ->
+            {
+                // this provides the first leader on the other split conflict with distance towards perceiving GTU
+                Conflict otherconflict = conflict.getObject().getOtherConflict();
+                PerceptionCollectable<HeadwayGtu, LaneBasedGtu> conflictingGtus =
+                        otherconflict.getDownstreamGtus(p.getGtu(), HeadwayGtuType.WRAP, otherconflict.getLength());
+                if (conflictingGtus.isEmpty())
+                {
+                    return null;
+                }
+                UnderlyingDistance<LaneBasedGtu> leader = conflictingGtus.underlyingWithDistance().next();
+                return new UnderlyingDistance<LaneBasedGtu>(leader.getObject(),
+                        conflict.getDistance().plus(leader.getDistance()));
+            });
+            this.conflict = conflict;
+        }
+
+        /**
+         * Returns whether the task pertains to the same split conflict.
+         */
+        @Override
+        public boolean equals(final Object obj)
+        {
+            return this == obj
+                    || (obj instanceof SplitCarFollowing other && this.conflict.getObject().equals(other.conflict.getObject()));
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        public int hashCode()
+        {
+            return this.conflict.getObject().hashCode();
+        }
+    }
+
+    /**
+     * Grouping of conflicts in the previous step of a GTU. The grouping only depends on the conflicts and the look-ahead
+     * distance, such that it is reused when these are equal, while the distances of the conflicts are updated.
+     */
+    private static final class ConflictGrouping
+    {
+        /** Memoization that collects the hit rate. */
+        private final DemandMemoization memoization;
+
+        /** Conflicts in the previous step, in perceived order. */
+        private Conflict[] conflicts = new Conflict[0];
+
+        /** Look-ahead distance in the previous step. */
+        private Length x0;
+
+        /** Index of the group of each conflict. */
+        private int[] groupOf = new int[0];
+
+        /** Number of groups. */
+        private int numGroups;
+
+        /**
+         * Constructor.
+         * @param memoization memoization that collects the hit rate
+         */
+        ConflictGrouping(final DemandMemoization memoization)
+        {
+            this.memoization = memoization;
+        }
+
+        /**
+         * Returns whether the grouping of the previous step can be reused, i.e. the same conflicts are perceived in the same
+         * order and the look-ahead distance is equal.
+         * @param current currently perceived conflicts
+         * @param lookAhead current look-ahead distance
+         * @return whether the grouping of the previous step can be reused
+         */
+        boolean reuse(final List<UnderlyingDistance<Conflict>> current, final Length lookAhead)
+        {
+            boolean reuse = lookAhead.equals(this.x0) && current.size() == this.conflicts.length;
+            for (int i = 0; reuse && i < this.conflicts.length; i++)
+            {
+                reuse = current.get(i).getObject() == this.conflicts[i];
+            }
+            this.memoization.grouping(reuse);
+            return reuse;
+        }
+
+        /**
+         * Returns the groups of the previous step, with the current distances of the conflicts.
+         * @param current currently perceived conflicts, in the same order as in the previous step
+         * @return groups of the previous step, with the current distances of the conflicts
+         */
+        List<SortedSet<UnderlyingDistance<Conflict>>> getGroups(final List<UnderlyingDistance<Conflict>> current)
+        {
+            List<SortedSet<UnderlyingDistance<Conflict>>> groups = new ArrayList<>(this.numGroups);
+            for (int g = 0; g < this.numGroups; g++)
+            {
+                // TODO: remove COMPARATOR argument once UnderlyingDistance implements Comparable
+                groups.add(new TreeSet<>(COMPARATOR));
+            }
+            for (int i = 0; i < this.groupOf.length; i++)
+            {
+                groups.get(this.groupOf[i]).add(current.get(i));
+            }
+            return groups;
+        }
+
+        /**
+         * Memoizes the grouping of the current step.
+         * @param current currently perceived conflicts
+         * @param lookAhead current look-ahead distance
+         * @param groups groups of the conflicts
+         */
+        void memoize(final List<UnderlyingDistance<Conflict>> current, final Length lookAhead,
+                final Collection<SortedSet<UnderlyingDistance<Conflict>>> groups)
+        {
+            Map<Conflict, Integer> index = new IdentityHashMap<>();
+            int g = 0;
+            for (SortedSet<UnderlyingDistance<Conflict>> group : groups)
+            {
+                for (UnderlyingDistance<Conflict> conflict : group)
+                {
+                    index.put(conflict.getObject(), g);
+                }
+                g++;
+            }
+            this.conflicts = new Conflict[current.size()];
+            this.groupOf = new int[current.size()];
+            for (int i = 0; i < this.conflicts.length; i++)
+            {
+                this.conflicts[i] = current.get(i).getObject();
+                this.groupOf[i] = index.get(this.conflicts[i]);
+            }
+            this.x0 = lookAhead;
+            this.numGroups = g;
+        }
+    }
+
 }
@@ -1,5 +1,6 @@
 package org.opentrafficsim.i4driving.tactical.perception.mental.channel;
 
+import java.util.BitSet;
 import java.util.Comparator;
 import java.util.Iterator;
 import java.util.LinkedHashMap;
@@ -16,7 +17,6 @@ import org.djunits.value.vdouble.scalar.Duration;
 import org.djunits.value.vdouble.scalar.Length;
 import org.djunits.value.vdouble.scalar.Speed;
 import org.djutils.exceptions.Try;
-import org.djutils.immutablecollections.ImmutableSet;
 import org.opentrafficsim.base.OtsRuntimeException;
 import org.opentrafficsim.base.parameters.ParameterException;
 import org.opentrafficsim.base.parameters.ParameterTypeDouble;
@@ -25,9 +25,7 @@ import org.opentrafficsim.base.parameters.ParameterTypeLength;
 import org.opentrafficsim.base.parameters.ParameterTypes;
 import org.opentrafficsim.base.parameters.constraint.DualBound;
 import org.opentrafficsim.base.parameters.constraint.NumericConstraint;
-import org.opentrafficsim.core.network.Link;
 import org.opentrafficsim.core.network.NetworkException;
-import org.opentrafficsim.core.network.Node;
 import org.opentrafficsim.i4driving.tactical.VisibilityLanePerception;
 import org.opentrafficsim.road.gtu.lane.LaneBasedGtu;
 import org.opentrafficsim.road.gtu.lane.perception.LanePerception;
@@ -295,25 +293,27 @@ public class ChannelTaskIntersection implements ChannelTask
                 intersection.getConflicts(RelativeLane.CURRENT).underlyingWithDistance();
 
         // Find groups of conflicts when their upstream nodes are intersecting sets
-        Map<SortedSet<UnderlyingDistance<Conflict>>, Set<Node>> groups = new LinkedHashMap<>();
+        Map<SortedSet<UnderlyingDistance<Conflict>>, BitSet> groups = new LinkedHashMap<>();
         Length x0 = Try.assign(() -> perception.getGtu().getParameters().getParameter(LOOKAHEAD), "No x0 parameter.");
+        ConflictUpstreamIndex index =
+                ConflictUpstreamIndex.get(Try.assign(() -> perception.getGtu(), "Gtu not initialized.").getNetwork());
         while (conflicts.hasNext())
         {
             UnderlyingDistance<Conflict> conflict = conflicts.next();
-            Set<Node> nodes = getUpstreamNodes(conflict.getObject().getOtherConflict(), x0);
+            BitSet nodes = index.getUpstreamNodes(conflict.getObject().getOtherConflict(), x0);
             // find overlap
-            Entry<SortedSet<UnderlyingDistance<Conflict>>, Set<Node>> group = null;
-            Iterator<Entry<SortedSet<UnderlyingDistance<Conflict>>, Set<Node>>> groupIterator = groups.entrySet().iterator();
+            Entry<SortedSet<UnderlyingDistance<Conflict>>, BitSet> group = null;
+            Iterator<Entry<SortedSet<UnderlyingDistance<Conflict>>, BitSet>> groupIterator = groups.entrySet().iterator();
             while (groupIterator.hasNext())
             {
-                Entry<SortedSet<UnderlyingDistance<Conflict>>, Set<Node>> entry = groupIterator.next();
-                if (entry.getValue().stream().anyMatch(nodes::contains))
+                Entry<SortedSet<UnderlyingDistance<Conflict>>, BitSet> entry = groupIterator.next();
+                if (entry.getValue().intersects(nodes))
                 {
                     // overlap with this entry
                     if (group == null)
                     {
                         entry.getKey().add(conflict);
-                        entry.getValue().addAll(nodes);
+                        entry.getValue().or(nodes);
                         group = entry;
                         // keep looping to also merge other groups if they overlap with the upstream nodes of this conflict
                     }
@@ -321,7 +321,7 @@ public class ChannelTaskIntersection implements ChannelTask
                     {
                         // the nodes overlap with multiple groups that did so far not yet overlap, merge the other group too
                         group.getKey().addAll(entry.getKey());
-                        group.getValue().addAll(entry.getValue());
+                        group.getValue().or(entry.getValue());
                         groupIterator.remove();
                     }
                 }
@@ -332,63 +332,12 @@ public class ChannelTaskIntersection implements ChannelTask
                 // TODO: remove COMPARATOR argument once UnderlyingDistance implements Comparable
                 SortedSet<UnderlyingDistance<Conflict>> key = new TreeSet<>(COMPARATOR);
                 key.add(conflict);
-                groups.put(key, nodes);
+                groups.put(key, (BitSet) nodes.clone()); // the index shares its sets
             }
         }
         return groups.keySet();
     }
 
-    /**
-     * Finds all nodes within a given distance upstream of a conflict, stopping at any diverge, branging at merges.
-     * @param conflict conflict.
-     * @param x0 distance to loop upstream.
-     * @return set of all upstream nodes within distance.
-     */
-    private static Set<Node> getUpstreamNodes(final Conflict conflict, final Length x0)
-    {
-        Set<Node> nodes = new LinkedHashSet<>();
-        Link link = conflict.getLane().getLink();
-        Length distance = link.getLength().times(conflict.getLane().fraction(conflict.getLongitudinalPosition()) - 1.0);
-        appendUpstreamNodes(link, distance, x0, nodes);
-        return nodes;
-    }
-
-    /**
-     * Append upstream nodes, branging upstream at merges, stopping at any diverge.
-     * @param link next link to move along.
-     * @param distance distance between end of link and conflict, upstream of conflict.
-     * @param x0 search distance.
-     * @param nodes collected nodes.
-     */
-    private static void appendUpstreamNodes(final Link link, final Length distance, final Length x0, final Set<Node> nodes)
-    {
-        Length nextDistance = distance.plus(link.getLength());
-        if (nextDistance.le(x0))
-        {
-            Node start = link.getStartNode();
-            ImmutableSet<Link> links = start.getLinks();
-            Set<Link> upstreamLinks = new LinkedHashSet<>();
-            for (Link next : links)
-            {
-                if (!next.equals(link))
-                {
-                    if (next.getStartNode().equals(start))
-                    {
-                        // diverge
-                        nodes.add(start);
-                        return;
-                    }
-                    upstreamLinks.add(next);
-                }
-            }
-            nodes.add(start);
-            for (Link upstreamLink : upstreamLinks)
-            {
-                appendUpstreamNodes(upstreamLink, nextDistance, x0, nodes);
-            }
-        }
-    }
-
     /**
      * Apply car-following task on each split in the group, and remove it from the group.
      * @param tasks tasks to add any split related task to
@@ -7,6 +7,7 @@ import java.util.function.Function;
 import org.djunits.value.vdouble.scalar.Duration;
 import org.djutils.exceptions.Try;
 import org.opentrafficsim.base.parameters.ParameterTypeDuration;
+import org.opentrafficsim.base.parameters.Parameters;
 import org.opentrafficsim.core.gtu.perception.EgoPerception;
 import org.opentrafficsim.i4driving.Stateless;
 import org.opentrafficsim.i4driving.tactical.perception.mental.CarFollowingTask;
@@ -51,6 +52,16 @@ public class ChannelTaskTrafficLight implements ChannelTask
     /** {@inheritDoc} */
     @Override
     public double getDemand(final LanePerception perception)
+    {
+        return getDemand(perception, null);
+    }
+
+    /**
+     * {@inheritDoc} The demand is memoized by the traffic light, the time headway in buckets of parameter fp_dt, and parameter
+     * h_exp.
+     */
+    @Override
+    public double getDemand(final LanePerception perception, final MemoizedDemand memo)
     {
         IntersectionPerception intersection = Try.assign(() -> perception.getPerceptionCategory(IntersectionPerception.class),
                 "IntersectionPerception not present.");
@@ -60,11 +71,19 @@ public class ChannelTaskTrafficLight implements ChannelTask
         {
             return 0.0;
         }
+        UnderlyingDistance<TrafficLight> trafficLight = trafficLights.next();
         EgoPerception<?, ?> ego =
                 Try.assign(() -> perception.getPerceptionCategory(EgoPerception.class), "EgoPerception not present.");
-        Duration headway = trafficLights.next().getDistance().divide(ego.getSpeed());
-        Duration h = Try.assign(() -> perception.getGtu().getParameters().getParameter(HEXP), "Parameter h_exp not present.");
-        return Math.exp(-headway.si / h.si);
+        Duration headway = trafficLight.getDistance().divide(ego.getSpeed());
+        Parameters parameters = Try.assign(() -> perception.getGtu().getParameters(), "Gtu not initialized.");
+        Duration h = Try.assign(() -> parameters.getParameter(HEXP), "Parameter h_exp not present.");
+        if (memo != null && memo
+                .reuse(DemandMemoization.fingerprint(trafficLight.getObject().getFullId(), headway.si, h.si, parameters)))
+        {
+            return memo.getDemand();
+        }
+        double demand = Math.exp(-headway.si / h.si);
+        return memo == null ? demand : memo.memoize(demand);
     }
 
 }
@@ -0,0 +1,257 @@
+package org.opentrafficsim.i4driving.tactical.perception.mental.channel;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.WeakHashMap;
+
+import org.djunits.value.vdouble.scalar.Length;
+import org.djutils.exceptions.Try;
+import org.opentrafficsim.base.parameters.ParameterTypes;
+import org.opentrafficsim.core.network.Link;
+import org.opentrafficsim.core.network.Network;
+import org.opentrafficsim.core.network.Node;
+import org.opentrafficsim.road.network.lane.conflict.Conflict;
+
+/**
+ * Index of the nodes upstream of conflicts, as used to group conflicts that pertain to the same conflicting road. The upstream
+ * nodes of a conflict are all nodes within a distance upstream, branching at merges and stopping at any diverge. These depend
+ * only on the network, and are therefore determined once per conflict, rather than for each GTU in each step.
+ * <p>
+ * Per conflict the nodes are stored sorted by the smallest distance at which they are included. The upstream nodes for any
+ * distance are thus a prefix of these, of which the {@code BitSet} over node indices is created once. Overlap between sets of
+ * upstream nodes is then a {@code BitSet} intersection. Nodes are included exactly as by searching upstream for the given
+ * distance.
+ * </p>
+ * <p>
+ * There is an index per network, which is created on first use, or by {@code build()} once conflicts are built. Conflicts and
+ * nodes are referred to by id, such that an index does not prevent its network from being garbage collected. An index is not
+ * thread-safe, as it should only be used by the simulator of its network.
+ * </p>
+ * @author wjschakel
+ */
+public final class ConflictUpstreamIndex
+{
+
+    /** Index per network. */
+    private static final Map<Network, ConflictUpstreamIndex> INDICES = Collections.synchronizedMap(new WeakHashMap<>());
+
+    /** Initial distance up to which upstream nodes are searched, which is extended when larger distances are requested. */
+    private static final Length INITIAL_DISTANCE =
+            Try.assign(() -> ParameterTypes.LOOKAHEAD.getDefaultValue(), "No default value for LOOKAHEAD.");
+
+    /** Index per node id. */
+    private final Map<String, Integer> nodeIndices = new HashMap<>();
+
+    /** Upstream nodes per conflict id. */
+    private final Map<String, UpstreamNodes> upstreamNodes = new LinkedHashMap<>();
+
+    /**
+     * Constructor.
+     */
+    private ConflictUpstreamIndex()
+    {
+        //
+    }
+
+    /**
+     * Returns the index of a network, which is created if it does not exist yet.
+     * @param network network
+     * @return index of the network
+     */
+    public static ConflictUpstreamIndex get(final Network network)
+    {
+        return INDICES.computeIfAbsent(network, (n) -> new ConflictUpstreamIndex());
+    }
+
+    /**
+     * Builds the index of a network for all conflicts in the network, up to the default look-ahead distance. This should be
+     * invoked after the conflicts are built.
+     * @param network network
+     * @return index of the network
+     */
+    public static ConflictUpstreamIndex build(final Network network)
+    {
+        ConflictUpstreamIndex index = get(network);
+        for (Conflict conflict : network.getObjectMap(Conflict.class).values())
+        {
+            index.getUpstreamNodes(conflict, INITIAL_DISTANCE);
+        }
+        return index;
+    }
+
+    /**
+     * Returns the nodes within a given distance upstream of a conflict, branching at merges and stopping at any diverge. The
+     * returned set is shared and should not be changed.
+     * @param conflict conflict.
+     * @param x0 distance upstream.
+     * @return indices of all upstream nodes within distance.
+     */
+    public BitSet getUpstreamNodes(final Conflict conflict, final Length x0)
+    {
+        UpstreamNodes nodes = this.upstreamNodes.get(conflict.getFullId());
+        if (nodes == null || nodes.distance < x0.si)
+        {
+            nodes = search(conflict, x0.gt(INITIAL_DISTANCE) ? x0 : INITIAL_DISTANCE);
+            this.upstreamNodes.put(conflict.getFullId(), nodes);
+        }
+        return nodes.get(x0.si);
+    }
+
+    /**
+     * Returns the index of a node in the sets of upstream nodes.
+     * @param nodeId node id
+     * @return index of the node, -1 if the node is not upstream of any conflict in the index
+     */
+    int getNodeIndex(final String nodeId)
+    {
+        return this.nodeIndices.getOrDefault(nodeId, -1);
+    }
+
+    /**
+     * Returns the number of conflicts in the index.
+     * @return number of conflicts in the index
+     */
+    public int size()
+    {
+        return this.upstreamNodes.size();
+    }
+
+    /**
+     * Searches the nodes upstream of a conflict in order of their distance. A node is included at the smallest distance over
+     * all paths towards it, as searching upstream for a given distance includes it through any path within that distance.
+     * Whether a node is a diverge, at which the search stops, does not depend on the path.
+     * @param conflict conflict.
+     * @param x0 distance to search upstream.
+     * @return upstream nodes within distance.
+     */
+    private UpstreamNodes search(final Conflict conflict, final Length x0)
+    {
+        double[] distances = new double[8];
+        int[] indices = new int[8];
+        int n = 0;
+        BitSet found = new BitSet();
+        PriorityQueue<Step> queue = new PriorityQueue<>();
+        Link link = conflict.getLane().getLink();
+        // same calculations as when searching for a given distance, such that distances are equal
+        Length distance = link.getLength().times(conflict.getLane().fraction(conflict.getLongitudinalPosition()) - 1.0);
+        queue.add(new Step(link, distance.plus(link.getLength())));
+        while (!queue.isEmpty())
+        {
+            Step step = queue.poll();
+            if (step.distance().gt(x0))
+            {
+                break;
+            }
+            Node start = step.link().getStartNode();
+            int index = this.nodeIndices.computeIfAbsent(start.getId(), (id) -> this.nodeIndices.size());
+            if (found.get(index))
+            {
+                continue;
+            }
+            found.set(index);
+            if (n == indices.length)
+            {
+                distances = Arrays.copyOf(distances, 2 * n);
+                indices = Arrays.copyOf(indices, 2 * n);
+            }
+            distances[n] = step.distance().si;
+            indices[n] = index;
+            n++;
+            boolean diverge = false;
+            for (Link next : start.getLinks())
+            {
+                diverge |= !next.equals(step.link()) && next.getStartNode().equals(start);
+            }
+            if (!diverge)
+            {
+                for (Link next : start.getLinks())
+                {
+                    if (!next.equals(step.link()))
+                    {
+                        queue.add(new Step(next, step.distance().plus(next.getLength())));
+                    }
+                }
+            }
+        }
+        return new UpstreamNodes(x0.si, Arrays.copyOf(distances, n), Arrays.copyOf(indices, n));
+    }
+
+    /**
+     * Step in the search upstream, towards the start node of a link.
+     * @param link link
+     * @param distance distance between start of link and conflict
+     */
+    private record Step(Link link, Length distance) implements Comparable<Step>
+    {
+        /** {@inheritDoc} */
+        @Override
+        public int compareTo(final Step o)
+        {
+            return this.distance.compareTo(o.distance);
+        }
+    }
+
+    /**
+     * Nodes upstream of a conflict, sorted by the distance at which they are included.
+     */
+    private static final class UpstreamNodes
+    {
+        /** Distance up to which nodes were searched [m]. */
+        private final double distance;
+
+        /** Distance at which each node is included [m], ascending. */
+        private final double[] distances;
+
+        /** Index of each node. */
+        private final int[] indices;
+
+        /** Set of the first nodes, per number of nodes, created when requested. */
+        private final BitSet[] prefixes;
+
+        /**
+         * Constructor.
+         * @param distance distance up to which nodes were searched [m]
+         * @param distances distance at which each node is included [m], ascending
+         * @param indices index of each node
+         */
+        UpstreamNodes(final double distance, final double[] distances, final int[] indices)
+        {
+            this.distance = distance;
+            this.distances = distances;
+            this.indices = indices;
+            this.prefixes = new BitSet[indices.length + 1];
+        }
+
+        /**
+         * Returns the set of nodes within a distance.
+         * @param x0 distance [m]
+         * @return indices of the nodes within the distance
+         */
+        BitSet get(final double x0)
+        {
+            // number of nodes with distance <= x0
+            int n = 0;
+            while (n < this.distances.length && this.distances[n] <= x0)
+            {
+                n++;
+            }
+            BitSet nodes = this.prefixes[n];
+            if (nodes == null)
+            {
+                nodes = new BitSet();
+                for (int i = 0; i < n; i++)
+                {
+                    nodes.set(this.indices[i]);
+                }
+                this.prefixes[n] = nodes;
+            }
+            return nodes;
+        }
+    }
+
+}
@@ -0,0 +1,219 @@
+package org.opentrafficsim.i4driving.tactical.perception.mental.channel;
+
+import org.djunits.value.vdouble.scalar.Duration;
+import org.djutils.exceptions.Try;
+import org.opentrafficsim.base.parameters.ParameterTypeDuration;
+import org.opentrafficsim.base.parameters.Parameters;
+import org.opentrafficsim.base.parameters.constraint.NumericConstraint;
+
+/**
+ * Memoization of task demand between perception steps. Tasks that support it gather the inputs their demand depends on once,
+ * and give a fingerprint of them to their {@code MemoizedDemand}. Inputs are for example the identity of the leader, and the
+ * time headway in buckets of a given resolution. While the fingerprint of a task does not change, its previous demand is
+ * reused. Headways are thus effectively rounded to their resolution, which changes behavior slightly, and memoization is
+ * therefore optional. Headways rather than distances and speeds are bucketed, as the demand is a function of the headway. At
+ * low speed the headway changes fast for small changes in speed, which a bucket of speed would hide. This class also collects
+ * the hit rate of all mental modules it is given to, which is the basis to tune the resolution.
+ * <p>
+ * Fingerprints are hashes, which means that different inputs may result in the same fingerprint. The probability of this is
+ * negligible for the inputs that are hashed. The value {@code NONE} is reserved for tasks that do not support memoization.
+ * </p>
+ * @author wjschakel
+ */
+public final class DemandMemoization
+{
+
+    /** Fingerprint of tasks that do not support memoization, or that should be determined in the current step. */
+    public static final long NONE = 0L;
+
+    /** Default headway resolution of fingerprints. */
+    private static final Duration DEFAULT_DT = Duration.instantiateSI(0.1);
+
+    /** Headway resolution of fingerprints. */
+    public static final ParameterTypeDuration FP_DT = new ParameterTypeDuration("fp_dt",
+            "Headway resolution of task demand fingerprints", DEFAULT_DT, NumericConstraint.POSITIVE);
+
+    /** Seed of fingerprints. */
+    private static final long SEED = 0x2545F4914F6CDD1DL;
+
+    /** Multiplier to mix values into a fingerprint (golden ratio). */
+    private static final long MIX = 0x9E3779B97F4A7C15L;
+
+    /** Number of task demands that were requested. */
+    private long demands;
+
+    /** Number of task demands that were reused. */
+    private long reusedDemands;
+
+    /** Number of perception steps. */
+    private long steps;
+
+    /** Number of perception steps in which attention and perception delay were reused, as all demand was equal. */
+    private long reusedSteps;
+
+    /** Number of groupings of conflicts. */
+    private long groupings;
+
+    /** Number of groupings of conflicts that were reused, as the conflicts were equal. */
+    private long reusedGroupings;
+
+    /**
+     * Registers a task demand.
+     * @param reused whether the demand was reused
+     */
+    void demand(final boolean reused)
+    {
+        this.demands++;
+        if (reused)
+        {
+            this.reusedDemands++;
+        }
+    }
+
+    /**
+     * Registers a perception step.
+     * @param reused whether attention and perception delay were reused
+     */
+    void step(final boolean reused)
+    {
+        this.steps++;
+        if (reused)
+        {
+            this.reusedSteps++;
+        }
+    }
+
+    /**
+     * Registers a grouping of conflicts.
+     * @param reused whether the grouping was reused
+     */
+    void grouping(final boolean reused)
+    {
+        this.groupings++;
+        if (reused)
+        {
+            this.reusedGroupings++;
+        }
+    }
+
+    /**
+     * Returns the fraction of task demands that were reused.
+     * @return fraction of task demands that were reused
+     */
+    public double getDemandHitRate()
+    {
+        return this.demands == 0 ? 0.0 : (double) this.reusedDemands / this.demands;
+    }
+
+    /**
+     * Returns the fraction of perception steps in which attention and perception delay were reused.
+     * @return fraction of perception steps in which attention and perception delay were reused
+     */
+    public double getStepHitRate()
+    {
+        return this.steps == 0 ? 0.0 : (double) this.reusedSteps / this.steps;
+    }
+
+    /**
+     * Returns the fraction of groupings of conflicts that were reused.
+     * @return fraction of groupings of conflicts that were reused
+     */
+    public double getGroupingHitRate()
+    {
+        return this.groupings == 0 ? 0.0 : (double) this.reusedGroupings / this.groupings;
+    }
+
+    /**
+     * Returns the number of perception steps.
+     * @return number of perception steps
+     */
+    public long getSteps()
+    {
+        return this.steps;
+    }
+
+    /**
+     * Returns a summary of the hit rate.
+     * @return summary of the hit rate
+     */
+    public String getSummary()
+    {
+        return String.format(
+                "Demand memoization: %.1f%% of %d task demands, %.1f%% of %d conflict groupings and %.1f%% of %d steps reused",
+                100.0 * getDemandHitRate(), this.demands, 100.0 * getGroupingHitRate(), this.groupings,
+                100.0 * getStepHitRate(), this.steps);
+    }
+
+    /**
+     * Returns the initial value of a fingerprint.
+     * @return initial value of a fingerprint
+     */
+    public static long start()
+    {
+        return SEED;
+    }
+
+    /**
+     * Mixes a value into a fingerprint.
+     * @param fingerprint fingerprint
+     * @param value value
+     * @return fingerprint with the value mixed in, never {@code NONE}
+     */
+    public static long mix(final long fingerprint, final long value)
+    {
+        long h = Long.rotateLeft((fingerprint ^ value) * MIX, 31);
+        return h == NONE ? MIX : h;
+    }
+
+    /**
+     * Mixes the identity of an object into a fingerprint, based on its hash code.
+     * @param fingerprint fingerprint
+     * @param object object, may be {@code null}
+     * @return fingerprint with the identity of the object mixed in
+     */
+    public static long mix(final long fingerprint, final Object object)
+    {
+        return mix(fingerprint, object == null ? 0L : object.hashCode());
+    }
+
+    /**
+     * Mixes a value into a fingerprint, rounded to a resolution.
+     * @param fingerprint fingerprint
+     * @param value value
+     * @param resolution resolution
+     * @return fingerprint with the value in a bucket of the resolution mixed in
+     */
+    public static long mix(final long fingerprint, final double value, final double resolution)
+    {
+        // infinite values, e.g. at standstill, end up in the extreme buckets, NaN gets a bucket of its own
+        return mix(fingerprint, Double.isNaN(value) ? Long.MIN_VALUE : (long) Math.floor(value / resolution));
+    }
+
+    /**
+     * Returns a fingerprint of the inputs of task demand that scales the time headway to an object, i.e. the identity of the
+     * object, the headway in buckets of parameter fp_dt, and the scaling parameter.
+     * @param object identity of the object, e.g. its id
+     * @param headway time headway to the object [s]
+     * @param h scaling parameter [s]
+     * @param parameters parameters
+     * @return fingerprint of the inputs of task demand that scales the time headway to an object
+     */
+    public static long fingerprint(final Object object, final double headway, final double h, final Parameters parameters)
+    {
+        long fingerprint = mix(start(), object);
+        fingerprint = mix(fingerprint, headway, getHeadwayResolution(parameters));
+        return mix(fingerprint, Double.doubleToLongBits(h));
+    }
+
+    /**
+     * Returns the headway resolution in the parameters, or the default value if it is not present.
+     * @param parameters parameters
+     * @return headway resolution [s]
+     */
+    public static double getHeadwayResolution(final Parameters parameters)
+    {
+        return parameters.contains(FP_DT)
+                ? Try.assign(() -> parameters.getParameter(FP_DT), "Parameter fp_dt not present.").si : DEFAULT_DT.si;
+    }
+
+}
@@ -0,0 +1,102 @@
+package org.opentrafficsim.i4driving.tactical.perception.mental.channel;
+
+/**
+ * Memoized task demand of a task in the mental module of a GTU. A task that supports memoization gathers its inputs once, and
+ * asks with {@code reuse()} whether demand is memoized for the fingerprint of these inputs. If so, it returns
+ * {@code getDemand()}. Otherwise it determines its demand from the same inputs, and returns {@code memoize(demand)}.
+ * @author wjschakel
+ */
+public final class MemoizedDemand
+{
+
+    /** Memoization that collects the hit rate. */
+    private final DemandMemoization memoization;
+
+    /** Fingerprint of the inputs of the memoized task demand, {@code NONE} if no demand is memoized. */
+    private long fingerprint = DemandMemoization.NONE;
+
+    /** Fingerprint of the inputs of the task demand that is to be memoized, {@code NONE} if the memo was not used. */
+    private long pending = DemandMemoization.NONE;
+
+    /** Memoized task demand. */
+    private double demand;
+
+    /** Last step in which the task was supplied. */
+    private long step;
+
+    /**
+     * Constructor.
+     * @param memoization memoization that collects the hit rate
+     */
+    MemoizedDemand(final DemandMemoization memoization)
+    {
+        this.memoization = memoization;
+    }
+
+    /**
+     * Returns whether task demand is memoized for the fingerprint. If not, the next call to {@code memoize()} memoizes demand
+     * for the fingerprint.
+     * @param inputs fingerprint of the inputs of the task demand, not {@code NONE}
+     * @return whether task demand is memoized for the fingerprint
+     */
+    public boolean reuse(final long inputs)
+    {
+        boolean reuse = inputs == this.fingerprint;
+        this.memoization.demand(reuse);
+        if (!reuse)
+        {
+            this.fingerprint = DemandMemoization.NONE;
+            this.pending = inputs;
+        }
+        return reuse;
+    }
+
+    /**
+     * Returns the memoized task demand.
+     * @return memoized task demand
+     */
+    public double getDemand()
+    {
+        return this.demand;
+    }
+
+    /**
+     * Memoizes task demand for the fingerprint of the last call to {@code reuse()}.
+     * @param taskDemand task demand
+     * @return task demand
+     */
+    public double memoize(final double taskDemand)
+    {
+        this.fingerprint = this.pending;
+        this.demand = taskDemand;
+        return taskDemand;
+    }
+
+    /**
+     * Returns whether a task used this memo.
+     * @return whether a task used this memo
+     */
+    boolean isUsed()
+    {
+        return this.pending != DemandMemoization.NONE;
+    }
+
+    /**
+     * Returns the last step in which the task was supplied.
+     * @return last step in which the task was supplied
+     */
+    long getStep()
+    {
+        return this.step;
+    }
+
+    /**
+     * Sets the last step in which the task was supplied.
+     * @param step last step in which the task was supplied
+     */
+    void setStep(final long step)
+    {
+        this.step = step;
+    }
+
+}
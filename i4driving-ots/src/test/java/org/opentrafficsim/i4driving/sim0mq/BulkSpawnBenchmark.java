@@ -0,0 +1,162 @@
+package org.opentrafficsim.i4driving.sim0mq;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.djunits.value.vdouble.scalar.Direction;
+import org.djunits.value.vdouble.scalar.Length;
+import org.djunits.value.vdouble.scalar.Speed;
+
+/**
+ * Manual benchmark of setting up an initial state with many vehicles, either with one VEHICLE message per vehicle, or with a
+ * single VEHICLES message. Each is run in an OtsTransceiver process with the demo network, and the time from sending the first
+ * message until receiving the last READY message is reported. Vehicles are placed on both lanes, which with many vehicles
+ * overlap. This does not matter as the simulation is not progressed. Repetitions after the first send a RESET message, upon which
+ * OTS sets up the initial state again from the stored messages. Arguments are the number of vehicles (default 1000) and the
+ * number of repetitions (default 5).
+ * @author wjschakel
+ */
+public final class BulkSpawnBenchmark
+{
+
+    /** Lateral positions of the lanes of the demo network [m]. */
+    private static final double[] LANE_Y = {1.75, 5.25};
+
+    /**
+     * Constructor.
+     */
+    private BulkSpawnBenchmark()
+    {
+        //
+    }
+
+    /**
+     * Runs the benchmark.
+     * @param args number of vehicles and number of repetitions
+     * @throws Exception on any exception
+     */
+    public static void main(final String[] args) throws Exception
+    {
+        int vehicles = args.length > 0 ? Integer.parseInt(args[0]) : 1000;
+        int repetitions = args.length > 1 ? Integer.parseInt(args[1]) : 5;
+        System.out.println(String.format("Setup of %d vehicles, %d repetitions", vehicles, repetitions));
+        run(5591, "VEHICLE", vehicleMessages(vehicles), repetitions);
+        run(5592, "VEHICLES", vehiclesMessage(vehicles), repetitions);
+    }
+
+    /**
+     * Starts an OtsTransceiver process, and measures the time to set up the initial state.
+     * @param port port number
+     * @param type message type
+     * @param payloads message payloads
+     * @param repetitions number of repetitions
+     * @throws Exception on any exception
+     */
+    private static void run(final int port, final String type, final List<Object[]> payloads, final int repetitions)
+            throws Exception
+    {
+        try (TransceiverProcess process = new TransceiverProcess(port, "--simulator", "HEADLESS", "--logLevel", "WARNING"))
+        {
+            process.setupDemo();
+            for (int i = 0; i < repetitions; i++)
+            {
+                long start = System.nanoTime();
+                if (i == 0)
+                {
+                    process.request(type, payloads);
+                }
+                else if (!process.reset())
+                {
+                    System.out.println(String.format("%s: no READY for RESET within timeout", type));
+                    break;
+                }
+                System.out.println(String.format("%-8s %-6s %4d messages: %8.1fms", type, i == 0 ? "setup" : "reset",
+                        payloads.size(), (System.nanoTime() - start) / 1_000_000.0));
+            }
+        }
+    }
+
+    /**
+     * Returns a VEHICLE message payload per vehicle.
+     * @param vehicles number of vehicles
+     * @return VEHICLE message payload per vehicle
+     */
+    private static List<Object[]> vehicleMessages(final int vehicles)
+    {
+        List<Object[]> payloads = new ArrayList<>(vehicles);
+        for (int i = 0; i < vehicles; i++)
+        {
+            payloads.add(new Object[] {"Vehicle " + i, "Hybrid", Length.instantiateSI(x(i, vehicles)),
+                    Length.instantiateSI(LANE_Y[i % LANE_Y.length]), Direction.ZERO, Speed.instantiateSI(10.0), "CAR",
+                    Length.instantiateSI(4.0), Length.instantiateSI(1.9), Length.instantiateSI(3.0), 0, "A-B"});
+        }
+        return payloads;
+    }
+
+    /**
+     * Returns the payload of a single VEHICLES message with all vehicles.
+     * @param vehicles number of vehicles
+     * @return payload of a single VEHICLES message
+     */
+    private static List<Object[]> vehiclesMessage(final int vehicles)
+    {
+        List<Object> payload = new ArrayList<>();
+        payload.add(vehicles);
+        double[] x = new double[vehicles];
+        double[] y = new double[vehicles];
+        for (int i = 0; i < vehicles; i++)
+        {
+            payload.add("Vehicle " + i);
+            x[i] = x(i, vehicles);
+            y[i] = LANE_Y[i % LANE_Y.length];
+        }
+        for (int i = 0; i < vehicles; i++)
+        {
+            payload.add("Hybrid");
+        }
+        payload.add(x);
+        payload.add(y);
+        payload.add(new double[vehicles]);
+        payload.add(filled(vehicles, 10.0));
+        for (int i = 0; i < vehicles; i++)
+        {
+            payload.add("CAR");
+        }
+        payload.add(filled(vehicles, 4.0));
+        payload.add(filled(vehicles, 1.9));
+        payload.add(filled(vehicles, 3.0));
+        for (int i = 0; i < vehicles; i++)
+        {
+            payload.add("A-B");
+        }
+        payload.add(0);
+        return List.<Object[]> of(payload.toArray());
+    }
+
+    /**
+     * Returns the longitudinal position of a vehicle, spreading all vehicles between 20m and 420m.
+     * @param i vehicle index
+     * @param vehicles number of vehicles
+     * @return longitudinal position of the vehicle [m]
+     */
+    private static double x(final int i, final int vehicles)
+    {
+        int rows = (vehicles + LANE_Y.length - 1) / LANE_Y.length;
+        return 20.0 + 400.0 * (i / LANE_Y.length) / Math.max(1, rows - 1);
+    }
+
+    /**
+     * Returns an array with the same value.
+     * @param n length
+     * @param value value
+     * @return array with the same value
+     */
+    private static double[] filled(final int n, final double value)
+    {
+        double[] array = new double[n];
+        Arrays.fill(array, value);
+        return array;
+    }
+
+}
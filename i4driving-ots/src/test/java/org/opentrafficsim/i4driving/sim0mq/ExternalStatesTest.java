@@ -0,0 +1,177 @@
+package org.opentrafficsim.i4driving.sim0mq;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import org.djunits.unit.AccelerationUnit;
+import org.djunits.value.vdouble.vector.AccelerationVector;
+import org.djutils.serialization.SerializationException;
+import org.junit.Test;
+import org.sim0mq.Sim0MQException;
+import org.sim0mq.message.Sim0MQMessage;
+
+/**
+ * Tests that EXTERNALS messages are decoded as encoded, that malformed EXTERNALS messages are rejected, and that states in the
+ * mailbox are applied in the order of the messages relative to other messages for the same object.
+ * @author wjschakel
+ */
+public class ExternalStatesTest
+{
+
+    /** Ids. */
+    private static final String[] IDS = {"GTU1", "GTU2"};
+
+    /** X coordinates. */
+    private static final double[] X = {100.0, 120.0};
+
+    /** Y coordinates. */
+    private static final double[] Y = {2.0, 5.5};
+
+    /** Directions. */
+    private static final double[] DIRECTION = {0.1, 0.0};
+
+    /** Speeds. */
+    private static final double[] SPEED = {20.0, 15.0};
+
+    /** Accelerations. */
+    private static final double[] ACCELERATION = {0.5, -1.0};
+
+    /**
+     * Tests that encoded EXTERNALS messages are decoded to the same states, in both byte orders.
+     * @throws SerializationException on serialization error
+     * @throws Sim0MQException on message error
+     */
+    @Test
+    public void testCodec() throws Sim0MQException, SerializationException
+    {
+        for (boolean bigEndian : new boolean[] {false, true})
+        {
+            Sim0mqEncoder encoder = new Sim0mqEncoder(bigEndian, "Ots_ExternalSim", "Ots", "ExternalSim");
+            byte[] bytes = encoder.encodeExternals(9, new String[] {"GTU1", "GTU2", "GTU3"}, new double[] {100.0, 120.0, 0.0},
+                    new double[] {2.0, 5.5, 0.0}, new double[] {0.1, 0.0, 0.0}, new double[] {20.0, 15.0, 0.0},
+                    new double[] {0.5, -1.0, 0.0}, 2);
+            assertStates(OtsTransceiver.decodeExternals(Sim0MQMessage.decode(bytes).createObjectArray()));
+        }
+    }
+
+    /**
+     * Tests that numeric arrays are accepted instead of djunits vectors, and that no states are accepted.
+     */
+    @Test
+    public void testNumericArrays()
+    {
+        assertStates(OtsTransceiver.decodeExternals(payload(2, "GTU1", "GTU2", X, new float[] {2.0f, 5.5f}, DIRECTION,
+                new Double[] {20.0, 15.0}, new AccelerationVector(ACCELERATION, AccelerationUnit.SI))));
+        assertEquals(0, OtsTransceiver.decodeExternals(payload(0, new double[0], new double[0], new double[0],
+                new double[0], new double[0])).ids().length);
+    }
+
+    /**
+     * Tests that malformed payloads are rejected with an {@code IllegalArgumentException}.
+     */
+    @Test
+    public void testMalformed()
+    {
+        // no or wrong number of states
+        assertRejected(payload());
+        assertRejected(payload("2", "GTU1", "GTU2", X, Y, DIRECTION, SPEED, ACCELERATION));
+        assertRejected(payload(-1, X, Y, DIRECTION, SPEED));
+        // more or fewer fields than n states require
+        assertRejected(payload(3, "GTU1", "GTU2", X, Y, DIRECTION, SPEED, ACCELERATION));
+        assertRejected(payload(2, "GTU1", "GTU2", X, Y, DIRECTION, SPEED));
+        assertRejected(payload(1, "GTU1", "GTU2", X, Y, DIRECTION, SPEED, ACCELERATION));
+        // wrong field types
+        assertRejected(payload(2, "GTU1", 2, X, Y, DIRECTION, SPEED, ACCELERATION));
+        assertRejected(payload(2, "GTU1", "GTU2", X, Y, "direction", SPEED, ACCELERATION));
+        assertRejected(payload(2, "GTU1", "GTU2", X, Y, DIRECTION, SPEED, new int[] {1, 2}));
+        // arrays of another length than n
+        assertRejected(payload(2, "GTU1", "GTU2", new double[] {100.0}, Y, DIRECTION, SPEED, ACCELERATION));
+        assertRejected(payload(2, "GTU1", "GTU2", X, Y, DIRECTION, SPEED, new double[] {0.5, -1.0, 0.0}));
+    }
+
+    /**
+     * Tests that a later state replaces a pending state, unless the pending state was sealed by another message for the same
+     * object, in which case the later state needs an event of its own. Each event takes the states in the order of the
+     * events, as the event of the other message is scheduled between them.
+     */
+    @Test
+    public void testMailboxOrder()
+    {
+        ExternalStateMailbox mailbox = new ExternalStateMailbox();
+        // EXTERNAL 1 (event 1), EXTERNAL 2, MODE (event 2), EXTERNAL 3 (event 3), COMMAND (event 4), EXTERNAL 4 (event 5)
+        assertTrue(mailbox.put("GTU1", 1.0, 0.0, 0.0, 0.0, 0.0));
+        assertFalse(mailbox.put("GTU1", 2.0, 0.0, 0.0, 0.0, 0.0));
+        mailbox.seal("GTU1");
+        assertTrue(mailbox.put("GTU1", 3.0, 0.0, 0.0, 0.0, 0.0));
+        mailbox.seal("GTU1");
+        assertTrue(mailbox.put("GTU1", 4.0, 0.0, 0.0, 0.0, 0.0));
+        // another object is not affected
+        mailbox.seal("GTU2");
+        assertTrue(mailbox.put("GTU2", 5.0, 0.0, 0.0, 0.0, 0.0));
+        assertFalse(mailbox.put("GTU2", 6.0, 0.0, 0.0, 0.0, 0.0));
+        assertEquals(2, mailbox.getDropped());
+
+        // events 1, 3 and 5 take the latest state before MODE, before COMMAND and after COMMAND
+        assertEquals(2.0, mailbox.take("GTU1").x(), 0.0);
+        assertEquals(3.0, mailbox.take("GTU1").x(), 0.0);
+        assertEquals(4.0, mailbox.take("GTU1").x(), 0.0);
+        assertNull(mailbox.take("GTU1"));
+        assertEquals(6.0, mailbox.take("GTU2").x(), 0.0);
+
+        // a sealed state is cleared for a new simulation
+        mailbox.put("GTU1", 7.0, 0.0, 0.0, 0.0, 0.0);
+        mailbox.seal("GTU1");
+        mailbox.clear();
+        assertNull(mailbox.take("GTU1"));
+    }
+
+    /**
+     * Asserts that the states are those in the constants of this class.
+     * @param states states
+     */
+    private static void assertStates(final OtsTransceiver.ExternalStates states)
+    {
+        assertArrayEquals(IDS, states.ids());
+        assertArrayEquals(X, states.x(), 1e-6);
+        assertArrayEquals(Y, states.y(), 1e-6);
+        assertArrayEquals(DIRECTION, states.direction(), 1e-6);
+        assertArrayEquals(SPEED, states.speed(), 1e-6);
+        assertArrayEquals(ACCELERATION, states.acceleration(), 1e-6);
+    }
+
+    /**
+     * Asserts that a payload is rejected.
+     * @param payload payload
+     */
+    private static void assertRejected(final Object[] payload)
+    {
+        try
+        {
+            OtsTransceiver.decodeExternals(payload);
+            fail("Malformed EXTERNALS payload was accepted.");
+        }
+        catch (IllegalArgumentException ex)
+        {
+            // expected
+        }
+    }
+
+    /**
+     * Returns a decoded message with 8 header fields and the given payload fields.
+     * @param fields payload fields
+     * @return decoded message
+     */
+    private static Object[] payload(final Object... fields)
+    {
+        Object[] payload = new Object[8 + fields.length];
+        payload[0] = "SIM02";
+        payload[7] = fields.length;
+        System.arraycopy(fields, 0, payload, 8, fields.length);
+        return payload;
+    }
+
+}
@@ -0,0 +1,138 @@
+package org.opentrafficsim.i4driving.sim0mq;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+import org.opentrafficsim.i4driving.sim0mq.FrameRecorder.Frame;
+
+/**
+ * Tests that recorded frames, including empty frames, are read back up to the end of the recording, both for a closed
+ * recording and for a recording that was not closed and ends with zeros.
+ * @author wjschakel
+ */
+public class FrameRecorderTest
+{
+
+    /** Recorded frames, in order. */
+    private static final byte[][] FRAMES = {{1, 2, 3}, {}, {0, 0, 0, 0}, {}, {-1}};
+
+    /** Directions of the recorded frames. */
+    private static final boolean[] INBOUND = {true, false, true, true, false};
+
+    /**
+     * Tests that a closed recording is read up to its end marker, also if zeros follow it.
+     * @throws IOException on exception
+     */
+    @Test
+    public void testClosed() throws IOException
+    {
+        Path file = Files.createTempFile("frames", ".rec");
+        try
+        {
+            long size = record(file);
+            assertEquals(size, Files.size(file));
+            assertFrames(FrameRecorder.read(file));
+
+            // as if the file could not be truncated
+            Files.write(file, Arrays.copyOf(Files.readAllBytes(file), (int) size + 1024));
+            assertFrames(FrameRecorder.read(file));
+        }
+        finally
+        {
+            Files.delete(file);
+        }
+    }
+
+    /**
+     * Tests that a recording that was not closed is read up to the zero fill after the last frame.
+     * @throws IOException on exception
+     */
+    @Test
+    public void testNotClosed() throws IOException
+    {
+        Path file = Files.createTempFile("frames", ".rec");
+        try
+        {
+            long size = record(file);
+            // remove the end marker and add the zero fill of the remainder of the chunk
+            Files.write(file, Arrays.copyOf(Files.readAllBytes(file), (int) size - Integer.BYTES + 1024));
+            assertFrames(FrameRecorder.read(file));
+        }
+        finally
+        {
+            Files.delete(file);
+        }
+    }
+
+    /**
+     * Tests that a file that is not a recording is rejected.
+     * @throws IOException on exception
+     */
+    @Test
+    public void testInvalid() throws IOException
+    {
+        Path file = Files.createTempFile("frames", ".rec");
+        try
+        {
+            Files.write(file, new byte[] {0, 1, 2, 3, 4, 5, 6, 7});
+            try
+            {
+                FrameRecorder.read(file);
+                fail("A file that is not a recording was accepted.");
+            }
+            catch (IOException ex)
+            {
+                // expected
+            }
+        }
+        finally
+        {
+            Files.delete(file);
+        }
+    }
+
+    /**
+     * Records the frames in a file, and closes the recorder.
+     * @param file file
+     * @return recorded size [bytes]
+     * @throws IOException on exception
+     */
+    private static long record(final Path file) throws IOException
+    {
+        FrameRecorder recorder = new FrameRecorder(file);
+        for (int i = 0; i < FRAMES.length; i++)
+        {
+            recorder.record(INBOUND[i], FRAMES[i]);
+        }
+        assertEquals(FRAMES.length, recorder.getFrames());
+        recorder.close();
+        return recorder.getSize();
+    }
+
+    /**
+     * Asserts that the read frames equal the recorded frames.
+     * @param frames read frames
+     */
+    private static void assertFrames(final List<Frame> frames)
+    {
+        assertEquals(FRAMES.length, frames.size());
+        long time = 0L;
+        for (int i = 0; i < FRAMES.length; i++)
+        {
+            assertEquals(INBOUND[i], frames.get(i).inbound());
+            assertArrayEquals(FRAMES[i], frames.get(i).bytes());
+            assertTrue(frames.get(i).time() >= time);
+            time = frames.get(i).time();
+        }
+    }
+
+}
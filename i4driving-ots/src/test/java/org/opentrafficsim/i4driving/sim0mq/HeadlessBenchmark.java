@@ -0,0 +1,73 @@
+package org.opentrafficsim.i4driving.sim0mq;
+
+/**
+ * Manual comparison of the animator and the headless simulator without GUI. For each, an OtsTransceiver process is started
+ * and the time until the demo network is ready is measured (process startup and simulation setup). Next, the simulation is
+ * progressed in large steps up to its end, and the throughput is reported as simulated seconds per wall-clock second. The
+ * argument is the number of repetitions (default 3).
+ * @author wjschakel
+ */
+public final class HeadlessBenchmark
+{
+
+    /** Number of PROGRESS steps over the demo simulation of 60s. */
+    private static final int STEPS = 6;
+
+    /** Step size [s]. */
+    private static final double STEP = 10.0;
+
+    /**
+     * Constructor.
+     */
+    private HeadlessBenchmark()
+    {
+        //
+    }
+
+    /**
+     * Runs the benchmark.
+     * @param args number of repetitions
+     * @throws Exception on any exception
+     */
+    public static void main(final String[] args) throws Exception
+    {
+        int repetitions = args.length > 0 ? Integer.parseInt(args[0]) : 3;
+        System.out.println(String.format("%-10s %12s %14s", "simulator", "startup [ms]", "throughput [x]"));
+        int port = 5581;
+        for (int i = 0; i < repetitions; i++)
+        {
+            run(port++, "ANIMATOR");
+            run(port++, "HEADLESS");
+        }
+    }
+
+    /**
+     * Starts an OtsTransceiver process, and measures startup and throughput.
+     * @param port port number
+     * @param simulator simulator type option of OtsTransceiver
+     * @throws Exception on any exception
+     */
+    private static void run(final int port, final String simulator) throws Exception
+    {
+        long t0 = System.nanoTime();
+        try (TransceiverProcess process = new TransceiverProcess(port, "--simulator", simulator))
+        {
+            process.setupDemo();
+            long t1 = System.nanoTime();
+            int step = 0;
+            while (step < STEPS && process.progress(++step * STEP))
+            {
+                //
+            }
+            long t2 = System.nanoTime();
+            if (step < STEPS)
+            {
+                System.out.println(String.format("%-10s %12.1f %14s", simulator, (t1 - t0) / 1e6, "stalled"));
+                return;
+            }
+            System.out.println(String.format("%-10s %12.1f %14.1f", simulator, (t1 - t0) / 1e6,
+                    STEPS * STEP / ((t2 - t1) / 1e9)));
+        }
+    }
+
+}
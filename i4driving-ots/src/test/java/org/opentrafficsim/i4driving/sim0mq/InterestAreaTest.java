@@ -0,0 +1,152 @@
+package org.opentrafficsim.i4driving.sim0mq;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.djutils.draw.point.Point2d;
+import org.junit.Test;
+
+/**
+ * Tests that GTUs enter and leave an {@code InterestArea} as centres are set, moved and removed.
+ * @author wjschakel
+ */
+public class InterestAreaTest
+{
+
+    /** GTU ids that entered. */
+    private final List<String> entered = new ArrayList<>();
+
+    /** GTU ids that left. */
+    private final List<String> left = new ArrayList<>();
+
+    /** Positions of GTUs, as given to the locator. */
+    private final Map<String, Point2d> positions = new LinkedHashMap<>();
+
+    /** Area of interest with 10m hysteresis. */
+    private final InterestArea area =
+            new InterestArea(10.0, this.entered::add, this.left::add, (id) -> this.positions.get(id));
+
+    /**
+     * Tests that all GTUs are inside until the first centre is set, and that only GTUs within the radius remain inside.
+     */
+    @Test
+    public void testSetCentre()
+    {
+        track("A", 0.0, 0.0);
+        track("B", 500.0, 0.0);
+        assertFalse(this.area.isActive());
+        assertEquals(List.of("A", "B"), this.entered);
+        assertTrue(this.area.isInside("A") && this.area.isInside("B"));
+
+        // positions are not updated while inactive, they are obtained from the locator when the area is activated
+        this.positions.put("A", new Point2d(20.0, 0.0));
+        this.area.setCentre("ego", 0.0, 0.0, 100.0, true);
+        assertTrue(this.area.isActive());
+        assertEquals(List.of("B"), this.left);
+        assertTrue(this.area.isInside("A"));
+        assertFalse(this.area.isInside("B"));
+
+        // a new GTU enters only when it is within the radius
+        track("C", 95.0, 0.0);
+        track("D", 105.0, 0.0);
+        assertTrue(this.area.isInside("C"));
+        assertFalse(this.area.isInside("D"));
+        assertEquals(List.of("A", "B", "C"), this.entered);
+
+        // a second centre adds to the area
+        this.area.setCentre("fixed", 500.0, 0.0, 50.0, false);
+        assertTrue(this.area.isInside("B"));
+        assertEquals("B", this.entered.get(this.entered.size() - 1));
+    }
+
+    /**
+     * Tests that GTUs enter and leave when a following centre moves, with hysteresis.
+     */
+    @Test
+    public void testMoveCentre()
+    {
+        this.area.setCentre("ego", 0.0, 0.0, 100.0, true);
+        track("A", 50.0, 0.0);
+        track("B", 200.0, 0.0);
+        assertTrue(this.area.isInside("A"));
+        assertFalse(this.area.isInside("B"));
+
+        // A is beyond the radius, but within the hysteresis
+        this.area.moveCentre("ego", -55.0, 0.0);
+        assertTrue(this.area.isInside("A"));
+        this.area.moveCentre("ego", -65.0, 0.0);
+        assertFalse(this.area.isInside("A"));
+        assertEquals(List.of("A"), this.left);
+
+        // B enters when the centre moves towards it
+        this.area.moveCentre("ego", 140.0, 0.0);
+        assertTrue(this.area.isInside("A"));
+        assertTrue(this.area.isInside("B"));
+
+        // fixed centres do not move
+        this.area.setCentre("fixed", 1000.0, 0.0, 10.0, false);
+        this.area.moveCentre("fixed", 250.0, 0.0);
+        track("C", 1000.0, 0.0);
+        assertTrue(this.area.isInside("C"));
+
+        // GTUs moving themselves
+        this.area.update("B", 500.0, 0.0);
+        assertFalse(this.area.isInside("B"));
+        this.area.update("B", 995.0, 0.0);
+        assertTrue(this.area.isInside("B"));
+    }
+
+    /**
+     * Tests that removing a centre lets GTUs leave, and that removing the last centre makes all GTUs inside again.
+     */
+    @Test
+    public void testRemoveCentre()
+    {
+        this.area.setCentre("ego", 0.0, 0.0, 100.0, true);
+        this.area.setCentre("fixed", 500.0, 0.0, 100.0, false);
+        track("A", 0.0, 0.0);
+        track("B", 500.0, 0.0);
+        track("C", 1000.0, 0.0);
+        assertEquals(List.of("A", "B"), this.entered);
+
+        this.area.removeCentre("fixed");
+        assertTrue(this.area.isActive());
+        assertEquals(List.of("B"), this.left);
+        this.area.removeCentre("unknown");
+        assertEquals(List.of("B"), this.left);
+
+        // without centres nothing is filtered, and GTUs that were outside enter again
+        this.entered.clear();
+        this.area.removeCentre("ego");
+        assertFalse(this.area.isActive());
+        assertEquals(List.of("B", "C"), this.entered);
+        assertTrue(this.area.isInside("A") && this.area.isInside("B") && this.area.isInside("C"));
+        this.area.update("A", 5000.0, 0.0);
+        assertTrue(this.area.isInside("A"));
+
+        // removed GTUs are no longer tracked
+        assertTrue(this.area.remove("A"));
+        assertFalse(this.area.isTracked("A"));
+        assertFalse(this.area.remove("A"));
+        assertEquals(List.of("B"), this.left);
+    }
+
+    /**
+     * Tracks a GTU at a position.
+     * @param id GTU id
+     * @param x x coordinate [m]
+     * @param y y coordinate [m]
+     */
+    private void track(final String id, final double x, final double y)
+    {
+        this.positions.put(id, new Point2d(x, y));
+        this.area.update(id, x, y);
+    }
+
+}
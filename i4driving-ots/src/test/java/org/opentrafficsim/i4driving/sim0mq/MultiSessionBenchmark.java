@@ -0,0 +1,158 @@
+package org.opentrafficsim.i4driving.sim0mq;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Manual comparison of serving several clients from one OtsTransceiver process with multiple sessions, and from a process per
+ * client. Each client runs the demo network in PROGRESS steps, concurrently. Reported are the wall-clock time until all clients
+ * are done, and the total resident memory of the processes when all clients are done (Linux only). Arguments are the number
+ * of clients (default 4), the number of steps (default 1500) and the step size in seconds (default 0.02).
+ * @author wjschakel
+ */
+public final class MultiSessionBenchmark
+{
+
+    /**
+     * Constructor.
+     */
+    private MultiSessionBenchmark()
+    {
+        //
+    }
+
+    /**
+     * Runs the benchmark.
+     * @param args number of clients, number of steps, and step size [s]
+     * @throws Exception on any exception
+     */
+    public static void main(final String[] args) throws Exception
+    {
+        int clients = args.length > 0 ? Integer.parseInt(args[0]) : 4;
+        int steps = args.length > 1 ? Integer.parseInt(args[1]) : 1500;
+        double step = args.length > 2 ? Double.parseDouble(args[2]) : 0.02;
+        System.out.println(String.format("%d clients, %d steps of %.3fs", clients, steps, step));
+        System.out.println(String.format("%-10s %10s %10s", "processes", "time [s]", "RSS [MB]"));
+
+        List<Process> processes = List.of(TransceiverProcess.startProcess(5601, "--sessions", Integer.toString(clients)));
+        run(clients, steps, step, processes, (i) -> new TransceiverProcess(i == 0 ? processes.get(0) : null, 5601 + i));
+
+        List<Process> separate = new ArrayList<>();
+        for (int i = 0; i < clients; i++)
+        {
+            separate.add(TransceiverProcess.startProcess(5611 + i));
+        }
+        run(clients, steps, step, separate, (i) -> new TransceiverProcess(separate.get(i), 5611 + i));
+    }
+
+    /**
+     * Runs all clients concurrently, and reports time and memory.
+     * @param clients number of clients
+     * @param steps number of steps
+     * @param step step size [s]
+     * @param processes processes
+     * @param connector connects client i
+     * @throws Exception on any exception
+     */
+    private static void run(final int clients, final int steps, final double step, final List<Process> processes,
+            final Connector connector) throws Exception
+    {
+        ExecutorService executor = Executors.newFixedThreadPool(clients);
+        CountDownLatch done = new CountDownLatch(clients);
+        CountDownLatch measured = new CountDownLatch(1);
+        List<Future<Boolean>> results = new ArrayList<>();
+        long start = System.nanoTime();
+        for (int i = 0; i < clients; i++)
+        {
+            int client = i;
+            results.add(executor.submit(() ->
+            {
+                try (TransceiverProcess session = connector.connect(client))
+                {
+                    try
+                    {
+                        session.setupDemo();
+                        for (int j = 1; j <= steps; j++)
+                        {
+                            if (!session.progress(j * step))
+                            {
+                                return false;
+                            }
+                        }
+                        return true;
+                    }
+                    finally
+                    {
+                        // keep the sessions alive until memory is measured
+                        done.countDown();
+                        measured.await();
+                    }
+                }
+            }));
+        }
+        done.await();
+        double time = (System.nanoTime() - start) / 1e9;
+        long rss = 0;
+        for (Process process : processes)
+        {
+            rss += residentMemory(process);
+        }
+        measured.countDown();
+        int completed = 0;
+        for (Future<Boolean> result : results)
+        {
+            completed += result.get() ? 1 : 0;
+        }
+        executor.shutdown();
+        executor.awaitTermination(30, TimeUnit.SECONDS);
+        System.out.println(String.format("%-10d %10.1f %10.1f%s", processes.size(), time, rss / 1024.0,
+                completed < clients ? String.format(" (%d clients stalled)", clients - completed) : ""));
+    }
+
+    /**
+     * Returns the resident memory of a process.
+     * @param process process
+     * @return resident memory [kB], 0 if not available
+     * @throws IOException if the process status cannot be read
+     */
+    private static long residentMemory(final Process process) throws IOException
+    {
+        Path status = Path.of("/proc", Long.toString(process.pid()), "status");
+        if (!Files.exists(status))
+        {
+            return 0L;
+        }
+        for (String line : Files.readAllLines(status))
+        {
+            if (line.startsWith("VmRSS:"))
+            {
+                return Long.parseLong(line.replaceAll("[^0-9]", ""));
+            }
+        }
+        return 0L;
+    }
+
+    /**
+     * Connects a client to its session.
+     */
+    @FunctionalInterface
+    private interface Connector
+    {
+        /**
+         * Connects client i.
+         * @param client client index
+         * @return session
+         * @throws IOException if a process cannot be started
+         */
+        TransceiverProcess connect(int client) throws IOException;
+    }
+
+}
@@ -0,0 +1,234 @@
+package org.opentrafficsim.i4driving.sim0mq;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.djunits.value.vfloat.vector.base.FloatVector;
+import org.junit.Test;
+
+/**
+ * Tests that plans of a removed GTU are not sent, from a {@code PlanBatch} nor from a {@code PlanCoalescer}, and that a
+ * {@code PlanCoalescer} only suppresses plans that the previous plan reproduces within tolerances.
+ * @author wjschakel
+ */
+public class PlanBatchTest
+{
+
+    /**
+     * Tests that removing a GTU from a batch results in the same payload as a batch without the GTU.
+     */
+    @Test
+    public void testRemove()
+    {
+        PlanBatch batch = new PlanBatch();
+        add(batch, "A", 0.0f, 3, 1);
+        add(batch, "B", 0.1f, 2, 2);
+        add(batch, "A", 0.2f, 4, 1);
+        add(batch, "C", 0.3f, 5, 3);
+        batch.remove("A");
+        assertEquals(2, batch.size());
+        PlanBatch expected = new PlanBatch();
+        add(expected, "B", 0.1f, 2, 2);
+        add(expected, "C", 0.3f, 5, 3);
+        assertPayloadEquals(expected.toPayloadAndClear(), batch.toPayloadAndClear());
+
+        add(batch, "A", 0.0f, 3, 1);
+        batch.remove("A");
+        assertTrue(batch.isEmpty());
+        batch.remove("A");
+        assertTrue(batch.isEmpty());
+    }
+
+    /**
+     * Tests that a forgotten GTU has no staged plan, and that its next plan is not compared to its last sent plan.
+     */
+    @Test
+    public void testForget()
+    {
+        PlanCoalescer coalescer = new PlanCoalescer(0.1, 0.1);
+        coalescer.stage("A", plan(0.0f));
+        coalescer.stage("B", plan(0.0f));
+        coalescer.forget("A");
+        List<String> drained = new ArrayList<>();
+        coalescer.drain((id, plan) -> drained.add(id));
+        assertEquals(List.of("B"), drained);
+
+        // the same plan again is suppressed, unless the GTU was forgotten
+        coalescer.stage("A", plan(0.0f));
+        coalescer.stage("B", plan(0.0f));
+        coalescer.forget("B");
+        drained.clear();
+        coalescer.drain((id, plan) -> drained.add(id));
+        assertEquals(List.of("A"), drained);
+        coalescer.stage("A", plan(0.0f));
+        drained.clear();
+        coalescer.drain((id, plan) -> drained.add(id));
+        assertTrue(drained.isEmpty());
+    }
+
+    /**
+     * Tests that identical plans, and plans within tolerance, are suppressed.
+     */
+    @Test
+    public void testSuppressed()
+    {
+        PlanCoalescer coalescer = new PlanCoalescer(0.1, 0.1);
+        assertSent(coalescer, path(0.0f, 10.0f, 20.0f), new float[] {0.0f, 0.0f, 0.0f}, PlanBatch.INDICATOR_NONE);
+        assertSuppressed(coalescer, path(0.0f, 10.0f, 20.0f), new float[] {0.0f, 0.0f, 0.0f}, PlanBatch.INDICATOR_NONE);
+        assertSuppressed(coalescer, path(0.0f, 10.0f, 20.0f), new float[] {0.05f, 0.05f, 0.05f}, PlanBatch.INDICATOR_NONE);
+        assertSuppressed(coalescer, path(0.0f, 10.05f, 20.0f), new float[] {0.0f, 0.05f, 0.0f}, PlanBatch.INDICATOR_NONE);
+        assertEquals(3, coalescer.getSuppressed());
+    }
+
+    /**
+     * Tests that a plan is sent when its path deviates laterally at a vertex between the segment boundaries, while positions
+     * at the segment boundaries are within tolerance.
+     */
+    @Test
+    public void testLateralDeviation()
+    {
+        PlanCoalescer coalescer = new PlanCoalescer(0.1, 0.1);
+        assertSent(coalescer, path(0.0f, 10.0f, 20.0f), new float[] {0.0f, 0.0f, 0.0f}, PlanBatch.INDICATOR_NONE);
+        assertSent(coalescer, path(0.0f, 10.0f, 20.0f), new float[] {0.0f, 0.5f, 0.0f}, PlanBatch.INDICATOR_NONE);
+        // the deviating plan is the reference, which the straight plan deviates from at the vertex of the reference
+        assertSent(coalescer, path(0.0f, 10.0f, 20.0f), new float[] {0.0f, 0.0f, 0.0f}, PlanBatch.INDICATOR_NONE);
+        assertEquals(0, coalescer.getSuppressed());
+    }
+
+    /**
+     * Tests that a plan is sent when only the indicator changes.
+     */
+    @Test
+    public void testIndicatorChange()
+    {
+        PlanCoalescer coalescer = new PlanCoalescer(0.1, 0.1);
+        assertSent(coalescer, path(0.0f, 10.0f, 20.0f), new float[] {0.0f, 0.0f, 0.0f}, PlanBatch.INDICATOR_NONE);
+        assertSent(coalescer, path(0.0f, 10.0f, 20.0f), new float[] {0.0f, 0.0f, 0.0f}, PlanBatch.INDICATOR_LEFT);
+        assertSuppressed(coalescer, path(0.0f, 10.0f, 20.0f), new float[] {0.0f, 0.0f, 0.0f}, PlanBatch.INDICATOR_LEFT);
+        assertSent(coalescer, path(0.0f, 10.0f, 20.0f), new float[] {0.0f, 0.0f, 0.0f}, PlanBatch.INDICATOR_NONE);
+    }
+
+    /**
+     * Asserts that a plan of 2s at 10m/s over the path is sent.
+     * @param coalescer coalescer
+     * @param x x coordinates of path [m]
+     * @param y y coordinates of path [m]
+     * @param indicator indicator code
+     */
+    private static void assertSent(final PlanCoalescer coalescer, final float[] x, final float[] y, final byte indicator)
+    {
+        assertEquals(1, drain(coalescer, x, y, indicator));
+    }
+
+    /**
+     * Asserts that a plan of 2s at 10m/s over the path is suppressed.
+     * @param coalescer coalescer
+     * @param x x coordinates of path [m]
+     * @param y y coordinates of path [m]
+     * @param indicator indicator code
+     */
+    private static void assertSuppressed(final PlanCoalescer coalescer, final float[] x, final float[] y,
+            final byte indicator)
+    {
+        assertEquals(0, drain(coalescer, x, y, indicator));
+    }
+
+    /**
+     * Stages and drains a plan of 2s at 10m/s over the path, with a single segment of which the boundaries are at the end
+     * vertices of the path.
+     * @param coalescer coalescer
+     * @param x x coordinates of path [m]
+     * @param y y coordinates of path [m]
+     * @param indicator indicator code
+     * @return number of sent plans
+     */
+    private static int drain(final PlanCoalescer coalescer, final float[] x, final float[] y, final byte indicator)
+    {
+        coalescer.stage("A", new PlanCoalescer.Plan(0.0f, 10.0, x, y, new float[] {2.0f}, new float[] {0.0f}, indicator));
+        List<String> drained = new ArrayList<>();
+        coalescer.drain((id, plan) -> drained.add(id));
+        return drained.size();
+    }
+
+    /**
+     * Returns the coordinates as an array.
+     * @param coordinates coordinates
+     * @return coordinates as an array
+     */
+    private static float[] path(final float... coordinates)
+    {
+        return coordinates;
+    }
+
+    /**
+     * Adds a plan with arbitrary, but distinguishable, data to a batch.
+     * @param batch batch
+     * @param id GTU id
+     * @param time start time [s]
+     * @param points number of path coordinates
+     * @param segments number of segments
+     */
+    private static void add(final PlanBatch batch, final String id, final float time, final int points, final int segments)
+    {
+        float[] x = new float[points];
+        float[] y = new float[points];
+        for (int i = 0; i < points; i++)
+        {
+            x[i] = time + i;
+            y[i] = -time - i;
+        }
+        float[] t = new float[segments];
+        float[] a = new float[segments];
+        for (int i = 0; i < segments; i++)
+        {
+            t[i] = 0.5f + time;
+            a[i] = time - i;
+        }
+        batch.add(id, time, 10.0f + time, x, y, t, a, PlanBatch.INDICATOR_NONE);
+    }
+
+    /**
+     * Returns a straight plan with constant speed.
+     * @param time start time [s]
+     * @return straight plan with constant speed
+     */
+    private static PlanCoalescer.Plan plan(final float time)
+    {
+        return new PlanCoalescer.Plan(time, 10.0, new float[] {0.0f, 10.0f}, new float[] {0.0f, 0.0f}, new float[] {1.0f},
+                new float[] {0.0f}, PlanBatch.INDICATOR_NONE);
+    }
+
+    /**
+     * Asserts that two PLANS payloads are equal.
+     * @param expected expected payload
+     * @param actual actual payload
+     */
+    private static void assertPayloadEquals(final Object[] expected, final Object[] actual)
+    {
+        assertEquals(expected.length, actual.length);
+        for (int i = 0; i < expected.length; i++)
+        {
+            if (expected[i] instanceof FloatVector<?, ?, ?> vector)
+            {
+                assertArrayEquals(vector.getValuesSI(), ((FloatVector<?, ?, ?>) actual[i]).getValuesSI(), 0.0f);
+            }
+            else if (expected[i] instanceof int[] array)
+            {
+                assertArrayEquals(array, (int[]) actual[i]);
+            }
+            else if (expected[i] instanceof byte[] array)
+            {
+                assertArrayEquals(array, (byte[]) actual[i]);
+            }
+            else
+            {
+                assertEquals(expected[i], actual[i]);
+            }
+        }
+    }
+
+}
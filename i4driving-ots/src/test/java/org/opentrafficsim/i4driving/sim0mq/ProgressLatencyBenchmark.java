@@ -0,0 +1,62 @@
+package org.opentrafficsim.i4driving.sim0mq;
+
+import org.djutils.stats.summarizers.Tally;
+
+/**
+ * Manual benchmark of the round-trip time of PROGRESS messages, i.e. from sending PROGRESS until receiving READY. It starts an
+ * OtsTransceiver process with the animator, and one with the headless simulator. Both run the demo network with the demo OD
+ * matrix, and step latency percentiles are reported. The animator may stall in its start/stop hand-off, so both are run a
+ * number of times, and runs that stall are reported but not included, as they would compare fewer and earlier steps. Arguments
+ * are the number of steps (default 1500), the step size in seconds (default 0.02, i.e. 50Hz) and the number of runs (default
+ * 3).
+ * @author wjschakel
+ */
+public final class ProgressLatencyBenchmark
+{
+
+    /**
+     * Constructor.
+     */
+    private ProgressLatencyBenchmark()
+    {
+        //
+    }
+
+    /**
+     * Runs the benchmark.
+     * @param args number of steps, step size [s] and number of runs
+     * @throws Exception on any exception
+     */
+    public static void main(final String[] args) throws Exception
+    {
+        int steps = args.length > 0 ? Integer.parseInt(args[0]) : 1500;
+        double step = args.length > 1 ? Double.parseDouble(args[1]) : 0.02;
+        int runs = args.length > 2 ? Integer.parseInt(args[2]) : 3;
+        TransceiverProcess.printLatencyHeader("simulator", steps, step);
+        int port = 5571;
+        for (int i = 0; i < runs; i++)
+        {
+            TransceiverProcess.printLatencies("animator", run(port++, steps, step, "ANIMATOR"));
+            TransceiverProcess.printLatencies("headless", run(port++, steps, step, "HEADLESS"));
+        }
+    }
+
+    /**
+     * Starts an OtsTransceiver process, and measures the PROGRESS round-trip time.
+     * @param port port number
+     * @param steps number of steps
+     * @param step step size [s]
+     * @param simulator simulator type option of OtsTransceiver
+     * @return latencies in ms, {@code null} if no READY was received within the timeout
+     * @throws Exception on any exception
+     */
+    private static Tally run(final int port, final int steps, final double step, final String simulator) throws Exception
+    {
+        try (TransceiverProcess process = new TransceiverProcess(port, "--simulator", simulator))
+        {
+            process.setupDemo();
+            return process.progressLatencies(steps, step, simulator);
+        }
+    }
+
+}
@@ -0,0 +1,75 @@
+package org.opentrafficsim.i4driving.sim0mq;
+
+import org.djutils.stats.summarizers.Tally;
+
+/**
+ * Manual benchmark of the round-trip time of RESET messages, with and without network cache. For each, an OtsTransceiver
+ * process is started with an OpenDRIVE network, and the simulation is progressed before each RESET. Arguments are the number
+ * of resets (default 10) and the OpenDRIVE resource (default the motorway exit and entry example).
+ * @author wjschakel
+ */
+public final class ResetBenchmark
+{
+
+    /**
+     * Constructor.
+     */
+    private ResetBenchmark()
+    {
+        //
+    }
+
+    /**
+     * Runs the benchmark.
+     * @param args number of resets, and OpenDRIVE resource
+     * @throws Exception on any exception
+     */
+    public static void main(final String[] args) throws Exception
+    {
+        int resets = args.length > 0 ? Integer.parseInt(args[0]) : 10;
+        String resource = args.length > 1 ? args[1] : "/opendrive/examples/UC_Motorway-Exit-Entry.xodr";
+        System.out.println(String.format("%d resets, network %s", resets, resource));
+        System.out.println(String.format("%-14s %10s %10s %10s %10s  [ms]", "network", "NETWORK", "mean", "min", "max"));
+        run(5591, resets, resource, "cached");
+        run(5592, resets, resource, "new", "--noNetworkCache");
+    }
+
+    /**
+     * Starts an OtsTransceiver process, and measures the RESET round-trip time.
+     * @param port port number
+     * @param resets number of resets
+     * @param resource OpenDRIVE resource
+     * @param label label of the results
+     * @param options additional command line options of OtsTransceiver
+     * @throws Exception on any exception
+     */
+    private static void run(final int port, final int resets, final String resource, final String label,
+            final String... options) throws Exception
+    {
+        Tally tally = new Tally("Reset time [ms]");
+        try (TransceiverProcess process = new TransceiverProcess(port, options))
+        {
+            long start = System.nanoTime();
+            process.setupOpenDrive(resource);
+            double network = (System.nanoTime() - start) / 1_000_000.0;
+            for (int i = 0; i < resets; i++)
+            {
+                if (!process.progress(10.0))
+                {
+                    System.out.println(String.format("%s: no READY on PROGRESS within timeout", label));
+                    break;
+                }
+                start = System.nanoTime();
+                if (!process.reset())
+                {
+                    System.out.println(String.format("%s: no READY on RESET within timeout", label));
+                    break;
+                }
+                tally.register((System.nanoTime() - start) / 1_000_000.0);
+            }
+            System.out.println(String.format("%-14s %10.1f %10.1f %10.1f %10.1f", label, network,
+                    tally.getSampleMean(), tally.getMin(), tally.getMax()));
+        }
+    }
+
+}
@@ -0,0 +1,88 @@
+package org.opentrafficsim.i4driving.sim0mq;
+
+import org.djunits.value.vdouble.scalar.Length;
+import org.djunits.value.vdouble.scalar.Speed;
+import org.djunits.value.vfloat.vector.FloatAccelerationVector;
+import org.djunits.value.vfloat.vector.FloatDurationVector;
+import org.djunits.value.vfloat.vector.FloatLengthVector;
+import org.djutils.serialization.EndianUtil;
+import org.djutils.serialization.TypedMessage;
+import org.sim0mq.message.Sim0MQMessage;
+
+/**
+ * Manual benchmark of the generic codec ({@code Sim0MQMessage} and {@code TypedMessage}) and the schema-specific codec
+ * ({@code Sim0mqEncoder} and {@code Sim0mqReader}) for PLAN and EXTERNAL messages. The argument is the number of messages per
+ * round (default 1000000). The first rounds are warm-up.
+ * @author wjschakel
+ */
+public final class Sim0mqCodecBenchmark
+{
+
+    /** Path x coordinates. */
+    private static final float[] X = {10.0f, 12.5f, 15.0f, 17.5f, 20.0f, 22.5f, 25.0f, 27.5f};
+
+    /** Path y coordinates. */
+    private static final float[] Y = {-1.75f, -1.75f, -1.7f, -1.6f, -1.4f, -1.2f, -1.0f, -0.8f};
+
+    /** Segment durations. */
+    private static final float[] T = {0.5f, 0.5f};
+
+    /** Segment accelerations. */
+    private static final float[] A = {0.8f, 0.6f};
+
+    /**
+     * Constructor.
+     */
+    private Sim0mqCodecBenchmark()
+    {
+        //
+    }
+
+    /**
+     * Runs the benchmark.
+     * @param args number of messages per round
+     * @throws Exception on any exception
+     */
+    public static void main(final String[] args) throws Exception
+    {
+        int n = args.length > 0 ? Integer.parseInt(args[0]) : 1_000_000;
+        Sim0mqEncoder encoder = new Sim0mqEncoder(false, "Ots_ExternalSim", "Ots", "ExternalSim");
+        Sim0mqReader reader = new Sim0mqReader();
+        byte[] external = encoder.encodeExternal(0, "GTU1", 100.0, 2.0, 0.1, 20.0, 0.5);
+        for (int round = 0; round < 3; round++)
+        {
+            long t0 = System.nanoTime();
+            long sink = 0;
+            for (int i = 0; i < n; i++)
+            {
+                sink += Sim0MQMessage.encodeUTF8(false, "Ots_ExternalSim", "Ots", "ExternalSim", "PLAN", i,
+                        new Object[] {"GTU1", Speed.instantiateSI(20.0), new FloatLengthVector(X), new FloatLengthVector(Y),
+                                new FloatDurationVector(T), new FloatAccelerationVector(A), "None"}).length;
+            }
+            long t1 = System.nanoTime();
+            for (int i = 0; i < n; i++)
+            {
+                sink += encoder.encodePlan(i, "GTU1", 20.0, X, Y, X.length, T, A, T.length, "None").length;
+            }
+            long t2 = System.nanoTime();
+            for (int i = 0; i < n; i++)
+            {
+                Object[] array = TypedMessage.decodeToObjectDataTypes(external, EndianUtil.LITTLE_ENDIAN);
+                sink += ((Length) array[10]).si > 0.0 ? 1 : 0;
+            }
+            long t3 = System.nanoTime();
+            for (int i = 0; i < n; i++)
+            {
+                reader.wrap(external);
+                sink += reader.getDouble(1) > 0.0 ? 1 : 0;
+            }
+            long t4 = System.nanoTime();
+            System.out.println(String.format("Round %d (%d)", round, sink));
+            System.out.println(String.format("  PLAN encode, Sim0MQMessage:   %7.1f ns/msg", (t1 - t0) / (double) n));
+            System.out.println(String.format("  PLAN encode, Sim0mqEncoder:   %7.1f ns/msg", (t2 - t1) / (double) n));
+            System.out.println(String.format("  EXTERNAL decode, TypedMessage: %6.1f ns/msg", (t3 - t2) / (double) n));
+            System.out.println(String.format("  EXTERNAL read, Sim0mqReader:  %7.1f ns/msg", (t4 - t3) / (double) n));
+        }
+    }
+
+}
@@ -0,0 +1,416 @@
+package org.opentrafficsim.i4driving.sim0mq;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.djutils.serialization.SerializationException;
+import org.djutils.stats.summarizers.Tally;
+import org.djutils.stats.summarizers.quantileaccumulator.TDigestAccumulator;
+import org.opentrafficsim.i4driving.sim0mq.OtsTransceiver.Transport;
+import org.sim0mq.Sim0MQException;
+import org.sim0mq.message.Sim0MQMessage;
+import org.zeromq.SocketType;
+import org.zeromq.ZContext;
+import org.zeromq.ZMQ;
+
+/**
+ * OtsTransceiver in a separate process, with a connected socket, for manual benchmarks. The process is started on the class
+ * path of the current process, and its output is discarded. Alternatively, an OtsTransceiver embedded in the current process
+ * with EmbeddedOts can be used. The round-trip time of PROGRESS messages can be measured and reported per session, e.g. per
+ * simulator or transport.
+ * @author wjschakel
+ */
+final class TransceiverProcess implements AutoCloseable
+{
+
+    /** Federation id. */
+    private static final String FEDERATION = "Ots_ExternalSim";
+
+    /** OTS id. */
+    private static final String OTS = "Ots";
+
+    /** External simulator id. */
+    private static final String EXTERNAL_SIM = "ExternalSim";
+
+    /** Number of initial steps that are not included in PROGRESS latencies. */
+    static final int WARM_UP = 100;
+
+    /** Process. */
+    private final Process process;
+
+    /** Context, {@code null} if embedded. */
+    private final ZContext context;
+
+    /** Socket, {@code null} if embedded. */
+    private final ZMQ.Socket socket;
+
+    /** Embedded session, {@code null} if in a separate process. */
+    private final EmbeddedOts embedded;
+
+    /** Encoder. */
+    private final Sim0mqEncoder encoder = new Sim0mqEncoder(false, FEDERATION, EXTERNAL_SIM, OTS);
+
+    /** Reader. */
+    private final Sim0mqReader reader = new Sim0mqReader();
+
+    /** Message id. */
+    private int messageId = 0;
+
+    /**
+     * Starts the process and connects to it.
+     * @param port port number
+     * @param options additional command line options of OtsTransceiver
+     * @throws IOException if the process cannot be started
+     */
+    TransceiverProcess(final int port, final String... options) throws IOException
+    {
+        this(startProcess(port, options), port);
+    }
+
+    /**
+     * Connects to a session of a process.
+     * @param process process, which is waited for on close, may be {@code null} if managed elsewhere
+     * @param port port number of the session
+     */
+    TransceiverProcess(final Process process, final int port)
+    {
+        this(process, OtsTransceiver.endpoint(Transport.TCP, port, false));
+    }
+
+    /**
+     * Connects to a session of a process.
+     * @param process process, which is waited for on close, may be {@code null} if managed elsewhere
+     * @param endpoint endpoint of the session, e.g. "ipc://ots-5556"
+     */
+    TransceiverProcess(final Process process, final String endpoint)
+    {
+        this.process = process;
+        this.context = new ZContext(1);
+        this.socket = this.context.createSocket(SocketType.PAIR);
+        this.socket.setReceiveTimeOut(30000);
+        this.socket.connect(endpoint);
+        this.embedded = null;
+    }
+
+    /**
+     * Uses a session embedded in the current process.
+     * @param embedded embedded session, which is closed on close
+     */
+    TransceiverProcess(final EmbeddedOts embedded)
+    {
+        this.process = null;
+        this.context = null;
+        this.socket = null;
+        this.embedded = embedded;
+    }
+
+    /**
+     * Starts an OtsTransceiver process.
+     * @param port port number
+     * @param options additional command line options of OtsTransceiver
+     * @return process
+     * @throws IOException if the process cannot be started
+     */
+    static Process startProcess(final int port, final String... options) throws IOException
+    {
+        List<String> command = new ArrayList<>(List.of(System.getProperty("java.home") + "/bin/java",
+                "-Djava.awt.headless=true", "-cp", System.getProperty("java.class.path"), OtsTransceiver.class.getName(),
+                "--port", Integer.toString(port)));
+        command.addAll(List.of(options));
+        return new ProcessBuilder(command).redirectOutput(ProcessBuilder.Redirect.DISCARD)
+                .redirectError(ProcessBuilder.Redirect.DISCARD).start();
+    }
+
+    /**
+     * Sets up the demo network with the demo OD matrix and routes, and waits until it is ready.
+     * @throws IOException if a resource cannot be read
+     * @throws Sim0MQException on message encoding exception
+     * @throws SerializationException on message encoding exception
+     * @throws IllegalStateException if no READY message is received within the timeout
+     */
+    void setupDemo() throws IOException, Sim0MQException, SerializationException
+    {
+        int first = this.messageId;
+        send("ODMATRIX", resource("/od/OdMatrix.json"));
+        send("ROUTES", resource("/route/Routes.json"));
+        send("NETWORK");
+        for (int i = first; i < this.messageId; i++)
+        {
+            awaitReady(i);
+        }
+    }
+
+    /**
+     * Sets up an OpenDRIVE network without OD and routes, and waits until it is ready.
+     * @param resource resource name of the OpenDRIVE file
+     * @throws IOException if the resource cannot be read
+     * @throws Sim0MQException on message encoding exception
+     * @throws SerializationException on message encoding exception
+     * @throws IllegalStateException if no READY message is received within the timeout
+     */
+    void setupOpenDrive(final String resource) throws IOException, Sim0MQException, SerializationException
+    {
+        send("NETWORK", resource(resource), "OPEN_DRIVE");
+        awaitReady(this.messageId - 1);
+    }
+
+    /**
+     * Sends a RESET message and waits for the READY message.
+     * @return whether the READY message was received within the timeout
+     * @throws Sim0MQException on message encoding exception
+     * @throws SerializationException on message encoding exception
+     */
+    boolean reset() throws Sim0MQException, SerializationException
+    {
+        send("RESET");
+        try
+        {
+            awaitReady(this.messageId - 1);
+            return true;
+        }
+        catch (IllegalStateException ex)
+        {
+            return false;
+        }
+    }
+
+    /**
+     * Sends a PROGRESS message and waits for the READY message.
+     * @param until time until which to progress [s]
+     * @return whether the READY message was received within the timeout
+     * @throws SerializationException if a message cannot be read
+     */
+    boolean progress(final double until) throws SerializationException
+    {
+        int progressId = this.messageId++;
+        send(this.encoder.encodeProgress(progressId, until));
+        try
+        {
+            awaitReady(progressId);
+            return true;
+        }
+        catch (IllegalStateException ex)
+        {
+            return false;
+        }
+    }
+
+    /**
+     * Measures the round-trip time of PROGRESS messages, i.e. from sending PROGRESS until receiving READY, excluding the
+     * warm-up steps.
+     * @param steps number of steps
+     * @param step step size [s]
+     * @param label label of the session, e.g. simulator or transport, to report a stall
+     * @return latencies in ms, {@code null} if no READY was received within the timeout
+     * @throws SerializationException if a message cannot be read
+     */
+    Tally progressLatencies(final int steps, final double step, final String label) throws SerializationException
+    {
+        Tally tally = new Tally("Step latency [ms]", new TDigestAccumulator());
+        for (int i = 1; i <= steps; i++)
+        {
+            long start = System.nanoTime();
+            if (!progress(i * step))
+            {
+                // the session is terminated on close
+                System.out.println(String.format("%s: no READY within timeout, stalled after %d steps", label, i - 1));
+                return null;
+            }
+            if (i > WARM_UP)
+            {
+                tally.register((System.nanoTime() - start) / 1_000_000.0);
+            }
+        }
+        return tally;
+    }
+
+    /**
+     * Prints the header of PROGRESS latencies.
+     * @param column name of the label column, e.g. simulator or transport
+     * @param steps number of steps
+     * @param step step size [s]
+     */
+    static void printLatencyHeader(final String column, final int steps, final double step)
+    {
+        System.out.println(String.format("%d steps of %.3fs, excluding %d warm-up steps", steps, step, WARM_UP));
+        System.out.println(String.format("%-10s %8s %8s %8s %8s %8s  [ms]", column, "mean", "p50", "p90", "p99", "max"));
+    }
+
+    /**
+     * Prints a line of PROGRESS latencies.
+     * @param label label of the session, e.g. simulator or transport
+     * @param tally latencies, {@code null} if the session stalled
+     */
+    static void printLatencies(final String label, final Tally tally)
+    {
+        if (tally == null)
+        {
+            System.out.println(String.format("%-10s stalled, not included", label));
+            return;
+        }
+        if (tally.getN() == 0)
+        {
+            System.out.println(String.format("%-10s no steps after warm-up", label));
+            return;
+        }
+        System.out.println(String.format("%-10s %8.3f %8.3f %8.3f %8.3f %8.3f", label, tally.getSampleMean(),
+                tally.getQuantile(0.5), tally.getQuantile(0.9), tally.getQuantile(0.99), tally.getMax()));
+    }
+
+    /**
+     * Sends messages of a type, and waits for all their READY messages.
+     * @param type message type
+     * @param payloads payload per message
+     * @throws Sim0MQException on message encoding exception
+     * @throws SerializationException on message encoding exception
+     * @throws IllegalStateException if a READY message is not received within the timeout
+     */
+    void request(final String type, final List<Object[]> payloads) throws Sim0MQException, SerializationException
+    {
+        int first = this.messageId;
+        for (Object[] payload : payloads)
+        {
+            send(type, payload);
+        }
+        for (int i = first; i < this.messageId; i++)
+        {
+            awaitReady(i);
+        }
+    }
+
+    /**
+     * Sends a message.
+     * @param type message type
+     * @param payload payload
+     * @throws Sim0MQException on message encoding exception
+     * @throws SerializationException on message encoding exception
+     */
+    private void send(final String type, final Object... payload) throws Sim0MQException, SerializationException
+    {
+        send(Sim0MQMessage.encodeUTF8(false, FEDERATION, EXTERNAL_SIM, OTS, type, this.messageId++, payload));
+    }
+
+    /**
+     * Sends a frame.
+     * @param frame frame
+     */
+    private void send(final byte[] frame)
+    {
+        if (this.embedded != null)
+        {
+            this.embedded.send(frame);
+        }
+        else
+        {
+            this.socket.send(frame, 0);
+        }
+    }
+
+    /**
+     * Receives a frame, waiting at most 30s.
+     * @return frame, {@code null} if no frame was received within the timeout
+     */
+    private byte[] receive()
+    {
+        if (this.embedded != null)
+        {
+            try
+            {
+                return this.embedded.receive(30000L);
+            }
+            catch (InterruptedException ex)
+            {
+                Thread.currentThread().interrupt();
+                return null;
+            }
+        }
+        return this.socket.recv(0);
+    }
+
+    /**
+     * Receives messages until a READY message for the given message id is received. Other messages are skipped.
+     * @param id message id
+     * @throws SerializationException if a message cannot be read
+     * @throws IllegalStateException if no message is received within the timeout
+     */
+    private void awaitReady(final int id) throws SerializationException
+    {
+        while (true)
+        {
+            byte[] bytes = receive();
+            if (bytes == null)
+            {
+                throw new IllegalStateException("No READY message received for message " + id);
+            }
+            if ("READY".equals(this.reader.wrap(bytes).getMessageType()) && this.reader.getInt(0) == id)
+            {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Sends a TERMINATE message, and waits for the process to end, if it is managed by this object.
+     * @throws Sim0MQException on message encoding exception
+     * @throws SerializationException on message encoding exception
+     */
+    @Override
+    public void close() throws Sim0MQException, SerializationException
+    {
+        try
+        {
+            send("TERMINATE");
+        }
+        finally
+        {
+            if (this.embedded != null)
+            {
+                this.embedded.close();
+            }
+            else
+            {
+                this.context.close();
+            }
+            if (this.process != null && !waitForProcess())
+            {
+                this.process.destroyForcibly();
+            }
+        }
+    }
+
+    /**
+     * Waits at most 10s for the process to end. If the thread is interrupted, its interrupt status is restored.
+     * @return whether the process ended
+     */
+    private boolean waitForProcess()
+    {
+        try
+        {
+            return this.process.waitFor(10, TimeUnit.SECONDS);
+        }
+        catch (InterruptedException ex)
+        {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    /**
+     * Reads a resource as string.
+     * @param name resource name
+     * @return resource contents
+     * @throws IOException if the resource cannot be read
+     */
+    private static String resource(final String name) throws IOException
+    {
+        try (InputStream stream = TransceiverProcess.class.getResourceAsStream(name))
+        {
+            return new String(stream.readAllBytes(), StandardCharsets.UTF_8);
+        }
+    }
+
+}
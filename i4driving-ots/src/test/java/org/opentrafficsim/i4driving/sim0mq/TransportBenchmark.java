@@ -0,0 +1,75 @@
+package org.opentrafficsim.i4driving.sim0mq;
+
+import org.djutils.stats.summarizers.Tally;
+import org.opentrafficsim.i4driving.sim0mq.OtsTransceiver.Transport;
+
+/**
+ * Manual benchmark of the round-trip time of PROGRESS messages for each transport. TCP and IPC sessions run in a separate
+ * process, INPROC and QUEUE sessions are embedded in this process with EmbeddedOts. All sessions run the demo network with the
+ * demo OD matrix with the headless simulator, and step latency percentiles are reported. Arguments are the number of steps
+ * (default 1500) and the step size in seconds (default 0.02, i.e. 50Hz).
+ * @author wjschakel
+ */
+public final class TransportBenchmark
+{
+
+    /**
+     * Constructor.
+     */
+    private TransportBenchmark()
+    {
+        //
+    }
+
+    /**
+     * Runs the benchmark.
+     * @param args number of steps and step size [s]
+     * @throws Exception on any exception
+     */
+    public static void main(final String[] args) throws Exception
+    {
+        int steps = args.length > 0 ? Integer.parseInt(args[0]) : 1500;
+        double step = args.length > 1 ? Double.parseDouble(args[1]) : 0.02;
+        TransceiverProcess.printLatencyHeader("transport", steps, step);
+        int port = 5581;
+        for (Transport transport : Transport.values())
+        {
+            TransceiverProcess.printLatencies(transport.name(), run(transport, port++, steps, step));
+        }
+    }
+
+    /**
+     * Starts a session with the given transport, and measures the PROGRESS round-trip time.
+     * @param transport transport
+     * @param port port number
+     * @param steps number of steps
+     * @param step step size [s]
+     * @return latencies in ms, {@code null} if no READY was received within the timeout
+     * @throws Exception on any exception
+     */
+    private static Tally run(final Transport transport, final int port, final int steps, final double step)
+            throws Exception
+    {
+        String[] options = {"--simulator", "HEADLESS", "--logLevel", "WARNING", "--transport", transport.name()};
+        TransceiverProcess process;
+        if (transport.isExternal())
+        {
+            process = new TransceiverProcess(TransceiverProcess.startProcess(port, options),
+                    OtsTransceiver.endpoint(transport, port, false));
+        }
+        else
+        {
+            String[] embeddedOptions = new String[options.length + 2];
+            System.arraycopy(options, 0, embeddedOptions, 0, options.length);
+            embeddedOptions[options.length] = "--port";
+            embeddedOptions[options.length + 1] = Integer.toString(port);
+            process = new TransceiverProcess(new EmbeddedOts(embeddedOptions));
+        }
+        try (process)
+        {
+            process.setupDemo();
+            return process.progressLatencies(steps, step, transport.name());
+        }
+    }
+
+}
@@ -0,0 +1,203 @@
+package org.opentrafficsim.i4driving.tactical;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Random;
+
+import org.djunits.value.vdouble.scalar.Direction;
+import org.djunits.value.vdouble.scalar.Duration;
+import org.djunits.value.vdouble.scalar.Length;
+import org.djunits.value.vdouble.scalar.Time;
+import org.djutils.draw.line.PolyLine2d;
+import org.djutils.draw.line.Polygon2d;
+import org.djutils.draw.point.OrientedPoint2d;
+import org.djutils.draw.point.Point2d;
+import org.junit.Test;
+import org.opentrafficsim.core.definitions.DefaultsNl;
+import org.opentrafficsim.core.dsol.AbstractOtsModel;
+import org.opentrafficsim.core.dsol.OtsSimulator;
+import org.opentrafficsim.core.geometry.ContinuousStraight;
+import org.opentrafficsim.core.geometry.Flattener.NumSegments;
+import org.opentrafficsim.core.geometry.FractionalLengthData;
+import org.opentrafficsim.core.geometry.OtsLine2d;
+import org.opentrafficsim.core.network.Link;
+import org.opentrafficsim.core.network.Node;
+import org.opentrafficsim.i4driving.tactical.VisibilityLanePerception.Visibility;
+import org.opentrafficsim.i4driving.tactical.VisibilityLanePerception.VisibilityField;
+import org.opentrafficsim.road.definitions.DefaultsRoadNl;
+import org.opentrafficsim.road.network.RoadNetwork;
+import org.opentrafficsim.road.network.lane.CrossSectionLink;
+import org.opentrafficsim.road.network.lane.CrossSectionSlice;
+import org.opentrafficsim.road.network.lane.Lane;
+import org.opentrafficsim.road.network.lane.LaneGeometryUtil;
+import org.opentrafficsim.road.network.lane.changing.LaneKeepingPolicy;
+
+import nl.tudelft.simulation.dsol.SimRuntimeException;
+
+/**
+ * Tests that visibility interpolated in a {@code VisibilityField} matches visibility computed exactly at the position of view,
+ * within a pinned tolerance. A lane towards an intersection has a view over an anchor, e.g. a building corner, on to a crossing
+ * link. Close to where the ray starts or stops intersecting the crossing link, or where it is almost parallel to the link, the
+ * distance changes rapidly, and the interpolation error is larger.
+ * @author wjschakel
+ */
+public class VisibilityFieldTest
+{
+
+    /** Number of random positions on the lane per anchor. */
+    private static final int POSITIONS = 100000;
+
+    /** Maximum share of positions where a ray intersects the to-link with interpolation, but not exactly, or vice versa. */
+    private static final double MAX_FLIPS = 0.005;
+
+    /** Maximum 90th percentile of the interpolation error [m]. */
+    private static final double MAX_ERROR_P90 = 0.05;
+
+    /** Maximum 99th percentile of the interpolation error [m]. */
+    private static final double MAX_ERROR_P99 = 2.5;
+
+    /** Network. */
+    private RoadNetwork network;
+
+    /**
+     * Compares interpolated and exact distances at random positions on the lane, for anchors to the left and right.
+     * @throws Exception on any exception when building the network
+     */
+    @Test
+    public void testInterpolation() throws Exception
+    {
+        buildNetwork();
+        Link from = this.network.getLink("S-C");
+        Link to = this.network.getLink("W-E");
+        Lane lane = (Lane) ((CrossSectionLink) from).getCrossSectionElement("Lane");
+        Random random = new Random(1L);
+        for (Point2d anchor : List.of(new Point2d(-10.0, -10.0), new Point2d(-6.0, -20.0), new Point2d(8.0, -12.0)))
+        {
+            Visibility visibility = new Visibility();
+            visibility.addAnchor(from, to, anchor);
+            VisibilityField field = visibility.getField(lane, to);
+            int samples = field.getPoints().size();
+
+            // samples are exact
+            for (int i = 0; i < samples; i++)
+            {
+                double exact = Visibility.computeDistance(field.getPoints().get(i), to, anchor);
+                assertEquals(exact, field.getDistance(0, (double) i / (samples - 1)), 1e-9);
+            }
+
+            int flips = 0;
+            double[] errors = new double[POSITIONS];
+            int n = 0;
+            for (int i = 0; i < POSITIONS; i++)
+            {
+                double fraction = random.nextDouble();
+                double interpolated = field.getDistance(0, fraction);
+                double exact =
+                        Visibility.computeDistance(lane.getCenterLine().getLocationFractionExtended(fraction), to, anchor);
+                int sample = Math.min((int) (fraction * (samples - 1)), samples - 2);
+                double before = field.getSampledDistance(0, sample);
+                double after = field.getSampledDistance(0, sample + 1);
+                if (Double.isNaN(interpolated) != Double.isNaN(exact))
+                {
+                    // only between samples of which one intersects the to-link and the other does not
+                    assertTrue(anchor + " at " + fraction, Double.isNaN(before) != Double.isNaN(after));
+                    flips++;
+                }
+                else if (!Double.isNaN(exact))
+                {
+                    // the error is never larger than the difference between the samples
+                    double error = Math.abs(interpolated - exact);
+                    if (!Double.isNaN(before) && !Double.isNaN(after))
+                    {
+                        assertTrue(anchor + " at " + fraction, error <= Math.abs(after - before) + 1e-9);
+                    }
+                    errors[n++] = error;
+                }
+            }
+            assertTrue(anchor + " flips " + flips, flips <= MAX_FLIPS * POSITIONS);
+            Arrays.sort(errors, 0, n);
+            assertTrue(anchor + " p90 " + errors[(int) (0.9 * n)], errors[(int) (0.9 * n)] <= MAX_ERROR_P90);
+            assertTrue(anchor + " p99 " + errors[(int) (0.99 * n)], errors[(int) (0.99 * n)] <= MAX_ERROR_P99);
+        }
+    }
+
+    /**
+     * Builds a network with a lane from S to C towards an intersection, and a crossing link from W to E.
+     * @throws Exception on any exception when building the network
+     */
+    private void buildNetwork() throws Exception
+    {
+        OtsSimulator simulator = new OtsSimulator("VisibilityFieldTest");
+        AbstractOtsModel model = new AbstractOtsModel(simulator)
+        {
+            /** */
+            private static final long serialVersionUID = 20241017L;
+
+            @Override
+            public void constructModel() throws SimRuntimeException
+            {
+                try
+                {
+                    VisibilityFieldTest.this.network = new RoadNetwork("network", getSimulator());
+                    RoadNetwork net = VisibilityFieldTest.this.network;
+                    lane(net, node(net, "S", 0.0, -100.0), node(net, "C", 0.0, -5.0));
+                    lane(net, node(net, "W", -100.0, 5.0), node(net, "E", 100.0, 5.0));
+                }
+                catch (Exception exception)
+                {
+                    throw new SimRuntimeException(exception);
+                }
+            }
+
+            @Override
+            public RoadNetwork getNetwork()
+            {
+                return VisibilityFieldTest.this.network;
+            }
+        };
+        simulator.initialize(Time.ZERO, Duration.ZERO, Duration.instantiateSI(3600.0), model);
+    }
+
+    /**
+     * Creates a node.
+     * @param net network
+     * @param id id
+     * @param x x coordinate
+     * @param y y coordinate
+     * @return node
+     * @throws Exception on any exception when creating the node
+     */
+    private static Node node(final RoadNetwork net, final String id, final double x, final double y) throws Exception
+    {
+        return new Node(net, id, new Point2d(x, y), Direction.ZERO);
+    }
+
+    /**
+     * Creates a straight link with a single lane between two nodes.
+     * @param net network
+     * @param from start node
+     * @param to end node
+     * @throws Exception on any exception when creating the link or lane
+     */
+    private static void lane(final RoadNetwork net, final Node from, final Node to) throws Exception
+    {
+        Point2d start = from.getPoint();
+        Point2d end = to.getPoint();
+        ContinuousStraight designLine = new ContinuousStraight(
+                new OrientedPoint2d(start.x, start.y, Math.atan2(end.y - start.y, end.x - start.x)), start.distance(end));
+        CrossSectionLink link = new CrossSectionLink(net, from.getId() + "-" + to.getId(), from, to, DefaultsNl.ROAD,
+                new OtsLine2d(designLine.flatten()), FractionalLengthData.of(0.0, 0.0, 1.0, 0.0), LaneKeepingPolicy.KEEPRIGHT);
+        List<CrossSectionSlice> slices = LaneGeometryUtil.getSlices(designLine, Length.ZERO, Length.instantiateSI(3.5));
+        NumSegments flattener = new NumSegments(1);
+        PolyLine2d center = designLine.flattenOffset(LaneGeometryUtil.getCenterOffsets(designLine, slices), flattener);
+        PolyLine2d left = designLine.flattenOffset(LaneGeometryUtil.getLeftEdgeOffsets(designLine, slices), flattener);
+        PolyLine2d right = designLine.flattenOffset(LaneGeometryUtil.getRightEdgeOffsets(designLine, slices), flattener);
+        Polygon2d contour = LaneGeometryUtil.getContour(left, right);
+        new Lane(link, "Lane", new OtsLine2d(center), contour, slices, DefaultsRoadNl.URBAN_ROAD, new LinkedHashMap<>());
+    }
+
+}
@@ -0,0 +1,354 @@
+package org.opentrafficsim.i4driving.tactical.perception.mental.channel;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Map.Entry;
+import java.util.Random;
+import java.util.Set;
+
+import org.djunits.value.vdouble.scalar.Duration;
+import org.djunits.value.vdouble.scalar.Length;
+import org.djunits.value.vdouble.scalar.Speed;
+import org.djunits.value.vdouble.scalar.Time;
+import org.junit.Test;
+import org.opentrafficsim.base.parameters.ParameterSet;
+import org.opentrafficsim.core.definitions.DefaultsNl;
+import org.opentrafficsim.core.dsol.AbstractOtsModel;
+import org.opentrafficsim.core.dsol.OtsSimulator;
+import org.opentrafficsim.core.gtu.perception.EgoPerception;
+import org.opentrafficsim.road.gtu.lane.LaneBasedGtu;
+import org.opentrafficsim.road.gtu.lane.perception.LanePerception;
+import org.opentrafficsim.road.gtu.lane.perception.PerceptionCollectable.UnderlyingDistance;
+import org.opentrafficsim.road.gtu.lane.perception.categories.neighbors.Estimation;
+import org.opentrafficsim.road.network.RoadNetwork;
+
+import nl.tudelft.simulation.dsol.SimRuntimeException;
+
+/**
+ * Tests {@code ChannelFuller} with memoization of task demand against a {@code ChannelFuller} that determines all task demand
+ * in each step. An ego GTU follows a leader at a distance and speed that are set per step.
+ * @author wjschakel
+ */
+public class ChannelFullerTest
+{
+
+    /** Network. */
+    private RoadNetwork network;
+
+    /** Ego GTU. */
+    private LaneBasedGtu ego;
+
+    /** Leader. */
+    private LaneBasedGtu leader;
+
+    /** Distance to the leader [m]. */
+    private double distance;
+
+    /** Ego speed [m/s]. */
+    private double speed;
+
+    /**
+     * Tests that reused car-following demand equals recomputed demand within the bounds of the headway bucket, that demand is
+     * recomputed when the headway changes bucket, also near standstill, and that demand is reused.
+     * @throws Exception on any exception when building the network or GTUs
+     */
+    @Test
+    public void testMemoizedDemand() throws Exception
+    {
+        buildGtus();
+        ChannelTask task =
+                new ChannelTaskCarFollowing((p) -> new UnderlyingDistance<>(this.leader, Length.instantiateSI(this.distance)));
+        ChannelFuller reference = new ChannelFuller(List.of((p) -> Set.of(task)), Set.of());
+        ChannelFuller memoized = new ChannelFuller(List.of((p) -> Set.of(task)), Set.of());
+        DemandMemoization memoization = new DemandMemoization();
+        memoized.setDemandMemoization(memoization);
+        double dt = DemandMemoization.getHeadwayResolution(this.ego.getParameters());
+
+        // speed decreases towards standstill at constant distance, after which the leader moves away
+        double[][] states = {{20.2, 10.0}, {20.7, 10.0}, {20.0, 9.6}, {20.0, 9.2}, {20.0, 5.0}, {20.0, 4.9}, {5.0, 1.0},
+                {5.0, 0.24}, {5.0, 0.05}, {5.0, 0.24}, {5.0, 0.0}, {30.0, 0.0}, {30.0, 10.0}, {30.4, 10.0}, {31.0, 10.0}};
+        double previous = Double.NaN;
+        for (double[] state : states)
+        {
+            double expected = taskSaturation(reference, state[0], state[1]);
+            double actual = taskSaturation(memoized, state[0], state[1]);
+            double headway = state[0] / state[1];
+            if (Double.isInfinite(headway))
+            {
+                assertEquals("Demand at standstill", expected, actual, 0.0);
+            }
+            else
+            {
+                // demand is reused or recomputed within the bucket of the headway
+                double lower = Math.floor(headway / dt) * dt;
+                double demandLower = taskSaturation(reference, lower * state[1], state[1]);
+                double demandUpper = taskSaturation(reference, (lower + dt) * state[1], state[1]);
+                String message = "Demand at headway " + headway;
+                assertTrue(message, actual <= demandLower && actual >= demandUpper);
+                assertTrue(message, actual == expected || actual == previous);
+            }
+            previous = actual;
+        }
+
+        // headway 2.02s and 2.07s, 3.04s and 3.10s, and 100s and 20.8s are respectively in equal and different buckets
+        taskSaturation(memoized, 20.2, 10.0);
+        assertEquals(taskSaturation(reference, 20.2, 10.0), taskSaturation(memoized, 20.7, 10.0), 0.0);
+        taskSaturation(memoized, 30.4, 10.0);
+        assertEquals(taskSaturation(reference, 31.0, 10.0), taskSaturation(memoized, 31.0, 10.0), 0.0);
+        taskSaturation(memoized, 5.0, 0.05);
+        assertEquals(taskSaturation(reference, 5.0, 0.24), taskSaturation(memoized, 5.0, 0.24), 0.0);
+        assertTrue("Demand is never reused", memoization.getDemandHitRate() > 0.0);
+    }
+
+    /**
+     * Tests attention and perception delay per channel against the map-based implementation that preceded the slots, while
+     * conflict channels appear and disappear, such that slots are freed, reused and added beyond the initial capacity.
+     * Objects are mapped to the conflict channels, and some steps repeat the previous step, such that results are reused.
+     * @throws Exception on any exception when building the network or GTUs
+     */
+    @Test
+    public void testChannelSlots() throws Exception
+    {
+        buildGtus();
+        Random random = new Random(3L);
+        List<Object> conflicts = new ArrayList<>();
+        for (int i = 0; i < 24; i++)
+        {
+            conflicts.add("conflict " + i);
+        }
+        List<DemandTask> tasks = new ArrayList<>();
+        ChannelFuller fuller = new ChannelFuller(List.of((p) ->
+        {
+            // map two objects to each conflict channel, as conflict suppliers do
+            for (DemandTask task : tasks)
+            {
+                if (conflicts.contains(task.getChannel()))
+                {
+                    ((ChannelMental) p.getMental()).mapToChannel(task.getChannel() + " a", task.getChannel());
+                    ((ChannelMental) p.getMental()).mapToChannel(task.getChannel() + " b", task.getChannel());
+                }
+            }
+            return new LinkedHashSet<>(tasks);
+        }), Set.of());
+        LanePerception perception = perception(fuller);
+        for (int step = 0; step < 2000; step++)
+        {
+            if (step == 0 || random.nextDouble() > 0.2)
+            {
+                tasks.clear();
+                for (Object channel : List.of(ChannelTask.FRONT, ChannelTask.LEFT, ChannelTask.RIGHT, ChannelTask.REAR))
+                {
+                    if (random.nextDouble() < 0.7)
+                    {
+                        tasks.add(new DemandTask(channel, 0.9 * random.nextDouble()));
+                    }
+                }
+                // a varying number of conflicts in a varying order, sometimes with two tasks
+                int n = random.nextInt(conflicts.size() + 1);
+                for (int i = 0; i < n; i++)
+                {
+                    Object channel = conflicts.get(random.nextInt(conflicts.size()));
+                    tasks.add(new DemandTask(channel, 0.9 * random.nextDouble()));
+                }
+                this.ego.getParameters().setParameter(ChannelFuller.TC, random.nextDouble() < 0.9 ? 1.0 : 0.8);
+            }
+            fuller.apply(perception);
+            Map<Object, double[]> expected = mapBasedAttentionAndDelay(tasks);
+            assertEquals(expected.keySet(), fuller.getChannels());
+            for (Entry<Object, double[]> entry : expected.entrySet())
+            {
+                Object channel = entry.getKey();
+                assertEquals(entry.getValue()[0], fuller.getAttention(channel), 1e-12);
+                assertEquals(entry.getValue()[1], fuller.getPerceptionDelay(channel).si, 1e-12);
+                if (conflicts.contains(channel))
+                {
+                    assertEquals(entry.getValue()[1], fuller.getPerceptionDelay(channel + " b").si, 1e-12);
+                    assertEquals(fuller.getSlot(channel), fuller.getSlot(channel + " a"));
+                }
+            }
+            for (Object channel : conflicts)
+            {
+                if (!expected.containsKey(channel))
+                {
+                    try
+                    {
+                        fuller.getAttention(channel);
+                        fail("Attention of channel " + channel + " that is not present.");
+                    }
+                    catch (IllegalArgumentException exception)
+                    {
+                        // expected
+                    }
+                }
+            }
+        }
+        assertFalse(fuller.getChannels().isEmpty());
+    }
+
+    /**
+     * Returns attention and perception delay per channel as determined by the map-based implementation that preceded the
+     * slots in {@code ChannelFuller}.
+     * @param tasks tasks
+     * @return attention and perception delay [s] per channel
+     * @throws Exception on any exception when obtaining parameters
+     */
+    private Map<Object, double[]> mapBasedAttentionAndDelay(final List<DemandTask> tasks) throws Exception
+    {
+        Map<Object, Double> channelTaskDemand = new LinkedHashMap<>();
+        for (DemandTask task : tasks)
+        {
+            channelTaskDemand.merge(task.getChannel(), task.demand(), Math::max);
+        }
+        double[] tdArray = new double[channelTaskDemand.size()];
+        int index = 0;
+        for (double td : channelTaskDemand.values())
+        {
+            tdArray[index++] = td;
+        }
+        AttentionMatrix matrix = new AttentionMatrix(tdArray);
+        Duration tauMin = this.ego.getParameters().getParameter(ChannelFuller.TAU_MIN);
+        Duration tauMax = this.ego.getParameters().getParameter(ChannelFuller.TAU_MAX);
+        double tc = this.ego.getParameters().getParameter(ChannelFuller.TC);
+        Map<Object, double[]> result = new LinkedHashMap<>();
+        index = 0;
+        for (Object channel : channelTaskDemand.keySet())
+        {
+            result.put(channel, new double[] {matrix.getAttention(index),
+                    Duration.interpolate(tauMin, tauMax, matrix.getDeterioration(index)).divide(tc).si});
+            index++;
+        }
+        return result;
+    }
+
+    /**
+     * Task with fixed demand in a channel.
+     * @param channel channel
+     * @param demand task demand
+     */
+    private record DemandTask(Object channel, double demand) implements ChannelTask
+    {
+        /** {@inheritDoc} */
+        @Override
+        public String getId()
+        {
+            return "demand";
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        public Object getChannel()
+        {
+            return this.channel;
+        }
+
+        /** {@inheritDoc} */
+        @Override
+        public double getDemand(final LanePerception perception)
+        {
+            return this.demand;
+        }
+    }
+
+    /**
+     * Applies the mental module with the given distance to the leader and ego speed, and returns the resulting task
+     * saturation.
+     * @param fuller mental module
+     * @param leaderDistance distance to the leader [m]
+     * @param egoSpeed ego speed [m/s]
+     * @return task saturation
+     * @throws Exception on any exception in the mental module
+     */
+    private double taskSaturation(final ChannelFuller fuller, final double leaderDistance, final double egoSpeed)
+            throws Exception
+    {
+        this.distance = leaderDistance;
+        this.speed = egoSpeed;
+        fuller.apply(perception(fuller));
+        return this.ego.getParameters().getParameter(ChannelFuller.TS);
+    }
+
+    /**
+     * Returns perception of the ego GTU, which only provides the GTU, the mental module and ego perception.
+     * @param fuller mental module
+     * @return perception of the ego GTU
+     */
+    private LanePerception perception(final ChannelFuller fuller)
+    {
+        EgoPerception<?, ?> egoPerception = (EgoPerception<?, ?>) Proxy.newProxyInstance(getClass().getClassLoader(),
+                new Class<?>[] {EgoPerception.class}, (proxy, method, args) ->
+                {
+                    if (method.getName().equals("getSpeed"))
+                    {
+                        return Speed.instantiateSI(this.speed);
+                    }
+                    throw new UnsupportedOperationException(method.getName());
+                });
+        return (LanePerception) Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[] {LanePerception.class},
+                (proxy, method, args) -> switch (method.getName())
+                {
+                    case "getGtu" -> this.ego;
+                    case "getMental" -> fuller;
+                    case "getPerceptionCategory" -> egoPerception;
+                    default -> throw new UnsupportedOperationException(method.getName());
+                });
+    }
+
+    /**
+     * Builds an empty network in a simulator, with the ego GTU and the leader.
+     * @throws Exception on any exception when building the network or GTUs
+     */
+    private void buildGtus() throws Exception
+    {
+        OtsSimulator simulator = new OtsSimulator("ChannelFullerTest");
+        AbstractOtsModel model = new AbstractOtsModel(simulator)
+        {
+            /** */
+            private static final long serialVersionUID = 20241017L;
+
+            @Override
+            public void constructModel() throws SimRuntimeException
+            {
+                ChannelFullerTest.this.network = new RoadNetwork("network", getSimulator());
+            }
+
+            @Override
+            public RoadNetwork getNetwork()
+            {
+                return ChannelFullerTest.this.network;
+            }
+        };
+        simulator.initialize(Time.ZERO, Duration.ZERO, Duration.instantiateSI(3600.0), model);
+        this.ego = gtu("ego");
+        this.leader = gtu("leader");
+        ParameterSet parameters = new ParameterSet();
+        parameters.setDefaultParameter(ChannelFuller.TAU_MIN);
+        parameters.setDefaultParameter(ChannelFuller.TAU_MAX);
+        parameters.setDefaultParameter(ChannelTaskCarFollowing.HEXP);
+        parameters.setDefaultParameter(DemandMemoization.FP_DT);
+        parameters.setParameter(ChannelFuller.TC, 1.0);
+        parameters.setParameter(Estimation.OVER_EST, 1.0);
+        this.ego.setParameters(parameters);
+    }
+
+    /**
+     * Creates a GTU that is not placed on the network.
+     * @param id id
+     * @return GTU that is not placed on the network
+     * @throws Exception on any exception when creating the GTU
+     */
+    private LaneBasedGtu gtu(final String id) throws Exception
+    {
+        return new LaneBasedGtu(id, DefaultsNl.CAR, Length.instantiateSI(4.0), Length.instantiateSI(2.0),
+                Speed.instantiateSI(50.0), Length.instantiateSI(2.0), this.network);
+    }
+
+}
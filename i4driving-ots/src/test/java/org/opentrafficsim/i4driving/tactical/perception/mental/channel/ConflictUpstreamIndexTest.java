@@ -0,0 +1,236 @@
+package org.opentrafficsim.i4driving.tactical.perception.mental.channel;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.util.BitSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+
+import org.djunits.value.vdouble.scalar.Direction;
+import org.djunits.value.vdouble.scalar.Duration;
+import org.djunits.value.vdouble.scalar.Length;
+import org.djunits.value.vdouble.scalar.Time;
+import org.djutils.draw.line.PolyLine2d;
+import org.djutils.draw.line.Polygon2d;
+import org.djutils.draw.point.OrientedPoint2d;
+import org.djutils.draw.point.Point2d;
+import org.junit.Test;
+import org.opentrafficsim.core.definitions.DefaultsNl;
+import org.opentrafficsim.core.dsol.AbstractOtsModel;
+import org.opentrafficsim.core.dsol.OtsSimulator;
+import org.opentrafficsim.core.geometry.ContinuousStraight;
+import org.opentrafficsim.core.geometry.Flattener.NumSegments;
+import org.opentrafficsim.core.geometry.FractionalLengthData;
+import org.opentrafficsim.core.geometry.OtsLine2d;
+import org.opentrafficsim.core.network.Node;
+import org.opentrafficsim.road.definitions.DefaultsRoadNl;
+import org.opentrafficsim.road.network.RoadNetwork;
+import org.opentrafficsim.road.network.lane.CrossSectionLink;
+import org.opentrafficsim.road.network.lane.CrossSectionSlice;
+import org.opentrafficsim.road.network.lane.Lane;
+import org.opentrafficsim.road.network.lane.LaneGeometryUtil;
+import org.opentrafficsim.road.network.lane.changing.LaneKeepingPolicy;
+import org.opentrafficsim.road.network.lane.conflict.Conflict;
+import org.opentrafficsim.road.network.lane.conflict.ConflictBuilder;
+
+import nl.tudelft.simulation.dsol.SimRuntimeException;
+
+/**
+ * Tests which nodes {@code ConflictUpstreamIndex} considers upstream of a conflict, as these determine which conflicts are
+ * grouped. Lane M-N crosses lane W-X. Upstream of M, links from A and B merge. A is a diverge towards M and Q, and links P-A
+ * and R-B are further upstream.
+ * @author wjschakel
+ */
+public class ConflictUpstreamIndexTest
+{
+
+    /** Network. */
+    private RoadNetwork network;
+
+    /**
+     * Tests that the search branches at merges, stops at diverges, and includes nodes at exactly the distance.
+     * @throws Exception on any exception when building the network
+     */
+    @Test
+    public void testUpstreamNodes() throws Exception
+    {
+        buildNetwork();
+        ConflictUpstreamIndex index = ConflictUpstreamIndex.build(this.network);
+        Conflict conflict = getConflict("M-N", "W-X");
+
+        // distances at which nodes are included, calculated as the index does
+        Lane lane = conflict.getLane();
+        Length distanceM = lane.getLink().getLength().times(lane.fraction(conflict.getLongitudinalPosition()) - 1.0)
+                .plus(lane.getLink().getLength());
+        Length distanceB = distanceM.plus(this.network.getLink("B-M").getLength());
+        Length distanceA = distanceM.plus(this.network.getLink("A-M").getLength());
+        Length distanceR = distanceB.plus(this.network.getLink("R-B").getLength());
+        assertTrue(distanceB.lt(distanceA) && distanceA.lt(distanceR));
+
+        Length delta = Length.instantiateSI(1e-6);
+        assertEquals(Set.of(), nodes(index, conflict, distanceM.minus(delta)));
+        assertEquals(Set.of("M"), nodes(index, conflict, distanceM));
+        assertEquals(Set.of("M"), nodes(index, conflict, distanceB.minus(delta)));
+        // both branches of the merge at M
+        assertEquals(Set.of("M", "B"), nodes(index, conflict, distanceB));
+        assertEquals(Set.of("M", "B", "A"), nodes(index, conflict, distanceA));
+        // the search continues upstream of B, but stops at diverge A, so P is never included
+        assertEquals(Set.of("M", "B", "A"), nodes(index, conflict, distanceR.minus(delta)));
+        assertEquals(Set.of("M", "B", "A", "R"), nodes(index, conflict, distanceR));
+        assertEquals(Set.of("M", "B", "A", "R"), nodes(index, conflict, Length.instantiateSI(1000.0)));
+
+        // sets for smaller distances are the same after the search was extended
+        assertEquals(Set.of("M", "B"), nodes(index, conflict, distanceB));
+
+        // the crossing road has other upstream nodes, so the conflicts are not grouped
+        BitSet crossing = index.getUpstreamNodes(conflict.getOtherConflict(), Length.instantiateSI(1000.0));
+        assertEquals(Set.of("W"), names(index, crossing));
+        assertFalse(crossing.intersects(index.getUpstreamNodes(conflict, Length.instantiateSI(1000.0))));
+    }
+
+    /**
+     * Returns the ids of the nodes upstream of a conflict.
+     * @param index index
+     * @param conflict conflict
+     * @param x0 distance upstream
+     * @return ids of the nodes upstream of the conflict
+     */
+    private Set<String> nodes(final ConflictUpstreamIndex index, final Conflict conflict, final Length x0)
+    {
+        return names(index, index.getUpstreamNodes(conflict, x0));
+    }
+
+    /**
+     * Returns the ids of the nodes in a set of node indices.
+     * @param index index
+     * @param nodes node indices
+     * @return ids of the nodes
+     */
+    private Set<String> names(final ConflictUpstreamIndex index, final BitSet nodes)
+    {
+        Set<String> names = new TreeSet<>();
+        for (Node node : this.network.getNodeMap().values())
+        {
+            int nodeIndex = index.getNodeIndex(node.getId());
+            if (nodeIndex >= 0 && nodes.get(nodeIndex))
+            {
+                names.add(node.getId());
+            }
+        }
+        return names;
+    }
+
+    /**
+     * Returns the conflict on a link with a lane on another link.
+     * @param linkId link id
+     * @param otherLinkId link id of the conflicting lane
+     * @return conflict on the link with a lane on the other link
+     */
+    private Conflict getConflict(final String linkId, final String otherLinkId)
+    {
+        for (Conflict conflict : this.network.getObjectMap(Conflict.class).values())
+        {
+            if (conflict.getLane().getLink().getId().equals(linkId)
+                    && conflict.getOtherConflict().getLane().getLink().getId().equals(otherLinkId))
+            {
+                return conflict;
+            }
+        }
+        throw new IllegalStateException("No conflict on " + linkId + " with " + otherLinkId);
+    }
+
+    /**
+     * Builds the network with conflicts in a simulator.
+     * @throws Exception on any exception when building the network
+     */
+    private void buildNetwork() throws Exception
+    {
+        OtsSimulator simulator = new OtsSimulator("ConflictUpstreamIndexTest");
+        AbstractOtsModel model = new AbstractOtsModel(simulator)
+        {
+            /** */
+            private static final long serialVersionUID = 20241017L;
+
+            @Override
+            public void constructModel() throws SimRuntimeException
+            {
+                try
+                {
+                    ConflictUpstreamIndexTest.this.network = new RoadNetwork("network", getSimulator());
+                    RoadNetwork net = ConflictUpstreamIndexTest.this.network;
+                    Node p = node(net, "P", 0.0, -220.0);
+                    Node a = node(net, "A", 0.0, -120.0);
+                    Node q = node(net, "Q", 60.0, -180.0);
+                    Node r = node(net, "R", -60.0, -180.0);
+                    Node b = node(net, "B", -60.0, -80.0);
+                    Node m = node(net, "M", 0.0, -20.0);
+                    Node n = node(net, "N", 0.0, 20.0);
+                    Node w = node(net, "W", -50.0, 0.0);
+                    Node x = node(net, "X", 50.0, 0.0);
+                    lane(net, p, a);
+                    lane(net, a, q);
+                    lane(net, a, m);
+                    lane(net, r, b);
+                    lane(net, b, m);
+                    lane(net, m, n);
+                    lane(net, w, x);
+                    ConflictBuilder.buildConflicts(net, getSimulator(), new ConflictBuilder.RelativeWidthGenerator(0.5));
+                }
+                catch (Exception exception)
+                {
+                    throw new SimRuntimeException(exception);
+                }
+            }
+
+            @Override
+            public RoadNetwork getNetwork()
+            {
+                return ConflictUpstreamIndexTest.this.network;
+            }
+        };
+        simulator.initialize(Time.ZERO, Duration.ZERO, Duration.instantiateSI(3600.0), model);
+    }
+
+    /**
+     * Creates a node.
+     * @param net network
+     * @param id id
+     * @param x x coordinate
+     * @param y y coordinate
+     * @return node
+     * @throws Exception on any exception when creating the node
+     */
+    private static Node node(final RoadNetwork net, final String id, final double x, final double y) throws Exception
+    {
+        return new Node(net, id, new Point2d(x, y), Direction.ZERO);
+    }
+
+    /**
+     * Creates a straight link with a single lane between two nodes.
+     * @param net network
+     * @param from start node
+     * @param to end node
+     * @throws Exception on any exception when creating the link or lane
+     */
+    private static void lane(final RoadNetwork net, final Node from, final Node to) throws Exception
+    {
+        Point2d start = from.getPoint();
+        Point2d end = to.getPoint();
+        ContinuousStraight designLine = new ContinuousStraight(
+                new OrientedPoint2d(start.x, start.y, Math.atan2(end.y - start.y, end.x - start.x)), start.distance(end));
+        CrossSectionLink link = new CrossSectionLink(net, from.getId() + "-" + to.getId(), from, to, DefaultsNl.ROAD,
+                new OtsLine2d(designLine.flatten()), FractionalLengthData.of(0.0, 0.0, 1.0, 0.0), LaneKeepingPolicy.KEEPRIGHT);
+        List<CrossSectionSlice> slices = LaneGeometryUtil.getSlices(designLine, Length.ZERO, Length.instantiateSI(3.5));
+        NumSegments flattener = new NumSegments(1);
+        PolyLine2d center = designLine.flattenOffset(LaneGeometryUtil.getCenterOffsets(designLine, slices), flattener);
+        PolyLine2d left = designLine.flattenOffset(LaneGeometryUtil.getLeftEdgeOffsets(designLine, slices), flattener);
+        PolyLine2d right = designLine.flattenOffset(LaneGeometryUtil.getRightEdgeOffsets(designLine, slices), flattener);
+        Polygon2d contour = LaneGeometryUtil.getContour(left, right);
+        new Lane(link, "Lane", new OtsLine2d(center), contour, slices, DefaultsRoadNl.URBAN_ROAD, new LinkedHashMap<>());
+    }
+
+}
@@ -0,0 +1,93 @@
+package org.opentrafficsim.i4driving.test;
+
+import java.util.Random;
+
+import org.opentrafficsim.i4driving.tactical.perception.mental.channel.AttentionMatrix;
+
+/**
+ * Manual benchmark of AttentionMatrix, comparing its closed-form steady state with the eigen decomposition by Jama, for 2 to
+ * 30 channels with saturated demand. The argument is the number of evaluations per number of channels (default 20000).
+ * @author wjschakel
+ */
+public final class AttentionMatrixBenchmark
+{
+
+    /** Number of demand sets that are cycled through. */
+    private static final int SETS = 64;
+
+    /**
+     * Constructor.
+     */
+    private AttentionMatrixBenchmark()
+    {
+        //
+    }
+
+    /**
+     * Runs the benchmark.
+     * @param args number of evaluations per number of channels
+     */
+    public static void main(final String[] args)
+    {
+        int evaluations = args.length > 0 ? Integer.parseInt(args[0]) : 20000;
+        Random random = new Random(1L);
+        System.out.println(String.format("%8s %12s %12s %8s %12s", "channels", "eig [ns]", "closed [ns]", "speed-up",
+                "max diff"));
+        double sink = 0.0;
+        for (int n = 2; n <= 30; n++)
+        {
+            double[][] demand = new double[SETS][n];
+            for (double[] set : demand)
+            {
+                for (int j = 0; j < n; j++)
+                {
+                    // saturated, such that the steady state is needed
+                    set[j] = 0.2 + 0.79 * random.nextDouble();
+                }
+            }
+            double maxDiff = 0.0;
+            for (double[] set : demand)
+            {
+                double[] expected = AttentionTest.eigenAttention(set);
+                AttentionMatrix matrix = new AttentionMatrix(set);
+                for (int j = 0; j < n; j++)
+                {
+                    maxDiff = Math.max(maxDiff, Math.abs(expected[j] - matrix.getAttention(j)));
+                }
+            }
+            // warm-up and measurement
+            for (int run = 0; run < 2; run++)
+            {
+                sink += time(demand, evaluations / 4, true) + time(demand, evaluations / 4, false);
+            }
+            double eig = time(demand, evaluations, true);
+            double closed = time(demand, evaluations, false);
+            System.out.println(String.format("%8d %12.0f %12.0f %8.1f %12.2e", n, eig, closed, eig / closed, maxDiff));
+        }
+        if (sink == 42.0)
+        {
+            System.out.println(sink);
+        }
+    }
+
+    /**
+     * Returns the mean time per evaluation.
+     * @param demand demand sets
+     * @param evaluations number of evaluations
+     * @param eig whether to use the eigen decomposition by Jama, rather than AttentionMatrix
+     * @return mean time per evaluation [ns]
+     */
+    private static double time(final double[][] demand, final int evaluations, final boolean eig)
+    {
+        double sink = 0.0;
+        long start = System.nanoTime();
+        for (int i = 0; i < evaluations; i++)
+        {
+            double[] set = demand[i % SETS];
+            sink += eig ? AttentionTest.eigenAttention(set)[0] : new AttentionMatrix(set).getAttention(0);
+        }
+        long time = System.nanoTime() - start;
+        return sink < 0.0 ? Double.NaN : (double) time / evaluations;
+    }
+
+}
@@ -8,6 +8,8 @@ import java.util.concurrent.ThreadLocalRandom;
 import org.junit.Test;
 import org.opentrafficsim.i4driving.tactical.perception.mental.channel.AttentionMatrix;
 
+import Jama.Matrix;
+
 public class AttentionTest
 {
 
@@ -72,4 +74,85 @@ public class AttentionTest
         }
     }
 
+    /**
+     * This tests that the steady state of AttentionMatrix equals the eigenvector of the transition matrix pertaining to the
+     * eigenvalue 1, as it was previously found with Jama.
+     */
+    @Test
+    public void testSteadyState()
+    {
+        for (int i = 1; i < 1000; i++)
+        {
+            int n = ThreadLocalRandom.current().nextInt(2, 31); // number of channels
+            double[] demand = new double[n]; // demand per channel
+            for (int j = 0; j < n; j++)
+            {
+                // also channels without demand
+                demand[j] = ThreadLocalRandom.current().nextInt(5) == 0 ? 0.0 : ThreadLocalRandom.current().nextDouble();
+            }
+            double[] expected = eigenAttention(demand);
+            AttentionMatrix m = new AttentionMatrix(demand);
+            for (int j = 0; j < n; j++)
+            {
+                assertEquals("Attention differs from eigenvector", expected[j], m.getAttention(j), 1e-9);
+            }
+        }
+    }
+
+    /**
+     * Returns attention per channel as the eigenvector of the transition matrix pertaining to the eigenvalue closest to 1,
+     * using Jama.
+     * @param demand level of mental task demand per channel
+     * @return attention per channel
+     */
+    static double[] eigenAttention(final double[] demand)
+    {
+        int n = demand.length;
+        double demandSum = 0.0;
+        for (int i = 0; i < n; i++)
+        {
+            demandSum += demand[i];
+        }
+        if (demandSum <= 1.0)
+        {
+            return demandSum == 0.0 ? new double[n] : demand.clone();
+        }
+        // transposed transition matrix, as we need a left-eigenvector
+        Matrix matrix = new Matrix(n, n);
+        for (int i = 0; i < n; i++)
+        {
+            for (int j = 0; j < n; j++)
+            {
+                matrix.set(j, i, i == j ? demand[i]
+                        : (demandSum > demand[i] ? (1 - demand[i]) * demand[j] / (demandSum - demand[i]) : 0.0));
+            }
+        }
+        var ed = matrix.eig();
+        double[] eigenValues = ed.getRealEigenvalues();
+        int eigenIndex = 0;
+        double dMin = 1.0;
+        for (int i = 0; i < n; i++)
+        {
+            double di = Math.abs(eigenValues[i] - 1.0);
+            if (di < dMin)
+            {
+                dMin = di;
+                eigenIndex = i;
+            }
+        }
+        double[][] v = ed.getV().getArray();
+        double[] attention = new double[n];
+        double sumEigenVector = 0.0;
+        for (int i = 0; i < n; i++)
+        {
+            attention[i] = v[i][eigenIndex];
+            sumEigenVector += attention[i];
+        }
+        for (int i = 0; i < n; i++)
+        {
+            attention[i] = attention[i] / sumEigenVector;
+        }
+        return attention;
+    }
+
 }
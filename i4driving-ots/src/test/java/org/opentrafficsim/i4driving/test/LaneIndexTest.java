@@ -0,0 +1,67 @@
+package org.opentrafficsim.i4driving.test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+
+import java.awt.geom.Rectangle2D;
+import java.util.Random;
+
+import org.djunits.value.vdouble.scalar.Duration;
+import org.djunits.value.vdouble.scalar.Time;
+import org.djutils.draw.point.Point2d;
+import org.junit.Test;
+import org.opentrafficsim.core.dsol.OtsSimulator;
+import org.opentrafficsim.i4driving.opendrive.OpenDriveModel;
+import org.opentrafficsim.i4driving.tactical.LaneIndex;
+import org.opentrafficsim.i4driving.tactical.NetworkUtil;
+import org.opentrafficsim.road.network.RoadNetwork;
+import org.opentrafficsim.road.network.lane.LanePosition;
+
+/**
+ * Tests that {@code LaneIndex} finds the same closest lane position as {@code NetworkUtil.getLanePosition()}.
+ * @author wjschakel
+ */
+public class LaneIndexTest
+{
+
+    /** OpenDRIVE networks to test. */
+    private static final String[] NETWORKS = {"/opendrive/examples/CoreScenario3_MotorwayCut-in.xodr",
+            "/opendrive/examples/crossroad_complete_initial.xodr", "/opendrive/examples/crossroad_bike_lane_separate.xodr",
+            "/opendrive/examples/i4Driving_scenario30_curved.xodr"};
+
+    /** Number of random points per network. */
+    private static final int POINTS = 5000;
+
+    /** Margin around the network extent in which points are drawn [m]. */
+    private static final double MARGIN = 50.0;
+
+    /**
+     * Compares the lane position of random points in and around the extent of OpenDRIVE networks.
+     * @throws Exception on any exception when building a network
+     */
+    @Test
+    public void testLanePosition() throws Exception
+    {
+        Random random = new Random(20240101L);
+        for (String file : NETWORKS)
+        {
+            OtsSimulator simulator = new OtsSimulator(file);
+            OpenDriveModel model = new OpenDriveModel(simulator, file);
+            simulator.initialize(Time.ZERO, Duration.ZERO, Duration.instantiateSI(3600.0), model);
+            RoadNetwork network = (RoadNetwork) model.getNetwork();
+            LaneIndex index = new LaneIndex(network);
+            Rectangle2D extent = network.getExtent();
+            for (int i = 0; i < POINTS; i++)
+            {
+                Point2d point = new Point2d(extent.getMinX() - MARGIN + random.nextDouble() * (extent.getWidth() + 2 * MARGIN),
+                        extent.getMinY() - MARGIN + random.nextDouble() * (extent.getHeight() + 2 * MARGIN));
+                LanePosition expected = NetworkUtil.getLanePosition(network, point);
+                LanePosition actual = index.getLanePosition(point);
+                assertNotNull(actual);
+                assertEquals(file + " " + point, expected.lane(), actual.lane());
+                assertEquals(file + " " + point, expected.position().si, actual.position().si, 1e-9);
+            }
+        }
+    }
+
+}
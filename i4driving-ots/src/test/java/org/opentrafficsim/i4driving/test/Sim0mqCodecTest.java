@@ -0,0 +1,222 @@
+package org.opentrafficsim.i4driving.test;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.djunits.unit.AccelerationUnit;
+import org.djunits.unit.DirectionUnit;
+import org.djunits.unit.LengthUnit;
+import org.djunits.unit.SpeedUnit;
+import org.djunits.value.vdouble.scalar.Acceleration;
+import org.djunits.value.vdouble.scalar.Direction;
+import org.djunits.value.vdouble.scalar.Duration;
+import org.djunits.value.vdouble.scalar.Length;
+import org.djunits.value.vdouble.scalar.Speed;
+import org.djunits.value.vdouble.vector.AccelerationVector;
+import org.djunits.value.vdouble.vector.DirectionVector;
+import org.djunits.value.vdouble.vector.LengthVector;
+import org.djunits.value.vdouble.vector.SpeedVector;
+import org.djunits.value.vfloat.scalar.FloatLength;
+import org.djunits.value.vfloat.vector.FloatAccelerationVector;
+import org.djunits.value.vfloat.vector.FloatDurationVector;
+import org.djunits.value.vfloat.vector.FloatLengthVector;
+import org.djutils.serialization.SerializationException;
+import org.junit.Test;
+import org.opentrafficsim.i4driving.sim0mq.PlanPathCodec;
+import org.opentrafficsim.i4driving.sim0mq.Sim0mqEncoder;
+import org.opentrafficsim.i4driving.sim0mq.Sim0mqReader;
+import org.sim0mq.Sim0MQException;
+import org.sim0mq.message.Sim0MQMessage;
+
+/**
+ * Tests that {@code Sim0mqEncoder} and {@code Sim0mqReader} are wire-compatible with {@code Sim0MQMessage}. The
+ * {@code Sim0mqCodecBenchmark} compares their performance.
+ * @author wjschakel
+ */
+public class Sim0mqCodecTest
+{
+
+    /** Path x coordinates. */
+    private static final float[] X = {10.0f, 12.5f, 15.0f, 17.5f, 20.0f, 22.5f, 25.0f, 27.5f};
+
+    /** Path y coordinates. */
+    private static final float[] Y = {-1.75f, -1.75f, -1.7f, -1.6f, -1.4f, -1.2f, -1.0f, -0.8f};
+
+    /** Segment durations. */
+    private static final float[] T = {0.5f, 0.5f};
+
+    /** Segment accelerations. */
+    private static final float[] A = {0.8f, 0.6f};
+
+    /**
+     * Tests that encoded messages are equal to those of Sim0MQMessage, for both endiannesses.
+     * @throws Sim0MQException on exception
+     * @throws SerializationException on exception
+     */
+    @Test
+    public void testEncoder() throws Sim0MQException, SerializationException
+    {
+        for (boolean bigEndian : new boolean[] {true, false})
+        {
+            Sim0mqEncoder encoder = new Sim0mqEncoder(bigEndian, "Ots_ExternalSim", "Ots", "ExternalSim");
+            assertArrayEquals(Sim0MQMessage.encodeUTF8(bigEndian, "Ots_ExternalSim", "Ots", "ExternalSim", "READY", 3,
+                    new Object[] {7}), encoder.encodeReady(3, 7));
+            assertArrayEquals(Sim0MQMessage.encodeUTF8(bigEndian, "Ots_ExternalSim", "Ots", "ExternalSim", "PROGRESS", 4,
+                    new Object[] {Duration.instantiateSI(1.5)}), encoder.encodeProgress(4, 1.5));
+            assertArrayEquals(Sim0MQMessage.encodeUTF8(bigEndian, "Ots_ExternalSim", "Ots", "ExternalSim", "DELETE", 5,
+                    new Object[] {"GTUé"}), encoder.encodeDelete(5, "GTUé"));
+            assertArrayEquals(Sim0MQMessage.encodeUTF8(bigEndian, "Ots_ExternalSim", "Ots", "ExternalSim", "EXTERNAL", 6,
+                    new Object[] {"GTU1", Length.instantiateSI(100.0), Length.instantiateSI(2.0), Direction.instantiateSI(0.1),
+                            Speed.instantiateSI(20.0), Acceleration.instantiateSI(0.5)}),
+                    encoder.encodeExternal(6, "GTU1", 100.0, 2.0, 0.1, 20.0, 0.5));
+            assertArrayEquals(Sim0MQMessage.encodeUTF8(bigEndian, "Ots_ExternalSim", "Ots", "ExternalSim", "VEHICLE", 7,
+                    new Object[] {"GTU1", "Ots", Length.instantiateSI(100.0), Length.instantiateSI(2.0),
+                            Direction.instantiateSI(0.1), Speed.instantiateSI(20.0), "NL.CAR", Length.instantiateSI(4.0),
+                            Length.instantiateSI(1.8), Length.instantiateSI(3.0), 0, "Route1"}),
+                    encoder.encodeVehicle(7, "GTU1", 100.0, 2.0, 0.1, 20.0, "NL.CAR", 4.0, 1.8, 3.0, "Route1"));
+            assertArrayEquals(
+                    Sim0MQMessage.encodeUTF8(bigEndian, "Ots_ExternalSim", "Ots", "ExternalSim", "PLAN", 8,
+                            new Object[] {"GTU1", Speed.instantiateSI(20.0), new FloatLengthVector(X),
+                                    new FloatLengthVector(Y), new FloatDurationVector(T), new FloatAccelerationVector(A),
+                                    "Left"}),
+                    encoder.encodePlan(8, "GTU1", 20.0, X, Y, X.length, T, A, T.length, "Left"));
+            byte[] path = {4, -3, 2};
+            assertArrayEquals(
+                    Sim0MQMessage.encodeUTF8(bigEndian, "Ots_ExternalSim", "Ots", "ExternalSim", "CPLAN", 10,
+                            new Object[] {"GTU1", Speed.instantiateSI(20.0), FloatLength.instantiateSI(17.5f),
+                                    FloatLength.instantiateSI(0.01f), FloatLength.instantiateSI(0.004f), new byte[] {4, -3},
+                                    new FloatDurationVector(T), new FloatAccelerationVector(A), "Left"}),
+                    encoder.encodeCompactPlan(10, "GTU1", 20.0, 17.5, 0.01, 0.004, path, 2, T, A, T.length, "Left"));
+            double[] x = {100.0, 120.0, 0.0};
+            double[] y = {2.0, 5.5, 0.0};
+            double[] direction = {0.1, 0.0, 0.0};
+            double[] speed = {20.0, 15.0, 0.0};
+            double[] acceleration = {0.5, -1.0, 0.0};
+            assertArrayEquals(Sim0MQMessage.encodeUTF8(bigEndian, "Ots_ExternalSim", "Ots", "ExternalSim", "EXTERNALS", 9,
+                    new Object[] {2, "GTU1", "GTU2", new LengthVector(new double[] {100.0, 120.0}, LengthUnit.SI),
+                            new LengthVector(new double[] {2.0, 5.5}, LengthUnit.SI),
+                            new DirectionVector(new double[] {0.1, 0.0}, DirectionUnit.DEFAULT),
+                            new SpeedVector(new double[] {20.0, 15.0}, SpeedUnit.SI),
+                            new AccelerationVector(new double[] {0.5, -1.0}, AccelerationUnit.SI)}),
+                    encoder.encodeExternals(9, new String[] {"GTU1", "GTU2", "GTU3"}, x, y, direction, speed, acceleration,
+                            2));
+        }
+    }
+
+    /**
+     * Tests that compact paths of a curve deviate less than the maximum deviation, and are much smaller than full paths.
+     */
+    @Test
+    public void testPlanPathCodec()
+    {
+        // 200 m of a curve with radius 300 m at 0.5 m spacing, far from the origin, and a straight path
+        int n = 401;
+        float[] x = new float[n + 2];
+        float[] y = new float[n + 2];
+        for (int i = 0; i < n; i++)
+        {
+            double angle = i * 0.5 / 300.0;
+            x[i] = (float) (85000.0 + 300.0 * Math.sin(angle));
+            y[i] = (float) (-42000.0 + 300.0 * (1.0 - Math.cos(angle)));
+        }
+        x[n] = 10.0f;
+        y[n] = -1.75f;
+        x[n + 1] = 60.0f;
+        y[n + 1] = -1.75f;
+        for (double maxDeviation : new double[] {0.01, 0.05, 0.2})
+        {
+            PlanPathCodec codec = new PlanPathCodec(maxDeviation);
+            int bytes = codec.encode(x, y, 0, n);
+            assertTrue(codec.getDeviation() <= maxDeviation);
+            assertTrue("Compact path should be an order of magnitude smaller", bytes < 8 * n / 10);
+            double[][] path = PlanPathCodec.decode(codec.getBytes(), 0, bytes, codec.getQuantum());
+            assertEquals(x[0], path[0][0], maxDeviation);
+            assertEquals(y[n - 1], path[1][path[1].length - 1], maxDeviation);
+            double length = 0.0;
+            for (int i = 1; i < path[0].length; i++)
+            {
+                length += Math.hypot(path[0][i] - path[0][i - 1], path[1][i] - path[1][i - 1]);
+            }
+            assertEquals(200.0, codec.getLength(), 0.01);
+            // decimation shortens the curve by less than 0.05%
+            assertEquals(codec.getLength(), length, 0.1);
+            // every original point is within the reported deviation of the reconstructed path
+            for (int i = 0; i < n; i++)
+            {
+                double min = Double.POSITIVE_INFINITY;
+                for (int j = 1; j < path[0].length; j++)
+                {
+                    min = Math.min(min, distanceToSegment(x[i], y[i], path[0][j - 1], path[1][j - 1], path[0][j], path[1][j]));
+                }
+                assertTrue(min <= codec.getDeviation() + 1e-9);
+            }
+
+            bytes = codec.encode(x, y, n, 2);
+            path = PlanPathCodec.decode(codec.getBytes(), 0, bytes, codec.getQuantum());
+            assertEquals(2, path[0].length);
+            assertEquals(60.0, path[0][1], maxDeviation);
+            assertEquals(50.0, codec.getLength(), 0.0);
+        }
+    }
+
+    /**
+     * Returns the distance of a point to a line segment.
+     * @param px x coordinate of the point
+     * @param py y coordinate of the point
+     * @param x1 x coordinate of the start of the segment
+     * @param y1 y coordinate of the start of the segment
+     * @param x2 x coordinate of the end of the segment
+     * @param y2 y coordinate of the end of the segment
+     * @return distance of the point to the line segment
+     */
+    private static double distanceToSegment(final double px, final double py, final double x1, final double y1,
+            final double x2, final double y2)
+    {
+        double dx = x2 - x1;
+        double dy = y2 - y1;
+        double f = Math.max(0.0, Math.min(1.0, ((px - x1) * dx + (py - y1) * dy) / (dx * dx + dy * dy)));
+        return Math.hypot(px - x1 - f * dx, py - y1 - f * dy);
+    }
+
+    /**
+     * Tests that messages encoded by Sim0MQMessage are read correctly, for both endiannesses.
+     * @throws Sim0MQException on exception
+     * @throws SerializationException on exception
+     */
+    @Test
+    public void testReader() throws Sim0MQException, SerializationException
+    {
+        Sim0mqReader reader = new Sim0mqReader();
+        for (boolean bigEndian : new boolean[] {true, false})
+        {
+            reader.wrap(Sim0MQMessage.encodeUTF8(bigEndian, "Ots_ExternalSim", "ExternalSim", "Ots", "EXTERNAL", 6,
+                    new Object[] {"GTU1", Length.instantiateSI(100.0), Length.instantiateSI(2.0), Direction.instantiateSI(0.1),
+                            Speed.instantiateSI(20.0), Acceleration.instantiateSI(0.5)}));
+            assertEquals(bigEndian, reader.isBigEndian());
+            assertEquals("EXTERNAL", reader.getMessageType());
+            assertEquals(6, reader.getMessageId());
+            assertEquals(6, reader.getNumberOfFields());
+            assertEquals(0.5, reader.getDouble(5), 0.0); // out of order, fields are located lazily
+            assertEquals("GTU1", reader.getString(0));
+            assertEquals(100.0, reader.getDouble(1), 0.0);
+            assertEquals(2.0, reader.getDouble(2), 0.0);
+            assertEquals(0.1, reader.getDouble(3), 0.0);
+            assertEquals(20.0, reader.getDouble(4), 0.0);
+
+            reader.wrap(Sim0MQMessage.encodeUTF16(bigEndian, "Ots_ExternalSim", "ExternalSim", "Ots", "PLAN", 9,
+                    new Object[] {"GTU1", Speed.instantiateSI(20.0), new FloatLengthVector(X), new FloatLengthVector(Y),
+                            new FloatDurationVector(T), new FloatAccelerationVector(A), "Left"}));
+            assertEquals("PLAN", reader.getMessageType());
+            assertEquals("Left", reader.getString(6));
+            assertEquals(X.length, reader.getArrayLength(2));
+            double[] y = reader.getDoubleArray(3, null);
+            for (int i = 0; i < Y.length; i++)
+            {
+                assertEquals(Y[i], y[i], 0.0);
+            }
+            assertEquals(20.0, reader.getDouble(1), 0.0);
+        }
+    }
+
+}